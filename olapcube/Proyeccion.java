@@ -1,14 +1,18 @@
 package olapcube;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import olapcube.estructura.Celda;
 import olapcube.estructura.Cubo;
 import olapcube.estructura.Dimension;
+import olapcube.estructura.Grupo;
+import olapcube.estructura.Orden;
 import olapcube.metricas.Medida;
+import olapcube.resultados.EscritorConsola;
+import olapcube.resultados.ResultadoConsulta;
 
 /**
  * Clase que representa una proyeccion de un cubo OLAP
@@ -19,12 +23,7 @@ public class Proyeccion {
     private String hecho; // Hecho a proyectar
     private Medida medida; // Medida a proyectar
     private Map<String, Medida> medidasPorHecho; // Medidas disponibles por hecho
-
-    // Atributos para mostrar en consola
-    private static final String FORMATO_CELDA = "%20.20s";
-    private static final String FORMATO_CELDA_IZQUIERDA = "%-20.20s";
-    private static final String SEPARADOR = " | ";
-    private static final String SEPARADOR_DIM = " / ";
+    private Orden orden; // Orden de las filas por el hecho seleccionado (null = por valores de las dimensiones)
 
     /**
      * Constructor de la clase
@@ -60,6 +59,37 @@ public class Proyeccion {
         }
     }
 
+    /**
+     * Ordena las filas de los pivots por el resultado del hecho seleccionado
+     * y muestra solo las primeras (ej. los 20 productos con mayor valor_total)
+     * 
+     * @param descendente true para empezar por los mayores resultados
+     * @param limite      Filas a mostrar
+     */
+    public void ordenar(boolean descendente, int limite) {
+        ordenar(descendente, 0, limite);
+    }
+
+    /**
+     * Ordena las filas de los pivots por el resultado del hecho seleccionado,
+     * salteando las primeras (para paginar)
+     * 
+     * @param descendente    true para empezar por los mayores resultados
+     * @param desplazamiento Filas a saltear
+     * @param limite         Filas a mostrar
+     */
+    public void ordenar(boolean descendente, int desplazamiento, int limite) {
+        Orden nuevo = descendente ? Orden.descendente(0) : Orden.ascendente(0);
+        this.orden = nuevo.saltear(desplazamiento).limitar(limite);
+    }
+
+    /**
+     * Vuelve a mostrar las filas ordenadas por los valores de las dimensiones
+     */
+    public void quitarOrden() {
+        this.orden = null;
+    }
+
     public void printPivot(String nombreDim1, String nombreDim2) {
         printPivot(nombreDim1, nombreDim2, false, false);
     }
@@ -72,65 +102,27 @@ public class Proyeccion {
                 + " y " + dimension2.getNombre() + " en nivel " + dimension2.getNivelActual() + " - "
                 + hecho + " (" + medida.getNombre() + ")");
 
-        String[] valoresDim1 = dimension1.getValoresNivel(dimension1.getNivelActual());
-        String[] valoresDim2 = dimension2.getValoresNivel(dimension2.getNivelActual());
-
-        Arrays.sort(valoresDim1);
-        Arrays.sort(valoresDim2);
-
-        // Combinar valores de ambas dimensiones
-        String[] valoresCombinados = new String[valoresDim1.length * valoresDim2.length];
-        int k = 0;
-        for (String valorDim1 : valoresDim1) {
-            for (String valorDim2 : valoresDim2) {
-                valoresCombinados[k++] = valorDim1 + SEPARADOR_DIM + valorDim2;
-            }
-        }
-
-        // Calcular valores para la tabla pivote
-        Double[] valores = new Double[valoresCombinados.length];
-        for (int i = 0; i < valoresCombinados.length; i++) {
-            String[] valoresSeparados = valoresCombinados[i].split(SEPARADOR_DIM);
-            Celda celdaAgrupada = cubo.getCelda(dimension1, valoresSeparados[0], dimension2, valoresSeparados[1]);
-            valores[i] = medida.calcular(celdaAgrupada.getValores(hecho));
-        }
-
-        printTablaPivot(valoresCombinados, hecho, valores, mostrarUltimaParteDim1, mostrarUltimaParteDim2);
+        imprimir(pivot(nombreDim1, nombreDim2), false, mostrarUltimaParteDim1, mostrarUltimaParteDim2);
     }
 
-    private void printTablaPivot(String[] indice, String header, Double[] valores, boolean mostrarUltimaParteDim1,
-            boolean mostrarUltimaParteDim2) {
-        if (indice.length > maxFilas) {
-            indice = Arrays.copyOfRange(indice, 0, maxFilas);
-        }
+    /**
+     * Calcula el pivot de dos dimensiones para el hecho y la medida
+     * seleccionados, con el orden indicado en ordenar() si lo hay
+     * 
+     * @param nombreDim1 Dimensión de la primera clave
+     * @param nombreDim2 Dimensión de la segunda clave
+     * @return Resultado con una fila por combinación con datos
+     */
+    public ResultadoConsulta pivot(String nombreDim1, String nombreDim2) {
+        Dimension dimension1 = cubo.getDimension(nombreDim1);
+        Dimension dimension2 = cubo.getDimension(nombreDim2);
 
-        int longitudSeparador = 20 + SEPARADOR.length() + 20;
-        char[] separadorArray = new char[longitudSeparador];
-        Arrays.fill(separadorArray, '-');
-        String lineaSeparadora = new String(separadorArray);
-
-        // Encabezado con el hecho
-        System.out.printf(FORMATO_CELDA, "");
-        System.out.print(SEPARADOR);
-        System.out.printf(FORMATO_CELDA, header);
-        System.out.println(" |");
-        System.out.println(lineaSeparadora);
-
-        // Filas con índice y valor
-        for (int i = 0; i < indice.length; i++) {
-            if (valores[i] != null && valores[i] != 0.0) {
-                String[] partesIndice = indice[i].split(SEPARADOR_DIM);
-                String dim1 = mostrarUltimaParteDim1 ? obtenerUltimaParte(partesIndice[0]) : partesIndice[0];
-                String dim2 = mostrarUltimaParteDim2 ? obtenerUltimaParte(partesIndice[1]) : partesIndice[1];
-
-                System.out.printf(FORMATO_CELDA_IZQUIERDA, dim1 + " | " + dim2);
-                System.out.print(SEPARADOR);
-
-                String valorFormateado = String.format("%.2f", valores[i]);
-                System.out.printf(FORMATO_CELDA, valorFormateado);
-                System.out.println(" |");
-            }
-        }
+        // Agrupar y acumular en una sola pasada (solo combinaciones con datos)
+        List<Grupo> grupos = orden == null
+                ? cubo.agregar(new String[] { hecho }, new Medida[] { medida }, dimension1, dimension2)
+                : cubo.agregar(new String[] { hecho }, new Medida[] { medida }, orden, dimension1, dimension2);
+        return new ResultadoConsulta(new String[] { dimension1.getNombre(), dimension2.getNombre() },
+                new String[] { hecho }, new String[] { medida.getNombre() }, grupos);
     }
 
     public void printPivotAllHechos(String nombreDim1, String nombreDim2) {
@@ -145,94 +137,57 @@ public class Proyeccion {
                 + " y " + dimension2.getNombre() + " en nivel " + dimension2.getNivelActual()
                 + " - Todos los Hechos");
 
-        String[] valoresDim1 = dimension1.getValoresNivel(dimension1.getNivelActual());
-        String[] valoresDim2 = dimension2.getValoresNivel(dimension2.getNivelActual());
-
-        Arrays.sort(valoresDim1);
-        Arrays.sort(valoresDim2);
+        imprimir(pivotAllHechos(nombreDim1, nombreDim2), true, mostrarUltimaParteDim1, mostrarUltimaParteDim2);
+    }
 
-        // Combinar valores de ambas dimensiones
-        String[] valoresCombinados = new String[valoresDim1.length * valoresDim2.length];
-        int k = 0;
-        for (String valorDim1 : valoresDim1) {
-            for (String valorDim2 : valoresDim2) {
-                valoresCombinados[k++] = valorDim1 + SEPARADOR_DIM + valorDim2;
-            }
-        }
+    /**
+     * Calcula el pivot de dos dimensiones para todos los hechos, cada uno con su
+     * medida (ver seleccionarMedidaPorHecho()), con el orden indicado en
+     * ordenar() aplicado al hecho seleccionado
+     * 
+     * @param nombreDim1 Dimensión de la primera clave
+     * @param nombreDim2 Dimensión de la segunda clave
+     * @return Resultado con una fila por combinación con datos y una columna
+     *         por hecho
+     */
+    public ResultadoConsulta pivotAllHechos(String nombreDim1, String nombreDim2) {
+        Dimension dimension1 = cubo.getDimension(nombreDim1);
+        Dimension dimension2 = cubo.getDimension(nombreDim2);
 
         List<String> nombresHechos = cubo.getNombresHechos();
-
-        // Calcular valores para la tabla pivote
-        Double[][] valores = new Double[valoresCombinados.length][nombresHechos.size()];
-        for (int i = 0; i < valoresCombinados.length; i++) {
-            String[] valoresSeparados = valoresCombinados[i].split(SEPARADOR_DIM);
-            Celda celdaAgrupada = cubo.getCelda(dimension1, valoresSeparados[0], dimension2, valoresSeparados[1]);
-            for (int j = 0; j < nombresHechos.size(); j++) {
-                String hecho = nombresHechos.get(j);
-                Medida medida = medidasPorHecho.getOrDefault(hecho, this.medida);
-                valores[i][j] = medida.calcular(celdaAgrupada.getValores(hecho));
-            }
-        }
-
-        printTablaPivotAllHechos(valoresCombinados, nombresHechos.toArray(new String[0]), valores,
-                mostrarUltimaParteDim1, mostrarUltimaParteDim2);
-    }
-
-    private void printTablaPivotAllHechos(String[] indice, String[] headers, Double[][] valores,
-            boolean mostrarUltimaParteDim1, boolean mostrarUltimaParteDim2) {
-        if (indice.length > maxFilas) {
-            indice = Arrays.copyOfRange(indice, 0, maxFilas);
+        Medida[] medidas = new Medida[nombresHechos.size()];
+        String[] nombresMedidas = new String[nombresHechos.size()];
+        for (int j = 0; j < nombresHechos.size(); j++) {
+            medidas[j] = medidasPorHecho.getOrDefault(nombresHechos.get(j), this.medida);
+            nombresMedidas[j] = medidas[j].getNombre();
         }
 
-        int longitudSeparador = 20 + SEPARADOR.length() * (headers.length + 1) + 20 * headers.length;
-        char[] separadorArray = new char[longitudSeparador];
-        Arrays.fill(separadorArray, '-');
-        String lineaSeparadora = new String(separadorArray);
-
-        // Encabezados con todos los hechos
-        System.out.printf(FORMATO_CELDA, "");
-        for (String header : headers) {
-            System.out.print(SEPARADOR);
-            System.out.printf(FORMATO_CELDA, header);
-        }
-        System.out.println(" |");
-
-        // Línea con nombres de medidas
-        System.out.printf(FORMATO_CELDA, "");
-        for (String header : headers) {
-            System.out.print(SEPARADOR);
-            Medida medida = medidasPorHecho.getOrDefault(header, this.medida);
-            System.out.printf(FORMATO_CELDA, "(" + medida.getNombre() + ")");
-        }
-        System.out.println(" |");
-
-        System.out.println(lineaSeparadora);
-
-        // Filas con índice y valores
-        for (int i = 0; i < indice.length; i++) {
-            if (Arrays.stream(valores[i]).anyMatch(val -> val != null && val != 0.0)) {
-                String[] partesIndice = indice[i].split(SEPARADOR_DIM);
-                String fecha = mostrarUltimaParteDim1 ? obtenerUltimaParte(partesIndice[0]) : partesIndice[0];
-                String producto = mostrarUltimaParteDim2 ? obtenerUltimaParte(partesIndice[1]) : partesIndice[1];
-
-                System.out.printf(FORMATO_CELDA_IZQUIERDA, fecha + " | " + producto);
-                for (int j = 0; j < headers.length; j++) {
-                    System.out.print(SEPARADOR);
-                    String valorFormateado = valores[i][j] != null && valores[i][j] != 0.0
-                            ? String.format("%.2f", valores[i][j])
-                            : ""; // Mostrar vacío si es cero o null
-                    System.out.printf(FORMATO_CELDA, valorFormateado);
-                }
-                System.out.println(" |");
-            }
+        // Agrupar y acumular en una sola pasada (solo combinaciones con datos)
+        List<Grupo> grupos;
+        if (orden == null) {
+            grupos = cubo.agregar(nombresHechos.toArray(new String[0]), medidas, dimension1, dimension2);
+        } else {
+            // Se ordena por el hecho seleccionado
+            Orden ordenHecho = orden.isDescendente() ? Orden.descendente(nombresHechos.indexOf(hecho))
+                    : Orden.ascendente(nombresHechos.indexOf(hecho));
+            ordenHecho = ordenHecho.saltear(orden.getDesplazamiento()).limitar(orden.getLimite());
+            grupos = cubo.agregar(nombresHechos.toArray(new String[0]), medidas, ordenHecho, dimension1, dimension2);
         }
+        return new ResultadoConsulta(new String[] { dimension1.getNombre(), dimension2.getNombre() },
+                nombresHechos.toArray(new String[0]), nombresMedidas, grupos);
     }
 
-    private String obtenerUltimaParte(String valor) {
-        if (valor == null || valor.isEmpty()) {
-            return valor;
+    /**
+     * Muestra un resultado en consola como tabla, con hasta maxFilas filas
+     */
+    private void imprimir(ResultadoConsulta resultado, boolean mostrarMedidas, boolean mostrarUltimaParteDim1,
+            boolean mostrarUltimaParteDim2) {
+        EscritorConsola escritor = new EscritorConsola(maxFilas, mostrarMedidas,
+                new boolean[] { mostrarUltimaParteDim1, mostrarUltimaParteDim2 });
+        try {
+            escritor.escribir(resultado, System.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        String[] partes = valor.split("/");
-        return partes[partes.length - 1];
     }
 }
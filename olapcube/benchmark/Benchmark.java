@@ -0,0 +1,173 @@
+package olapcube.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Mide el rendimiento de una operación con iteraciones de tiempo fijo:
+ * primero las de calentamiento (para que el JIT compile el código medido),
+ * después las de medición. Para cada operación informa el throughput, el
+ * tiempo promedio y los bytes asignados en el heap por el hilo que la ejecuta
+ * (mediante com.sun.management.ThreadMXBean, como el profiler gc de JMH).
+ * 
+ * Los resultados de la operación se consumen para que el JIT no pueda
+ * eliminar el código medido.
+ */
+public class Benchmark {
+    private static final com.sun.management.ThreadMXBean HILOS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    private static volatile int sumidero; // Consume los resultados de las operaciones
+
+    private int iteracionesCalentamiento; // Iteraciones descartadas antes de medir
+    private int iteracionesMedicion; // Iteraciones medidas
+    private long nanosPorIteracion; // Duración mínima de cada iteración
+
+    /**
+     * Constructor privado de la clase
+     * 
+     * @param iteracionesCalentamiento Iteraciones descartadas antes de medir
+     * @param iteracionesMedicion      Iteraciones medidas
+     * @param milisPorIteracion        Duración mínima de cada iteración
+     */
+    private Benchmark(int iteracionesCalentamiento, int iteracionesMedicion, long milisPorIteracion) {
+        if (iteracionesCalentamiento < 0 || iteracionesMedicion <= 0 || milisPorIteracion <= 0) {
+            throw new IllegalArgumentException("Iteraciones o duración inválidas");
+        }
+        this.iteracionesCalentamiento = iteracionesCalentamiento;
+        this.iteracionesMedicion = iteracionesMedicion;
+        this.nanosPorIteracion = milisPorIteracion * 1_000_000;
+    }
+
+    /**
+     * Método que permite crear un benchmark
+     * 
+     * @param iteracionesCalentamiento Iteraciones descartadas antes de medir
+     * @param iteracionesMedicion      Iteraciones medidas
+     * @param milisPorIteracion        Duración mínima de cada iteración (cada
+     *                                 iteración ejecuta al menos una operación)
+     * @return Benchmark
+     */
+    public static Benchmark crear(int iteracionesCalentamiento, int iteracionesMedicion, long milisPorIteracion) {
+        if (!HILOS.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("La JVM no permite medir la memoria asignada por hilo");
+        }
+        HILOS.setThreadAllocatedMemoryEnabled(true);
+        return new Benchmark(iteracionesCalentamiento, iteracionesMedicion, milisPorIteracion);
+    }
+
+    /**
+     * Mide una operación
+     * 
+     * @param nombre    Nombre de la medición
+     * @param operacion Operación a medir
+     * @return Resultado de la medición
+     */
+    public Resultado medir(String nombre, Supplier<?> operacion) {
+        return medir(nombre, () -> {
+        }, operacion);
+    }
+
+    /**
+     * Mide una operación que necesita preparar su estado antes de cada
+     * iteración (por ejemplo, una estructura que la operación modifica). La
+     * preparación no se incluye en la medición.
+     * 
+     * @param nombre    Nombre de la medición
+     * @param preparar  Preparación de cada iteración
+     * @param operacion Operación a medir
+     * @return Resultado de la medición
+     */
+    public Resultado medir(String nombre, Runnable preparar, Supplier<?> operacion) {
+        for (int i = 0; i < iteracionesCalentamiento; i++) {
+            preparar.run();
+            iterar(operacion);
+        }
+        long operaciones = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < iteracionesMedicion; i++) {
+            preparar.run();
+            long[] iteracion = iterar(operacion);
+            operaciones += iteracion[0];
+            nanos += iteracion[1];
+            bytes += iteracion[2];
+        }
+        return new Resultado(nombre, operaciones, nanos, bytes);
+    }
+
+    /**
+     * Ejecuta la operación hasta completar la duración de una iteración
+     * 
+     * @return Operaciones ejecutadas, nanosegundos y bytes asignados
+     */
+    private long[] iterar(Supplier<?> operacion) {
+        long hilo = Thread.currentThread().getId();
+        long bytesInicio = HILOS.getThreadAllocatedBytes(hilo);
+        long inicio = System.nanoTime();
+        long transcurrido;
+        long operaciones = 0;
+        int acumulado = 0;
+        do {
+            Object resultado = operacion.get();
+            acumulado += resultado != null ? System.identityHashCode(resultado) : 0;
+            operaciones++;
+            transcurrido = System.nanoTime() - inicio;
+        } while (transcurrido < nanosPorIteracion);
+        long bytes = HILOS.getThreadAllocatedBytes(hilo) - bytesInicio;
+        sumidero += acumulado;
+        return new long[] { operaciones, transcurrido, bytes };
+    }
+
+    /**
+     * Resultado de una medición
+     */
+    public static class Resultado {
+        private String nombre; // Nombre de la medición
+        private long operaciones; // Operaciones medidas
+        private long nanos; // Tiempo total de las operaciones medidas
+        private long bytes; // Bytes asignados por las operaciones medidas
+
+        private Resultado(String nombre, long operaciones, long nanos, long bytes) {
+            this.nombre = nombre;
+            this.operaciones = operaciones;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public long getOperaciones() {
+            return operaciones;
+        }
+
+        public double getOperacionesPorSegundo() {
+            return operaciones * 1e9 / nanos;
+        }
+
+        public double getMicrosPorOperacion() {
+            return nanos / 1e3 / operaciones;
+        }
+
+        public double getBytesPorOperacion() {
+            return (double) bytes / operaciones;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-40.40s %14.2f %14.2f %16.1f", nombre, getOperacionesPorSegundo(),
+                    getMicrosPorOperacion(), getBytesPorOperacion());
+        }
+
+        /**
+         * Encabezado de la tabla de resultados, alineado con toString()
+         * 
+         * @return Encabezado
+         */
+        public static String encabezado() {
+            return String.format("%-40.40s %14s %14s %16s", "Benchmark", "ops/s", "us/op", "B/op");
+        }
+    }
+}
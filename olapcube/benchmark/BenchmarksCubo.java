@@ -0,0 +1,120 @@
+package olapcube.benchmark;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import olapcube.configuration.ConfigCubo;
+import olapcube.estructura.CacheConsultas;
+import olapcube.estructura.Cubo;
+import olapcube.estructura.Dimension;
+import olapcube.metricas.Medida;
+import olapcube.metricas.RegistroMedida;
+
+/**
+ * Benchmarks de los caminos críticos del cubo sobre un esquema estrella
+ * sintético (ver GeneradorEstrella): construcción, indexado de hechos en una
+ * dimensión, slice/dice, intersecciones de getCelda y pivots con cada medida
+ * registrada.
+ * 
+ * Los parámetros se pasan como clave=valor, por ejemplo:
+ * 
+ * java olapcube.benchmark.BenchmarksCubo filas=1000000 dimensiones=4x12x30,3x4x30
+ * sesgo=1.2 iteraciones=10
+ * 
+ * - filas: filas de hechos (200000)
+ * - dimensiones: ramificación de cada nivel de cada dimensión, desde la raíz,
+ * separando dimensiones con "," (4x12x30,3x4x30,5x8x20)
+ * - sesgo: exponente de Zipf de las claves foráneas (1.0)
+ * - semilla: semilla de los datos (42)
+ * - calentamiento / iteraciones / milis: iteraciones de calentamiento, de
+ * medición y duración de cada una (3 / 5 / 1000)
+ * - directorio: dónde escribir los datasets (un directorio temporal)
+ * - filtro: solo se corren los benchmarks cuyo nombre contiene el texto
+ */
+public class BenchmarksCubo {
+    private static final String HECHO = "valor"; // Hecho sobre el que se calculan los pivots
+
+    private Parametros parametros; // Parámetros de la ejecución
+    private Benchmark benchmark; // Medidor
+
+    private BenchmarksCubo(Parametros parametros) {
+        this.parametros = parametros;
+        this.benchmark = Benchmark.crear(parametros.getInt("calentamiento", 3), parametros.getInt("iteraciones", 5),
+                parametros.getInt("milis", 1000));
+    }
+
+    public static void main(String[] args) {
+        new BenchmarksCubo(Parametros.leer(args)).ejecutar();
+    }
+
+    private void ejecutar() {
+        GeneradorEstrella generador = parametros.crearGenerador();
+        ConfigCubo config = generador.generar(parametros.getDirectorio());
+        System.out.println("Datasets generados: " + parametros);
+
+        Cubo cubo = Cubo.crearFromConfig(config);
+        cubo.getCache().configurar(0, CacheConsultas.Politica.LRU); // Cada consulta se calcula de nuevo
+        System.out.println(cubo);
+        System.out.println(Benchmark.Resultado.encabezado());
+
+        // Construcción
+        correr("Cubo.crearFromConfig", () -> Cubo.crearFromConfig(config));
+        correr("Cubo.crearFromConfigParalelo", () -> Cubo.crearFromConfigParalelo(config));
+
+        // Indexado de hechos en una dimensión vacía
+        int hojas = generador.getCantidadHojas(0);
+        int[] ids = new Random(7).ints(1 << 16, 0, hojas).toArray();
+        Dimension[] dimension = new Dimension[1];
+        int[] fila = new int[1];
+        correr("Dimension.agregarHecho", () -> {
+            dimension[0] = Dimension.crear(config.getDimensiones()[0]);
+            fila[0] = 0;
+        }, () -> {
+            dimension[0].agregarHecho(ids[fila[0] & (ids.length - 1)], fila[0]++);
+            return null;
+        });
+
+        // Slice / dice
+        Dimension d0 = cubo.getDimension(GeneradorEstrella.getNombreDimension(0));
+        int segunda = generador.getCantidadDimensiones() > 1 ? 1 : 0;
+        Dimension d1 = cubo.getDimension(GeneradorEstrella.getNombreDimension(segunda));
+        String[] valores0 = d0.getValoresNivel(d0.getNivelActual());
+        String[] valores1 = d1.getValoresNivel(d1.getNivelActual());
+        int[] siguiente = new int[1];
+        correr("Cubo.slice", () -> cubo.slice(d0.getNombre(), elegir(valores0, siguiente)));
+        correr("Cubo.dice", () -> cubo.dice(d0.getNombre(),
+                new String[] { elegir(valores0, siguiente), elegir(valores0, siguiente) }, d1.getNombre(),
+                new String[] { elegir(valores1, siguiente), elegir(valores1, siguiente) }));
+
+        // Intersecciones de getCelda
+        correr("Cubo.getCelda(1 dimensión)", () -> cubo.getCelda(d0, elegir(valores0, siguiente)));
+        correr("Cubo.getCelda(2 dimensiones)",
+                () -> cubo.getCelda(d0, elegir(valores0, siguiente), d1, elegir(valores1, siguiente)));
+
+        // Pivots con cada medida, sobre el cubo completo y sobre un slice
+        Cubo subCubo = cubo.slice(d0.getNombre(), valores0[0]);
+        for (Medida medida : RegistroMedida.getMedidas().values()) {
+            correr("Pivot " + medida.getNombre(), () -> cubo.agregar(new String[] { HECHO },
+                    new Medida[] { medida }, d0, d1));
+            correr("Pivot slice " + medida.getNombre(), () -> subCubo.agregar(new String[] { HECHO },
+                    new Medida[] { medida }, subCubo.getDimension(d0.getNombre()),
+                    subCubo.getDimension(d1.getNombre())));
+        }
+    }
+
+    private void correr(String nombre, Supplier<?> operacion) {
+        correr(nombre, () -> {
+        }, operacion);
+    }
+
+    private void correr(String nombre, Runnable preparar, Supplier<?> operacion) {
+        if (!nombre.contains(parametros.getString("filtro", ""))) {
+            return;
+        }
+        System.out.println(benchmark.medir(nombre, preparar, operacion));
+    }
+
+    private static String elegir(String[] valores, int[] siguiente) {
+        return valores[siguiente[0]++ % valores.length];
+    }
+}
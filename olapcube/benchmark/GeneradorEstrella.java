@@ -0,0 +1,229 @@
+package olapcube.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import olapcube.configuration.ConfigCubo;
+import olapcube.configuration.ConfigDimension;
+import olapcube.configuration.ConfigHechos;
+
+/**
+ * Generador de datasets sintéticos con esquema estrella, en el mismo formato
+ * CSV que los datasets de ejemplo (separados por ";", con encabezado).
+ * 
+ * Cada dimensión es una jerarquía balanceada: su ramificación indica cuántos
+ * hijos tiene cada miembro en cada nivel, desde la raíz (p. ej. {4, 12, 30}
+ * son 4 miembros en el primer nivel, 48 en el segundo y 1440 hojas). Las
+ * claves foráneas de los hechos siguen una distribución de Zipf sobre las
+ * hojas: con sesgo 0 todas las hojas son igual de probables y, a mayor sesgo,
+ * más se concentran los hechos en pocas hojas.
+ * 
+ * Esta clase utiliza un constructor privado y métodos estáticos para la
+ * creación de instancias.
+ */
+public class GeneradorEstrella {
+    public static final String[] NOMBRES_HECHOS = new String[] { "cantidad", "valor" };
+
+    private int filas; // Cantidad de filas de hechos
+    private int[][] ramificaciones; // Ramificación de cada nivel de cada dimensión, desde la raíz
+    private double sesgo; // Exponente de Zipf de las claves foráneas (0 = uniforme)
+    private long semilla; // Semilla del generador aleatorio
+
+    /**
+     * Constructor privado de la clase
+     * 
+     * @param filas          Cantidad de filas de hechos
+     * @param ramificaciones Ramificación de cada nivel de cada dimensión
+     * @param sesgo          Exponente de Zipf de las claves foráneas
+     * @param semilla        Semilla del generador aleatorio
+     */
+    private GeneradorEstrella(int filas, int[][] ramificaciones, double sesgo, long semilla) {
+        if (filas <= 0) {
+            throw new IllegalArgumentException("La cantidad de filas debe ser positiva: " + filas);
+        }
+        if (ramificaciones.length == 0) {
+            throw new IllegalArgumentException("Debe haber al menos una dimensión");
+        }
+        for (int[] ramificacion : ramificaciones) {
+            if (ramificacion.length == 0 || Arrays.stream(ramificacion).anyMatch(r -> r <= 0)) {
+                throw new IllegalArgumentException("Ramificación inválida: " + Arrays.toString(ramificacion));
+            }
+        }
+        if (sesgo < 0) {
+            throw new IllegalArgumentException("El sesgo no puede ser negativo: " + sesgo);
+        }
+        this.filas = filas;
+        this.ramificaciones = ramificaciones;
+        this.sesgo = sesgo;
+        this.semilla = semilla;
+    }
+
+    /**
+     * Método que permite crear un generador
+     * 
+     * @param filas          Cantidad de filas de hechos
+     * @param ramificaciones Ramificación de cada nivel de cada dimensión, desde la
+     *                       raíz
+     * @param sesgo          Exponente de Zipf de las claves foráneas (0 =
+     *                       uniforme)
+     * @param semilla        Semilla del generador aleatorio
+     * @return Generador
+     */
+    public static GeneradorEstrella crear(int filas, int[][] ramificaciones, double sesgo, long semilla) {
+        int[][] copia = new int[ramificaciones.length][];
+        for (int d = 0; d < ramificaciones.length; d++) {
+            copia[d] = ramificaciones[d].clone();
+        }
+        return new GeneradorEstrella(filas, copia, sesgo, semilla);
+    }
+
+    public static String getNombreDimension(int dimension) {
+        return "D" + dimension;
+    }
+
+    public int getCantidadDimensiones() {
+        return ramificaciones.length;
+    }
+
+    public int getCantidadHojas(int dimension) {
+        int hojas = 1;
+        for (int ramificacion : ramificaciones[dimension]) {
+            hojas = Math.multiplyExact(hojas, ramificacion);
+        }
+        return hojas;
+    }
+
+    /**
+     * Escribe los datasets en un directorio (dimensiones D0.csv, D1.csv, ... y
+     * hechos.csv) y arma la configuración del cubo que los lee
+     * 
+     * @param directorio Directorio de salida (se crea si no existe)
+     * @return Configuración del cubo
+     */
+    public ConfigCubo generar(Path directorio) {
+        try {
+            Files.createDirectories(directorio);
+            ConfigDimension[] dimensiones = new ConfigDimension[ramificaciones.length];
+            for (int d = 0; d < ramificaciones.length; d++) {
+                Path ruta = directorio.resolve(getNombreDimension(d) + ".csv");
+                escribirDimension(d, ruta);
+                // Columnas: id, hoja, ..., raíz; los niveles van de la raíz a la hoja
+                List<Integer> niveles = new ArrayList<>();
+                for (int nivel = ramificaciones[d].length; nivel >= 1; nivel--) {
+                    niveles.add(nivel);
+                }
+                dimensiones[d] = ConfigDimension.configCSV(getNombreDimension(d), ruta.toString(), 0, d, niveles);
+            }
+            Path rutaHechos = directorio.resolve("hechos.csv");
+            escribirHechos(rutaHechos);
+            Integer[] columnasHechos = new Integer[NOMBRES_HECHOS.length];
+            for (int i = 0; i < columnasHechos.length; i++) {
+                columnasHechos[i] = ramificaciones.length + i;
+            }
+            return new ConfigCubo("Cubo sintético", ConfigHechos.configCSV(rutaHechos.toString(), NOMBRES_HECHOS,
+                    columnasHechos), dimensiones);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudieron generar los datasets en " + directorio, e);
+        }
+    }
+
+    /**
+     * Escribe una dimensión: una fila por hoja con su clave y el valor de cada
+     * nivel, desde la hoja hasta la raíz
+     */
+    private void escribirDimension(int dimension, Path ruta) throws IOException {
+        int[] ramificacion = ramificaciones[dimension];
+        try (BufferedWriter salida = Files.newBufferedWriter(ruta, Charset.defaultCharset())) {
+            salida.write("id");
+            for (int nivel = ramificacion.length - 1; nivel >= 0; nivel--) {
+                salida.write(";nivel" + nivel);
+            }
+            salida.newLine();
+            int hojas = getCantidadHojas(dimension);
+            for (int hoja = 0; hoja < hojas; hoja++) {
+                salida.write(Integer.toString(hoja));
+                // Índice global del ancestro de la hoja en cada nivel, desde la hoja
+                int miembro = hoja;
+                for (int nivel = ramificacion.length - 1; nivel >= 0; nivel--) {
+                    salida.write(";" + getNombreDimension(dimension) + "n" + nivel + "m" + miembro);
+                    miembro /= ramificacion[nivel];
+                }
+                salida.newLine();
+            }
+        }
+    }
+
+    private void escribirHechos(Path ruta) throws IOException {
+        Random random = new Random(semilla);
+        double[][] acumuladas = new double[ramificaciones.length][];
+        int[][] permutaciones = new int[ramificaciones.length][];
+        for (int d = 0; d < ramificaciones.length; d++) {
+            acumuladas[d] = acumuladaZipf(getCantidadHojas(d));
+            permutaciones[d] = permutacion(getCantidadHojas(d), random);
+        }
+        try (BufferedWriter salida = Files.newBufferedWriter(ruta, Charset.defaultCharset())) {
+            StringBuilder fila = new StringBuilder();
+            for (int d = 0; d < ramificaciones.length; d++) {
+                fila.append("id_").append(getNombreDimension(d)).append(';');
+            }
+            fila.append(String.join(";", NOMBRES_HECHOS));
+            salida.write(fila.toString());
+            salida.newLine();
+            for (int f = 0; f < filas; f++) {
+                fila.setLength(0);
+                for (int d = 0; d < ramificaciones.length; d++) {
+                    int rango = Arrays.binarySearch(acumuladas[d], random.nextDouble());
+                    rango = rango >= 0 ? rango : Math.min(-rango - 1, acumuladas[d].length - 1);
+                    fila.append(permutaciones[d][rango]).append(';');
+                }
+                fila.append(1 + random.nextInt(10)).append(';');
+                fila.append(random.nextInt(1_000_000) / 100.0);
+                salida.write(fila.toString());
+                salida.newLine();
+            }
+        }
+    }
+
+    /**
+     * Calcula la distribución acumulada de Zipf: la hoja de rango k tiene peso
+     * 1 / k^sesgo
+     */
+    private double[] acumuladaZipf(int hojas) {
+        double[] acumulada = new double[hojas];
+        double total = 0;
+        for (int k = 0; k < hojas; k++) {
+            total += 1 / Math.pow(k + 1, sesgo);
+            acumulada[k] = total;
+        }
+        for (int k = 0; k < hojas; k++) {
+            acumulada[k] /= total;
+        }
+        return acumulada;
+    }
+
+    /**
+     * Asigna los rangos de Zipf a hojas al azar, para que las hojas más
+     * frecuentes no sean siempre las primeras de la jerarquía
+     */
+    private static int[] permutacion(int cantidad, Random random) {
+        int[] permutacion = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            permutacion[i] = i;
+        }
+        for (int i = cantidad - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int aux = permutacion[i];
+            permutacion[i] = permutacion[j];
+            permutacion[j] = aux;
+        }
+        return permutacion;
+    }
+}
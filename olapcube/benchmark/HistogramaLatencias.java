@@ -0,0 +1,130 @@
+package olapcube.benchmark;
+
+/**
+ * Histograma de latencias con el esquema de HdrHistogram: los valores se
+ * agrupan en rangos que duplican su tamaño (potencias de 2) y cada rango se
+ * divide en la misma cantidad de subrangos lineales. Así el error relativo de
+ * cualquier percentil está acotado (por 1/1024 con 11 bits de subrango) sin
+ * importar la magnitud del valor, y registrar un valor es calcular un índice
+ * e incrementar un contador.
+ * 
+ * No es seguro para usar desde varios hilos: cada hilo registra en su propio
+ * histograma y al final se combinan con agregar().
+ */
+public class HistogramaLatencias {
+    private static final int BITS_SUBRANGO = 11; // Subrangos por rango: 2^11 (error relativo < 1/1024)
+    private static final int SUBRANGOS = 1 << BITS_SUBRANGO;
+    private static final int MITAD_SUBRANGOS = SUBRANGOS / 2;
+    private static final int RANGOS = 64 - BITS_SUBRANGO; // Rangos necesarios para cubrir todos los long positivos
+
+    private long[] conteos; // Cantidad de valores en cada subrango
+    private long total; // Cantidad de valores registrados
+    private long minimo; // Menor valor registrado (exacto)
+    private long maximo; // Mayor valor registrado (exacto)
+    private double suma; // Suma de los valores registrados (para el promedio)
+
+    public HistogramaLatencias() {
+        this.conteos = new long[SUBRANGOS + RANGOS * MITAD_SUBRANGOS];
+        this.minimo = Long.MAX_VALUE;
+        this.maximo = 0;
+    }
+
+    /**
+     * Registra un valor
+     * 
+     * @param valor Valor a registrar (por ejemplo, nanosegundos); no negativo
+     */
+    public void registrar(long valor) {
+        if (valor < 0) {
+            throw new IllegalArgumentException("El valor no puede ser negativo: " + valor);
+        }
+        conteos[indice(valor)]++;
+        total++;
+        minimo = Math.min(minimo, valor);
+        maximo = Math.max(maximo, valor);
+        suma += valor;
+    }
+
+    /**
+     * Calcula el subrango de un valor. Los valores menores a SUBRANGOS se
+     * guardan exactos; los demás, en el rango de su bit más alto, con los
+     * BITS_SUBRANGO bits siguientes como subrango.
+     */
+    private static int indice(long valor) {
+        if (valor < SUBRANGOS) {
+            return (int) valor;
+        }
+        int rango = 64 - Long.numberOfLeadingZeros(valor) - BITS_SUBRANGO; // >= 1
+        int subrango = (int) (valor >>> rango) - MITAD_SUBRANGOS; // En [0, MITAD_SUBRANGOS)
+        return SUBRANGOS + (rango - 1) * MITAD_SUBRANGOS + subrango;
+    }
+
+    /**
+     * Mayor valor que cae en un subrango
+     */
+    private static long valorMaximo(int indice) {
+        if (indice < SUBRANGOS) {
+            return indice;
+        }
+        int rango = (indice - SUBRANGOS) / MITAD_SUBRANGOS + 1;
+        long subrango = (indice - SUBRANGOS) % MITAD_SUBRANGOS + MITAD_SUBRANGOS;
+        return ((subrango + 1) << rango) - 1;
+    }
+
+    /**
+     * Suma a este histograma los valores de otro
+     * 
+     * @param otro Histograma a sumar
+     */
+    public void agregar(HistogramaLatencias otro) {
+        for (int i = 0; i < conteos.length; i++) {
+            conteos[i] += otro.conteos[i];
+        }
+        total += otro.total;
+        minimo = Math.min(minimo, otro.minimo);
+        maximo = Math.max(maximo, otro.maximo);
+        suma += otro.suma;
+    }
+
+    /**
+     * Calcula un percentil. El resultado es el mayor valor del subrango que
+     * contiene al percentil (acotado por el máximo registrado), por lo que nunca
+     * subestima la latencia.
+     * 
+     * @param percentil Percentil entre 0 y 100
+     * @return Valor del percentil (0 si no hay valores)
+     */
+    public long getPercentil(double percentil) {
+        if (percentil < 0 || percentil > 100) {
+            throw new IllegalArgumentException("Percentil fuera de rango: " + percentil);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long posicion = Math.max(1, (long) Math.ceil(percentil / 100 * total));
+        long acumulado = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            acumulado += conteos[i];
+            if (acumulado >= posicion) {
+                return Math.min(valorMaximo(i), maximo);
+            }
+        }
+        return maximo;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMinimo() {
+        return total == 0 ? 0 : minimo;
+    }
+
+    public long getMaximo() {
+        return maximo;
+    }
+
+    public double getPromedio() {
+        return total == 0 ? 0 : suma / total;
+    }
+}
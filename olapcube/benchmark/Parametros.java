@@ -0,0 +1,94 @@
+package olapcube.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parámetros de línea de comandos de los benchmarks, de la forma clave=valor.
+ * Incluye los parámetros comunes para generar el esquema estrella sintético.
+ */
+class Parametros {
+    private Map<String, String> valores; // Valor de cada parámetro
+
+    private Parametros(Map<String, String> valores) {
+        this.valores = valores;
+    }
+
+    /**
+     * Lee los parámetros de los argumentos del programa
+     * 
+     * @param args Argumentos de la forma clave=valor
+     * @return Parámetros
+     */
+    static Parametros leer(String[] args) {
+        Map<String, String> valores = new HashMap<>();
+        for (String arg : args) {
+            String[] partes = arg.split("=", 2);
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("Parámetro inválido (se espera clave=valor): " + arg);
+            }
+            valores.put(partes[0], partes[1]);
+        }
+        return new Parametros(valores);
+    }
+
+    String getString(String clave, String porDefecto) {
+        return valores.getOrDefault(clave, porDefecto);
+    }
+
+    int getInt(String clave, int porDefecto) {
+        return valores.containsKey(clave) ? Integer.parseInt(valores.get(clave)) : porDefecto;
+    }
+
+    double getDouble(String clave, double porDefecto) {
+        return valores.containsKey(clave) ? Double.parseDouble(valores.get(clave)) : porDefecto;
+    }
+
+    /**
+     * Crea el generador del esquema estrella con los parámetros filas,
+     * dimensiones (ramificación de cada nivel, p. ej. 4x12x30,3x4x30), sesgo y
+     * semilla
+     * 
+     * @return Generador
+     */
+    GeneradorEstrella crearGenerador() {
+        String[] dimensiones = getString("dimensiones", "4x12x30,3x4x30,5x8x20").split(",");
+        int[][] ramificaciones = new int[dimensiones.length][];
+        for (int d = 0; d < dimensiones.length; d++) {
+            String[] niveles = dimensiones[d].split("x");
+            ramificaciones[d] = new int[niveles.length];
+            for (int n = 0; n < niveles.length; n++) {
+                ramificaciones[d][n] = Integer.parseInt(niveles[n].trim());
+            }
+        }
+        return GeneradorEstrella.crear(getInt("filas", 200_000), ramificaciones, getDouble("sesgo", 1.0),
+                getInt("semilla", 42));
+    }
+
+    /**
+     * Obtiene el directorio donde escribir los datasets: el parámetro
+     * directorio o, si no está, un directorio temporal nuevo
+     * 
+     * @return Directorio
+     */
+    Path getDirectorio() {
+        if (valores.containsKey("directorio")) {
+            return Paths.get(valores.get("directorio"));
+        }
+        try {
+            return Files.createTempDirectory("cubo-benchmark");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return valores.toString();
+    }
+}
@@ -0,0 +1,250 @@
+package olapcube.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import olapcube.configuration.ConfigCubo;
+import olapcube.estructura.CacheConsultas;
+import olapcube.estructura.Cubo;
+import olapcube.estructura.Dimension;
+import olapcube.estructura.Sesion;
+import olapcube.metricas.Medida;
+import olapcube.metricas.RegistroMedida;
+
+/**
+ * Prueba de carga de extremo a extremo: construye un cubo a partir de datasets
+ * sintéticos (ver GeneradorEstrella) y lo consulta desde varios hilos cliente
+ * con una mezcla de consultas como las de un tablero. Informa el throughput,
+ * los percentiles de latencia de cada tipo de consulta y el tiempo de pausa
+ * de GC durante la medición.
+ * 
+ * Tipos de consulta (cada uno termina en un pivot, como al refrescar un
+ * tablero):
+ * 
+ * - pivot: pivot de dos dimensiones sobre el cubo completo
+ * - slice: slice de un miembro de la primera dimensión y pivot
+ * - dice: dice de dos miembros de dos dimensiones y pivot
+ * - drill: slice, drillDown, pivot, rollUp y pivot otra vez
+ * 
+ * Además de los parámetros de GeneradorEstrella (filas, dimensiones, sesgo,
+ * semilla, directorio), acepta:
+ * 
+ * - clientes: hilos cliente (4)
+ * - calentamiento / duracion: segundos sin medir y medidos (5 / 20)
+ * - mezcla: peso de cada tipo de consulta (pivot=30,slice=30,dice=20,drill=20)
+ * - cache: capacidad de la cache de consultas del cubo (0 la deshabilita)
+ */
+public class PruebaCarga {
+    private static final String[] TIPOS = new String[] { "pivot", "slice", "dice", "drill" };
+    private static final String HECHO = "valor"; // Hecho sobre el que se calculan los pivots
+
+    private Cubo cubo; // Cubo consultado
+    private Dimension[] dimensiones; // Dimensiones consultadas (las dos primeras del cubo)
+    private String[][] valores; // Miembros del primer nivel de cada dimensión consultada
+    private Medida[] medidas; // Medidas registradas
+    private int[] pesos; // Peso acumulado de cada tipo de consulta
+    private volatile boolean midiendo; // Indica si las latencias se registran
+    private volatile boolean terminado; // Indica a los clientes que terminen
+
+    private PruebaCarga(Cubo cubo, int[] pesos) {
+        this.cubo = cubo;
+        this.pesos = pesos;
+        this.dimensiones = new Dimension[] { cubo.getDimension(GeneradorEstrella.getNombreDimension(0)),
+                cubo.getDimension(GeneradorEstrella.getNombreDimension(1)) };
+        this.valores = new String[dimensiones.length][];
+        for (int d = 0; d < dimensiones.length; d++) {
+            valores[d] = dimensiones[d].getValoresNivel(dimensiones[d].getNivelActual());
+        }
+        this.medidas = RegistroMedida.getMedidas().values().toArray(new Medida[0]);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Parametros parametros = Parametros.leer(args);
+        GeneradorEstrella generador = parametros.crearGenerador();
+        if (generador.getCantidadDimensiones() < 2) {
+            throw new IllegalArgumentException("La prueba de carga necesita al menos dos dimensiones");
+        }
+        ConfigCubo config = generador.generar(parametros.getDirectorio());
+        Cubo cubo = Cubo.crearFromConfig(config);
+        cubo.getCache().configurar(parametros.getInt("cache", 0), CacheConsultas.Politica.LRU);
+        System.out.println("Parámetros: " + parametros);
+        System.out.println(cubo);
+
+        PruebaCarga prueba = new PruebaCarga(cubo,
+                parsearMezcla(parametros.getString("mezcla", "pivot=30,slice=30,dice=20,drill=20")));
+        prueba.ejecutar(parametros.getInt("clientes", 4), parametros.getInt("calentamiento", 5),
+                parametros.getInt("duracion", 20));
+    }
+
+    /**
+     * Ejecuta la prueba y muestra los resultados
+     * 
+     * @param clientes      Hilos cliente
+     * @param calentamiento Segundos de calentamiento (sin medir)
+     * @param duracion      Segundos medidos
+     * @throws InterruptedException Si se interrumpe la espera
+     */
+    private void ejecutar(int clientes, int calentamiento, int duracion) throws InterruptedException {
+        HistogramaLatencias[][] histogramas = new HistogramaLatencias[clientes][TIPOS.length];
+        CountDownLatch fin = new CountDownLatch(clientes);
+        List<Thread> hilos = new ArrayList<>();
+        for (int c = 0; c < clientes; c++) {
+            HistogramaLatencias[] propios = histogramas[c];
+            for (int t = 0; t < TIPOS.length; t++) {
+                propios[t] = new HistogramaLatencias();
+            }
+            Random random = new Random(c);
+            Thread hilo = new Thread(() -> {
+                try {
+                    while (!terminado) {
+                        int tipo = elegirTipo(random);
+                        long inicio = System.nanoTime();
+                        consultar(tipo, random);
+                        long latencia = System.nanoTime() - inicio;
+                        if (midiendo) {
+                            propios[tipo].registrar(latencia);
+                        }
+                    }
+                } finally {
+                    fin.countDown();
+                }
+            }, "cliente-" + c);
+            hilos.add(hilo);
+        }
+        hilos.forEach(Thread::start);
+
+        Thread.sleep(calentamiento * 1000L);
+        long gcInicio = getTiempoGC();
+        long gcCantidadInicio = getCantidadGC();
+        long inicio = System.nanoTime();
+        midiendo = true;
+        Thread.sleep(duracion * 1000L);
+        midiendo = false;
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long gcTiempo = getTiempoGC() - gcInicio;
+        long gcCantidad = getCantidadGC() - gcCantidadInicio;
+        terminado = true;
+        fin.await();
+
+        HistogramaLatencias total = new HistogramaLatencias();
+        System.out.printf("%-8s %10s %12s %10s %10s %10s %10s%n", "Consulta", "Cantidad", "ops/s", "p50 ms",
+                "p95 ms", "p99 ms", "max ms");
+        for (int t = 0; t < TIPOS.length; t++) {
+            HistogramaLatencias tipo = new HistogramaLatencias();
+            for (int c = 0; c < clientes; c++) {
+                tipo.agregar(histogramas[c][t]);
+            }
+            total.agregar(tipo);
+            imprimir(TIPOS[t], tipo, segundos);
+        }
+        imprimir("total", total, segundos);
+        System.out.printf("Clientes: %d, duración: %.1f s, GC: %d colecciones, %d ms (%.2f%% del tiempo)%n",
+                clientes, segundos, gcCantidad, gcTiempo, gcTiempo / 10.0 / segundos);
+        System.out.println(cubo.getCache());
+    }
+
+    private int elegirTipo(Random random) {
+        int valor = random.nextInt(pesos[pesos.length - 1]);
+        int tipo = 0;
+        while (valor >= pesos[tipo]) {
+            tipo++;
+        }
+        return tipo;
+    }
+
+    /**
+     * Ejecuta una consulta del tipo indicado, con miembros y medida al azar
+     */
+    private void consultar(int tipo, Random random) {
+        Medida[] medida = new Medida[] { medidas[random.nextInt(medidas.length)] };
+        String[] hechos = new String[] { HECHO };
+        String d0 = dimensiones[0].getNombre();
+        String d1 = dimensiones[1].getNombre();
+        switch (TIPOS[tipo]) {
+            case "pivot":
+                cubo.agregar(hechos, medida, dimensiones[0], dimensiones[1]);
+                break;
+            case "slice": {
+                Cubo vista = cubo.slice(d0, elegir(valores[0], random));
+                vista.agregar(hechos, medida, vista.getDimension(d1), vista.getDimension(d0));
+                break;
+            }
+            case "dice": {
+                Cubo vista = cubo.dice(d0, new String[] { elegir(valores[0], random), elegir(valores[0], random) },
+                        d1, new String[] { elegir(valores[1], random), elegir(valores[1], random) });
+                vista.agregar(hechos, medida, vista.getDimension(d0), vista.getDimension(d1));
+                break;
+            }
+            case "drill": {
+                // Los cambios de nivel se hacen en una sesión, sin modificar el cubo compartido
+                Sesion sesion = cubo.abrirSesion().seleccionarHecho(HECHO)
+                        .seleccionarMedida(medida[0].getNombre()).slice(d0, elegir(valores[0], random));
+                Sesion detalle = sesion.drillDown(d0);
+                detalle.agregar(d0, d1);
+                detalle.rollUp(d0).agregar(d0, d1);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Tipo de consulta desconocido: " + TIPOS[tipo]);
+        }
+    }
+
+    private static String elegir(String[] valores, Random random) {
+        return valores[random.nextInt(valores.length)];
+    }
+
+    private static void imprimir(String nombre, HistogramaLatencias histograma, double segundos) {
+        System.out.printf("%-8s %10d %12.1f %10.3f %10.3f %10.3f %10.3f%n", nombre, histograma.getTotal(),
+                histograma.getTotal() / segundos, histograma.getPercentil(50) / 1e6,
+                histograma.getPercentil(95) / 1e6, histograma.getPercentil(99) / 1e6,
+                histograma.getMaximo() / 1e6);
+    }
+
+    /**
+     * Tiempo acumulado de las colecciones de todos los recolectores. Con
+     * recolectores concurrentes incluye trabajo que no detiene a la aplicación,
+     * por lo que es una cota superior de las pausas.
+     */
+    private static long getTiempoGC() {
+        long tiempo = 0;
+        for (GarbageCollectorMXBean recolector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            tiempo += Math.max(recolector.getCollectionTime(), 0);
+        }
+        return tiempo;
+    }
+
+    private static long getCantidadGC() {
+        long cantidad = 0;
+        for (GarbageCollectorMXBean recolector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            cantidad += Math.max(recolector.getCollectionCount(), 0);
+        }
+        return cantidad;
+    }
+
+    /**
+     * Convierte la mezcla (tipo=peso separados por ",") en pesos acumulados por
+     * tipo de consulta
+     */
+    private static int[] parsearMezcla(String mezcla) {
+        int[] pesos = new int[TIPOS.length];
+        for (String parte : mezcla.split(",")) {
+            String[] tipoPeso = parte.split("=");
+            int tipo = List.of(TIPOS).indexOf(tipoPeso[0].trim());
+            if (tipo < 0 || tipoPeso.length != 2) {
+                throw new IllegalArgumentException("Mezcla inválida: " + parte);
+            }
+            pesos[tipo] = Integer.parseInt(tipoPeso[1].trim());
+        }
+        for (int t = 1; t < pesos.length; t++) {
+            pesos[t] += pesos[t - 1];
+        }
+        if (pesos[pesos.length - 1] <= 0) {
+            throw new IllegalArgumentException("La mezcla no tiene ningún tipo de consulta: " + mezcla);
+        }
+        return pesos;
+    }
+}
@@ -1,12 +1,23 @@
 package olapcube.configuration;
 
+import java.io.Serializable;
+
 /**
- * Clase que representa la configuración de un cubo
+ * Clase que representa la configuración de un cubo. Es serializable para
+ * enviarla a los procesos de un cubo fragmentado, que leen los mismos datasets.
  */
-public class ConfigCubo {
+public class ConfigCubo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String nombre;                  // Nombre del cubo
     private ConfigDimension[] dimensiones;  // Configuración de las dimensiones
     private ConfigHechos hechos;            // Configuración de los hechos
+    private ConfigCuboide[] cuboides;       // Cuboides a materializar al construir el cubo
+    private boolean fueraDeHeap;            // Guarda los hechos y el miembro de cada fila fuera del heap
+    private ConfigFragmentos fragmentos;    // Reparto de las filas de hechos (null si el cubo no es un fragmento)
+    private int indiceFragmento;            // Fragmento cuyas filas carga el cubo
+    private String dimensionParticion;      // Dimensión por la que se particionan los hechos (null si no se particionan)
+    private int nivelParticion;             // Nivel de la dimensión cuyos miembros son las particiones
 
     /**
      * Constructor de la clase
@@ -16,9 +27,22 @@ public class ConfigCubo {
      * @param dimensiones Configuración de las dimensiones
      */
     public ConfigCubo(String nombre, ConfigHechos hechos, ConfigDimension[] dimensiones) {
+        this(nombre, hechos, dimensiones, new ConfigCuboide[0]);
+    }
+
+    /**
+     * Constructor de la clase con cuboides precalculados
+     * 
+     * @param nombre Nombre del cubo
+     * @param hechos Configuración de los hechos
+     * @param dimensiones Configuración de las dimensiones
+     * @param cuboides Cuboides a materializar al construir el cubo
+     */
+    public ConfigCubo(String nombre, ConfigHechos hechos, ConfigDimension[] dimensiones, ConfigCuboide[] cuboides) {
         this.nombre = nombre;
         this.dimensiones = dimensiones;
         this.hechos = hechos;
+        this.cuboides = cuboides;
     }
 
     public ConfigDimension[] getDimensiones() {
@@ -32,4 +56,100 @@ public class ConfigCubo {
     public String getNombre() {
         return nombre;
     }
+
+    public ConfigCuboide[] getCuboides() {
+        return cuboides;
+    }
+
+    /**
+     * Crea una copia de la configuración que guarda las columnas de hechos y el
+     * miembro de cada fila de las dimensiones en memoria directa, fuera del heap.
+     * Así el grueso de los datos del cubo no lo recorre el recolector de basura
+     * y se libera en el momento al cerrar el cubo (Cubo.close()).
+     * 
+     * La memoria directa está limitada por -XX:MaxDirectMemorySize, que por
+     * defecto es igual a -Xmx.
+     * 
+     * @return Configuración con almacenamiento fuera del heap
+     */
+    public ConfigCubo fueraDeHeap() {
+        ConfigCubo copia = copiar();
+        copia.fueraDeHeap = true;
+        return copia;
+    }
+
+    public boolean isFueraDeHeap() {
+        return fueraDeHeap;
+    }
+
+    /**
+     * Crea una copia de la configuración que solo carga las filas de hechos de
+     * un fragmento (las dimensiones se cargan completas)
+     * 
+     * @param fragmentos Reparto de las filas entre los fragmentos
+     * @param indice     Fragmento a cargar
+     * @return Configuración del fragmento
+     */
+    public ConfigCubo fragmento(ConfigFragmentos fragmentos, int indice) {
+        if (indice < 0 || indice >= fragmentos.getCantidad()) {
+            throw new IllegalArgumentException("Fragmento inválido: " + indice + " de " + fragmentos.getCantidad());
+        }
+        ConfigCubo copia = copiar();
+        copia.fragmentos = fragmentos;
+        copia.indiceFragmento = indice;
+        return copia;
+    }
+
+    public ConfigFragmentos getFragmentos() {
+        return fragmentos;
+    }
+
+    public int getIndiceFragmento() {
+        return indiceFragmento;
+    }
+
+    /**
+     * Crea una copia de la configuración que particiona las filas de hechos por
+     * los miembros de un nivel de una dimensión (por ejemplo, por año o por mes
+     * de "Fechas"). Las filas de cada partición quedan en tramos contiguos (uno
+     * solo después de Cubo.compactar()), cada una lleva el mínimo y el máximo de
+     * cada hecho, y las consultas que filtran esa dimensión solo recorren las
+     * particiones que el filtro conserva. Las particiones que ya no se
+     * consultan se pueden descartar una por una (ver Cubo.descartarParticion()).
+     * 
+     * @param dimension Nombre de la dimensión
+     * @param nivel     Nivel de la dimensión (0 es el más general)
+     * @return Configuración con hechos particionados
+     */
+    public ConfigCubo particionadoPor(String dimension, int nivel) {
+        if (nivel < 0) {
+            throw new IllegalArgumentException("Nivel de partición inválido: " + nivel);
+        }
+        ConfigCubo copia = copiar();
+        copia.dimensionParticion = dimension;
+        copia.nivelParticion = nivel;
+        return copia;
+    }
+
+    public boolean isParticionado() {
+        return dimensionParticion != null;
+    }
+
+    public String getDimensionParticion() {
+        return dimensionParticion;
+    }
+
+    public int getNivelParticion() {
+        return nivelParticion;
+    }
+
+    private ConfigCubo copiar() {
+        ConfigCubo copia = new ConfigCubo(nombre, hechos, dimensiones, cuboides);
+        copia.fueraDeHeap = fueraDeHeap;
+        copia.fragmentos = fragmentos;
+        copia.indiceFragmento = indiceFragmento;
+        copia.dimensionParticion = dimensionParticion;
+        copia.nivelParticion = nivelParticion;
+        return copia;
+    }
 }
@@ -0,0 +1,92 @@
+package olapcube.configuration;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Configuración de un cuboide: una combinación de niveles de dimensiones cuyas
+ * agregaciones se materializan al construir el cubo.
+ * 
+ * Por ejemplo, el cuboide {Fechas: 0, Productos: 0} precalcula Suma, Count,
+ * Maximo y Minimo por año y categoría. Las medidas que no se nombran (por
+ * defecto, los sketches como ConteoDistinto o los percentiles, que ocupan
+ * mucho más por grupo) se calculan recorriendo las filas de hechos.
+ */
+public class ConfigCuboide implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] MEDIDAS_POR_DEFECTO = { "Suma", "Count", "Maximo", "Minimo" };
+
+    private String[] dimensiones; // Nombres de las dimensiones del cuboide
+    private int[] niveles; // Nivel de cada dimensión del cuboide
+    private String[] medidas; // Nombres de las medidas materializadas
+
+    /**
+     * Constructor privado de la clase
+     * 
+     * @param dimensiones Nombres de las dimensiones del cuboide
+     * @param niveles     Nivel de cada dimensión del cuboide
+     * @param medidas     Nombres de las medidas materializadas
+     */
+    private ConfigCuboide(String[] dimensiones, int[] niveles, String[] medidas) {
+        if (dimensiones.length != niveles.length) {
+            throw new RuntimeException("dimensiones y niveles deben tener misma longitud");
+        }
+        if (dimensiones.length == 0) {
+            throw new RuntimeException("El cuboide debe tener al menos una dimensión");
+        }
+        if (medidas.length == 0) {
+            throw new RuntimeException("El cuboide debe tener al menos una medida");
+        }
+        this.dimensiones = dimensiones;
+        this.niveles = niveles;
+        this.medidas = medidas;
+    }
+
+    /**
+     * Método que permite crear la configuración de un cuboide a partir de sus
+     * dimensiones y niveles, con las medidas algebraicas (Suma, Count, Maximo y
+     * Minimo)
+     * 
+     * @param dimensiones Nombres de las dimensiones del cuboide
+     * @param niveles     Nivel de cada dimensión del cuboide (índice en
+     *                    ConfigDimension.getNiveles())
+     * @return Configuración del cuboide
+     */
+    public static ConfigCuboide configNiveles(String[] dimensiones, int[] niveles) {
+        return new ConfigCuboide(dimensiones.clone(), niveles.clone(), MEDIDAS_POR_DEFECTO.clone());
+    }
+
+    /**
+     * Método que permite crear la configuración de un cuboide a partir de sus
+     * dimensiones y niveles y de las medidas a materializar
+     * 
+     * @param dimensiones Nombres de las dimensiones del cuboide
+     * @param niveles     Nivel de cada dimensión del cuboide (índice en
+     *                    ConfigDimension.getNiveles())
+     * @param medidas     Nombres de las medidas registradas a materializar (ver
+     *                    RegistroMedida)
+     * @return Configuración del cuboide
+     */
+    public static ConfigCuboide configNiveles(String[] dimensiones, int[] niveles, String... medidas) {
+        return new ConfigCuboide(dimensiones.clone(), niveles.clone(), medidas.clone());
+    }
+
+    public String[] getDimensiones() {
+        return dimensiones;
+    }
+
+    public int[] getNiveles() {
+        return niveles;
+    }
+
+    public String[] getMedidas() {
+        return medidas;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigCuboide [dimensiones=" + Arrays.toString(dimensiones) + ", niveles=" + Arrays.toString(niveles)
+                + ", medidas=" + Arrays.toString(medidas) + "]";
+    }
+}
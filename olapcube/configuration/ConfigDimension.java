@@ -1,5 +1,6 @@
 package olapcube.configuration;
 
+import java.io.Serializable;
 import java.util.List;
 
 import olapcube.readers.CSVReader;
@@ -11,7 +12,9 @@ import olapcube.readers.DatasetReader;
  * Esta clase utiliza un constructor privado y métodos estáticos para la
  * creación de instancias.
  */
-public class ConfigDimension {
+public class ConfigDimension implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String nombre; // Nombre de la dimensión
     private DatasetReader datasetReader; // DatasetReader de la dimensión
     private int columnaKey; // Columna que contiene la clave primaria en el dataset de la dimensión
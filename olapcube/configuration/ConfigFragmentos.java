@@ -0,0 +1,119 @@
+package olapcube.configuration;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Configuración del reparto de las filas de hechos de un cubo entre varios
+ * fragmentos (ver olapcube.fragmentos.CuboFragmentado). Cada fila va a un
+ * único fragmento, según:
+ * 
+ * - porFila: un hash del número de fila en el dataset (reparto parejo)
+ * - porHash: un hash de la clave foránea de una dimensión (todas las filas de
+ * un miembro quedan juntas)
+ * - porRango: rangos de la clave foránea de una dimensión (por ejemplo, un
+ * fragmento por período si las claves de fecha son correlativas)
+ * 
+ * Esta clase utiliza un constructor privado y métodos estáticos para la
+ * creación de instancias.
+ */
+public class ConfigFragmentos implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int cantidad; // Cantidad de fragmentos
+    private String dimension; // Dimensión cuya clave foránea decide el fragmento (null para usar el número de fila)
+    private int[] limites; // Primer clave de cada fragmento salvo el primero (null para repartir por hash)
+
+    /**
+     * Constructor privado de la clase
+     * 
+     * @param cantidad  Cantidad de fragmentos
+     * @param dimension Dimensión cuya clave decide el fragmento (null para
+     *                  usar el número de fila)
+     * @param limites   Primer clave de cada fragmento salvo el primero (null
+     *                  para repartir por hash)
+     */
+    private ConfigFragmentos(int cantidad, String dimension, int[] limites) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad de fragmentos debe ser positiva: " + cantidad);
+        }
+        this.cantidad = cantidad;
+        this.dimension = dimension;
+        this.limites = limites;
+    }
+
+    /**
+     * Método que permite repartir las filas por un hash de su número de fila en
+     * el dataset de hechos
+     * 
+     * @param cantidad Cantidad de fragmentos
+     * @return Configuración de los fragmentos
+     */
+    public static ConfigFragmentos porFila(int cantidad) {
+        return new ConfigFragmentos(cantidad, null, null);
+    }
+
+    /**
+     * Método que permite repartir las filas por un hash de la clave foránea de
+     * una dimensión
+     * 
+     * @param cantidad  Cantidad de fragmentos
+     * @param dimension Nombre de la dimensión
+     * @return Configuración de los fragmentos
+     */
+    public static ConfigFragmentos porHash(int cantidad, String dimension) {
+        return new ConfigFragmentos(cantidad, dimension, null);
+    }
+
+    /**
+     * Método que permite repartir las filas por rangos de la clave foránea de
+     * una dimensión. Con los límites [100, 200] hay tres fragmentos: claves
+     * menores a 100, de 100 a 199 y desde 200.
+     * 
+     * @param dimension Nombre de la dimensión
+     * @param limites   Primer clave de cada fragmento salvo el primero, en
+     *                  orden creciente
+     * @return Configuración de los fragmentos
+     */
+    public static ConfigFragmentos porRango(String dimension, int... limites) {
+        for (int i = 1; i < limites.length; i++) {
+            if (limites[i] <= limites[i - 1]) {
+                throw new IllegalArgumentException("Los límites deben ser crecientes: " + Arrays.toString(limites));
+            }
+        }
+        return new ConfigFragmentos(limites.length + 1, dimension, limites.clone());
+    }
+
+    /**
+     * Obtiene el fragmento al que va una fila de hechos
+     * 
+     * @param fila  Número de la fila en el dataset de hechos
+     * @param clave Clave foránea de la dimensión de reparto (se ignora si se
+     *              reparte por fila)
+     * @return Índice del fragmento, entre 0 y getCantidad() - 1
+     */
+    public int getFragmento(int fila, int clave) {
+        if (limites != null) {
+            int posicion = Arrays.binarySearch(limites, clave);
+            return posicion >= 0 ? posicion + 1 : -posicion - 1;
+        }
+        long h = (dimension == null ? fila : clave) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) ((h & 0x7FFFFFFFL) % cantidad);
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public String toString() {
+        String reparto = limites != null ? "rango " + dimension + " " + Arrays.toString(limites)
+                : dimension != null ? "hash " + dimension : "fila";
+        return "ConfigFragmentos [cantidad=" + cantidad + ", reparto=" + reparto + "]";
+    }
+}
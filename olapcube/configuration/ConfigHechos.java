@@ -1,5 +1,6 @@
 package olapcube.configuration;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,7 +10,9 @@ import olapcube.readers.DatasetReader;
 /**
  * Configuración de los hechos de un cubo OLAP.
  */
-public class ConfigHechos {
+public class ConfigHechos implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Map<String, Integer> hechosColumnas;    // Mapeo de nombres de hechos a columnas en el dataset de hechos
     private DatasetReader datasetReader;            // DatasetReader de los hechos
     
@@ -0,0 +1,291 @@
+package olapcube.estructura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import olapcube.metricas.Acumulador;
+import olapcube.metricas.Medida;
+
+/**
+ * Agrupa las filas de hechos de un cubo por el nivel actual de una o más
+ * dimensiones recorriendo las filas una sola vez.
+ * 
+ * Cada fila se traduce al ordinal de su valor en cada dimensión (a través del
+ * miembro de la dimensión asociado a la fila) y se agrega al grupo de esa
+ * combinación. Solo se crean los grupos que tienen filas, por lo que el costo
+ * depende de la cantidad de filas y no del producto de las cardinalidades de
+ * las dimensiones.
+ * 
+ * Si se indican columnas y medidas con acumular(), cada grupo mantiene un
+ * acumulador por medida que se actualiza en el lugar, en lugar de guardar las
+ * filas del grupo.
+ */
+class Agrupador {
+    private static final int MAXIMO_CLAVES_DENSAS = 1 << 20; // Combinaciones a partir de las que se usa un mapa
+
+    private Dimension[] dimensiones; // Dimensiones de agrupación
+    private String[][] valoresOrdenados; // Valores de cada dimensión en el nivel actual, ordenados
+    private int[][] ordinalPorMiembro; // Ordinal del valor de cada miembro del último nivel de cada dimensión (-1 si se excluye)
+    private long[] multiplicadores; // Multiplicador de cada dimensión para armar la clave del grupo
+
+    private int[] grupoPorClaveDensa; // Grupo de cada combinación (si hay pocas combinaciones)
+    private Map<Long, Integer> grupoPorClave; // Grupo de cada combinación (si hay muchas combinaciones)
+    private long[] claves; // Clave de cada grupo
+    private int[][] filasGrupos; // Filas de cada grupo (arreglo con capacidad extra)
+    private int[] cantidadesGrupos; // Cantidad de filas usadas de cada arreglo
+    private int cantidadGrupos; // Cantidad de grupos creados
+
+    private ColumnaHechos[] columnas; // Columnas a acumular (null si se guardan las filas)
+    private double[][] valoresColumnas; // Arreglo de cada columna en el heap (null para las de fuera del heap)
+    private Medida[] medidas; // Medida a calcular sobre cada columna
+    private Acumulador[][] acumuladoresGrupos; // Acumuladores de cada grupo
+
+    /**
+     * Constructor de la clase, agrupando por el nivel actual de cada dimensión
+     * 
+     * @param dimensiones Dimensiones de agrupación
+     */
+    Agrupador(Dimension[] dimensiones) {
+        this(dimensiones, nivelesActuales(dimensiones));
+    }
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param dimensiones Dimensiones de agrupación
+     * @param niveles     Nivel de agrupación de cada dimensión
+     */
+    Agrupador(Dimension[] dimensiones, int[] niveles) {
+        this.dimensiones = dimensiones;
+        this.valoresOrdenados = new String[dimensiones.length][];
+        this.ordinalPorMiembro = new int[dimensiones.length][];
+        this.multiplicadores = new long[dimensiones.length];
+
+        long combinaciones = 1;
+        for (int d = dimensiones.length - 1; d >= 0; d--) {
+            Dimension dimension = dimensiones[d];
+            int nivel = niveles[d];
+            // Miembros visibles del nivel, ordenados por valor
+            List<Integer> visibles = new ArrayList<>();
+            for (int miembro = 0; miembro < dimension.getCantidadMiembros(nivel); miembro++) {
+                if (dimension.isVisible(nivel, miembro)) {
+                    visibles.add(miembro);
+                }
+            }
+            visibles.sort((a, b) -> dimension.getValorMiembro(nivel, a).compareTo(dimension.getValorMiembro(nivel, b)));
+            String[] valores = new String[visibles.size()];
+            int[] ordinalPorMiembroNivel = new int[dimension.getCantidadMiembros(nivel)];
+            Arrays.fill(ordinalPorMiembroNivel, -1);
+            for (int i = 0; i < valores.length; i++) {
+                valores[i] = dimension.getValorMiembro(nivel, visibles.get(i));
+                ordinalPorMiembroNivel[visibles.get(i)] = i;
+            }
+            valoresOrdenados[d] = valores;
+
+            int ultimoNivel = dimension.getCantidadNiveles() - 1;
+            int[] ancestros = dimension.getOrdinalesAncestros(ultimoNivel, nivel);
+            int[] ordinales = new int[ancestros.length];
+            for (int miembro = 0; miembro < ancestros.length; miembro++) {
+                ordinales[miembro] = ordinalPorMiembroNivel[ancestros[miembro]];
+            }
+            ordinalPorMiembro[d] = ordinales;
+
+            multiplicadores[d] = combinaciones;
+            combinaciones = Math.multiplyExact(combinaciones, Math.max(valores.length, 1));
+        }
+
+        if (combinaciones <= MAXIMO_CLAVES_DENSAS) {
+            grupoPorClaveDensa = new int[(int) combinaciones];
+            Arrays.fill(grupoPorClaveDensa, -1);
+        } else {
+            grupoPorClave = new HashMap<>();
+        }
+        claves = new long[16];
+        filasGrupos = new int[16][];
+        cantidadesGrupos = new int[16];
+        cantidadGrupos = 0;
+    }
+
+    /**
+     * Indica que los grupos deben acumular medidas en lugar de guardar filas
+     * 
+     * @param columnas Columnas a acumular
+     * @param medidas  Medida a calcular sobre cada columna
+     */
+    void acumular(ColumnaHechos[] columnas, Medida[] medidas) {
+        if (columnas.length != medidas.length) {
+            throw new IllegalArgumentException("columnas y medidas deben tener misma longitud");
+        }
+        this.columnas = columnas;
+        this.valoresColumnas = new double[columnas.length][];
+        for (int k = 0; k < columnas.length; k++) {
+            valoresColumnas[k] = columnas[k].isFueraDeHeap() ? null : columnas[k].getValores();
+        }
+        this.medidas = medidas;
+        this.acumuladoresGrupos = new Acumulador[claves.length][];
+    }
+
+    /**
+     * Agrega una fila de hechos a su grupo
+     * 
+     * @param fila Índice de la fila
+     */
+    void agregarFila(int fila) {
+        long clave = 0;
+        for (int d = 0; d < dimensiones.length; d++) {
+            int ordinal = ordinalPorMiembro[d][dimensiones[d].leerMiembro(fila)];
+            if (ordinal < 0) {
+                return;
+            }
+            clave += ordinal * multiplicadores[d];
+        }
+
+        int grupo = buscarGrupo(clave);
+        if (columnas != null) {
+            Acumulador[] acumuladores = acumuladoresGrupos[grupo];
+            for (int k = 0; k < columnas.length; k++) {
+                double[] valores = valoresColumnas[k];
+                acumuladores[k].agregar(valores != null ? valores[fila] : columnas[k].leer(fila));
+            }
+            return;
+        }
+        if (cantidadesGrupos[grupo] == filasGrupos[grupo].length) {
+            filasGrupos[grupo] = Arrays.copyOf(filasGrupos[grupo], filasGrupos[grupo].length * 2);
+        }
+        filasGrupos[grupo][cantidadesGrupos[grupo]++] = fila;
+    }
+
+    /**
+     * Obtiene los grupos no vacíos, ordenados por los valores de las dimensiones
+     * 
+     * @param tabla Tabla de hechos a la que refieren las filas
+     * @return Lista de grupos
+     */
+    List<Grupo> getGrupos(TablaHechos tabla) {
+        Integer[] orden = new Integer[cantidadGrupos];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> Long.compare(claves[a], claves[b]));
+
+        List<Grupo> grupos = new ArrayList<>(orden.length);
+        for (int grupo : orden) {
+            grupos.add(armarGrupo(grupo, tabla));
+        }
+        return grupos;
+    }
+
+    /**
+     * Obtiene los primeros grupos según el resultado de una de las medidas
+     * acumuladas. Solo se arman los grupos seleccionados.
+     * 
+     * @param tabla Tabla de hechos a la que refieren las filas
+     * @param orden Orden, con la posición de la medida entre las acumuladas
+     * @return Grupos seleccionados, en orden
+     */
+    List<Grupo> getPrimeros(TablaHechos tabla, Orden orden) {
+        SeleccionPrimeros seleccion = new SeleccionPrimeros(orden);
+        ofrecerGrupos(seleccion, orden.getMedida(), 0);
+        return getGrupos(tabla, seleccion.getIds());
+    }
+
+    /**
+     * Ofrece a una selección los grupos creados a partir de uno dado, con el
+     * resultado de una de las medidas acumuladas y la clave del grupo (que
+     * sigue el orden de los valores) como desempate
+     * 
+     * @param seleccion Selección que recibe los grupos
+     * @param medida    Posición de la medida entre las acumuladas
+     * @param desde     Primer grupo a ofrecer
+     */
+    void ofrecerGrupos(SeleccionPrimeros seleccion, int medida, int desde) {
+        for (int grupo = desde; grupo < cantidadGrupos; grupo++) {
+            seleccion.ofrecer(grupo, acumuladoresGrupos[grupo][medida].resultado(), claves[grupo]);
+        }
+    }
+
+    /**
+     * Arma los grupos indicados, en el orden dado
+     * 
+     * @param tabla  Tabla de hechos a la que refieren las filas
+     * @param grupos Grupos a armar
+     * @return Lista de grupos
+     */
+    List<Grupo> getGrupos(TablaHechos tabla, int[] grupos) {
+        List<Grupo> resultado = new ArrayList<>(grupos.length);
+        for (int grupo : grupos) {
+            resultado.add(armarGrupo(grupo, tabla));
+        }
+        return resultado;
+    }
+
+    int getCantidadGrupos() {
+        return cantidadGrupos;
+    }
+
+    private Grupo armarGrupo(int grupo, TablaHechos tabla) {
+        long clave = claves[grupo];
+        String[] valores = new String[dimensiones.length];
+        for (int d = 0; d < dimensiones.length; d++) {
+            int ordinal = (int) (clave / multiplicadores[d]);
+            clave -= ordinal * multiplicadores[d];
+            valores[d] = valoresOrdenados[d][ordinal];
+        }
+        if (columnas != null) {
+            return new Grupo(valores, acumuladoresGrupos[grupo]);
+        }
+        int[] filas = Arrays.copyOf(filasGrupos[grupo], cantidadesGrupos[grupo]);
+        return new Grupo(valores, new Celda(tabla, filas));
+    }
+
+    private static int[] nivelesActuales(Dimension[] dimensiones) {
+        int[] niveles = new int[dimensiones.length];
+        for (int d = 0; d < dimensiones.length; d++) {
+            niveles[d] = dimensiones[d].getNivelActual();
+        }
+        return niveles;
+    }
+
+    private int buscarGrupo(long clave) {
+        if (grupoPorClaveDensa != null) {
+            int grupo = grupoPorClaveDensa[(int) clave];
+            if (grupo < 0) {
+                grupo = crearGrupo(clave);
+                grupoPorClaveDensa[(int) clave] = grupo;
+            }
+            return grupo;
+        }
+        Integer grupo = grupoPorClave.get(clave);
+        if (grupo == null) {
+            grupo = crearGrupo(clave);
+            grupoPorClave.put(clave, grupo);
+        }
+        return grupo;
+    }
+
+    private int crearGrupo(long clave) {
+        if (cantidadGrupos == claves.length) {
+            claves = Arrays.copyOf(claves, cantidadGrupos * 2);
+            filasGrupos = Arrays.copyOf(filasGrupos, cantidadGrupos * 2);
+            cantidadesGrupos = Arrays.copyOf(cantidadesGrupos, cantidadGrupos * 2);
+            if (acumuladoresGrupos != null) {
+                acumuladoresGrupos = Arrays.copyOf(acumuladoresGrupos, cantidadGrupos * 2);
+            }
+        }
+        claves[cantidadGrupos] = clave;
+        if (columnas != null) {
+            Acumulador[] acumuladores = new Acumulador[medidas.length];
+            for (int k = 0; k < medidas.length; k++) {
+                acumuladores[k] = medidas[k].crearAcumulador();
+            }
+            acumuladoresGrupos[cantidadGrupos] = acumuladores;
+        } else {
+            filasGrupos[cantidadGrupos] = new int[8];
+            cantidadesGrupos[cantidadGrupos] = 0;
+        }
+        return cantidadGrupos++;
+    }
+}
@@ -0,0 +1,172 @@
+package olapcube.estructura;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memoria fuera del heap de un cubo (ver ConfigCubo.fueraDeHeap()).
+ * 
+ * Las columnas se guardan en bloques de tamaño fijo reservados con
+ * ByteBuffer.allocateDirect, así una columna crece agregando bloques sin copiar
+ * los anteriores y no la limitan los 2 GB de un único buffer. La arena es del
+ * cubo (y de sus copias) y libera todos sus bloques de una vez al cerrarlo, sin
+ * esperar al recolector de basura.
+ * 
+ * Las consultas leen los bloques con el bloqueo de lectura del cubo tomado, y
+ * el cubo cierra la arena con el de escritura. Las lecturas que no pasan por
+ * el cubo (una celda ya obtenida, el miembro de una fila) se registran con
+ * registrarLectura(): si el cubo se cierra mientras tanto, los bloques se
+ * liberan cuando termina la última.
+ * 
+ * La memoria directa está limitada por -XX:MaxDirectMemorySize, que por
+ * defecto es igual al tamaño máximo del heap: al mover los hechos fuera del
+ * heap conviene achicar -Xmx y fijar ese límite por separado.
+ */
+final class ArenaCubo {
+    static final int DESPLAZAMIENTO_BLOQUE = 16; // log2 de los elementos de un bloque
+    static final int ELEMENTOS_POR_BLOQUE = 1 << DESPLAZAMIENTO_BLOQUE; // Valores de cada bloque
+    static final int MASCARA_BLOQUE = ELEMENTOS_POR_BLOQUE - 1; // Posición de una fila dentro de su bloque
+
+    private static final Liberador LIBERADOR = Liberador.crear();
+
+    private List<ByteBuffer> bloques; // Bloques reservados (los buffers originales, no sus vistas)
+    private long bytesReservados; // Bytes reservados en total
+    private volatile boolean cerrada; // true si el cubo se cerró (los bloques se liberan sin lecturas en curso)
+    private AtomicInteger lecturas; // Lecturas registradas en curso
+
+    ArenaCubo() {
+        this.bloques = new ArrayList<>();
+        this.lecturas = new AtomicInteger();
+    }
+
+    /**
+     * Reserva un bloque para ELEMENTOS_POR_BLOQUE valores double
+     * 
+     * @return Bloque en cero, en el orden de bytes nativo
+     */
+    DoubleBuffer reservarDoubles() {
+        return reservar(ELEMENTOS_POR_BLOQUE * Double.BYTES).asDoubleBuffer();
+    }
+
+    /**
+     * Reserva un bloque para ELEMENTOS_POR_BLOQUE valores int
+     * 
+     * @return Bloque en cero, en el orden de bytes nativo
+     */
+    IntBuffer reservarEnteros() {
+        return reservar(ELEMENTOS_POR_BLOQUE * Integer.BYTES).asIntBuffer();
+    }
+
+    private synchronized ByteBuffer reservar(int bytes) {
+        if (cerrada) {
+            throw new IllegalStateException("La memoria del cubo ya se liberó");
+        }
+        ByteBuffer bloque = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        bloques.add(bloque);
+        bytesReservados += bytes;
+        return bloque;
+    }
+
+    synchronized long getBytesReservados() {
+        return bytesReservados;
+    }
+
+    /**
+     * Registra una lectura de los bloques hecha sin el bloqueo del cubo. Hasta
+     * que se llame a terminarLectura(), cerrar() no libera los bloques.
+     * 
+     * @throws IllegalStateException Si la arena ya se cerró
+     */
+    void registrarLectura() {
+        lecturas.incrementAndGet();
+        // Se lee cerrada después de registrar la lectura y cerrar() lee las lecturas después de marcarla:
+        // alguno de los dos ve al otro
+        if (cerrada) {
+            terminarLectura();
+            throw new IllegalStateException("La memoria del cubo ya se liberó");
+        }
+    }
+
+    /**
+     * Termina una lectura registrada con registrarLectura(); si la arena se
+     * cerró y era la última, libera los bloques
+     */
+    void terminarLectura() {
+        if (lecturas.decrementAndGet() == 0 && cerrada) {
+            liberarBloques();
+        }
+    }
+
+    /**
+     * Cierra la arena: no se reservan más bloques y se liberan todos, en el
+     * momento o al terminar la última lectura registrada. Quien la cierra debe
+     * asegurar que no haya otras lecturas en curso (el cubo lo hace con su
+     * bloqueo de escritura y quitando antes los bloques a las columnas).
+     */
+    synchronized void cerrar() {
+        if (cerrada) {
+            return;
+        }
+        cerrada = true;
+        if (lecturas.get() == 0) {
+            liberarBloques();
+        }
+    }
+
+    private synchronized void liberarBloques() {
+        for (ByteBuffer bloque : bloques) {
+            LIBERADOR.liberar(bloque);
+        }
+        bloques.clear(); // Si se llama dos veces, la segunda no libera nada
+        bytesReservados = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ArenaCubo [bloques=" + bloques.size() + ", bytes=" + bytesReservados + ", cerrada=" + cerrada + "]";
+    }
+
+    /**
+     * Libera un buffer directo en el momento con sun.misc.Unsafe.invokeCleaner,
+     * disponible desde Java 9. Si la JVM no lo expone, los bloques se liberan
+     * cuando el recolector descarta los buffers.
+     */
+    private static final class Liberador {
+        private Object unsafe; // Instancia de sun.misc.Unsafe (null si no está disponible)
+        private Method invokeCleaner; // Unsafe.invokeCleaner(ByteBuffer)
+
+        private Liberador(Object unsafe, Method invokeCleaner) {
+            this.unsafe = unsafe;
+            this.invokeCleaner = invokeCleaner;
+        }
+
+        static Liberador crear() {
+            try {
+                Class<?> clase = Class.forName("sun.misc.Unsafe");
+                Field campo = clase.getDeclaredField("theUnsafe");
+                campo.setAccessible(true);
+                return new Liberador(campo.get(null), clase.getMethod("invokeCleaner", ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new Liberador(null, null);
+            }
+        }
+
+        void liberar(ByteBuffer bloque) {
+            if (unsafe == null) {
+                return;
+            }
+            try {
+                invokeCleaner.invoke(unsafe, bloque);
+            } catch (ReflectiveOperationException e) {
+                unsafe = null; // No se vuelve a intentar; queda para el recolector
+            }
+        }
+    }
+}
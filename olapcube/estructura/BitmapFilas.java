@@ -0,0 +1,783 @@
+package olapcube.estructura;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto comprimido de índices de filas (posting list) al estilo Roaring.
+ * 
+ * Los índices se agrupan por sus 16 bits altos. Cada grupo (contenedor)
+ * guarda los 16 bits bajos de sus índices en un arreglo ordenado cuando tiene
+ * pocos elementos, o en un mapa de bits de 65536 posiciones cuando es denso.
+ * Así las intersecciones, uniones y diferencias se resuelven contenedor a
+ * contenedor, y sobre los contenedores densos palabra a palabra (64 filas por
+ * operación).
+ * 
+ * Ejemplo: las filas [3, 10, 70000] se guardan como
+ * {
+ * 0: [3, 10],
+ * 1: [4464]
+ * }
+ * porque 70000 = 1 * 65536 + 4464.
+ */
+public class BitmapFilas {
+    private static final int CAPACIDAD_INICIAL = 4;
+
+    private char[] claves; // 16 bits altos de cada contenedor, ordenados
+    private Contenedor[] contenedores; // Contenedores, en el mismo orden que las claves
+    private int cantidadContenedores; // Cantidad de contenedores en uso
+
+    public BitmapFilas() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    private BitmapFilas(int capacidad) {
+        this.claves = new char[Math.max(capacidad, 1)];
+        this.contenedores = new Contenedor[Math.max(capacidad, 1)];
+        this.cantidadContenedores = 0;
+    }
+
+    /**
+     * Crea un bitmap a partir de un arreglo de filas
+     * 
+     * @param filas Filas a agregar
+     * @return Bitmap con las filas
+     */
+    public static BitmapFilas de(int... filas) {
+        BitmapFilas bitmap = new BitmapFilas();
+        for (int fila : filas) {
+            bitmap.agregar(fila);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Crea un bitmap con todas las filas de un rango, armando cada contenedor de
+     * una vez en lugar de agregar fila por fila
+     * 
+     * @param desde Primera fila del rango
+     * @param hasta Fila siguiente a la última del rango
+     * @return Bitmap con las filas del rango
+     */
+    static BitmapFilas rango(int desde, int hasta) {
+        if (desde < 0 || hasta < desde) {
+            throw new IllegalArgumentException("Rango inválido: [" + desde + ", " + hasta + ")");
+        }
+        BitmapFilas bitmap = new BitmapFilas();
+        int fila = desde;
+        while (fila < hasta) {
+            int base = fila & ~0xFFFF;
+            int fin = (int) Math.min(hasta, (long) base + 0x10000);
+            bitmap.agregarContenedor((char) (fila >>> 16), ContenedorBits.rango(fila - base, fin - base));
+            fila = fin;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Agrega una fila al conjunto. Agregar filas en orden creciente (como ocurre
+     * al construir el cubo) no requiere búsquedas.
+     * 
+     * @param fila Índice de la fila (no negativo)
+     */
+    public void agregar(int fila) {
+        if (fila < 0) {
+            throw new IllegalArgumentException("Fila inválida: " + fila);
+        }
+        char clave = (char) (fila >>> 16);
+        char bajo = (char) fila;
+        int posicion;
+        if (cantidadContenedores > 0 && claves[cantidadContenedores - 1] == clave) {
+            posicion = cantidadContenedores - 1;
+        } else {
+            posicion = buscarClave(clave);
+        }
+        if (posicion >= 0) {
+            contenedores[posicion] = contenedores[posicion].agregar(bajo);
+        } else {
+            insertarContenedor(-posicion - 1, clave, new ContenedorArreglo().agregar(bajo));
+        }
+    }
+
+    /**
+     * Crea un bitmap con las filas de este seguidas de las de otro cuyas filas
+     * son todas mayores (por ejemplo, el de un bloque posterior o el de un lote
+     * de hechos anexado al cubo). Ninguno de los dos se modifica: el resultado
+     * reutiliza sus contenedores sin copiarlos, salvo el de la clave en la que
+     * se tocan, que se une en uno nuevo. Así los bitmaps ya entregados a una
+     * consulta siguen siendo válidos. Si los rangos se solapan, se hace una unión
+     * normal.
+     * 
+     * @param posterior Bitmap con filas posteriores
+     * @return Bitmap con las filas de ambos
+     */
+    BitmapFilas anexar(BitmapFilas posterior) {
+        if (posterior.cantidadContenedores == 0) {
+            return this;
+        }
+        if (cantidadContenedores == 0) {
+            return posterior;
+        }
+        int ultimo = cantidadContenedores - 1;
+        if (posterior.claves[0] < claves[ultimo]) {
+            return or(posterior);
+        }
+        BitmapFilas resultado = new BitmapFilas(cantidadContenedores + posterior.cantidadContenedores);
+        System.arraycopy(claves, 0, resultado.claves, 0, cantidadContenedores);
+        System.arraycopy(contenedores, 0, resultado.contenedores, 0, cantidadContenedores);
+        resultado.cantidadContenedores = cantidadContenedores;
+        int desde = 0;
+        if (posterior.claves[0] == claves[ultimo]) {
+            resultado.contenedores[ultimo] = contenedores[ultimo].or(posterior.contenedores[0]);
+            desde = 1;
+        }
+        for (int i = desde; i < posterior.cantidadContenedores; i++) {
+            resultado.agregarContenedor(posterior.claves[i], posterior.contenedores[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Indica si una fila pertenece al conjunto
+     * 
+     * @param fila Índice de la fila
+     * @return true si la fila pertenece al conjunto
+     */
+    public boolean contiene(int fila) {
+        if (fila < 0) {
+            return false;
+        }
+        int posicion = buscarClave((char) (fila >>> 16));
+        return posicion >= 0 && contenedores[posicion].contiene((char) fila);
+    }
+
+    public int getCardinalidad() {
+        int cardinalidad = 0;
+        for (int i = 0; i < cantidadContenedores; i++) {
+            cardinalidad += contenedores[i].cardinalidad();
+        }
+        return cardinalidad;
+    }
+
+    public boolean isEmpty() {
+        return cantidadContenedores == 0;
+    }
+
+    /**
+     * Intersección (AND) con otro bitmap
+     * 
+     * @param otro Otro bitmap
+     * @return Nuevo bitmap con las filas presentes en ambos
+     */
+    public BitmapFilas and(BitmapFilas otro) {
+        BitmapFilas resultado = new BitmapFilas(Math.min(cantidadContenedores, otro.cantidadContenedores));
+        int i = 0;
+        int j = 0;
+        while (i < cantidadContenedores && j < otro.cantidadContenedores) {
+            if (claves[i] < otro.claves[j]) {
+                i++;
+            } else if (claves[i] > otro.claves[j]) {
+                j++;
+            } else {
+                resultado.agregarContenedor(claves[i], contenedores[i].and(otro.contenedores[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Unión (OR) con otro bitmap
+     * 
+     * @param otro Otro bitmap
+     * @return Nuevo bitmap con las filas presentes en alguno de los dos
+     */
+    public BitmapFilas or(BitmapFilas otro) {
+        BitmapFilas resultado = new BitmapFilas(cantidadContenedores + otro.cantidadContenedores);
+        int i = 0;
+        int j = 0;
+        while (i < cantidadContenedores || j < otro.cantidadContenedores) {
+            if (j >= otro.cantidadContenedores || (i < cantidadContenedores && claves[i] < otro.claves[j])) {
+                resultado.agregarContenedor(claves[i], contenedores[i].copiar());
+                i++;
+            } else if (i >= cantidadContenedores || claves[i] > otro.claves[j]) {
+                resultado.agregarContenedor(otro.claves[j], otro.contenedores[j].copiar());
+                j++;
+            } else {
+                resultado.agregarContenedor(claves[i], contenedores[i].or(otro.contenedores[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Diferencia (AND NOT) con otro bitmap
+     * 
+     * @param otro Otro bitmap
+     * @return Nuevo bitmap con las filas presentes en este y no en el otro
+     */
+    public BitmapFilas andNot(BitmapFilas otro) {
+        BitmapFilas resultado = new BitmapFilas(cantidadContenedores);
+        int j = 0;
+        for (int i = 0; i < cantidadContenedores; i++) {
+            while (j < otro.cantidadContenedores && otro.claves[j] < claves[i]) {
+                j++;
+            }
+            if (j < otro.cantidadContenedores && otro.claves[j] == claves[i]) {
+                resultado.agregarContenedor(claves[i], contenedores[i].andNot(otro.contenedores[j]));
+            } else {
+                resultado.agregarContenedor(claves[i], contenedores[i].copiar());
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Intersección de varios bitmaps, empezando por el de menor cardinalidad
+     * 
+     * @param bitmaps Bitmaps a intersectar (al menos uno)
+     * @return Nuevo bitmap con las filas presentes en todos
+     */
+    public static BitmapFilas and(BitmapFilas... bitmaps) {
+        BitmapFilas[] ordenados = bitmaps.clone();
+        Arrays.sort(ordenados, (a, b) -> Integer.compare(a.getCardinalidad(), b.getCardinalidad()));
+        BitmapFilas resultado = ordenados[0].copiar();
+        for (int i = 1; i < ordenados.length && !resultado.isEmpty(); i++) {
+            resultado = resultado.and(ordenados[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Unión de varios bitmaps
+     * 
+     * @param bitmaps Bitmaps a unir
+     * @return Nuevo bitmap con las filas presentes en alguno
+     */
+    public static BitmapFilas or(Iterable<BitmapFilas> bitmaps) {
+        BitmapFilas resultado = new BitmapFilas();
+        for (BitmapFilas bitmap : bitmaps) {
+            resultado = resultado.or(bitmap);
+        }
+        return resultado;
+    }
+
+    /**
+     * Recorre las filas del conjunto en orden creciente
+     * 
+     * @param accion Acción a ejecutar por cada fila
+     */
+    public void forEach(IntConsumer accion) {
+        for (int i = 0; i < cantidadContenedores; i++) {
+            contenedores[i].forEach(claves[i] << 16, accion);
+        }
+    }
+
+    /**
+     * Devuelve las filas del conjunto en un arreglo ordenado
+     * 
+     * @return Arreglo de filas
+     */
+    public int[] toArray() {
+        int[] filas = new int[getCardinalidad()];
+        int k = 0;
+        for (int i = 0; i < cantidadContenedores; i++) {
+            k = contenedores[i].volcar(claves[i] << 16, filas, k);
+        }
+        return filas;
+    }
+
+    public BitmapFilas copiar() {
+        BitmapFilas copia = new BitmapFilas(cantidadContenedores);
+        for (int i = 0; i < cantidadContenedores; i++) {
+            copia.agregarContenedor(claves[i], contenedores[i].copiar());
+        }
+        return copia;
+    }
+
+    /**
+     * Escribe el bitmap en formato binario: cantidad de contenedores y, por cada
+     * uno, clave, tipo, cardinalidad y contenido
+     * 
+     * @param salida Flujo de salida
+     * @throws IOException Si falla la escritura
+     */
+    void escribir(DataOutputStream salida) throws IOException {
+        salida.writeInt(cantidadContenedores);
+        for (int i = 0; i < cantidadContenedores; i++) {
+            salida.writeChar(claves[i]);
+            contenedores[i].escribir(salida);
+        }
+    }
+
+    /**
+     * Lee un bitmap escrito con escribir(), avanzando la posición del buffer
+     * 
+     * @param entrada Buffer de entrada
+     * @return Bitmap leído
+     */
+    static BitmapFilas leer(ByteBuffer entrada) {
+        int cantidad = entrada.getInt();
+        BitmapFilas bitmap = new BitmapFilas(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            char clave = entrada.getChar();
+            byte tipo = entrada.get();
+            int cardinalidad = entrada.getInt();
+            Contenedor contenedor;
+            if (tipo == ContenedorBits.TIPO) {
+                ContenedorBits bits = new ContenedorBits();
+                entrada.asLongBuffer().get(bits.palabras);
+                entrada.position(entrada.position() + ContenedorBits.PALABRAS * Long.BYTES);
+                bits.cardinalidad = cardinalidad;
+                contenedor = bits;
+            } else {
+                char[] valores = new char[Math.max(cardinalidad, 1)];
+                entrada.asCharBuffer().get(valores, 0, cardinalidad);
+                entrada.position(entrada.position() + cardinalidad * Character.BYTES);
+                contenedor = new ContenedorArreglo(valores, cardinalidad);
+            }
+            bitmap.agregarContenedor(clave, contenedor);
+        }
+        return bitmap;
+    }
+
+    @Override
+    public String toString() {
+        return "BitmapFilas [cardinalidad=" + getCardinalidad() + ", contenedores=" + cantidadContenedores + "]";
+    }
+
+    private int buscarClave(char clave) {
+        int bajo = 0;
+        int alto = cantidadContenedores - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (claves[medio] < clave) {
+                bajo = medio + 1;
+            } else if (claves[medio] > clave) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    private void asegurarCapacidad(int capacidad) {
+        if (capacidad > claves.length) {
+            int nueva = Math.max(capacidad, claves.length * 2);
+            claves = Arrays.copyOf(claves, nueva);
+            contenedores = Arrays.copyOf(contenedores, nueva);
+        }
+    }
+
+    private void insertarContenedor(int posicion, char clave, Contenedor contenedor) {
+        asegurarCapacidad(cantidadContenedores + 1);
+        System.arraycopy(claves, posicion, claves, posicion + 1, cantidadContenedores - posicion);
+        System.arraycopy(contenedores, posicion, contenedores, posicion + 1, cantidadContenedores - posicion);
+        claves[posicion] = clave;
+        contenedores[posicion] = contenedor;
+        cantidadContenedores++;
+    }
+
+    /**
+     * Agrega un contenedor al final (la clave debe ser mayor que las existentes).
+     * Los contenedores vacíos se descartan.
+     */
+    private void agregarContenedor(char clave, Contenedor contenedor) {
+        if (contenedor.cardinalidad() == 0) {
+            return;
+        }
+        asegurarCapacidad(cantidadContenedores + 1);
+        claves[cantidadContenedores] = clave;
+        contenedores[cantidadContenedores] = contenedor;
+        cantidadContenedores++;
+    }
+
+    /**
+     * Contenedor de los 16 bits bajos de las filas que comparten los 16 bits
+     * altos
+     */
+    private abstract static class Contenedor {
+        abstract Contenedor agregar(char valor);
+
+        abstract boolean contiene(char valor);
+
+        abstract int cardinalidad();
+
+        abstract Contenedor and(Contenedor otro);
+
+        abstract Contenedor or(Contenedor otro);
+
+        abstract Contenedor andNot(Contenedor otro);
+
+        abstract Contenedor copiar();
+
+        abstract void forEach(int base, IntConsumer accion);
+
+        abstract int volcar(int base, int[] destino, int desde);
+
+        abstract void escribir(DataOutputStream salida) throws IOException;
+    }
+
+    /**
+     * Contenedor disperso: arreglo ordenado de hasta 4096 valores
+     */
+    private static final class ContenedorArreglo extends Contenedor {
+        static final int MAXIMO = 4096;
+        static final byte TIPO = 0;
+
+        private char[] valores;
+        private int cardinalidad;
+
+        ContenedorArreglo() {
+            this(new char[CAPACIDAD_INICIAL], 0);
+        }
+
+        ContenedorArreglo(char[] valores, int cardinalidad) {
+            this.valores = valores;
+            this.cardinalidad = cardinalidad;
+        }
+
+        @Override
+        Contenedor agregar(char valor) {
+            int posicion;
+            if (cardinalidad == 0 || valores[cardinalidad - 1] < valor) {
+                posicion = cardinalidad;
+            } else {
+                posicion = Arrays.binarySearch(valores, 0, cardinalidad, valor);
+                if (posicion >= 0) {
+                    return this;
+                }
+                posicion = -posicion - 1;
+            }
+            if (cardinalidad == MAXIMO) {
+                return aBits().agregar(valor);
+            }
+            if (cardinalidad == valores.length) {
+                valores = Arrays.copyOf(valores, Math.min(valores.length * 2, MAXIMO));
+            }
+            System.arraycopy(valores, posicion, valores, posicion + 1, cardinalidad - posicion);
+            valores[posicion] = valor;
+            cardinalidad++;
+            return this;
+        }
+
+        @Override
+        boolean contiene(char valor) {
+            return Arrays.binarySearch(valores, 0, cardinalidad, valor) >= 0;
+        }
+
+        @Override
+        int cardinalidad() {
+            return cardinalidad;
+        }
+
+        @Override
+        Contenedor and(Contenedor otro) {
+            char[] resultado = new char[Math.min(cardinalidad, otro.cardinalidad())];
+            int k = 0;
+            if (otro instanceof ContenedorBits) {
+                ContenedorBits bits = (ContenedorBits) otro;
+                for (int i = 0; i < cardinalidad; i++) {
+                    if (bits.contiene(valores[i])) {
+                        resultado[k++] = valores[i];
+                    }
+                }
+            } else {
+                ContenedorArreglo arreglo = (ContenedorArreglo) otro;
+                int i = 0;
+                int j = 0;
+                while (i < cardinalidad && j < arreglo.cardinalidad) {
+                    if (valores[i] < arreglo.valores[j]) {
+                        i++;
+                    } else if (valores[i] > arreglo.valores[j]) {
+                        j++;
+                    } else {
+                        resultado[k++] = valores[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return new ContenedorArreglo(resultado, k);
+        }
+
+        @Override
+        Contenedor or(Contenedor otro) {
+            if (otro instanceof ContenedorBits) {
+                return otro.or(this);
+            }
+            ContenedorArreglo arreglo = (ContenedorArreglo) otro;
+            char[] resultado = new char[cardinalidad + arreglo.cardinalidad];
+            int k = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinalidad || j < arreglo.cardinalidad) {
+                if (j >= arreglo.cardinalidad || (i < cardinalidad && valores[i] < arreglo.valores[j])) {
+                    resultado[k++] = valores[i++];
+                } else if (i >= cardinalidad || valores[i] > arreglo.valores[j]) {
+                    resultado[k++] = arreglo.valores[j++];
+                } else {
+                    resultado[k++] = valores[i];
+                    i++;
+                    j++;
+                }
+            }
+            ContenedorArreglo union = new ContenedorArreglo(resultado, k);
+            return k > MAXIMO ? union.aBits() : union;
+        }
+
+        @Override
+        Contenedor andNot(Contenedor otro) {
+            char[] resultado = new char[cardinalidad];
+            int k = 0;
+            for (int i = 0; i < cardinalidad; i++) {
+                if (!otro.contiene(valores[i])) {
+                    resultado[k++] = valores[i];
+                }
+            }
+            return new ContenedorArreglo(resultado, k);
+        }
+
+        @Override
+        Contenedor copiar() {
+            return new ContenedorArreglo(Arrays.copyOf(valores, Math.max(cardinalidad, 1)), cardinalidad);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer accion) {
+            for (int i = 0; i < cardinalidad; i++) {
+                accion.accept(base | valores[i]);
+            }
+        }
+
+        @Override
+        int volcar(int base, int[] destino, int desde) {
+            for (int i = 0; i < cardinalidad; i++) {
+                destino[desde++] = base | valores[i];
+            }
+            return desde;
+        }
+
+        @Override
+        void escribir(DataOutputStream salida) throws IOException {
+            salida.writeByte(TIPO);
+            salida.writeInt(cardinalidad);
+            for (int i = 0; i < cardinalidad; i++) {
+                salida.writeChar(valores[i]);
+            }
+        }
+
+        ContenedorBits aBits() {
+            ContenedorBits bits = new ContenedorBits();
+            for (int i = 0; i < cardinalidad; i++) {
+                bits.palabras[valores[i] >>> 6] |= 1L << valores[i];
+            }
+            bits.cardinalidad = cardinalidad;
+            return bits;
+        }
+    }
+
+    /**
+     * Contenedor denso: mapa de 65536 bits en 1024 palabras de 64 bits
+     */
+    private static final class ContenedorBits extends Contenedor {
+        static final int PALABRAS = 1024;
+        static final byte TIPO = 1;
+
+        private long[] palabras;
+        private int cardinalidad;
+
+        ContenedorBits() {
+            this.palabras = new long[PALABRAS];
+            this.cardinalidad = 0;
+        }
+
+        /**
+         * Crea el contenedor de un rango de valores bajos, disperso si la
+         * cardinalidad lo permite
+         * 
+         * @param desde Primer valor del rango
+         * @param hasta Valor siguiente al último (hasta 65536)
+         * @return Contenedor con los valores del rango
+         */
+        static Contenedor rango(int desde, int hasta) {
+            int cantidad = hasta - desde;
+            if (cantidad <= ContenedorArreglo.MAXIMO) {
+                char[] valores = new char[Math.max(cantidad, 1)];
+                for (int i = 0; i < cantidad; i++) {
+                    valores[i] = (char) (desde + i);
+                }
+                return new ContenedorArreglo(valores, cantidad);
+            }
+            ContenedorBits bits = new ContenedorBits();
+            int primera = desde >>> 6;
+            int ultima = (hasta - 1) >>> 6;
+            for (int i = primera; i <= ultima; i++) {
+                long palabra = -1L;
+                if (i == primera) {
+                    palabra &= -1L << desde;
+                }
+                if (i == ultima) {
+                    palabra &= -1L >>> (63 - ((hasta - 1) & 63));
+                }
+                bits.palabras[i] = palabra;
+            }
+            bits.cardinalidad = cantidad;
+            return bits;
+        }
+
+        @Override
+        Contenedor agregar(char valor) {
+            long anterior = palabras[valor >>> 6];
+            long nueva = anterior | (1L << valor);
+            palabras[valor >>> 6] = nueva;
+            if (anterior != nueva) {
+                cardinalidad++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contiene(char valor) {
+            return (palabras[valor >>> 6] & (1L << valor)) != 0;
+        }
+
+        @Override
+        int cardinalidad() {
+            return cardinalidad;
+        }
+
+        @Override
+        Contenedor and(Contenedor otro) {
+            if (otro instanceof ContenedorArreglo) {
+                return otro.and(this);
+            }
+            long[] otras = ((ContenedorBits) otro).palabras;
+            ContenedorBits resultado = new ContenedorBits();
+            int cardinalidad = 0;
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = palabras[i] & otras[i];
+                resultado.palabras[i] = palabra;
+                cardinalidad += Long.bitCount(palabra);
+            }
+            resultado.cardinalidad = cardinalidad;
+            return resultado.compactar();
+        }
+
+        @Override
+        Contenedor or(Contenedor otro) {
+            ContenedorBits resultado = (ContenedorBits) copiar();
+            if (otro instanceof ContenedorArreglo) {
+                ContenedorArreglo arreglo = (ContenedorArreglo) otro;
+                for (int i = 0; i < arreglo.cardinalidad; i++) {
+                    resultado.agregar(arreglo.valores[i]);
+                }
+                return resultado;
+            }
+            long[] otras = ((ContenedorBits) otro).palabras;
+            int cardinalidad = 0;
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = palabras[i] | otras[i];
+                resultado.palabras[i] = palabra;
+                cardinalidad += Long.bitCount(palabra);
+            }
+            resultado.cardinalidad = cardinalidad;
+            return resultado;
+        }
+
+        @Override
+        Contenedor andNot(Contenedor otro) {
+            ContenedorBits resultado = (ContenedorBits) copiar();
+            if (otro instanceof ContenedorArreglo) {
+                ContenedorArreglo arreglo = (ContenedorArreglo) otro;
+                for (int i = 0; i < arreglo.cardinalidad; i++) {
+                    char valor = arreglo.valores[i];
+                    if (resultado.contiene(valor)) {
+                        resultado.palabras[valor >>> 6] &= ~(1L << valor);
+                        resultado.cardinalidad--;
+                    }
+                }
+                return resultado.compactar();
+            }
+            long[] otras = ((ContenedorBits) otro).palabras;
+            int cardinalidad = 0;
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = palabras[i] & ~otras[i];
+                resultado.palabras[i] = palabra;
+                cardinalidad += Long.bitCount(palabra);
+            }
+            resultado.cardinalidad = cardinalidad;
+            return resultado.compactar();
+        }
+
+        @Override
+        Contenedor copiar() {
+            ContenedorBits copia = new ContenedorBits();
+            System.arraycopy(palabras, 0, copia.palabras, 0, PALABRAS);
+            copia.cardinalidad = cardinalidad;
+            return copia;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer accion) {
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = palabras[i];
+                while (palabra != 0) {
+                    accion.accept(base | (i << 6) | Long.numberOfTrailingZeros(palabra));
+                    palabra &= palabra - 1;
+                }
+            }
+        }
+
+        @Override
+        int volcar(int base, int[] destino, int desde) {
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = palabras[i];
+                while (palabra != 0) {
+                    destino[desde++] = base | (i << 6) | Long.numberOfTrailingZeros(palabra);
+                    palabra &= palabra - 1;
+                }
+            }
+            return desde;
+        }
+
+        @Override
+        void escribir(DataOutputStream salida) throws IOException {
+            salida.writeByte(TIPO);
+            salida.writeInt(cardinalidad);
+            for (long palabra : palabras) {
+                salida.writeLong(palabra);
+            }
+        }
+
+        /**
+         * Convierte a contenedor disperso si la cardinalidad lo permite
+         */
+        Contenedor compactar() {
+            if (cardinalidad > ContenedorArreglo.MAXIMO) {
+                return this;
+            }
+            char[] valores = new char[Math.max(cardinalidad, 1)];
+            volcarBajos(valores);
+            return new ContenedorArreglo(valores, cardinalidad);
+        }
+
+        private void volcarBajos(char[] destino) {
+            int k = 0;
+            for (int i = 0; i < PALABRAS; i++) {
+                long palabra = palabras[i];
+                while (palabra != 0) {
+                    destino[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(palabra));
+                    palabra &= palabra - 1;
+                }
+            }
+        }
+    }
+}
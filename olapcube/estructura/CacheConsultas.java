@@ -0,0 +1,190 @@
+package olapcube.estructura;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache de resultados de consultas de agregación de un cubo.
+ * 
+ * Cada resultado se guarda bajo una clave normalizada de la consulta (ver
+ * Cubo.agregar): dimensiones de agrupación con su nivel actual, filtros de
+ * slice/dice activos, hechos y medidas. La cantidad de resultados está acotada
+ * y, al superarla, se descarta el usado hace más tiempo (LRU) o el usado menos
+ * veces (LFU, desempatando por antigüedad de uso).
+ * 
+ * El cubo y sus vistas filtradas comparten la cache, que se vacía cuando se
+ * anexan hechos. Los métodos son sincronizados porque las consultas
+ * concurrentes la usan al mismo tiempo.
+ */
+public class CacheConsultas {
+    public static final int CAPACIDAD_POR_DEFECTO = 256; // Resultados guardados si no se configura otra capacidad
+
+    /**
+     * Política para elegir qué resultado descartar cuando la cache está llena
+     */
+    public enum Politica {
+        LRU, // Usado hace más tiempo
+        LFU // Usado menos veces
+    }
+
+    private LinkedHashMap<String, Entrada> entradas; // Resultados por clave, en orden de uso
+    private int capacidad; // Cantidad máxima de resultados (0 deshabilita la cache)
+    private Politica politica; // Política de descarte
+    private long aciertos; // Consultas respondidas desde la cache
+    private long fallos; // Consultas que se tuvieron que calcular
+    private long descartes; // Resultados descartados por falta de lugar
+    private long invalidaciones; // Veces que se vació la cache por cambios en el cubo
+
+    private static class Entrada {
+        private List<Grupo> grupos; // Resultado de la consulta
+        private long usos; // Veces que se usó el resultado (para LFU)
+
+        private Entrada(List<Grupo> grupos) {
+            this.grupos = grupos;
+            this.usos = 1;
+        }
+    }
+
+    CacheConsultas() {
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true);
+        this.capacidad = CAPACIDAD_POR_DEFECTO;
+        this.politica = Politica.LRU;
+    }
+
+    /**
+     * Cambia la capacidad y la política de la cache. Si la nueva capacidad es
+     * menor, se descartan los resultados sobrantes.
+     * 
+     * @param capacidad Cantidad máxima de resultados (0 deshabilita la cache)
+     * @param politica  Política de descarte
+     */
+    public synchronized void configurar(int capacidad, Politica politica) {
+        if (capacidad < 0) {
+            throw new IllegalArgumentException("La capacidad de la cache no puede ser negativa: " + capacidad);
+        }
+        if (politica == null) {
+            throw new IllegalArgumentException("La política de la cache no puede ser nula");
+        }
+        this.capacidad = capacidad;
+        this.politica = politica;
+        while (entradas.size() > capacidad) {
+            descartar();
+        }
+    }
+
+    /**
+     * Busca el resultado de una consulta
+     * 
+     * @param clave Clave normalizada de la consulta
+     * @return Grupos resultado, o null si no están en la cache
+     */
+    synchronized List<Grupo> buscar(String clave) {
+        Entrada entrada = entradas.get(clave);
+        if (entrada == null) {
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        entrada.usos++;
+        return entrada.grupos;
+    }
+
+    /**
+     * Guarda el resultado de una consulta, descartando otro si no hay lugar
+     * 
+     * @param clave  Clave normalizada de la consulta
+     * @param grupos Grupos resultado
+     * @return Grupos resultado, como lista no modificable
+     */
+    synchronized List<Grupo> guardar(String clave, List<Grupo> grupos) {
+        List<Grupo> resultado = Collections.unmodifiableList(grupos);
+        if (capacidad == 0) {
+            return resultado;
+        }
+        if (!entradas.containsKey(clave) && entradas.size() >= capacidad) {
+            descartar();
+        }
+        entradas.put(clave, new Entrada(resultado));
+        return resultado;
+    }
+
+    /**
+     * Descarta un resultado según la política. Las entradas se recorren de la
+     * usada hace más tiempo a la más reciente, por lo que en LFU los empates se
+     * resuelven como en LRU.
+     */
+    private void descartar() {
+        Iterator<Entrada> iterador = entradas.values().iterator();
+        if (politica == Politica.LRU) {
+            iterador.next();
+            iterador.remove();
+        } else {
+            String claveMenosUsada = null;
+            long menosUsos = Long.MAX_VALUE;
+            for (Map.Entry<String, Entrada> entry : entradas.entrySet()) {
+                if (entry.getValue().usos < menosUsos) {
+                    claveMenosUsada = entry.getKey();
+                    menosUsos = entry.getValue().usos;
+                }
+            }
+            entradas.remove(claveMenosUsada);
+        }
+        descartes++;
+    }
+
+    /**
+     * Vacía la cache, porque los datos del cubo cambiaron
+     */
+    synchronized void invalidar() {
+        entradas.clear();
+        invalidaciones++;
+    }
+
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    public synchronized long getDescartes() {
+        return descartes;
+    }
+
+    public synchronized long getInvalidaciones() {
+        return invalidaciones;
+    }
+
+    public synchronized int getTamanio() {
+        return entradas.size();
+    }
+
+    public synchronized int getCapacidad() {
+        return capacidad;
+    }
+
+    public synchronized Politica getPolitica() {
+        return politica;
+    }
+
+    /**
+     * Proporción de consultas respondidas desde la cache
+     * 
+     * @return Aciertos sobre el total de consultas (0 si no hubo consultas)
+     */
+    public synchronized double getTasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : (double) aciertos / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CacheConsultas [politica=" + politica + ", tamanio=" + entradas.size() + "/" + capacidad
+                + ", aciertos=" + aciertos + ", fallos=" + fallos + ", descartes=" + descartes
+                + ", invalidaciones=" + invalidaciones + "]";
+    }
+}
@@ -1,43 +1,51 @@
 package olapcube.estructura;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+
+import olapcube.metricas.Medida;
 
 /**
  * Representa una celda de un cubo OLAP.
- * Cada celda almacena valores para uno o más hechos.
- * A su vez, cada hecho puede tener uno o más valores. Por ejemplo, cuando se
- * agrupan
- * varias celdas en una sola, se pueden tener varios valores para un mismo
- * hecho.
+ * Una celda no copia los valores de los hechos: referencia la tabla columnar
+ * del cubo y el conjunto de filas que agrupa. Cada hecho puede tener uno o
+ * más valores, por ejemplo cuando se agrupan varias celdas en una sola.
  * 
- * Ejemplo de celda agrupada con dos hechos 'valor' y 'cantidad':
+ * Ejemplo de celda agrupada con dos hechos 'valor' y 'cantidad' que agrupa
+ * las filas 0, 3, 4 y 7 de la tabla:
  * 
- * | valor | cantidad |
- * |-------|----------|
- * | 10 | 5 |
- * | 20 | 3 |
- * | 10 | 2 |
- * | 25 | 1 |
+ * | fila | valor | cantidad |
+ * |------|-------|----------|
+ * | 0    | 10    | 5        |
+ * | 3    | 20    | 3        |
+ * | 4    | 10    | 2        |
+ * | 7    | 25    | 1        |
  * 
- * En este caso el Map de la celda tendría la siguiente estructura:
- * {
- * "valor": [10, 20, 10, 25],
- * "cantidad": [5, 3, 2, 1]
- * }
+ * En este caso la celda solo guarda filas = [0, 3, 4, 7] y las medidas
+ * recorren directamente las columnas 'valor' y 'cantidad' de la tabla.
  */
 public class Celda {
-    private Map<String, List<Double>> hechos; // Mapeo de nombres de hecho a valores
+    private TablaHechos tabla; // Tabla columnar con los valores de los hechos
+    private int[] filas; // Filas de la tabla que agrupa la celda (ordenadas)
+    private byte contigua; // 1 si las filas son un rango sin huecos, -1 si no, 0 sin calcular
+    private int version; // Versión de la tabla a la que corresponden las filas (ver TablaHechos.reordenar())
 
-    public Celda() {
-        hechos = new HashMap<>();
+    /**
+     * Constructor de la clase
+     * 
+     * @param tabla Tabla de hechos del cubo
+     * @param filas Filas de la tabla que agrupa la celda
+     */
+    public Celda(TablaHechos tabla, int[] filas) {
+        this.tabla = tabla;
+        this.filas = filas;
+        this.version = tabla.getVersion();
     }
 
     @Override
     public String toString() {
-        return "Celda [hechos=" + hechos.keySet() + "]";
+        return "Celda [filas=" + filas.length + ", tabla=" + tabla + "]";
     }
 
     /**
@@ -47,45 +55,128 @@ public class Celda {
      * @return Lista de valores del hecho
      */
     public List<Double> getValores(String nombreHecho) {
-        if (!hechos.containsKey(nombreHecho)) {
-            return new ArrayList<>();
+        ColumnaHechos columna = getColumna(nombreHecho);
+        List<Double> valores = new ArrayList<>(filas.length);
+        if (columna == null) {
+            return valores;
+        }
+        try {
+            for (int fila : filas) {
+                valores.add(columna.get(fila));
+            }
+        } catch (IllegalStateException e) {
+            verificarVersion();
+            throw e;
+        }
+        return valores;
+    }
+
+    /**
+     * Calcula una medida sobre los valores de un hecho, recorriendo la columna
+     * primitiva de la tabla sin materializar la lista de valores
+     * 
+     * @param nombreHecho Nombre del hecho
+     * @param medida      Medida a calcular
+     * @return Valor de la medida
+     */
+    public double calcular(String nombreHecho, Medida medida) {
+        ColumnaHechos columna = getColumna(nombreHecho);
+        if (columna == null) {
+            return medida.calcular(new ArrayList<>());
+        }
+        try {
+            if (isContigua()) {
+                return columna.calcular(medida, filas[0], filas[0] + filas.length);
+            }
+            return columna.calcular(medida, filas);
+        } catch (IllegalStateException e) {
+            verificarVersion();
+            throw e;
         }
-        return hechos.get(nombreHecho);
     }
 
     /**
-     * Agrega un valor a un hecho
+     * Obtiene la columna de un hecho en la numeración de filas de la celda.
+     * Columnas y versión se leen juntas (ver TablaHechos.Columnas), así que una
+     * compactación concurrente no puede dar una columna nueva para las filas
+     * viejas. Si la compactación termina durante la lectura, la columna vieja
+     * sigue siendo válida hasta que se libera; una lectura que falla por eso se
+     * vuelve a verificar para informar la compactación.
      * 
      * @param nombreHecho Nombre del hecho
-     * @param valor       Valor a agregar
+     * @return Columna del hecho, o null si la tabla no lo tiene
+     */
+    private ColumnaHechos getColumna(String nombreHecho) {
+        TablaHechos.Columnas columnas = tabla.getColumnas();
+        verificarVersion(columnas.getVersion());
+        return columnas.get(nombreHecho);
+    }
+
+    /**
+     * Indica si las filas de la celda forman un rango contiguo, en cuyo caso las
+     * medidas recorren la columna sin pasar por el vector de filas. Se calcula
+     * una sola vez por celda.
+     */
+    private boolean isContigua() {
+        if (contigua == 0) {
+            boolean rango = filas.length > 0;
+            for (int i = 1; rango && i < filas.length; i++) {
+                rango = filas[i] == filas[0] + i;
+            }
+            contigua = rango ? (byte) 1 : (byte) -1;
+        }
+        return contigua > 0;
+    }
+
+    /**
+     * Verifica que las filas de la celda sigan correspondiendo a la tabla: al
+     * compactar el cubo (ver Cubo.compactar()) las filas se renumeran
      */
-    public void agregarHecho(String nombreHecho, Double valor) {
-        if (!hechos.containsKey(nombreHecho)) {
-            hechos.put(nombreHecho, new ArrayList<>());
+    private void verificarVersion() {
+        verificarVersion(tabla.getVersion());
+    }
+
+    private void verificarVersion(int versionTabla) {
+        if (version != versionTabla) {
+            throw new IllegalStateException("El cubo se compactó después de obtener la celda; hay que volver a consultarla");
         }
-        hechos.get(nombreHecho).add(valor);
     }
 
     /**
-     * Agrupa varias celdas en una sola
+     * Agrupa varias celdas de una misma tabla en una sola
      * 
      * @param celdas Lista de celdas a agrupar
      * @return Celda agrupada
      */
     public static Celda agrupar(List<Celda> celdas) {
-        Celda nuevaCelda = new Celda();
+        if (celdas.isEmpty()) {
+            throw new IllegalArgumentException("No hay celdas para agrupar");
+        }
+        TablaHechos tabla = celdas.get(0).tabla;
+        int total = 0;
         for (Celda celda : celdas) {
-            for (String nombreHecho : celda.hechos.keySet()) {
-                for (Double valor : celda.hechos.get(nombreHecho)) {
-                    nuevaCelda.agregarHecho(nombreHecho, valor);
-                }
+            if (celda.tabla != tabla) {
+                throw new IllegalArgumentException("Solo se pueden agrupar celdas de una misma tabla de hechos");
             }
+            celda.verificarVersion();
+            total += celda.filas.length;
         }
-        return nuevaCelda;
+        int[] filas = new int[total];
+        int k = 0;
+        for (Celda celda : celdas) {
+            System.arraycopy(celda.filas, 0, filas, k, celda.filas.length);
+            k += celda.filas.length;
+        }
+        Arrays.sort(filas);
+        return new Celda(tabla, filas);
+    }
+
+    public int[] getFilas() {
+        return filas;
     }
 
-    public Map<String, List<Double>> getHechos() {
-        return hechos;
+    public int getCantidadFilas() {
+        return filas.length;
     }
 
-}
\ No newline at end of file
+}
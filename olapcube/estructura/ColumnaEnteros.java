@@ -0,0 +1,180 @@
+package olapcube.estructura;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Columna de enteros indexada por fila de hechos, por ejemplo el miembro de
+ * cada fila en una dimensión. Se guarda en un arreglo que crece al escribir
+ * filas nuevas o, si se indica una arena, en bloques fuera del heap.
+ */
+final class ColumnaEnteros {
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private int[] valores; // Valores de la columna en el heap (null si está fuera del heap)
+    private ArenaCubo arena; // Arena de la que se reservan los bloques (null si la columna está en el heap)
+    private IntBuffer[] bloques; // Bloques de valores fuera del heap (null si está en el heap o ya se liberó)
+    private int cantidadBloques; // Bloques ya reservados
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param arena Arena de la columna (null para guardarla en el heap)
+     */
+    ColumnaEnteros(ArenaCubo arena) {
+        this.arena = arena;
+        if (arena != null) {
+            this.bloques = new IntBuffer[16];
+        } else {
+            this.valores = new int[CAPACIDAD_INICIAL];
+        }
+    }
+
+    /**
+     * Obtiene el valor de una fila ya escrita
+     * 
+     * @param fila Índice de la fila
+     * @return Valor de la fila
+     */
+    int get(int fila) {
+        if (valores != null) {
+            return valores[fila];
+        }
+        return getBloques()[fila >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE].get(fila & ArenaCubo.MASCARA_BLOQUE);
+    }
+
+    /**
+     * Obtiene el valor de una fila desde fuera del bloqueo del cubo: si la
+     * columna está fuera del heap, registra la lectura en la arena para que
+     * cerrar el cubo no libere los bloques mientras tanto
+     * 
+     * @param fila Índice de la fila
+     * @return Valor de la fila
+     */
+    int getRegistrado(int fila) {
+        if (arena == null) {
+            return get(fila);
+        }
+        arena.registrarLectura();
+        try {
+            return get(fila);
+        } finally {
+            arena.terminarLectura();
+        }
+    }
+
+    /**
+     * Escribe el valor de una fila, agrandando la columna si hace falta
+     * 
+     * @param fila  Índice de la fila
+     * @param valor Valor a escribir
+     */
+    void set(int fila, int valor) {
+        asegurarCapacidad(fila + 1);
+        if (valores != null) {
+            valores[fila] = valor;
+        } else {
+            bloques[fila >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE].put(fila & ArenaCubo.MASCARA_BLOQUE, valor);
+        }
+    }
+
+    /**
+     * Escribe un rango consecutivo de filas
+     * 
+     * @param origen   Valores a escribir
+     * @param inicio   Primera fila a escribir
+     * @param cantidad Cantidad de valores
+     */
+    void copiar(int[] origen, int inicio, int cantidad) {
+        asegurarCapacidad(inicio + cantidad);
+        if (valores != null) {
+            System.arraycopy(origen, 0, valores, inicio, cantidad);
+            return;
+        }
+        for (int i = 0; i < cantidad;) {
+            int fila = inicio + i;
+            int enBloque = Math.min(cantidad - i, ArenaCubo.ELEMENTOS_POR_BLOQUE - (fila & ArenaCubo.MASCARA_BLOQUE));
+            bloques[fila >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE].duplicate()
+                    .position(fila & ArenaCubo.MASCARA_BLOQUE)
+                    .put(origen, i, enBloque);
+            i += enBloque;
+        }
+    }
+
+    /**
+     * Escribe las primeras filas de la columna en formato binario
+     * 
+     * @param salida   Flujo de salida
+     * @param cantidad Cantidad de filas
+     * @throws IOException Si falla la escritura
+     */
+    void escribir(DataOutputStream salida, int cantidad) throws IOException {
+        for (int fila = 0; fila < cantidad; fila++) {
+            salida.writeInt(get(fila));
+        }
+    }
+
+    /**
+     * Lee una columna escrita con escribir(), avanzando la posición del buffer
+     * 
+     * @param entrada  Buffer de entrada
+     * @param cantidad Cantidad de filas
+     * @param arena    Arena de la columna (null para guardarla en el heap)
+     * @return Columna leída
+     */
+    static ColumnaEnteros leer(ByteBuffer entrada, int cantidad, ArenaCubo arena) {
+        ColumnaEnteros columna = new ColumnaEnteros(arena);
+        IntBuffer origen = entrada.asIntBuffer();
+        if (arena == null) {
+            columna.valores = new int[Math.max(cantidad, 1)];
+            origen.get(columna.valores, 0, cantidad);
+        } else {
+            columna.asegurarCapacidad(cantidad);
+            for (int desde = 0; desde < cantidad; desde += ArenaCubo.ELEMENTOS_POR_BLOQUE) {
+                origen.limit(Math.min(cantidad, desde + ArenaCubo.ELEMENTOS_POR_BLOQUE)).position(desde);
+                columna.bloques[desde >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE].duplicate().put(origen);
+            }
+        }
+        entrada.position(entrada.position() + cantidad * Integer.BYTES);
+        return columna;
+    }
+
+    /**
+     * Quita a la columna sus bloques fuera del heap antes de que el cubo libere
+     * la arena; desde entonces leerla lanza IllegalStateException
+     */
+    void liberar() {
+        if (arena != null) {
+            bloques = null;
+        }
+    }
+
+    private void asegurarCapacidad(int capacidad) {
+        if (valores != null) {
+            if (capacidad > valores.length) {
+                valores = Arrays.copyOf(valores, Math.max(valores.length * 2, capacidad));
+            }
+            return;
+        }
+        IntBuffer[] bloques = getBloques();
+        int necesarios = (capacidad + ArenaCubo.MASCARA_BLOQUE) >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE;
+        if (necesarios > bloques.length) {
+            bloques = Arrays.copyOf(bloques, Math.max(bloques.length * 2, necesarios));
+        }
+        for (; cantidadBloques < necesarios; cantidadBloques++) {
+            bloques[cantidadBloques] = arena.reservarEnteros();
+        }
+        this.bloques = bloques;
+    }
+
+    private IntBuffer[] getBloques() {
+        IntBuffer[] bloques = this.bloques;
+        if (bloques == null) {
+            throw new IllegalStateException("La memoria del cubo ya se liberó");
+        }
+        return bloques;
+    }
+}
@@ -0,0 +1,298 @@
+package olapcube.estructura;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import olapcube.metricas.Medida;
+
+/**
+ * Columna de valores de un hecho almacenada en un arreglo primitivo que crece
+ * a medida que se agregan filas. La posición de cada valor en el arreglo es el
+ * índice de la fila (celda) en el cubo.
+ * 
+ * Una columna cargada desde un snapshot referencia la región mapeada del
+ * archivo y solo copia los valores al arreglo la primera vez que se usa.
+ * 
+ * Una columna fuera del heap (ver ArenaCubo) guarda los valores en bloques
+ * directos en lugar del arreglo; las medidas la recorren con calcular() o con
+ * acumuladores, y getValores() no está disponible. Los métodos públicos que la
+ * leen registran la lectura en la arena, porque pueden llamarse sin el bloqueo
+ * del cubo (por ejemplo desde una celda) mientras otro hilo lo cierra.
+ */
+public class ColumnaHechos {
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private volatile double[] valores; // Valores de la columna, indexados por fila (null si aún no se cargó)
+    private DoubleBuffer origen; // Región mapeada de la que se cargan los valores (null si ya se cargó)
+    private int cantidad; // Cantidad de filas efectivamente cargadas
+    private volatile int signo; // 1 si no hay valores negativos, -1 si los hay, 0 sin calcular
+    private ArenaCubo arena; // Arena de la que se reservan los bloques (null si la columna está en el heap)
+    private volatile DoubleBuffer[] bloques; // Bloques de valores fuera del heap (null si está en el heap o ya se liberó)
+
+    public ColumnaHechos() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param capacidad Capacidad inicial del arreglo
+     */
+    public ColumnaHechos(int capacidad) {
+        this.valores = new double[Math.max(capacidad, 1)];
+        this.cantidad = 0;
+    }
+
+    /**
+     * Constructor de una columna a partir de un arreglo ya cargado
+     * 
+     * @param valores  Valores de la columna (se usa sin copiar)
+     * @param cantidad Cantidad de filas válidas
+     */
+    ColumnaHechos(double[] valores, int cantidad) {
+        this.valores = valores;
+        this.cantidad = cantidad;
+    }
+
+    /**
+     * Constructor de una columna vacía fuera del heap
+     * 
+     * @param arena Arena de la que se reservan los bloques
+     */
+    ColumnaHechos(ArenaCubo arena) {
+        this.arena = arena;
+        this.bloques = new DoubleBuffer[16];
+        this.cantidad = 0;
+    }
+
+    /**
+     * Constructor de una columna respaldada por una región de un archivo mapeado
+     * 
+     * @param origen   Valores de la columna
+     * @param cantidad Cantidad de filas
+     * @param arena    Arena a la que se copian los valores al cargarlos (null
+     *                 para copiarlos a un arreglo)
+     */
+    ColumnaHechos(DoubleBuffer origen, int cantidad, ArenaCubo arena) {
+        this.origen = origen;
+        this.cantidad = cantidad;
+        this.arena = arena;
+    }
+
+    /**
+     * Agrega un valor al final de la columna
+     * 
+     * @param valor Valor a agregar
+     */
+    public void agregar(double valor) {
+        if (arena != null) {
+            agregarFueraDeHeap(valor);
+            return;
+        }
+        double[] valores = getValores();
+        if (cantidad == valores.length) {
+            valores = Arrays.copyOf(valores, Math.max(valores.length * 2, CAPACIDAD_INICIAL));
+            this.valores = valores;
+        }
+        valores[cantidad++] = valor;
+        if (valor < 0) {
+            signo = -1;
+        }
+    }
+
+    /**
+     * Indica si la columna no tiene valores negativos. Se calcula la primera vez
+     * y se actualiza al agregar valores.
+     * 
+     * @return true si todos los valores son mayores o iguales a cero
+     */
+    public boolean isNoNegativa() {
+        if (signo == 0) {
+            boolean noNegativa = true;
+            if (arena != null) {
+                arena.registrarLectura();
+                try {
+                    for (int fila = 0; fila < cantidad && noNegativa; fila++) {
+                        noNegativa = !(leer(fila) < 0);
+                    }
+                } finally {
+                    arena.terminarLectura();
+                }
+            } else {
+                double[] valores = getValores();
+                for (int fila = 0; fila < cantidad && noNegativa; fila++) {
+                    noNegativa = !(valores[fila] < 0);
+                }
+            }
+            signo = noNegativa ? 1 : -1;
+        }
+        return signo > 0;
+    }
+
+    /**
+     * Obtiene el valor de una fila
+     * 
+     * @param fila Índice de la fila
+     * @return Valor de la columna en esa fila
+     */
+    public double get(int fila) {
+        if (fila < 0 || fila >= cantidad) {
+            throw new IndexOutOfBoundsException("Fila fuera de rango: " + fila);
+        }
+        if (arena == null) {
+            return getValores()[fila];
+        }
+        arena.registrarLectura();
+        try {
+            return leer(fila);
+        } finally {
+            arena.terminarLectura();
+        }
+    }
+
+    public int size() {
+        return cantidad;
+    }
+
+    public boolean isFueraDeHeap() {
+        return arena != null;
+    }
+
+    /**
+     * Devuelve el arreglo interno de la columna (sin copiar). Solo las primeras
+     * size() posiciones son válidas y no debe modificarse.
+     * 
+     * @return Arreglo con los valores de la columna
+     * @throws IllegalStateException Si la columna está fuera del heap
+     */
+    public double[] getValores() {
+        double[] valores = this.valores;
+        if (valores != null) {
+            return valores;
+        }
+        if (arena != null) {
+            throw new IllegalStateException("La columna está fuera del heap: usar get() o calcular()");
+        }
+        return cargar();
+    }
+
+    /**
+     * Calcula una medida sobre las filas indicadas de la columna
+     * 
+     * @param medida Medida a calcular
+     * @param filas  Filas a considerar
+     * @return Medida calculada
+     */
+    public double calcular(Medida medida, int[] filas) {
+        if (arena == null) {
+            return medida.calcular(getValores(), filas);
+        }
+        arena.registrarLectura();
+        try {
+            return medida.calcular(getBloques(), ArenaCubo.DESPLAZAMIENTO_BLOQUE, filas);
+        } finally {
+            arena.terminarLectura();
+        }
+    }
+
+    /**
+     * Calcula una medida sobre un rango contiguo de filas de la columna
+     * 
+     * @param medida Medida a calcular
+     * @param desde  Primera fila (incluida)
+     * @param hasta  Última fila (excluida)
+     * @return Medida calculada
+     */
+    public double calcular(Medida medida, int desde, int hasta) {
+        if (arena == null) {
+            return medida.calcular(getValores(), desde, hasta);
+        }
+        arena.registrarLectura();
+        try {
+            return medida.calcular(getBloques(), ArenaCubo.DESPLAZAMIENTO_BLOQUE, desde, hasta);
+        } finally {
+            arena.terminarLectura();
+        }
+    }
+
+    /**
+     * Lee el valor de una fila de una columna fuera del heap, sin verificar el
+     * rango. Es el acceso por fila del agrupador, que corre con el bloqueo de
+     * lectura del cubo tomado.
+     * 
+     * @param fila Índice de la fila (menor que size())
+     * @return Valor de la columna en esa fila
+     */
+    double leer(int fila) {
+        return getBloques()[fila >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE].get(fila & ArenaCubo.MASCARA_BLOQUE);
+    }
+
+    /**
+     * Quita a la columna sus bloques fuera del heap antes de que el cubo libere
+     * la arena; desde entonces leerla lanza IllegalStateException
+     */
+    void liberar() {
+        if (arena != null) {
+            bloques = null;
+            origen = null;
+        }
+    }
+
+    private void agregarFueraDeHeap(double valor) {
+        DoubleBuffer[] bloques = getBloques();
+        int bloque = cantidad >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE;
+        if (bloque == bloques.length) {
+            bloques = Arrays.copyOf(bloques, bloques.length * 2);
+        }
+        if (bloques[bloque] == null) {
+            bloques[bloque] = arena.reservarDoubles();
+        }
+        bloques[bloque].put(cantidad & ArenaCubo.MASCARA_BLOQUE, valor);
+        this.bloques = bloques;
+        cantidad++;
+        if (valor < 0) {
+            signo = -1;
+        }
+    }
+
+    private DoubleBuffer[] getBloques() {
+        DoubleBuffer[] bloques = this.bloques;
+        if (bloques != null) {
+            return bloques;
+        }
+        if (origen == null) {
+            throw new IllegalStateException("La memoria del cubo ya se liberó");
+        }
+        return cargarFueraDeHeap();
+    }
+
+    private synchronized DoubleBuffer[] cargarFueraDeHeap() {
+        if (bloques == null && origen != null) {
+            int cantidadBloques = (cantidad + ArenaCubo.MASCARA_BLOQUE) >>> ArenaCubo.DESPLAZAMIENTO_BLOQUE;
+            DoubleBuffer[] cargados = new DoubleBuffer[Math.max(cantidadBloques, 1)];
+            DoubleBuffer fuente = origen.duplicate();
+            for (int bloque = 0; bloque < cargados.length; bloque++) {
+                cargados[bloque] = arena.reservarDoubles();
+                int desde = bloque << ArenaCubo.DESPLAZAMIENTO_BLOQUE;
+                fuente.limit(Math.min(cantidad, desde + ArenaCubo.ELEMENTOS_POR_BLOQUE)).position(desde);
+                cargados[bloque].put(fuente).clear();
+            }
+            bloques = cargados;
+            origen = null;
+        }
+        if (bloques == null) {
+            throw new IllegalStateException("La memoria del cubo ya se liberó");
+        }
+        return bloques;
+    }
+
+    private synchronized double[] cargar() {
+        if (valores == null) {
+            double[] cargados = new double[Math.max(cantidad, 1)];
+            origen.duplicate().get(cargados, 0, cantidad);
+            valores = cargados;
+            origen = null;
+        }
+        return valores;
+    }
+}
@@ -0,0 +1,112 @@
+package olapcube.estructura;
+
+import java.util.List;
+
+import olapcube.metricas.Medida;
+
+/**
+ * Consulta sobre un cubo con cualquier cantidad de filtros (dimensión, nivel y
+ * miembros a conservar) y de dimensiones de agrupación, cada una en el nivel
+ * que se indique. Reemplaza a las variantes de getCelda y dice con una
+ * cantidad fija de dimensiones.
+ * 
+ * Ejemplo:
+ * 
+ * <pre>
+ * List&lt;Grupo&gt; grupos = cubo.consultar()
+ *         .filtrar("Fechas", 0, "2017", "2018")
+ *         .filtrar("POS", 0, "Europe")
+ *         .agruparPor("Productos", 1)
+ *         .medir("valor_total", "Suma")
+ *         .ordenarPor(0, true)
+ *         .limitar(20)
+ *         .ejecutar();
+ * </pre>
+ * 
+ * Los filtros no modifican el cubo: se registran en una vista (ver
+ * Cubo.slice()) como miembros conservados por nivel, y al ejecutar se
+ * intersectan las filas de todos los niveles filtrados de una sola vez. La
+ * consulta se arma desde un solo hilo (con los métodos de
+ * EspecificacionConsulta); el cubo puede recibir muchas consultas a la vez.
+ */
+public class ConsultaCubo extends EspecificacionConsulta<ConsultaCubo> {
+    private Cubo cubo; // Cubo consultado
+
+    ConsultaCubo(Cubo cubo) {
+        this.cubo = cubo;
+    }
+
+    @Override
+    protected ConsultaCubo esta() {
+        return this;
+    }
+
+    @Override
+    protected Medida buscarMedida(String nombreMedida) {
+        return cubo.getMedida(nombreMedida);
+    }
+
+    @Override
+    protected void verificarHecho(String hecho) {
+        if (!cubo.getNombresHechos().contains(hecho)) {
+            throw new IllegalArgumentException("Hecho no encontrado: " + hecho);
+        }
+    }
+
+    /**
+     * Ejecuta la consulta
+     * 
+     * @return Grupos no vacíos: con el resultado de cada medida, o con su celda
+     *         si no se pidieron medidas. Ordenados por los valores de las
+     *         dimensiones de agrupación, o por el orden indicado y con su
+     *         límite.
+     */
+    public List<Grupo> ejecutar() {
+        List<String> dimensionesGrupo = getDimensionesGrupo();
+        List<Integer> nivelesGrupo = getNivelesGrupo();
+        if (dimensionesGrupo.isEmpty()) {
+            throw new IllegalStateException("La consulta no tiene dimensiones de agrupación; usar celda()");
+        }
+        verificarOrden();
+        Cubo vista = crearVista();
+        Dimension[] dimensiones = new Dimension[dimensionesGrupo.size()];
+        for (int i = 0; i < dimensiones.length; i++) {
+            // Cada dimensión de agrupación es una copia, para poder agrupar por la misma en dos niveles
+            dimensiones[i] = vista.getDimension(dimensionesGrupo.get(i)).copiar();
+            if (nivelesGrupo.get(i) >= 0) {
+                dimensiones[i].setNivelActual(nivelesGrupo.get(i));
+            }
+        }
+        if (getMedidas().isEmpty()) {
+            return vista.agrupar(dimensiones);
+        }
+        String[] hechos = getHechos().toArray(new String[0]);
+        Medida[] medidas = getMedidas().toArray(new Medida[0]);
+        if (getOrden() != null) {
+            return vista.agregar(hechos, medidas, getOrden(), dimensiones);
+        }
+        return vista.agregar(hechos, medidas, dimensiones);
+    }
+
+    /**
+     * Obtiene la celda con todas las filas que cumplen los filtros
+     * 
+     * @return Celda con las filas filtradas
+     */
+    public Celda celda() {
+        return crearVista().getCeldaFiltrada();
+    }
+
+    /**
+     * Crea una vista del cubo con los filtros de la consulta
+     */
+    private Cubo crearVista() {
+        Cubo vista = cubo.copiar();
+        for (int i = 0; i < getDimensionesFiltro().size(); i++) {
+            Dimension dimension = vista.getDimension(getDimensionesFiltro().get(i));
+            int nivel = getNivelesFiltro().get(i) >= 0 ? getNivelesFiltro().get(i) : dimension.getNivelActual();
+            dimension.filtrar(nivel, getValoresFiltro().get(i));
+        }
+        return vista;
+    }
+}
@@ -1,33 +1,59 @@
 package olapcube.estructura;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
 
 import olapcube.Proyeccion;
 import olapcube.configuration.ConfigCubo;
+import olapcube.configuration.ConfigCuboide;
 import olapcube.configuration.ConfigDimension;
 import olapcube.metricas.Medida;
 import olapcube.metricas.RegistroMedida;
+import olapcube.readers.CursorFilas;
+import olapcube.readers.DatasetReader;
 
 /**
  * Representa un cubo OLAP.
  */
-public class Cubo {
+public class Cubo implements AutoCloseable {
+    private static final int FILAS_POR_BLOQUE = 1 << 16; // Filas por bloque en la construcción paralela
+    private static final char SEPARADOR_CLAVE = '\u0000'; // Separa las partes de la clave de una consulta
+
     private Map<String, Dimension> dimensiones; // Mapeo de nombres de dimensión al objeto de la dimensión
     private Map<String, Medida> medidas; // Mapeo de nombres de medida al objeto de la medida
-    private List<Celda> celdas; // Lista de celdas del cubo
+    private TablaHechos hechos; // Tabla columnar con los valores de los hechos (una fila por celda)
     private List<String> nombresHechos; // Nombres de los hechos (columnas con valores del dataset de hechos)
+    private List<Cuboide> cuboides; // Agregaciones materializadas al construir el cubo
+    private ConfigCubo config; // Configuración con la que se construyó el cubo
+    private ReentrantReadWriteLock bloqueo; // Aísla las consultas de los lotes anexados (compartido con las copias)
+    private CacheConsultas cache; // Resultados de consultas de agregación (compartida con las copias)
+    private ArenaCubo arena; // Memoria fuera del heap de los hechos (null si están en el heap; compartida con las copias)
+    private ParticionesHechos particiones; // Particiones de los hechos (null si el cubo no está particionado; compartidas con las copias)
 
     private Cubo() {
         dimensiones = new HashMap<>();
-        celdas = new ArrayList<>();
         nombresHechos = new ArrayList<>();
+        hechos = new TablaHechos(nombresHechos);
         medidas = RegistroMedida.getMedidas();
-
+        cuboides = new ArrayList<>();
+        bloqueo = new ReentrantReadWriteLock();
+        cache = new CacheConsultas();
     }
 
     /**
@@ -38,73 +64,551 @@ public class Cubo {
      */
     public static Cubo crearFromConfig(ConfigCubo config) {
         Cubo cubo = new Cubo();
+        cubo.config = config;
+        cubo.arena = config.isFueraDeHeap() ? new ArenaCubo() : null;
 
         // Creación de dimensiones
         for (ConfigDimension configDimension : config.getDimensiones()) {
-            cubo.agregarDimension(Dimension.crear(configDimension));
+            cubo.agregarDimension(Dimension.crear(configDimension, cubo.arena));
         }
 
         // Creación de hechos
         cubo.nombresHechos = List.of(config.getHechos().getNombresHechos());
+        cubo.hechos = new TablaHechos(cubo.nombresHechos, cubo.arena);
+
+        int[] columnasHechos = new int[cubo.nombresHechos.size()];
+        for (int i = 0; i < columnasHechos.length; i++) {
+            columnasHechos[i] = config.getHechos().getColumnaHecho(cubo.nombresHechos.get(i));
+        }
 
-        int indiceCelda = 0;
-        for (String[] datos : config.getHechos().getDatasetReader().read()) {
-            Celda celda = new Celda();
-            for (String hecho : cubo.nombresHechos) {
-                int columnaHecho = config.getHechos().getColumnaHecho(hecho);
-                celda.agregarHecho(hecho, Double.parseDouble(datos[columnaHecho]));
+        double[] valores = new double[columnasHechos.length];
+        IntUnaryOperator particion = null;
+        if (config.isParticionado()) {
+            Dimension dimensionParticion = cubo.getDimension(config.getDimensionParticion());
+            int nivelParticion = config.getNivelParticion();
+            particion = fk -> dimensionParticion.getOrdinalNivel(fk, nivelParticion);
+        }
+        try (CursorFilas cursor = CursorHechos.abrir(config, config.getHechos().getDatasetReader(), particion)) {
+            while (cursor.siguiente()) {
+                for (int i = 0; i < columnasHechos.length; i++) {
+                    valores[i] = cursor.getDouble(columnasHechos[i]);
+                }
+                int indiceCelda = cubo.hechos.agregarFila(valores);
+
+                // Agrega la celda a las dimensiones
+                for (Dimension dimension : cubo.dimensiones.values()) {
+                    int fk = cursor.getInt(dimension.getColumnaFkHechos());
+                    dimension.agregarHecho(fk, indiceCelda);
+                }
             }
-            cubo.agregarCelda(celda);
+        }
+
+        // Particiones de los hechos (opcional)
+        cubo.crearParticiones();
+
+        // Materialización de cuboides (opcional)
+        cubo.materializarCuboides(config.getCuboides());
+
+        return cubo;
+    }
+
+    /**
+     * Método constructor que permite crear un cubo en paralelo usando el pool
+     * común de fork-join
+     * 
+     * @param config Configuración del cubo
+     * @return Cubo
+     */
+    public static Cubo crearFromConfigParalelo(ConfigCubo config) {
+        return crearFromConfigParalelo(config, ForkJoinPool.commonPool());
+    }
 
-            // Agrega la celda a las dimensiones
-            for (Dimension dimension : cubo.dimensiones.values()) {
-                int columnaFkHechos = dimension.getColumnaFkHechos();
-                int fk = Integer.parseInt(datos[columnaFkHechos]);
-                dimension.agregarHecho(fk, indiceCelda);
+    /**
+     * Método constructor que permite crear un cubo en paralelo.
+     * 
+     * Las dimensiones se cargan mientras se lee el dataset de hechos. Las filas
+     * de hechos se leen en bloques consecutivos y, a medida que se completan,
+     * cada bloque se procesa en el pool: se resuelven sus claves foráneas y se
+     * arma un índice parcial por dimensión. Al final los índices parciales se
+     * combinan en el orden de los bloques, de modo que los índices de fila y el
+     * cubo resultante son los mismos que con crearFromConfig.
+     * 
+     * @param config Configuración del cubo
+     * @param pool   Pool en el que se ejecutan las tareas
+     * @return Cubo
+     */
+    public static Cubo crearFromConfigParalelo(ConfigCubo config, ForkJoinPool pool) {
+        Cubo cubo = new Cubo();
+        cubo.config = config;
+        ArenaCubo arena = config.isFueraDeHeap() ? new ArenaCubo() : null;
+        cubo.arena = arena;
+
+        // Las dimensiones se cargan mientras se lee el dataset de hechos
+        List<ConfigDimension> configDimensiones = List.of(config.getDimensiones());
+        List<CompletableFuture<Dimension>> dimensionesPendientes = new ArrayList<>();
+        for (ConfigDimension configDimension : configDimensiones) {
+            dimensionesPendientes.add(CompletableFuture.supplyAsync(() -> Dimension.crear(configDimension, arena), pool));
+        }
+        CompletableFuture<Dimension[]> dimensionesCargadas = CompletableFuture
+                .allOf(dimensionesPendientes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> dimensionesPendientes.stream().map(CompletableFuture::join).toArray(Dimension[]::new));
+
+        cubo.nombresHechos = List.of(config.getHechos().getNombresHechos());
+        cubo.hechos = new TablaHechos(cubo.nombresHechos, arena);
+        int[] columnasHechos = new int[cubo.nombresHechos.size()];
+        for (int i = 0; i < columnasHechos.length; i++) {
+            columnasHechos[i] = config.getHechos().getColumnaHecho(cubo.nombresHechos.get(i));
+        }
+
+        // Lectura de los hechos por bloques: los valores se guardan en la tabla y
+        // cada bloque de claves foráneas se indexa en el pool
+        List<CompletableFuture<Dimension.IndiceParcial[]>> parcialesPendientes = new ArrayList<>();
+        double[] valores = new double[columnasHechos.length];
+        IntUnaryOperator particion = null;
+        if (config.isParticionado()) {
+            // Para agrupar las filas por partición hay que esperar a la dimensión de partición
+            int d = 0;
+            while (d < configDimensiones.size()
+                    && !configDimensiones.get(d).getNombre().equals(config.getDimensionParticion())) {
+                d++;
+            }
+            if (d == configDimensiones.size()) {
+                throw new IllegalArgumentException("Dimensión no encontrada: " + config.getDimensionParticion());
+            }
+            Dimension dimensionParticion = esperar(dimensionesPendientes.get(d));
+            int nivelParticion = config.getNivelParticion();
+            particion = fk -> dimensionParticion.getOrdinalNivel(fk, nivelParticion);
+        }
+        try (CursorFilas cursor = CursorHechos.abrir(config, config.getHechos().getDatasetReader(), particion)) {
+            boolean quedanFilas = true;
+            while (quedanFilas) {
+                int inicio = cubo.hechos.getCantidadFilas();
+                int[][] fks = new int[configDimensiones.size()][FILAS_POR_BLOQUE];
+                int cantidad = 0;
+                while (cantidad < FILAS_POR_BLOQUE && (quedanFilas = cursor.siguiente())) {
+                    for (int i = 0; i < columnasHechos.length; i++) {
+                        valores[i] = cursor.getDouble(columnasHechos[i]);
+                    }
+                    cubo.hechos.agregarFila(valores);
+                    for (int d = 0; d < fks.length; d++) {
+                        fks[d][cantidad] = cursor.getInt(configDimensiones.get(d).getColumnaFkHechos());
+                    }
+                    cantidad++;
+                }
+                if (cantidad > 0) {
+                    int cantidadBloque = cantidad;
+                    parcialesPendientes.add(dimensionesCargadas.thenApplyAsync(dims -> {
+                        Dimension.IndiceParcial[] parciales = new Dimension.IndiceParcial[dims.length];
+                        for (int d = 0; d < dims.length; d++) {
+                            parciales[d] = dims[d].crearIndiceParcial(inicio, cantidadBloque);
+                            for (int fila = 0; fila < cantidadBloque; fila++) {
+                                parciales[d].agregarHecho(fks[d][fila], inicio + fila);
+                            }
+                        }
+                        return parciales;
+                    }, pool));
+                }
             }
+        }
+
+        Dimension[] dims = esperar(dimensionesCargadas);
+        for (Dimension dimension : dims) {
+            cubo.agregarDimension(dimension);
+        }
+        List<Dimension.IndiceParcial[]> parcialesPorBloque = new ArrayList<>();
+        for (Future<Dimension.IndiceParcial[]> resultado : parcialesPendientes) {
+            parcialesPorBloque.add(esperar(resultado));
+        }
 
-            indiceCelda++;
+        // Combinación de los índices parciales, una tarea por dimensión
+        List<Callable<Void>> combinaciones = new ArrayList<>();
+        for (int d = 0; d < dims.length; d++) {
+            int dimension = d;
+            combinaciones.add(() -> {
+                List<Dimension.IndiceParcial> parciales = new ArrayList<>();
+                for (Dimension.IndiceParcial[] parcialesBloque : parcialesPorBloque) {
+                    parciales.add(parcialesBloque[dimension]);
+                }
+                dims[dimension].combinar(parciales);
+                return null;
+            });
+        }
+        for (Future<Void> resultado : pool.invokeAll(combinaciones)) {
+            esperar(resultado);
         }
 
+        // Particiones de los hechos (opcional)
+        cubo.crearParticiones();
+
+        // Materialización de cuboides (opcional)
+        cubo.materializarCuboides(config.getCuboides());
+
         return cubo;
     }
 
-    private void agregarDimension(Dimension dim1) {
-        dimensiones.put(dim1.getNombre(), dim1);
+    /**
+     * Espera el resultado de una tarea, propagando sus errores como excepciones
+     * no chequeadas
+     * 
+     * @param tarea Tarea a esperar
+     * @return Resultado de la tarea
+     */
+    private static <T> T esperar(Future<T> tarea) {
+        try {
+            return tarea.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Método constructor que permite crear un cubo usando un snapshot binario
+     * como caché: si el snapshot existe y corresponde a la configuración se carga
+     * desde él; si no, se construye desde los datasets y se guarda el snapshot.
+     * Un snapshot que no se puede cargar (de otra configuración, truncado o
+     * dañado) se descarta y se reemplaza.
+     * 
+     * @param config       Configuración del cubo
+     * @param rutaSnapshot Ruta del archivo de snapshot
+     * @return Cubo
+     */
+    public static Cubo crearFromConfig(ConfigCubo config, String rutaSnapshot) {
+        if (Files.exists(Paths.get(rutaSnapshot))) {
+            try {
+                return crearFromSnapshot(config, rutaSnapshot);
+            } catch (RuntimeException e) {
+                // Un snapshot dañado puede fallar en cualquier punto de la lectura (mapeo fuera del archivo,
+                // longitudes inválidas, buffers agotados): en todos los casos se reconstruye el cubo
+                System.getLogger(Cubo.class.getName()).log(System.Logger.Level.WARNING,
+                        "Snapshot descartado: " + rutaSnapshot, e);
+            }
+        }
+        Cubo cubo = crearFromConfig(config);
+        cubo.guardarSnapshot(rutaSnapshot);
+        return cubo;
+    }
+
+    /**
+     * Método constructor que permite cargar un cubo desde un snapshot binario
+     * guardado con guardarSnapshot(). El archivo se mapea en memoria, por lo que
+     * la carga no depende del tamaño de las columnas de hechos.
+     * 
+     * @param config       Configuración con la que debe coincidir el snapshot
+     * @param rutaSnapshot Ruta del archivo de snapshot
+     * @return Cubo
+     * @throws IllegalStateException Si el snapshot no es válido o no corresponde
+     *                               a la configuración (por ejemplo, porque
+     *                               cambió algún dataset)
+     */
+    public static Cubo crearFromSnapshot(ConfigCubo config, String rutaSnapshot) {
+        try {
+            return SnapshotCubo.cargar(config, rutaSnapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el snapshot " + rutaSnapshot, e);
+        }
+    }
+
+    /**
+     * Guarda el cubo en un snapshot binario versionado: columnas de hechos,
+     * valores de las dimensiones y postings de cada valor
+     * 
+     * @param rutaSnapshot Ruta del archivo de snapshot
+     */
+    public void guardarSnapshot(String rutaSnapshot) {
+        if (config == null) {
+            throw new IllegalStateException("El cubo no tiene configuración asociada");
+        }
+        if (isFiltrado()) {
+            throw new IllegalStateException("No se puede guardar un snapshot de un cubo filtrado");
+        }
+        bloqueo.readLock().lock();
+        try {
+            SnapshotCubo.guardar(this, rutaSnapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el snapshot " + rutaSnapshot, e);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Anexa al cubo un lote de hechos nuevos, con el mismo formato que el dataset
+     * de hechos de la configuración
+     * 
+     * @param hechosNuevos Dataset con los hechos nuevos
+     * @see #anexar(DatasetReader, Map)
+     */
+    public void anexar(DatasetReader hechosNuevos) {
+        anexar(hechosNuevos, Map.of());
+    }
+
+    /**
+     * Anexa al cubo un lote de hechos nuevos y, opcionalmente, registros nuevos
+     * de las dimensiones (con el mismo formato que los datasets de la
+     * configuración), sin reconstruir el cubo.
+     * 
+     * El lote se lee y se indexa aparte, sin bloquear las consultas; después se
+     * incorpora de una sola vez: se agregan las filas a las columnas de hechos,
+     * los miembros nuevos a los diccionarios, las filas del lote a los bitmaps
+     * de los miembros que aparecen en él y los grupos del lote a los cuboides.
+     * Mientras tanto las consultas esperan, por lo que ven el estado anterior o
+     * el nuevo, nunca una mezcla. El costo depende del tamaño del lote y no del
+     * tamaño del cubo. Los bitmaps y cuboides se reemplazan en lugar de
+     * modificarse, así que los resultados ya entregados no cambian.
+     * 
+     * Si el cubo es un fragmento (ver ConfigCubo.fragmento()), solo se anexan
+     * las filas del lote que le tocan. Si está particionado, las filas del lote
+     * se agrupan en tramos por partición y cada partición que aparece en él suma
+     * uno o más rangos de filas (compactar() las vuelve a dejar en un solo rango).
+     * 
+     * @param hechosNuevos    Dataset con los hechos nuevos
+     * @param registrosNuevos Mapeo de nombres de dimensión a un dataset con sus
+     *                        registros nuevos (puede no incluir todas)
+     */
+    public void anexar(DatasetReader hechosNuevos, Map<String, DatasetReader> registrosNuevos) {
+        if (isFiltrado()) {
+            throw new IllegalStateException("No se pueden anexar hechos a un cubo filtrado");
+        }
+        synchronized (bloqueo) {
+            int inicio = hechos.getCantidadFilas();
+
+            // Registros nuevos de las dimensiones
+            Map<String, Dimension.LoteDimension> lotes = new HashMap<>();
+            for (Dimension dimension : dimensiones.values()) {
+                lotes.put(dimension.getNombre(), dimension.crearLote(inicio));
+            }
+            for (Map.Entry<String, DatasetReader> entry : registrosNuevos.entrySet()) {
+                Dimension.LoteDimension lote = lotes.get(getDimension(entry.getKey()).getNombre());
+                int columnaKey = getConfigDimension(entry.getKey()).getColumnaKey();
+                try (CursorFilas cursor = entry.getValue().abrirCursor()) {
+                    while (cursor.siguiente()) {
+                        lote.agregarRegistro(cursor.getInt(columnaKey), cursor);
+                    }
+                }
+            }
+
+            // Hechos nuevos
+            int[] columnasHechos = new int[nombresHechos.size()];
+            for (int i = 0; i < columnasHechos.length; i++) {
+                columnasHechos[i] = config.getHechos().getColumnaHecho(nombresHechos.get(i));
+            }
+            double[][] valores = new double[columnasHechos.length][16];
+            int cantidad = 0;
+            IntUnaryOperator particion = null;
+            if (particiones != null) {
+                Dimension.LoteDimension loteParticion = lotes.get(particiones.getDimension());
+                int nivelParticion = particiones.getNivel();
+                particion = fk -> loteParticion.getOrdinalNivel(fk, nivelParticion);
+            }
+            try (CursorFilas cursor = CursorHechos.abrir(config, hechosNuevos, particion)) {
+                while (cursor.siguiente()) {
+                    if (cantidad == valores[0].length) {
+                        for (int i = 0; i < valores.length; i++) {
+                            valores[i] = Arrays.copyOf(valores[i], cantidad * 2);
+                        }
+                    }
+                    for (int i = 0; i < columnasHechos.length; i++) {
+                        valores[i][cantidad] = cursor.getDouble(columnasHechos[i]);
+                    }
+                    for (Dimension dimension : dimensiones.values()) {
+                        lotes.get(dimension.getNombre()).agregarHecho(cursor.getInt(dimension.getColumnaFkHechos()),
+                                inicio + cantidad);
+                    }
+                    cantidad++;
+                }
+            }
+
+            // Incorporación del lote
+            bloqueo.writeLock().lock();
+            try {
+                double[] fila = new double[columnasHechos.length];
+                for (int f = 0; f < cantidad; f++) {
+                    for (int i = 0; i < fila.length; i++) {
+                        fila[i] = valores[i][f];
+                    }
+                    hechos.agregarFila(fila);
+                }
+                for (Dimension dimension : dimensiones.values()) {
+                    dimension.aplicar(lotes.get(dimension.getNombre()));
+                }
+                if (particiones != null) {
+                    particiones.actualizar(getDimension(particiones.getDimension()), hechos, inicio);
+                }
+                for (int c = 0; c < cuboides.size(); c++) {
+                    Cuboide cuboide = cuboides.get(c);
+                    Agrupador agrupador = crearAgrupadorCuboide(cuboide.getDimensiones(), cuboide.getNiveles(),
+                            cuboide.getNombresHechos(), cuboide.getMedidas());
+                    for (int f = inicio; f < inicio + cantidad; f++) {
+                        agrupador.agregarFila(f);
+                    }
+                    Cuboide lote = new Cuboide(cuboide.getDimensiones(), cuboide.getNiveles(),
+                            cuboide.getNombresHechos(), cuboide.getMedidas(), agrupador.getGrupos(hechos));
+                    cuboides.set(c, cuboide.combinar(lote));
+                }
+                cache.invalidar();
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Arma las particiones de los hechos a partir del índice de la dimensión de
+     * partición, si el cubo está particionado (ver ConfigCubo.particionadoPor())
+     */
+    private void crearParticiones() {
+        if (!config.isParticionado()) {
+            return;
+        }
+        Dimension dimension = getDimension(config.getDimensionParticion());
+        if (config.getNivelParticion() >= dimension.getCantidadNiveles()) {
+            throw new IllegalArgumentException(
+                    "Nivel " + config.getNivelParticion() + " inválido para la dimensión " + dimension.getNombre());
+        }
+        particiones = new ParticionesHechos(dimension.getNombre(), config.getNivelParticion());
+        particiones.actualizar(dimension, hechos, 0);
+    }
+
+    private ConfigDimension getConfigDimension(String nombre) {
+        for (ConfigDimension configDimension : config.getDimensiones()) {
+            if (configDimension.getNombre().equals(nombre)) {
+                return configDimension;
+            }
+        }
+        throw new IllegalArgumentException("Dimensión no encontrada: " + nombre);
+    }
+
+    /**
+     * Crea un cubo a partir de estructuras ya cargadas (por ejemplo desde un
+     * snapshot) y materializa los cuboides configurados
+     * 
+     * @param config      Configuración del cubo
+     * @param dimensiones Dimensiones del cubo
+     * @param hechos      Tabla de hechos
+     * @param arena       Arena de los hechos y las dimensiones (null si están en
+     *                    el heap)
+     * @return Cubo
+     */
+    static Cubo restaurar(ConfigCubo config, List<Dimension> dimensiones, TablaHechos hechos, ArenaCubo arena) {
+        Cubo cubo = new Cubo();
+        cubo.config = config;
+        cubo.arena = arena;
+        for (Dimension dimension : dimensiones) {
+            cubo.agregarDimension(dimension);
+        }
+        cubo.nombresHechos = List.of(hechos.getNombresHechos());
+        cubo.hechos = hechos;
+        cubo.crearParticiones();
+        cubo.materializarCuboides(config.getCuboides());
+        return cubo;
     }
 
-    private void agregarCelda(Celda celda) {
-        if (!celdas.isEmpty()) {
-            Celda primeraCelda = celdas.get(0);
-            if (!primeraCelda.getHechos().keySet().equals(celda.getHechos().keySet())) {
-                throw new IllegalArgumentException("La celda no contiene los mismos hechos que las celdas anteriores");
+    /**
+     * Materializa los cuboides configurados. Los cuboides se calculan del más
+     * detallado al más general, y cada uno se deriva del cuboide ya calculado
+     * más chico que lo cubra y tenga sus medidas; solo se recorren las filas de
+     * hechos cuando ninguno lo cubre. Cada cuboide acumula solo las medidas de
+     * su configuración: las consultas de las demás recorren las filas.
+     * 
+     * @param configCuboides Configuración de los cuboides
+     */
+    private void materializarCuboides(ConfigCuboide[] configCuboides) {
+        List<ConfigCuboide> pendientes = new ArrayList<>(Arrays.asList(configCuboides));
+        pendientes.sort((a, b) -> {
+            if (a.getDimensiones().length != b.getDimensiones().length) {
+                return b.getDimensiones().length - a.getDimensiones().length;
             }
-            if (celda.getHechos().size() != nombresHechos.size()) {
-                throw new IllegalArgumentException(
-                        "La celda no contiene la misma cantidad de hechos que los hechos del cubo");
+            return Arrays.stream(b.getNiveles()).sum() - Arrays.stream(a.getNiveles()).sum();
+        });
+
+        String[] hechosCuboide = nombresHechos.toArray(new String[0]);
+        for (ConfigCuboide configCuboide : pendientes) {
+            String[] nombres = configCuboide.getDimensiones();
+            int[] niveles = configCuboide.getNiveles();
+            Medida[] medidasCuboide = new Medida[configCuboide.getMedidas().length];
+            for (int m = 0; m < medidasCuboide.length; m++) {
+                medidasCuboide[m] = getMedida(configCuboide.getMedidas()[m]);
+                if (medidasCuboide[m] == null) {
+                    throw new IllegalArgumentException("Medida no encontrada: " + configCuboide.getMedidas()[m]);
+                }
             }
-            for (String hecho : nombresHechos) {
-                if (celda.getHechos().get(hecho).size() != primeraCelda.getHechos().get(hecho).size()) {
+            for (int i = 0; i < nombres.length; i++) {
+                if (niveles[i] < 0 || niveles[i] >= getDimension(nombres[i]).getCantidadNiveles()) {
                     throw new IllegalArgumentException(
-                            "La celda no contiene la misma cantidad de valores para el hecho: " + hecho);
+                            "Nivel " + niveles[i] + " inválido para la dimensión " + nombres[i]);
                 }
             }
+
+            Cuboide origen = null;
+            for (Cuboide cuboide : cuboides) {
+                if (cuboide.cubre(nombres, niveles) && cuboide.contiene(medidasCuboide)
+                        && (origen == null || cuboide.getCantidadGrupos() < origen.getCantidadGrupos())) {
+                    origen = cuboide;
+                }
+            }
+
+            if (origen != null) {
+                cuboides.add(origen.derivar(nombres, niveles, medidasCuboide, dimensiones));
+                continue;
+            }
+
+            Agrupador agrupador = crearAgrupadorCuboide(nombres, niveles, hechosCuboide, medidasCuboide);
+            recorrerFilas(agrupador);
+            cuboides.add(new Cuboide(nombres, niveles, hechosCuboide, medidasCuboide, agrupador.getGrupos(hechos)));
+        }
+    }
+
+    /**
+     * Crea un agrupador que acumula cada par (hecho, medida) de un cuboide
+     * 
+     * @param nombres        Nombres de las dimensiones del cuboide
+     * @param niveles        Nivel de cada dimensión
+     * @param hechosCuboide  Hechos acumulados
+     * @param medidasCuboide Medidas acumuladas para cada hecho
+     * @return Agrupador sin filas
+     */
+    private Agrupador crearAgrupadorCuboide(String[] nombres, int[] niveles, String[] hechosCuboide,
+            Medida[] medidasCuboide) {
+        Dimension[] dims = new Dimension[nombres.length];
+        for (int i = 0; i < nombres.length; i++) {
+            dims[i] = getDimension(nombres[i]);
         }
-        celdas.add(celda);
+        ColumnaHechos[] columnas = new ColumnaHechos[hechosCuboide.length * medidasCuboide.length];
+        Medida[] medidasColumnas = new Medida[columnas.length];
+        for (int h = 0; h < hechosCuboide.length; h++) {
+            for (int m = 0; m < medidasCuboide.length; m++) {
+                columnas[h * medidasCuboide.length + m] = hechos.getColumna(hechosCuboide[h]);
+                medidasColumnas[h * medidasCuboide.length + m] = medidasCuboide[m];
+            }
+        }
+        Agrupador agrupador = new Agrupador(dims, niveles);
+        agrupador.acumular(columnas, medidasColumnas);
+        return agrupador;
+    }
+
+    private void agregarDimension(Dimension dim1) {
+        dimensiones.put(dim1.getNombre(), dim1);
     }
 
     /**
-     * Obtiene las celdas a partir de un conjunto de indices
+     * Obtiene la celda que agrupa las filas de un conjunto de indices,
+     * restringido a las filas que cumplen los filtros del cubo
      * 
      * @param indices Conjunto de indices
-     * @return Lista de celdas
+     * @return Celda agrupada
      */
-    private List<Celda> celdasFromIndices(Set<Integer> indices) {
-        List<Celda> celdas = new ArrayList<>();
-        for (Integer indice : indices) {
-            celdas.add(this.celdas.get(indice));
+    private Celda celdaFromIndices(BitmapFilas indices) {
+        BitmapFilas filasFiltradas = calcularFilasFiltradas();
+        if (filasFiltradas != null) {
+            indices = indices.and(filasFiltradas);
         }
-        return celdas;
+        return new Celda(hechos, indices.toArray());
     }
 
     /**
@@ -114,10 +618,74 @@ public class Cubo {
      * @param set2 El segundo conjunto de índices
      * @return Conjunto de índices que representa la intersección de ambos conjuntos
      */
-    private static Set<Integer> celdasComunes(Set<Integer> set1, Set<Integer> set2) {
-        Set<Integer> nuevo = new HashSet<>(set1);
-        nuevo.retainAll(set2);
-        return nuevo;
+    private static BitmapFilas celdasComunes(BitmapFilas set1, BitmapFilas set2) {
+        return set1.and(set2);
+    }
+
+    /**
+     * Calcula las filas que cumplen los filtros de todas las dimensiones. Los
+     * cubos filtrados (slice/dice) solo guardan los miembros conservados de cada
+     * dimensión; las filas se calculan al consultar a partir de los bitmaps
+     * compartidos con el cubo original. Las filas de cada nivel filtrado de
+     * todas las dimensiones se intersectan de una sola vez, de menor a mayor
+     * cardinalidad.
+     * 
+     * Si el cubo está particionado, los filtros de la dimensión de partición
+     * hasta el nivel de partición descartan particiones enteras: en lugar de
+     * unir los bitmaps de sus miembros se usan los rangos de filas de las
+     * particiones que pueden cumplirlos.
+     * 
+     * @return Bitmap de filas, o null si no hay filtros
+     */
+    private BitmapFilas calcularFilasFiltradas() {
+        List<BitmapFilas> filtros = new ArrayList<>();
+        for (Dimension dimension : dimensiones.values()) {
+            if (particiones == null || !dimension.getNombre().equals(particiones.getDimension())) {
+                filtros.addAll(dimension.getFiltrosNivel());
+                continue;
+            }
+            filtros.addAll(dimension.getFiltrosNivel(particiones.getNivel() + 1));
+            boolean[] conservadas = dimension.getMiembrosPosibles(particiones.getNivel());
+            if (conservadas != null) {
+                filtros.add(particiones.getFilas(conservadas));
+            }
+        }
+        return filtros.isEmpty() ? null : BitmapFilas.and(filtros.toArray(new BitmapFilas[0]));
+    }
+
+    /**
+     * Obtiene la celda con todas las filas que cumplen los filtros del cubo
+     * 
+     * @return Celda con las filas filtradas (todas si no hay filtros)
+     */
+    Celda getCeldaFiltrada() {
+        bloqueo.readLock().lock();
+        try {
+            BitmapFilas filasFiltradas = calcularFilasFiltradas();
+            if (filasFiltradas != null) {
+                return new Celda(hechos, filasFiltradas.toArray());
+            }
+            if (particiones != null) {
+                // Sin filtros, las filas son las de las particiones no descartadas
+                return new Celda(hechos, particiones.getFilasOrdenadas());
+            }
+            int[] filas = new int[hechos.getCantidadFilas()];
+            for (int fila = 0; fila < filas.length; fila++) {
+                filas[fila] = fila;
+            }
+            return new Celda(hechos, filas);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private boolean isFiltrado() {
+        for (Dimension dimension : dimensiones.values()) {
+            if (dimension.isFiltrada()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -130,7 +698,12 @@ public class Cubo {
      *         dimensión
      */
     public Celda getCelda(Dimension dimension, String valor) {
-        return Celda.agrupar(celdasFromIndices(dimension.getIndicesCeldas(valor)));
+        bloqueo.readLock().lock();
+        try {
+            return celdaFromIndices(dimension.getIndicesCeldas(valor));
+        } finally {
+            bloqueo.readLock().unlock();
+        }
     }
 
     /**
@@ -145,14 +718,437 @@ public class Cubo {
      *         dos dimensiones
      */
     public Celda getCelda(Dimension dim1, String valor1, Dimension dim2, String valor2) {
-        Set<Integer> indicesComunes = celdasComunes(dim1.getIndicesCeldas(valor1), dim2.getIndicesCeldas(valor2));
-        return Celda.agrupar(celdasFromIndices(indicesComunes));
+        bloqueo.readLock().lock();
+        try {
+            BitmapFilas indicesComunes = celdasComunes(dim1.getIndicesCeldas(valor1), dim2.getIndicesCeldas(valor2));
+            return celdaFromIndices(indicesComunes);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrupa las filas del cubo (que cumplen los filtros) por el nivel actual de
+     * las dimensiones indicadas, recorriendo las filas una sola vez.
+     * 
+     * @param dimensiones Dimensiones de agrupación
+     * @return Grupos no vacíos, ordenados por los valores de las dimensiones
+     */
+    public List<Grupo> agrupar(Dimension... dimensiones) {
+        bloqueo.readLock().lock();
+        try {
+            Agrupador agrupador = new Agrupador(dimensiones);
+            recorrerFilas(agrupador);
+            return agrupador.getGrupos(hechos);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrupa las filas del cubo (que cumplen los filtros) por el nivel actual de
+     * las dimensiones indicadas, acumulando en una sola pasada una medida sobre
+     * cada hecho pedido. Cada grupo mantiene solo sus acumuladores.
+     * 
+     * Los resultados se guardan en la cache de consultas del cubo (ver
+     * getCache()), por lo que repetir una consulta con los mismos niveles,
+     * filtros, hechos y medidas no vuelve a recorrer las filas. Las consultas
+     * con medidas no registradas (ver RegistroMedida.isRegistrada()) no usan la
+     * cache.
+     * 
+     * @param nombresHechos Hechos sobre los que se calculan las medidas
+     * @param medidas       Medida a calcular sobre cada hecho
+     * @param dimensiones   Dimensiones de agrupación
+     * @return Grupos no vacíos con el resultado de cada medida, ordenados por los
+     *         valores de las dimensiones (lista no modificable)
+     */
+    public List<Grupo> agregar(String[] nombresHechos, Medida[] medidas, Dimension... dimensiones) {
+        bloqueo.readLock().lock();
+        try {
+            String clave = claveConsulta(nombresHechos, medidas, dimensiones);
+            if (clave == null) {
+                return Collections.unmodifiableList(agregarSinBloqueo(nombresHechos, medidas, dimensiones));
+            }
+            List<Grupo> grupos = cache.buscar(clave);
+            if (grupos == null) {
+                grupos = cache.guardar(clave, agregarSinBloqueo(nombresHechos, medidas, dimensiones));
+            }
+            return grupos;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrupa las filas del cubo como agregar(), pero devuelve los grupos
+     * ordenados por el resultado de una de las medidas, con desplazamiento y
+     * límite (ORDER BY ... LIMIT ... OFFSET).
+     * 
+     * Los grupos se seleccionan con un montículo acotado a medida que se
+     * calculan, sin ordenar todos. Si el orden es descendente y limitado, la
+     * medida de orden es monótona (Count, o Suma sin valores negativos) y algún
+     * cuboide tiene un nivel superior de una de las dimensiones de agrupación,
+     * los totales de ese nivel se usan como cota: las filas se recorren de a un
+     * ancestro, de mayor a menor total, y se deja de recorrer cuando ningún
+     * ancestro restante puede aportar un grupo.
+     * 
+     * @param nombresHechos Hechos sobre los que se calculan las medidas
+     * @param medidas       Medida a calcular sobre cada hecho
+     * @param orden         Orden, con la posición de la medida entre las pedidas
+     * @param dimensiones   Dimensiones de agrupación
+     * @return Grupos seleccionados, en orden (lista no modificable)
+     */
+    public List<Grupo> agregar(String[] nombresHechos, Medida[] medidas, Orden orden, Dimension... dimensiones) {
+        if (orden.getMedida() >= medidas.length) {
+            throw new IllegalArgumentException("La consulta no tiene la medida " + orden.getMedida() + " para ordenar");
+        }
+        bloqueo.readLock().lock();
+        try {
+            String clave = claveConsulta(nombresHechos, medidas, dimensiones);
+            if (clave == null) {
+                return Collections.unmodifiableList(
+                        agregarPrimerosSinBloqueo(nombresHechos, medidas, orden, dimensiones));
+            }
+            String claveOrden = clave + orden.getClave();
+            List<Grupo> grupos = cache.buscar(claveOrden);
+            if (grupos == null) {
+                List<Grupo> todos = cache.buscar(clave);
+                grupos = cache.guardar(claveOrden, todos != null ? SeleccionPrimeros.seleccionar(todos, orden)
+                        : agregarPrimerosSinBloqueo(nombresHechos, medidas, orden, dimensiones));
+            }
+            return grupos;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Arma la clave normalizada de una consulta de agregación: dimensiones de
+     * agrupación con su nivel actual, filtros de todas las dimensiones del cubo
+     * (en orden de nombre), hechos y medidas. Las medidas se identifican por
+     * su nombre, que solo es único entre las registradas.
+     * 
+     * @param nombresHechos Hechos sobre los que se calculan las medidas
+     * @param medidas       Medida a calcular sobre cada hecho
+     * @param dimensiones   Dimensiones de agrupación
+     * @return Clave de la consulta, o null si alguna medida no está registrada
+     */
+    private String claveConsulta(String[] nombresHechos, Medida[] medidas, Dimension... dimensiones) {
+        for (Medida medida : medidas) {
+            if (!RegistroMedida.isRegistrada(medida)) {
+                return null;
+            }
+        }
+        StringBuilder clave = new StringBuilder();
+        for (Dimension dimension : dimensiones) {
+            clave.append(dimension.getNombre()).append('@').append(dimension.getNivelActual()).append(SEPARADOR_CLAVE);
+        }
+        clave.append(SEPARADOR_CLAVE);
+        for (Dimension dimension : new TreeMap<>(this.dimensiones).values()) {
+            if (dimension.isFiltrada()) {
+                clave.append(dimension.getNombre()).append('=').append(dimension.getClaveFiltros())
+                        .append(SEPARADOR_CLAVE);
+            }
+        }
+        clave.append(SEPARADOR_CLAVE);
+        for (int i = 0; i < nombresHechos.length; i++) {
+            clave.append(nombresHechos[i]).append('@').append(medidas[i].getNombre()).append(SEPARADOR_CLAVE);
+        }
+        return clave.toString();
+    }
+
+    private List<Grupo> agregarSinBloqueo(String[] nombresHechos, Medida[] medidas, Dimension... dimensiones) {
+        List<Grupo> grupos = consultarCuboide(nombresHechos, medidas, dimensiones);
+        if (grupos != null) {
+            return grupos;
+        }
+        Agrupador agrupador = crearAgrupador(nombresHechos, medidas, dimensiones);
+        recorrerFilas(agrupador);
+        return agrupador.getGrupos(hechos);
+    }
+
+    private List<Grupo> agregarPrimerosSinBloqueo(String[] nombresHechos, Medida[] medidas, Orden orden,
+            Dimension... dimensiones) {
+        List<Grupo> grupos = consultarCuboide(nombresHechos, medidas, dimensiones);
+        if (grupos != null) {
+            return SeleccionPrimeros.seleccionar(grupos, orden);
+        }
+        grupos = agregarPrimerosPorCotas(nombresHechos, medidas, orden, dimensiones);
+        if (grupos != null) {
+            return grupos;
+        }
+        Agrupador agrupador = crearAgrupador(nombresHechos, medidas, dimensiones);
+        recorrerFilas(agrupador);
+        return agrupador.getPrimeros(hechos, orden);
+    }
+
+    /**
+     * Responde una agregación desde un cuboide materializado para los niveles
+     * actuales, si el cubo no está filtrado
+     * 
+     * @return Grupos, o null si ningún cuboide la responde
+     */
+    private List<Grupo> consultarCuboide(String[] nombresHechos, Medida[] medidas, Dimension... dimensiones) {
+        if (isFiltrado()) {
+            return null;
+        }
+        String[] nombres = new String[dimensiones.length];
+        int[] niveles = new int[dimensiones.length];
+        for (int i = 0; i < dimensiones.length; i++) {
+            nombres[i] = dimensiones[i].getNombre();
+            niveles[i] = dimensiones[i].getNivelActual();
+        }
+        for (Cuboide cuboide : cuboides) {
+            if (cuboide.coincide(nombres, niveles)) {
+                List<Grupo> grupos = cuboide.consultar(nombres, nombresHechos, medidas);
+                if (grupos != null) {
+                    return grupos;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selecciona los primeros grupos recorriendo las filas de a un ancestro de
+     * una dimensión de agrupación, con los totales del ancestro (tomados de un
+     * cuboide) como cota del resultado de sus grupos. Los filtros solo quitan
+     * filas, así que la cota sigue valiendo en un cubo filtrado.
+     * 
+     * @return Grupos seleccionados, o null si la consulta no admite cotas
+     */
+    private List<Grupo> agregarPrimerosPorCotas(String[] nombresHechos, Medida[] medidas, Orden orden,
+            Dimension... dimensiones) {
+        int medidaOrden = orden.getMedida();
+        String hechoOrden = nombresHechos[medidaOrden];
+        if (!orden.isDescendente() || !orden.isLimitado()
+                || !medidas[medidaOrden].isMonotona(hechos.getColumna(hechoOrden).isNoNegativa())) {
+            return null;
+        }
+
+        // Cotas del nivel superior más detallado disponible de alguna dimensión de agrupación
+        Dimension dimensionCota = null;
+        int nivelCota = -1;
+        List<Grupo> cotas = null;
+        for (Dimension dimension : dimensiones) {
+            for (int nivel = dimension.getNivelActual() - 1; nivel > nivelCota; nivel--) {
+                String[] nombre = { dimension.getNombre() };
+                int[] niveles = { nivel };
+                Medida[] medidaCota = { medidas[medidaOrden] };
+                for (Cuboide cuboide : cuboides) {
+                    if (!cuboide.cubre(nombre, niveles) || !cuboide.contiene(medidaCota)) {
+                        continue;
+                    }
+                    List<Grupo> totales = cuboide.derivar(nombre, niveles, medidaCota, this.dimensiones)
+                            .consultar(nombre, new String[] { hechoOrden }, medidaCota);
+                    if (totales != null) {
+                        dimensionCota = dimension;
+                        nivelCota = nivel;
+                        cotas = totales;
+                        break;
+                    }
+                }
+            }
+        }
+        if (cotas == null) {
+            return null;
+        }
+
+        Grupo[] ancestros = cotas.toArray(new Grupo[0]);
+        Arrays.sort(ancestros, (a, b) -> Double.compare(b.getResultado(0), a.getResultado(0)));
+        BitmapFilas filasFiltradas = calcularFilasFiltradas();
+        Agrupador agrupador = crearAgrupador(nombresHechos, medidas, dimensiones);
+        SeleccionPrimeros seleccion = new SeleccionPrimeros(orden);
+        for (Grupo ancestro : ancestros) {
+            double cota = ancestro.getResultado(0);
+            if (!Double.isNaN(cota) && !seleccion.admite(cota)) {
+                break; // Los ancestros están ordenados por cota: ninguno de los restantes puede aportar
+            }
+            BitmapFilas filas = dimensionCota.getFilasMiembro(nivelCota, ancestro.getValor(0));
+            if (filasFiltradas != null) {
+                filas = filas.and(filasFiltradas);
+            }
+            int desde = agrupador.getCantidadGrupos();
+            filas.forEach(agrupador::agregarFila);
+            agrupador.ofrecerGrupos(seleccion, medidaOrden, desde);
+        }
+        return agrupador.getGrupos(hechos, seleccion.getIds());
+    }
+
+    private Agrupador crearAgrupador(String[] nombresHechos, Medida[] medidas, Dimension... dimensiones) {
+        ColumnaHechos[] columnas = new ColumnaHechos[nombresHechos.length];
+        for (int i = 0; i < nombresHechos.length; i++) {
+            columnas[i] = hechos.getColumna(nombresHechos[i]);
+        }
+        Agrupador agrupador = new Agrupador(dimensiones);
+        agrupador.acumular(columnas, medidas);
+        return agrupador;
+    }
+
+    /**
+     * Pasa al agrupador cada fila que cumple los filtros del cubo, en orden
+     * 
+     * @param agrupador Agrupador que recibe las filas
+     */
+    private void recorrerFilas(Agrupador agrupador) {
+        BitmapFilas filasFiltradas = calcularFilasFiltradas();
+        if (filasFiltradas != null) {
+            filasFiltradas.forEach(agrupador::agregarFila);
+        } else if (particiones != null) {
+            particiones.recorrer(agrupador::agregarFila);
+        } else {
+            for (int fila = 0; fila < hechos.getCantidadFilas(); fila++) {
+                agrupador.agregarFila(fila);
+            }
+        }
+    }
+
+    ConfigCubo getConfig() {
+        return config;
+    }
+
+    TablaHechos getTablaHechos() {
+        return hechos;
     }
 
     public List<String> getNombresHechos() {
         return nombresHechos;
     }
 
+    /**
+     * Obtiene la cantidad de filas de hechos del cubo, sin contar las de las
+     * particiones descartadas
+     * 
+     * @return Cantidad de filas
+     */
+    public int getCantidadFilas() {
+        return particiones != null ? particiones.getCantidadFilas() : hechos.getCantidadFilas();
+    }
+
+    /**
+     * Obtiene las particiones de los hechos (ver ConfigCubo.particionadoPor()),
+     * con sus filas y el mínimo y el máximo de cada hecho
+     * 
+     * @return Particiones en el orden de los miembros del nivel de partición
+     *         (vacía si el cubo no está particionado)
+     */
+    public List<ParticionHechos> getParticiones() {
+        if (particiones == null) {
+            return new ArrayList<>();
+        }
+        bloqueo.readLock().lock();
+        try {
+            return particiones.getParticiones();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Descarta las filas de una partición de los hechos (por ejemplo, un año
+     * que ya no se consulta). Las filas dejan de aparecer en las consultas y en
+     * los cuboides, que se vuelven a calcular; siguen ocupando memoria en la
+     * tabla de hechos hasta que se llame a compactar(). Como anexar(), espera a
+     * que terminen las consultas en curso.
+     * 
+     * @param valor Miembro del nivel de partición
+     */
+    public void descartarParticion(String valor) {
+        if (particiones == null) {
+            throw new IllegalStateException("El cubo no está particionado");
+        }
+        if (isFiltrado()) {
+            throw new IllegalStateException("No se pueden descartar particiones de un cubo filtrado");
+        }
+        synchronized (bloqueo) {
+            bloqueo.writeLock().lock();
+            try {
+                BitmapFilas filas = particiones.quitar(valor).getFilas();
+                for (Dimension dimension : dimensiones.values()) {
+                    dimension.quitarFilas(filas);
+                }
+                cuboides.clear();
+                materializarCuboides(config.getCuboides());
+                cache.invalidar();
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Compacta los hechos: reescribe la tabla y el índice de las dimensiones
+     * con las filas de cada partición contiguas, en el orden de los miembros
+     * del nivel de partición, y sin las filas de las particiones descartadas.
+     * Después cada partición ocupa un solo rango de filas.
+     * 
+     * Las celdas obtenidas antes de compactar lanzan IllegalStateException al
+     * leer sus hechos, porque sus filas ya no corresponden; los grupos y
+     * resultados ya entregados siguen siendo válidos. Si el cubo guarda los
+     * hechos fuera del heap, la memoria de las columnas anteriores se libera
+     * recién al cerrarlo.
+     */
+    public void compactar() {
+        if (particiones == null) {
+            throw new IllegalStateException("El cubo no está particionado");
+        }
+        if (isFiltrado()) {
+            throw new IllegalStateException("No se puede compactar un cubo filtrado");
+        }
+        synchronized (bloqueo) {
+            bloqueo.writeLock().lock();
+            try {
+                int[] filasOrigen = particiones.getFilasAgrupadas();
+                hechos.reordenar(filasOrigen, arena);
+                for (Dimension dimension : dimensiones.values()) {
+                    dimension.reordenar(filasOrigen, arena);
+                }
+                particiones.reiniciar();
+                particiones.actualizar(getDimension(particiones.getDimension()), hechos, 0);
+                cache.invalidar();
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Obtiene la memoria reservada fuera del heap para los hechos y las
+     * dimensiones (ver ConfigCubo.fueraDeHeap())
+     * 
+     * @return Bytes reservados (0 si el cubo guarda todo en el heap)
+     */
+    public long getBytesFueraDeHeap() {
+        return arena != null ? arena.getBytesReservados() : 0;
+    }
+
+    /**
+     * Cierra el cubo, liberando en el momento su memoria fuera del heap. Espera
+     * a que terminen las consultas en curso; si una celda ya obtenida está
+     * calculando una medida, la memoria se libera cuando termina (ver
+     * ArenaCubo.registrarLectura()). Después, las consultas y las celdas que
+     * lean hechos lanzan IllegalStateException. Las copias del
+     * cubo (slice, dice, sesiones) comparten la memoria, así que cerrar una las
+     * cierra a todas. Si el cubo guarda todo en el heap no hace nada.
+     */
+    @Override
+    public void close() {
+        if (arena == null) {
+            return;
+        }
+        bloqueo.writeLock().lock();
+        try {
+            hechos.liberar();
+            for (Dimension dimension : dimensiones.values()) {
+                dimension.liberar();
+            }
+            cache.invalidar();
+            arena.cerrar();
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
     public List<Medida> getMedidas() {
         return new ArrayList<>(medidas.values());
     }
@@ -170,7 +1166,7 @@ public class Cubo {
 
     @Override
     public String toString() {
-        return "Cubo [celdas=" + celdas.size() + ", dimensiones=" + dimensiones.keySet() + ", medidas=" + medidas.size()
+        return "Cubo [celdas=" + getCantidadFilas() + ", dimensiones=" + dimensiones.keySet() + ", medidas=" + medidas.size()
                 + "]";
     }
 
@@ -183,55 +1179,114 @@ public class Cubo {
         return new Proyeccion(this);
     }
 
-    private Cubo copiar() {
+    /**
+     * Crea una consulta sobre el cubo con cualquier cantidad de filtros y de
+     * dimensiones de agrupación (ver ConsultaCubo)
+     * 
+     * @return Consulta sin filtros ni agrupaciones
+     */
+    public ConsultaCubo consultar() {
+        return new ConsultaCubo(this);
+    }
+
+    /**
+     * Abre una sesión de consulta sobre el cubo, con los niveles y filtros
+     * actuales del cubo, el primer hecho y la primera medida. Las sesiones son
+     * inmutables y no modifican el cubo, por lo que varios hilos pueden consultar
+     * el mismo cubo con sesiones propias.
+     * 
+     * @return Sesión de consulta
+     */
+    public Sesion abrirSesion() {
+        return new Sesion(copiar(), nombresHechos.get(0), getMedidas().get(0));
+    }
+
+    Cubo copiar() {
         Cubo cubo = new Cubo();
         cubo.dimensiones = new HashMap<>();
         for (Dimension dimension : this.dimensiones.values()) {
             cubo.dimensiones.put(dimension.getNombre(), dimension.copiar());
         }
-        cubo.celdas = new ArrayList<>(this.celdas);
+        cubo.hechos = this.hechos; // La tabla de hechos no se modifica, se comparte
         cubo.nombresHechos = new ArrayList<>(this.nombresHechos);
         cubo.medidas = new HashMap<>(this.medidas);
+        cubo.cuboides = this.cuboides; // Los cuboides no se modifican, se comparten
+        cubo.config = this.config;
+        cubo.bloqueo = this.bloqueo; // Las copias comparten los datos, y por lo tanto el bloqueo
+        cubo.cache = this.cache; // Los filtros son parte de la clave, así que la cache también se comparte
+        cubo.arena = this.arena;
+        cubo.particiones = this.particiones;
         return cubo;
     }
 
-    public Cubo slice(String dimension, String valor) {
-        Cubo cubo = this.copiar();
-        Dimension dim = cubo.getDimension(dimension);
-        if (dim != null) {
-            dim.filtrar(valor);
-        } else {
-            System.out.println("Dimensión no encontrada: " + dimension);
+    /**
+     * Crea una vista del cubo filtrada por valores de una o más dimensiones. La
+     * vista comparte los hechos, diccionarios y bitmaps del cubo; solo agrega,
+     * por cada dimensión filtrada, los miembros conservados. Las vistas se
+     * pueden volver a filtrar, combinando sus filtros.
+     * 
+     * @param nombres Nombres de las dimensiones a filtrar
+     * @param valores Valores a conservar de cada dimensión
+     * @return Cubo filtrado
+     */
+    private Cubo filtrar(String[] nombres, String[][] valores) {
+        bloqueo.readLock().lock();
+        try {
+            Cubo cubo = this.copiar();
+            for (int i = 0; i < nombres.length; i++) {
+                cubo.getDimension(nombres[i]).filtrar(valores[i]);
+            }
+            return cubo;
+        } finally {
+            bloqueo.readLock().unlock();
         }
-        return cubo;
+    }
+
+    public Cubo slice(String dimension, String valor) {
+        return filtrar(new String[] { dimension }, new String[][] { { valor } });
     }
 
     public Cubo dice(String dimension, String[] valor) {
-        Cubo cubo = this.copiar();
-        cubo.dimensiones.get(dimension).filtrar(valor);
-        return cubo;
+        return filtrar(new String[] { dimension }, new String[][] { valor });
     }
 
     public Cubo dice(String dimension, String[] valor, String dimension2, String[] valor2) {
-        Cubo cubo = this.copiar();
-        cubo.dimensiones.get(dimension).filtrar(valor);
-        cubo.dimensiones.get(dimension2).filtrar(valor2);
-        return cubo;
+        return filtrar(new String[] { dimension, dimension2 }, new String[][] { valor, valor2 });
     }
 
     public Cubo dice(String dimension, String[] valor, String dimension2, String[] valor2, String dimension3,
             String[] valor3) {
-        Cubo cubo = this.copiar();
-        cubo.dimensiones.get(dimension).filtrar(valor);
-        cubo.dimensiones.get(dimension2).filtrar(valor2);
-        cubo.dimensiones.get(dimension3).filtrar(valor3);
-        return cubo;
+        return filtrar(new String[] { dimension, dimension2, dimension3 },
+                new String[][] { valor, valor2, valor3 });
     }
 
+    /**
+     * Obtiene la cache de resultados de consultas, para configurarla o ver sus
+     * estadísticas. Se comparte con las vistas filtradas del cubo y se vacía al
+     * anexar hechos.
+     * 
+     * @return Cache de consultas
+     */
+    public CacheConsultas getCache() {
+        return cache;
+    }
+
+    /**
+     * Sube un nivel en la dimensión indicada. Modifica el cubo (y lo ven todos
+     * los que lo consultan); para consultas concurrentes usar abrirSesion().
+     * 
+     * @param dimension Nombre de la dimensión
+     */
     public void rollUp(String dimension) {
         getDimension(dimension).rollUp();
     }
 
+    /**
+     * Baja un nivel en la dimensión indicada. Modifica el cubo (y lo ven todos
+     * los que lo consultan); para consultas concurrentes usar abrirSesion().
+     * 
+     * @param dimension Nombre de la dimensión
+     */
     public void drillDown(String dimension) {
         getDimension(dimension).drillDown();
     }
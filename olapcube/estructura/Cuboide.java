@@ -0,0 +1,305 @@
+package olapcube.estructura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import olapcube.metricas.Acumulador;
+import olapcube.metricas.Medida;
+
+/**
+ * Agregaciones materializadas de un cubo para una combinación de niveles de
+ * dimensiones (cuboide).
+ * 
+ * Cada grupo guarda un acumulador por cada par (hecho, medida), por lo que una
+ * consulta que coincide con el cuboide se responde sin recorrer las filas de
+ * hechos. Un cuboide puede derivarse de otro más detallado combinando los
+ * acumuladores de los grupos que comparten ancestro.
+ * 
+ * Ejemplo: el cuboide {Fechas: 1 (mes), Productos: 0 (categoría)} permite
+ * derivar {Fechas: 0 (año), Productos: 0} o {Productos: 0}.
+ */
+class Cuboide {
+    private String[] dimensiones; // Nombres de las dimensiones del cuboide
+    private int[] niveles; // Nivel de cada dimensión
+    private String[] nombresHechos; // Hechos acumulados
+    private Medida[] medidas; // Medidas acumuladas para cada hecho
+    private List<String[]> valores; // Valores de las dimensiones de cada grupo (ordenados)
+    private List<Acumulador[]> acumuladores; // Acumuladores de cada grupo (hecho * medidas + medida)
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param dimensiones   Nombres de las dimensiones del cuboide
+     * @param niveles       Nivel de cada dimensión
+     * @param nombresHechos Hechos acumulados
+     * @param medidas       Medidas acumuladas para cada hecho
+     * @param grupos        Grupos ordenados por valor, con un acumulador por cada
+     *                      par (hecho, medida)
+     */
+    Cuboide(String[] dimensiones, int[] niveles, String[] nombresHechos, Medida[] medidas, List<Grupo> grupos) {
+        this.dimensiones = dimensiones;
+        this.niveles = niveles;
+        this.nombresHechos = nombresHechos;
+        this.medidas = medidas;
+        this.valores = new ArrayList<>(grupos.size());
+        this.acumuladores = new ArrayList<>(grupos.size());
+        for (Grupo grupo : grupos) {
+            valores.add(grupo.getValores());
+            acumuladores.add(grupo.getAcumuladores());
+        }
+    }
+
+    /**
+     * Indica si el cuboide tiene todas las dimensiones pedidas con un nivel
+     * igual o más detallado, es decir, si puede derivarse de él un cuboide con
+     * esas dimensiones y niveles
+     * 
+     * @param dimensiones Nombres de las dimensiones
+     * @param niveles     Nivel de cada dimensión
+     * @return true si el cuboide cubre la combinación
+     */
+    boolean cubre(String[] dimensiones, int[] niveles) {
+        for (int i = 0; i < dimensiones.length; i++) {
+            int posicion = posicionDimension(dimensiones[i]);
+            if (posicion < 0 || this.niveles[posicion] < niveles[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indica si el cuboide acumula todas las medidas pedidas
+     * 
+     * @param medidas Medidas
+     * @return true si todas están materializadas en el cuboide
+     */
+    boolean contiene(Medida[] medidas) {
+        for (Medida medida : medidas) {
+            if (posicionMedida(medida) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indica si el cuboide corresponde exactamente a las dimensiones y niveles
+     * pedidos (en cualquier orden)
+     * 
+     * @param dimensiones Nombres de las dimensiones
+     * @param niveles     Nivel de cada dimensión
+     * @return true si el cuboide coincide con la combinación
+     */
+    boolean coincide(String[] dimensiones, int[] niveles) {
+        if (dimensiones.length != this.dimensiones.length) {
+            return false;
+        }
+        for (int i = 0; i < dimensiones.length; i++) {
+            int posicion = posicionDimension(dimensiones[i]);
+            if (posicion < 0 || this.niveles[posicion] != niveles[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deriva un cuboide menos detallado combinando los acumuladores de los grupos
+     * que comparten ancestro, sin recorrer las filas de hechos. El nuevo
+     * cuboide puede quedarse con algunas de las medidas (ver contiene()).
+     * 
+     * @param dimensiones   Nombres de las dimensiones del nuevo cuboide
+     * @param niveles       Nivel de cada dimensión del nuevo cuboide
+     * @param medidas       Medidas del nuevo cuboide
+     * @param dimensionesPorNombre Dimensiones del cubo
+     * @return Cuboide derivado
+     */
+    Cuboide derivar(String[] dimensiones, int[] niveles, Medida[] medidas,
+            Map<String, Dimension> dimensionesPorNombre) {
+        int[] indices = new int[nombresHechos.length * medidas.length];
+        for (int h = 0; h < nombresHechos.length; h++) {
+            for (int m = 0; m < medidas.length; m++) {
+                indices[h * medidas.length + m] = h * this.medidas.length + posicionMedida(medidas[m]);
+            }
+        }
+
+        int[] posiciones = new int[dimensiones.length];
+        List<Map<String, String>> ancestros = new ArrayList<>();
+        for (int i = 0; i < dimensiones.length; i++) {
+            posiciones[i] = posicionDimension(dimensiones[i]);
+            int nivelOrigen = this.niveles[posiciones[i]];
+            ancestros.add(nivelOrigen == niveles[i] ? null
+                    : dimensionesPorNombre.get(dimensiones[i]).getAncestros(nivelOrigen, niveles[i]));
+        }
+
+        Map<List<String>, Acumulador[]> nuevosGrupos = new LinkedHashMap<>();
+        for (int g = 0; g < valores.size(); g++) {
+            String[] valoresOrigen = valores.get(g);
+            String[] valoresDestino = new String[dimensiones.length];
+            for (int i = 0; i < dimensiones.length; i++) {
+                String valor = valoresOrigen[posiciones[i]];
+                valoresDestino[i] = ancestros.get(i) == null ? valor : ancestros.get(i).get(valor);
+            }
+            Acumulador[] destino = nuevosGrupos.computeIfAbsent(Arrays.asList(valoresDestino),
+                    k -> crearAcumuladores(medidas));
+            Acumulador[] origen = acumuladores.get(g);
+            for (int k = 0; k < destino.length; k++) {
+                destino[k].combinar(origen[indices[k]]);
+            }
+        }
+
+        List<Grupo> grupos = new ArrayList<>(nuevosGrupos.size());
+        for (Map.Entry<List<String>, Acumulador[]> entry : nuevosGrupos.entrySet()) {
+            grupos.add(new Grupo(entry.getKey().toArray(new String[0]), entry.getValue()));
+        }
+        grupos.sort((a, b) -> compararValores(a.getValores(), b.getValores()));
+        return new Cuboide(dimensiones, niveles, nombresHechos, medidas, grupos);
+    }
+
+    /**
+     * Responde una agregación con los acumuladores del cuboide
+     * 
+     * @param dimensiones   Nombres de las dimensiones de agrupación, en el orden
+     *                      pedido
+     * @param nombresHechos Hechos sobre los que se calculan las medidas
+     * @param medidas       Medida a calcular sobre cada hecho
+     * @return Grupos ordenados por los valores de las dimensiones, o null si
+     *         algún par (hecho, medida) no está materializado
+     */
+    List<Grupo> consultar(String[] dimensiones, String[] nombresHechos, Medida[] medidas) {
+        int[] indices = new int[nombresHechos.length];
+        for (int k = 0; k < nombresHechos.length; k++) {
+            int hecho = Arrays.asList(this.nombresHechos).indexOf(nombresHechos[k]);
+            int medida = posicionMedida(medidas[k]);
+            if (hecho < 0 || medida < 0) {
+                return null;
+            }
+            indices[k] = hecho * this.medidas.length + medida;
+        }
+
+        int[] posiciones = new int[dimensiones.length];
+        boolean mismoOrden = true;
+        for (int i = 0; i < dimensiones.length; i++) {
+            posiciones[i] = posicionDimension(dimensiones[i]);
+            mismoOrden &= posiciones[i] == i;
+        }
+
+        List<Grupo> grupos = new ArrayList<>(valores.size());
+        for (int g = 0; g < valores.size(); g++) {
+            String[] valoresGrupo = valores.get(g);
+            String[] valoresOrdenados = new String[dimensiones.length];
+            for (int i = 0; i < dimensiones.length; i++) {
+                valoresOrdenados[i] = valoresGrupo[posiciones[i]];
+            }
+            Acumulador[] acumuladoresGrupo = new Acumulador[indices.length];
+            for (int k = 0; k < indices.length; k++) {
+                acumuladoresGrupo[k] = acumuladores.get(g)[indices[k]];
+            }
+            grupos.add(new Grupo(valoresOrdenados, acumuladoresGrupo));
+        }
+        if (!mismoOrden) {
+            grupos.sort((a, b) -> compararValores(a.getValores(), b.getValores()));
+        }
+        return grupos;
+    }
+
+    /**
+     * Combina el cuboide con otro de las mismas dimensiones, niveles y medidas
+     * (por ejemplo, el calculado sobre un lote de hechos anexado). No modifica
+     * ninguno de los dos: los grupos presentes en ambos reciben acumuladores
+     * nuevos, por lo que los resultados ya entregados no cambian.
+     * 
+     * @param otro Cuboide a combinar
+     * @return Cuboide combinado
+     */
+    Cuboide combinar(Cuboide otro) {
+        List<Grupo> grupos = new ArrayList<>(valores.size() + otro.valores.size());
+        int i = 0;
+        int j = 0;
+        while (i < valores.size() || j < otro.valores.size()) {
+            int comparacion = i >= valores.size() ? 1
+                    : j >= otro.valores.size() ? -1
+                            : compararValores(valores.get(i), otro.valores.get(j));
+            if (comparacion < 0) {
+                grupos.add(new Grupo(valores.get(i), acumuladores.get(i)));
+                i++;
+            } else if (comparacion > 0) {
+                grupos.add(new Grupo(otro.valores.get(j), otro.acumuladores.get(j)));
+                j++;
+            } else {
+                Acumulador[] combinados = crearAcumuladores(medidas);
+                for (int k = 0; k < combinados.length; k++) {
+                    combinados[k].combinar(acumuladores.get(i)[k]);
+                    combinados[k].combinar(otro.acumuladores.get(j)[k]);
+                }
+                grupos.add(new Grupo(valores.get(i), combinados));
+                i++;
+                j++;
+            }
+        }
+        return new Cuboide(dimensiones, niveles, nombresHechos, medidas, grupos);
+    }
+
+    String[] getNombresHechos() {
+        return nombresHechos;
+    }
+
+    Medida[] getMedidas() {
+        return medidas;
+    }
+
+    String[] getDimensiones() {
+        return dimensiones;
+    }
+
+    int[] getNiveles() {
+        return niveles;
+    }
+
+    int getCantidadGrupos() {
+        return valores.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Cuboide [dimensiones=" + Arrays.toString(dimensiones) + ", niveles=" + Arrays.toString(niveles)
+                + ", grupos=" + valores.size() + "]";
+    }
+
+    private Acumulador[] crearAcumuladores(Medida[] medidas) {
+        Acumulador[] nuevos = new Acumulador[nombresHechos.length * medidas.length];
+        for (int h = 0; h < nombresHechos.length; h++) {
+            for (int m = 0; m < medidas.length; m++) {
+                nuevos[h * medidas.length + m] = medidas[m].crearAcumulador();
+            }
+        }
+        return nuevos;
+    }
+
+    private int posicionDimension(String nombre) {
+        return Arrays.asList(dimensiones).indexOf(nombre);
+    }
+
+    private int posicionMedida(Medida medida) {
+        for (int m = 0; m < medidas.length; m++) {
+            if (medidas[m] == medida) { // Dos medidas con el mismo nombre pueden tener distintos parámetros
+                return m;
+            }
+        }
+        return -1;
+    }
+
+    static int compararValores(String[] a, String[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int comparacion = a[i].compareTo(b[i]);
+            if (comparacion != 0) {
+                return comparacion;
+            }
+        }
+        return 0;
+    }
+}
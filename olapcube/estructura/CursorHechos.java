@@ -0,0 +1,287 @@
+package olapcube.estructura;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+import olapcube.configuration.ConfigCubo;
+import olapcube.configuration.ConfigDimension;
+import olapcube.configuration.ConfigFragmentos;
+import olapcube.readers.CursorFilas;
+import olapcube.readers.DatasetReader;
+
+/**
+ * Cursor sobre las filas de un dataset de hechos que carga un cubo: solo las
+ * de su fragmento (ver ConfigCubo.fragmento()) y, si el cubo está particionado
+ * (ver ConfigCubo.particionadoPor()), en tramos de filas de una misma
+ * partición.
+ *
+ * Para armar los tramos el cursor guarda las columnas que usa el cubo (hechos y
+ * claves foráneas) de las filas leídas, en un buffer por partición. Cuando los
+ * buffers llegan a MAXIMO_FILAS entrega como un tramo las filas guardadas de
+ * la partición que más tiene, en el orden del dataset, y sigue leyendo. Así la
+ * memoria del cursor no depende del tamaño del dataset, y cada tramo tiene al
+ * menos MAXIMO_FILAS / particiones filas (compactar el cubo deja cada
+ * partición en un solo rango).
+ */
+final class CursorHechos implements CursorFilas {
+    private static final int CAPACIDAD_INICIAL = 64; // Filas del buffer de una partición al crearlo
+    private static final int MAXIMO_FILAS = 1 << 18; // Filas que caben entre los buffers de todas las particiones
+
+    private CursorFilas origen; // Cursor del dataset (null si ya se leyeron todas sus filas)
+    private ConfigFragmentos fragmentos; // Reparto de las filas (null si el cubo no es un fragmento)
+    private int indiceFragmento; // Fragmento cuyas filas se entregan
+    private int columnaFragmento; // Columna de la clave de reparto (-1 si se reparte por número de fila)
+    private int filaDataset; // Filas del dataset leídas hasta ahora
+
+    private IntUnaryOperator particion; // Partición de cada clave foránea (null si no se arman tramos)
+    private int columnaParticion; // Columna de la clave foránea de la dimensión de partición
+    private int[] columnas; // Columna del dataset de cada posición guardada
+    private int[] posicionPorColumna; // Posición de cada columna del dataset entre las guardadas (-1 si no se guarda)
+    private boolean[] enteras; // true si la columna guardada en cada posición es una clave foránea
+    private int cantidadCampos; // Campos de las filas del dataset
+
+    private double[][][] buffers; // Partición -> Posición -> Valor de cada fila guardada (null si no tiene filas)
+    private int[] filasParticion; // Filas guardadas de cada partición
+    private int capacidadTotal; // Filas que caben en los buffers de todas las particiones
+    private boolean pendiente; // true si la fila actual del dataset se leyó pero no se guardó
+    private int particionPendiente; // Partición de la fila pendiente
+
+    private double[][] tramo; // Buffer del tramo que se está entregando (null si no hay)
+    private int filasTramo; // Filas del tramo
+    private int actual; // Fila actual dentro del tramo
+
+    private CursorHechos(ConfigCubo config, CursorFilas origen) {
+        this.origen = origen;
+        this.fragmentos = config.getFragmentos();
+        this.indiceFragmento = config.getIndiceFragmento();
+        this.columnaFragmento = fragmentos != null && fragmentos.getDimension() != null
+                ? columnaFkHechos(config, fragmentos.getDimension())
+                : -1;
+    }
+
+    /**
+     * Abre un cursor sobre las filas de un dataset de hechos que carga el cubo
+     *
+     * @param config    Configuración del cubo
+     * @param dataset   Dataset de hechos (el de la configuración o un lote a
+     *                  anexar)
+     * @param particion Partición de cada clave foránea de la dimensión de
+     *                  partición (null si el cubo no está particionado)
+     * @return Cursor; el del dataset si el cubo no es un fragmento ni está
+     *         particionado
+     */
+    static CursorFilas abrir(ConfigCubo config, DatasetReader dataset, IntUnaryOperator particion) {
+        if (config.getFragmentos() == null && particion == null) {
+            return dataset.abrirCursor();
+        }
+        CursorHechos cursor = new CursorHechos(config, dataset.abrirCursor());
+        if (particion != null) {
+            try {
+                cursor.prepararTramos(config, particion);
+            } catch (RuntimeException e) {
+                cursor.close();
+                throw e;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Obtiene la columna del dataset de hechos con la clave foránea de una
+     * dimensión
+     *
+     * @param config    Configuración del cubo
+     * @param dimension Nombre de la dimensión
+     * @return Columna de la clave foránea
+     */
+    static int columnaFkHechos(ConfigCubo config, String dimension) {
+        for (ConfigDimension configDimension : config.getDimensiones()) {
+            if (configDimension.getNombre().equals(dimension)) {
+                return configDimension.getColumnaFkHechos();
+            }
+        }
+        throw new IllegalArgumentException("Dimensión no encontrada: " + dimension);
+    }
+
+    /**
+     * Define las columnas que se guardan (las que usa el cubo) para entregar
+     * las filas en tramos por partición
+     */
+    private void prepararTramos(ConfigCubo config, IntUnaryOperator particion) {
+        String[] nombresHechos = config.getHechos().getNombresHechos();
+        ConfigDimension[] dimensiones = config.getDimensiones();
+        columnas = new int[nombresHechos.length + dimensiones.length];
+        enteras = new boolean[columnas.length];
+        for (int i = 0; i < nombresHechos.length; i++) {
+            columnas[i] = config.getHechos().getColumnaHecho(nombresHechos[i]);
+        }
+        for (int d = 0; d < dimensiones.length; d++) {
+            columnas[nombresHechos.length + d] = dimensiones[d].getColumnaFkHechos();
+            enteras[nombresHechos.length + d] = true;
+        }
+        posicionPorColumna = new int[Arrays.stream(columnas).max().orElse(-1) + 1];
+        Arrays.fill(posicionPorColumna, -1);
+        for (int i = 0; i < columnas.length; i++) {
+            posicionPorColumna[columnas[i]] = i;
+        }
+        this.particion = particion;
+        this.columnaParticion = columnaFkHechos(config, config.getDimensionParticion());
+        this.buffers = new double[0][][];
+        this.filasParticion = new int[0];
+    }
+
+    /**
+     * Avanza el cursor del dataset hasta la siguiente fila del fragmento
+     */
+    private boolean siguienteDelFragmento() {
+        while (origen.siguiente()) {
+            int fila = filaDataset++;
+            if (fragmentos == null) {
+                return true;
+            }
+            int clave = columnaFragmento >= 0 ? origen.getInt(columnaFragmento) : 0;
+            if (fragmentos.getFragmento(fila, clave) == indiceFragmento) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lee filas del dataset y las guarda por partición hasta llenar los buffers
+     * o terminar el dataset, y pasa a entregar las filas guardadas de una
+     * partición: la que más tiene o, si el dataset terminó, la primera
+     *
+     * @return false si no quedan filas
+     */
+    private boolean armarTramo() {
+        while (origen != null) {
+            if (!pendiente) {
+                if (!siguienteDelFragmento()) {
+                    origen.close();
+                    origen = null;
+                    break;
+                }
+                cantidadCampos = origen.getCantidadCampos();
+                particionPendiente = particion.applyAsInt(origen.getInt(columnaParticion));
+                pendiente = true;
+            }
+            if (!guardarPendiente()) {
+                break; // La fila queda pendiente en el cursor del dataset hasta que se entregue un tramo
+            }
+        }
+
+        int elegida = -1;
+        for (int p = 0; p < filasParticion.length; p++) {
+            if (filasParticion[p] > 0 && (elegida < 0 || origen != null && filasParticion[p] > filasParticion[elegida])) {
+                elegida = p;
+            }
+        }
+        if (elegida < 0) {
+            return false;
+        }
+        tramo = buffers[elegida];
+        filasTramo = filasParticion[elegida];
+        capacidadTotal -= tramo[0].length;
+        buffers[elegida] = null;
+        filasParticion[elegida] = 0;
+        return true;
+    }
+
+    /**
+     * Guarda la fila pendiente en el buffer de su partición, agrandándolo si
+     * hace falta
+     *
+     * @return false si no hay lugar sin pasar de MAXIMO_FILAS
+     */
+    private boolean guardarPendiente() {
+        int p = particionPendiente;
+        if (p >= filasParticion.length) {
+            int cantidad = Math.max(p + 1, filasParticion.length * 2);
+            buffers = Arrays.copyOf(buffers, cantidad);
+            filasParticion = Arrays.copyOf(filasParticion, cantidad);
+        }
+        double[][] buffer = buffers[p];
+        int fila = filasParticion[p];
+        if (buffer == null || fila == buffer[0].length) {
+            int capacidadAnterior = buffer == null ? 0 : buffer[0].length;
+            int capacidad = buffer == null ? CAPACIDAD_INICIAL : capacidadAnterior * 2;
+            if (capacidadTotal > 0 && capacidadTotal - capacidadAnterior + capacidad > MAXIMO_FILAS) {
+                return false;
+            }
+            double[][] nuevo = new double[columnas.length][];
+            for (int i = 0; i < columnas.length; i++) {
+                nuevo[i] = buffer == null ? new double[capacidad] : Arrays.copyOf(buffer[i], capacidad);
+            }
+            buffer = nuevo;
+            buffers[p] = nuevo;
+            capacidadTotal += capacidad - capacidadAnterior;
+        }
+        for (int i = 0; i < columnas.length; i++) {
+            buffer[i][fila] = enteras[i] ? origen.getInt(columnas[i]) : origen.getDouble(columnas[i]);
+        }
+        filasParticion[p]++;
+        pendiente = false;
+        return true;
+    }
+
+    @Override
+    public boolean siguiente() {
+        if (particion == null) {
+            return siguienteDelFragmento();
+        }
+        if (tramo != null && actual + 1 < filasTramo) {
+            actual++;
+            return true;
+        }
+        tramo = null;
+        if (!armarTramo()) {
+            return false;
+        }
+        actual = 0;
+        return true;
+    }
+
+    @Override
+    public int getCantidadCampos() {
+        return particion != null ? cantidadCampos : origen.getCantidadCampos();
+    }
+
+    @Override
+    public String getString(int campo) {
+        if (particion == null) {
+            return origen.getString(campo);
+        }
+        int posicion = getPosicion(campo);
+        double valor = tramo[posicion][actual];
+        return enteras[posicion] ? Integer.toString((int) valor) : Double.toString(valor);
+    }
+
+    @Override
+    public int getInt(int campo) {
+        return particion != null ? (int) tramo[getPosicion(campo)][actual] : origen.getInt(campo);
+    }
+
+    @Override
+    public double getDouble(int campo) {
+        return particion != null ? tramo[getPosicion(campo)][actual] : origen.getDouble(campo);
+    }
+
+    private int getPosicion(int campo) {
+        int posicion = campo >= 0 && campo < posicionPorColumna.length ? posicionPorColumna[campo] : -1;
+        if (posicion < 0) {
+            throw new IllegalArgumentException("La columna " + campo + " no se guarda al agrupar los hechos por partición");
+        }
+        return posicion;
+    }
+
+    @Override
+    public void close() {
+        if (origen != null) {
+            origen.close();
+            origen = null;
+        }
+        buffers = null;
+        tramo = null;
+    }
+}
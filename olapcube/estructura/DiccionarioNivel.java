@@ -0,0 +1,167 @@
+package olapcube.estructura;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diccionario de los miembros de un nivel de una dimensión.
+ * 
+ * Cada miembro (camino desde la raíz, p. ej. "2017/3") se codifica con un
+ * ordinal denso, asignado en el orden de carga de la dimensión. Para cada
+ * ordinal se guarda el ordinal de su padre en el nivel anterior y las filas de
+ * hechos en las que aparece, de modo que recorrer la jerarquía o buscar las
+ * filas de un miembro es indexar arreglos. Los Strings solo se usan al cargar
+ * la dimensión y al presentar resultados.
+ */
+class DiccionarioNivel {
+    private List<String> valores; // Valor de cada miembro
+    private Map<String, Integer> ordinales; // Ordinal de cada valor
+    private int[] padres; // Ordinal del padre de cada miembro (-1 en el primer nivel)
+    private BitmapFilas[] filas; // Filas de hechos de cada miembro (null si no tiene)
+
+    DiccionarioNivel() {
+        this.valores = new ArrayList<>();
+        this.ordinales = new HashMap<>();
+        this.padres = new int[16];
+        this.filas = new BitmapFilas[16];
+    }
+
+    /**
+     * Agrega un miembro al nivel, si no existe
+     * 
+     * @param valor Valor del miembro
+     * @param padre Ordinal del padre en el nivel anterior (-1 en el primer nivel)
+     * @return Ordinal del miembro
+     */
+    int agregarMiembro(String valor, int padre) {
+        Integer existente = ordinales.get(valor);
+        if (existente != null) {
+            return existente;
+        }
+        int ordinal = valores.size();
+        if (ordinal == padres.length) {
+            padres = Arrays.copyOf(padres, ordinal * 2);
+            filas = Arrays.copyOf(filas, ordinal * 2);
+        }
+        valores.add(valor);
+        ordinales.put(valor, ordinal);
+        padres[ordinal] = padre;
+        return ordinal;
+    }
+
+    /**
+     * Obtiene el ordinal de un valor
+     * 
+     * @param valor Valor del miembro
+     * @return Ordinal del miembro, o -1 si no existe
+     */
+    int getOrdinal(String valor) {
+        Integer ordinal = ordinales.get(valor);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    String getValor(int ordinal) {
+        return valores.get(ordinal);
+    }
+
+    int getPadre(int ordinal) {
+        return padres[ordinal];
+    }
+
+    int getCantidadMiembros() {
+        return valores.size();
+    }
+
+    /**
+     * Obtiene las filas de hechos de un miembro
+     * 
+     * @param ordinal Ordinal del miembro
+     * @return Bitmap de filas, o null si el miembro no tiene hechos
+     */
+    BitmapFilas getFilas(int ordinal) {
+        return filas[ordinal];
+    }
+
+    void agregarFila(int ordinal, int fila) {
+        if (filas[ordinal] == null) {
+            filas[ordinal] = new BitmapFilas();
+        }
+        filas[ordinal].agregar(fila);
+    }
+
+    /**
+     * Agrega a un miembro las filas de un bloque posterior a todas las que ya
+     * tiene. El bitmap del miembro se reemplaza por uno nuevo, sin modificar el
+     * anterior.
+     * 
+     * @param ordinal Ordinal del miembro
+     * @param bloque  Filas del bloque
+     */
+    void anexarFilas(int ordinal, BitmapFilas bloque) {
+        filas[ordinal] = filas[ordinal] == null ? bloque : filas[ordinal].anexar(bloque);
+    }
+
+    /**
+     * Quita un conjunto de filas de todos los miembros. Los bitmaps se
+     * reemplazan por nuevos, sin modificar los anteriores.
+     * 
+     * @param quitadas Filas a quitar
+     */
+    void quitarFilas(BitmapFilas quitadas) {
+        for (int ordinal = 0; ordinal < valores.size(); ordinal++) {
+            if (filas[ordinal] != null) {
+                BitmapFilas resto = filas[ordinal].andNot(quitadas);
+                filas[ordinal] = resto.isEmpty() ? null : resto;
+            }
+        }
+    }
+
+    /**
+     * Deja a todos los miembros sin filas, para volver a cargarlas con otra
+     * numeración. Los bitmaps anteriores no se modifican.
+     */
+    void reiniciarFilas() {
+        filas = new BitmapFilas[filas.length];
+    }
+
+    /**
+     * Escribe el diccionario en formato binario: valor, padre y filas de cada
+     * miembro
+     * 
+     * @param salida Flujo de salida
+     * @throws IOException Si falla la escritura
+     */
+    void escribir(DataOutputStream salida) throws IOException {
+        salida.writeInt(valores.size());
+        for (int ordinal = 0; ordinal < valores.size(); ordinal++) {
+            SnapshotCubo.escribirTexto(salida, valores.get(ordinal));
+            salida.writeInt(padres[ordinal]);
+            (filas[ordinal] != null ? filas[ordinal] : new BitmapFilas()).escribir(salida);
+        }
+    }
+
+    /**
+     * Lee un diccionario escrito con escribir(), avanzando la posición del buffer
+     * 
+     * @param entrada Buffer de entrada
+     * @return Diccionario leído
+     */
+    static DiccionarioNivel leer(ByteBuffer entrada) {
+        DiccionarioNivel diccionario = new DiccionarioNivel();
+        int cantidad = entrada.getInt();
+        for (int i = 0; i < cantidad; i++) {
+            int ordinal = diccionario.agregarMiembro(SnapshotCubo.leerTexto(entrada), entrada.getInt());
+            BitmapFilas filas = BitmapFilas.leer(entrada);
+            if (!filas.isEmpty()) {
+                diccionario.filas[ordinal] = filas;
+            }
+        }
+        return diccionario;
+    }
+}
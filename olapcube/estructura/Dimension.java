@@ -1,23 +1,29 @@
 package olapcube.estructura;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import olapcube.configuration.ConfigDimension;
+import olapcube.readers.CursorFilas;
 
 /**
  * Clase que representa una dimensión de un cubo OLAP.
+ * 
+ * Los miembros de cada nivel se codifican como ordinales en un
+ * DiccionarioNivel. Cada fila de hechos guarda un único int por dimensión: el
+ * ordinal de su miembro en el último nivel, desde el que se llega a los demás
+ * niveles siguiendo los padres.
  */
 public class Dimension {
     private String nombre; // Nombre de la dimensión
-    private List<Map<String, Set<Integer>>> valoresToCeldasConNiveles; // Nivel -> Valor -> Celdas
-    private Map<Integer, String[]> idToValores; // Mapeo de ids (pk) de la dimensión a valores
-    private Map<String, List<Integer>> valorToPk; // Mapeo de valores de la dimensión a ids (pk)
+    private Indice indice; // Miembros y filas de hechos de la dimensión (compartido con sus copias)
+    private boolean[][] incluidosPorNivel; // Miembros que conservan los filtros de cada nivel (null si no hay filtro)
     private int columnaFkHechos; // Columna que contiene la clave foránea en la tabla de los hechos
     private List<Integer> niveles; // Columnas de los niveles
     private int nivelActual; // Nivel actual de la dimensión
@@ -26,12 +32,12 @@ public class Dimension {
      * Constructor de la clase
      * 
      * @param nombre Nombre de la dimensión
+     * @param arena  Arena del miembro de cada fila (null para guardarlo en el
+     *               heap)
      */
-    private Dimension(String nombre) {
+    private Dimension(String nombre, ArenaCubo arena) {
         this.nombre = nombre;
-        this.valoresToCeldasConNiveles = new ArrayList<>();
-        this.idToValores = new HashMap<>();
-        this.valorToPk = new HashMap<>();
+        this.indice = new Indice(arena);
         this.niveles = new ArrayList<>();
         this.nivelActual = 0;
     }
@@ -44,30 +50,113 @@ public class Dimension {
      * @return Dimension
      */
     public static Dimension crear(ConfigDimension configDimension) {
-        Dimension dim = new Dimension(configDimension.getNombre());
+        return crear(configDimension, null);
+    }
+
+    /**
+     * Crea una dimensión a partir de una configuración, guardando el miembro de
+     * cada fila de hechos en una arena
+     * 
+     * @param configDimension Configuración de la dimensión
+     * @param arena           Arena del miembro de cada fila (null para
+     *                        guardarlo en el heap)
+     * @return Dimension
+     */
+    static Dimension crear(ConfigDimension configDimension, ArenaCubo arena) {
+        Dimension dim = new Dimension(configDimension.getNombre(), arena);
         dim.columnaFkHechos = configDimension.getColumnaFkHechos();
         dim.niveles = configDimension.getNiveles();
 
-        // Inicializar mapas
+        // Inicializar diccionarios
         for (int i = 0; i < dim.niveles.size(); i++) {
-            dim.valoresToCeldasConNiveles.add(new LinkedHashMap<>());
+            dim.indice.diccionarios.add(new DiccionarioNivel());
         }
+        dim.incluidosPorNivel = new boolean[dim.niveles.size()][];
 
-        // Cargar datos para todos los niveles
-        for (String[] datos : configDimension.getDatasetReader().read()) {
-            int pkDimension = Integer.parseInt(datos[configDimension.getColumnaKey()]);
-            String[] valores = new String[dim.niveles.size()];
+        // Cargar miembros para todos los niveles
+        try (CursorFilas cursor = configDimension.getDatasetReader().abrirCursor()) {
+            while (cursor.siguiente()) {
+                int pkDimension = cursor.getInt(configDimension.getColumnaKey());
+                StringBuilder valorAcumulado = new StringBuilder();
+                int miembro = -1;
 
-            for (int i = 0; i < dim.niveles.size(); i++) {
-                int nivelColumna = dim.niveles.get(i);
-                valores[i] = datos[nivelColumna];
+                for (int i = 0; i < dim.niveles.size(); i++) {
+                    int nivelColumna = dim.niveles.get(i);
+                    if (i > 0) {
+                        valorAcumulado.append("/");
+                    }
+                    valorAcumulado.append(cursor.getString(nivelColumna));
+                    miembro = dim.indice.diccionarios.get(i).agregarMiembro(valorAcumulado.toString(), miembro);
+                }
+                dim.indice.idToMiembro.put(pkDimension, miembro);
             }
-            dim.idToValores.put(pkDimension, valores);
         }
 
         return dim;
     }
 
+    /**
+     * Escribe la dimensión en formato binario: configuración, diccionario de cada
+     * nivel, miembro de cada id y miembro de cada fila de hechos
+     * 
+     * @param salida        Flujo de salida
+     * @param cantidadFilas Cantidad de filas de hechos del cubo
+     * @throws IOException Si falla la escritura
+     */
+    void escribir(DataOutputStream salida, int cantidadFilas) throws IOException {
+        SnapshotCubo.escribirTexto(salida, nombre);
+        salida.writeInt(columnaFkHechos);
+        salida.writeInt(niveles.size());
+        for (int nivel : niveles) {
+            salida.writeInt(nivel);
+        }
+
+        for (DiccionarioNivel diccionario : indice.diccionarios) {
+            diccionario.escribir(salida);
+        }
+
+        salida.writeInt(indice.idToMiembro.size());
+        for (Map.Entry<Integer, Integer> entry : indice.idToMiembro.entrySet()) {
+            salida.writeInt(entry.getKey());
+            salida.writeInt(entry.getValue());
+        }
+
+        indice.miembroPorFila.escribir(salida, cantidadFilas);
+    }
+
+    /**
+     * Lee una dimensión escrita con escribir(), avanzando la posición del buffer
+     * 
+     * @param entrada       Buffer de entrada
+     * @param cantidadFilas Cantidad de filas de hechos del cubo
+     * @param arena         Arena del miembro de cada fila (null para guardarlo
+     *                      en el heap)
+     * @return Dimension leída
+     */
+    static Dimension leer(ByteBuffer entrada, int cantidadFilas, ArenaCubo arena) {
+        Dimension dim = new Dimension(SnapshotCubo.leerTexto(entrada), arena);
+        dim.columnaFkHechos = entrada.getInt();
+        int cantidadNiveles = entrada.getInt();
+        dim.niveles = new ArrayList<>();
+        for (int i = 0; i < cantidadNiveles; i++) {
+            dim.niveles.add(entrada.getInt());
+        }
+
+        for (int i = 0; i < cantidadNiveles; i++) {
+            dim.indice.diccionarios.add(DiccionarioNivel.leer(entrada));
+        }
+        dim.incluidosPorNivel = new boolean[cantidadNiveles][];
+
+        int cantidadIds = entrada.getInt();
+        for (int i = 0; i < cantidadIds; i++) {
+            int pk = entrada.getInt();
+            dim.indice.idToMiembro.put(pk, entrada.getInt());
+        }
+
+        dim.indice.miembroPorFila = ColumnaEnteros.leer(entrada, cantidadFilas, arena);
+        return dim;
+    }
+
     @Override
     public String toString() {
         return "Dimension [nombre=" + nombre + ", nivelActual=" + getNivelActual() + "]";
@@ -85,12 +174,203 @@ public class Dimension {
         return nivelActual;
     }
 
-    public Set<Integer> getIndicesCeldas(String valor) {
-        return valoresToCeldasConNiveles.get(nivelActual).getOrDefault(valor, new HashSet<>());
+    public BitmapFilas getIndicesCeldas(String valor) {
+        int ordinal = indice.diccionarios.get(nivelActual).getOrdinal(valor);
+        BitmapFilas indices = ordinal >= 0 && isIncluido(nivelActual, ordinal)
+                ? indice.diccionarios.get(nivelActual).getFilas(ordinal)
+                : null;
+        return indices != null ? indices : new BitmapFilas();
+    }
+
+    /**
+     * Obtiene las filas de un miembro de un nivel, sin considerar los filtros
+     * 
+     * @param nivel Nivel del miembro
+     * @param valor Valor del miembro
+     * @return Bitmap de filas (vacío si el valor no existe)
+     */
+    BitmapFilas getFilasMiembro(int nivel, String valor) {
+        verificarNivel(nivel);
+        int ordinal = indice.diccionarios.get(nivel).getOrdinal(valor);
+        BitmapFilas filas = ordinal >= 0 ? indice.diccionarios.get(nivel).getFilas(ordinal) : null;
+        return filas != null ? filas : new BitmapFilas();
+    }
+
+    /**
+     * Obtiene las filas de un miembro de un nivel por su ordinal, sin considerar
+     * los filtros
+     * 
+     * @param nivel   Nivel del miembro
+     * @param ordinal Ordinal del miembro
+     * @return Bitmap de filas, o null si el miembro no tiene filas
+     */
+    BitmapFilas getFilasOrdinal(int nivel, int ordinal) {
+        return indice.diccionarios.get(nivel).getFilas(ordinal);
+    }
+
+    /**
+     * Calcula las filas que cumplen los filtros aplicados sobre la dimensión: en
+     * cada nivel filtrado, la unión de las filas de los miembros conservados, y
+     * la intersección entre niveles. Se calcula en cada llamada a partir de los
+     * miembros conservados, por lo que incluye los hechos anexados después de
+     * filtrar.
+     * 
+     * @return Bitmap de filas, o null si la dimensión no está filtrada
+     */
+    public BitmapFilas getFiltro() {
+        List<BitmapFilas> filtros = getFiltrosNivel();
+        return filtros.isEmpty() ? null : BitmapFilas.and(filtros.toArray(new BitmapFilas[0]));
+    }
+
+    /**
+     * Calcula, para cada nivel filtrado, la unión de las filas de los miembros
+     * conservados. Las filas que cumplen los filtros son la intersección de
+     * todos; el cubo junta los de todas las dimensiones para intersectarlos de
+     * una sola vez.
+     * 
+     * @return Filas de cada nivel filtrado (vacía si la dimensión no está
+     *         filtrada)
+     */
+    List<BitmapFilas> getFiltrosNivel() {
+        return getFiltrosNivel(0);
+    }
+
+    /**
+     * Calcula, para cada nivel filtrado desde uno dado, la unión de las filas
+     * de los miembros conservados (ver getFiltrosNivel())
+     * 
+     * @param desdeNivel Primer nivel a considerar
+     * @return Filas de cada nivel filtrado desde ese nivel
+     */
+    List<BitmapFilas> getFiltrosNivel(int desdeNivel) {
+        List<BitmapFilas> filtros = new ArrayList<>();
+        for (int nivel = desdeNivel; nivel < incluidosPorNivel.length; nivel++) {
+            boolean[] incluidos = incluidosPorNivel[nivel];
+            if (incluidos == null) {
+                continue;
+            }
+            DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+            List<BitmapFilas> filasConservadas = new ArrayList<>();
+            for (int ordinal = 0; ordinal < incluidos.length; ordinal++) {
+                if (incluidos[ordinal] && diccionario.getFilas(ordinal) != null) {
+                    filasConservadas.add(diccionario.getFilas(ordinal));
+                }
+            }
+            filtros.add(BitmapFilas.or(filasConservadas));
+        }
+        return filtros;
+    }
+
+    /**
+     * Calcula qué miembros de un nivel pueden tener filas que cumplan los
+     * filtros de la dimensión: los filtros de ese nivel y de los más generales
+     * se cumplen o no para todas las filas de un miembro, y los de niveles más
+     * detallados solo dejan a los miembros con algún descendiente conservado.
+     * 
+     * @param nivel Nivel de los miembros
+     * @return Miembros posibles, o null si ningún filtro descarta miembros del
+     *         nivel
+     */
+    boolean[] getMiembrosPosibles(int nivel) {
+        verificarNivel(nivel);
+        boolean[] posibles = null;
+        for (int nivelFiltro = 0; nivelFiltro < incluidosPorNivel.length; nivelFiltro++) {
+            boolean[] incluidos = incluidosPorNivel[nivelFiltro];
+            if (incluidos == null) {
+                continue;
+            }
+            boolean[] cumplen = new boolean[getCantidadMiembros(nivel)];
+            if (nivelFiltro <= nivel) {
+                int[] ancestros = getOrdinalesAncestros(nivel, nivelFiltro);
+                for (int ordinal = 0; ordinal < cumplen.length; ordinal++) {
+                    cumplen[ordinal] = ancestros[ordinal] < incluidos.length && incluidos[ancestros[ordinal]];
+                }
+            } else {
+                int[] ancestros = getOrdinalesAncestros(nivelFiltro, nivel);
+                for (int ordinal = 0; ordinal < incluidos.length; ordinal++) {
+                    if (incluidos[ordinal]) {
+                        cumplen[ancestros[ordinal]] = true;
+                    }
+                }
+            }
+            if (posibles == null) {
+                posibles = cumplen;
+            } else {
+                for (int ordinal = 0; ordinal < posibles.length; ordinal++) {
+                    posibles[ordinal] &= cumplen[ordinal];
+                }
+            }
+        }
+        return posibles;
     }
 
+    /**
+     * Describe los filtros de la dimensión de forma normalizada: los ordinales
+     * de los miembros conservados en cada nivel filtrado. Dos dimensiones con
+     * los mismos filtros tienen la misma descripción.
+     * 
+     * @return Descripción de los filtros (vacía si la dimensión no está filtrada)
+     */
+    String getClaveFiltros() {
+        StringBuilder clave = new StringBuilder();
+        for (int nivel = 0; nivel < incluidosPorNivel.length; nivel++) {
+            boolean[] incluidos = incluidosPorNivel[nivel];
+            if (incluidos == null) {
+                continue;
+            }
+            clave.append(nivel).append('[');
+            for (int ordinal = 0; ordinal < incluidos.length; ordinal++) {
+                if (incluidos[ordinal]) {
+                    clave.append(ordinal).append(',');
+                }
+            }
+            clave.append(']');
+        }
+        return clave.toString();
+    }
+
+    public boolean isFiltrada() {
+        for (boolean[] incluidos : incluidosPorNivel) {
+            if (incluidos != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene los valores de un nivel que tienen hechos y cumplen los filtros, en
+     * el orden de carga de la dimensión
+     * 
+     * @param nivel Nivel de la dimensión
+     * @return Valores del nivel
+     */
     public String[] getValoresNivel(int nivel) {
-        return valoresToCeldasConNiveles.get(nivel).keySet().toArray(new String[0]);
+        DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+        List<String> valores = new ArrayList<>();
+        for (int ordinal = 0; ordinal < diccionario.getCantidadMiembros(); ordinal++) {
+            if (isVisible(nivel, ordinal)) {
+                valores.add(diccionario.getValor(ordinal));
+            }
+        }
+        return valores.toArray(new String[0]);
+    }
+
+    /**
+     * Cambia el nivel actual de la dimensión
+     * 
+     * @param nivel Nivel (0 es el más general)
+     */
+    void setNivelActual(int nivel) {
+        verificarNivel(nivel);
+        nivelActual = nivel;
+    }
+
+    private void verificarNivel(int nivel) {
+        if (nivel < 0 || nivel >= indice.diccionarios.size()) {
+            throw new IllegalArgumentException("Nivel fuera de rango para " + nombre + ": " + nivel + " (hay "
+                    + indice.diccionarios.size() + " niveles)");
+        }
     }
 
     public void rollUp() {
@@ -100,43 +380,437 @@ public class Dimension {
     }
 
     public void drillDown() {
-        if (nivelActual < valoresToCeldasConNiveles.size() - 1) {
+        if (nivelActual < indice.diccionarios.size() - 1) {
             nivelActual++;
         }
     }
 
+    /**
+     * Obtiene el miembro del último nivel asociado a una fila de hechos
+     * 
+     * @param fila Índice de la fila de hechos
+     * @return Ordinal del miembro
+     */
+    public int getMiembro(int fila) {
+        return indice.miembroPorFila.getRegistrado(fila);
+    }
+
+    /**
+     * Obtiene el miembro del último nivel asociado a una fila de hechos sin
+     * registrar la lectura (ver ArenaCubo.registrarLectura()). Es el acceso por
+     * fila del agrupador, que corre con el bloqueo de lectura del cubo tomado.
+     * 
+     * @param fila Índice de la fila de hechos
+     * @return Ordinal del miembro
+     */
+    int leerMiembro(int fila) {
+        return indice.miembroPorFila.get(fila);
+    }
+
+    /**
+     * Quita al índice sus bloques fuera del heap antes de que el cubo libere la
+     * arena (ver ColumnaEnteros.liberar())
+     */
+    void liberar() {
+        indice.miembroPorFila.liberar();
+    }
+
+    public int getCantidadMiembros(int nivel) {
+        return indice.diccionarios.get(nivel).getCantidadMiembros();
+    }
+
+    /**
+     * Obtiene el valor (camino desde la raíz, p. ej. "2017/3") de un miembro
+     * 
+     * @param nivel   Nivel de la dimensión
+     * @param ordinal Ordinal del miembro en el nivel
+     * @return Valor del miembro
+     */
+    public String getValorMiembro(int nivel, int ordinal) {
+        return indice.diccionarios.get(nivel).getValor(ordinal);
+    }
+
+    /**
+     * Indica si un miembro tiene hechos y cumple los filtros de su nivel
+     * 
+     * @param nivel   Nivel de la dimensión
+     * @param ordinal Ordinal del miembro en el nivel
+     * @return true si el miembro es visible
+     */
+    public boolean isVisible(int nivel, int ordinal) {
+        return indice.diccionarios.get(nivel).getFilas(ordinal) != null && isIncluido(nivel, ordinal);
+    }
+
+    /**
+     * Obtiene el ordinal del ancestro de cada miembro de un nivel en un nivel más
+     * general, siguiendo los padres
+     * 
+     * @param nivelOrigen  Nivel de los miembros a traducir
+     * @param nivelDestino Nivel de los ancestros (menor o igual que el de origen)
+     * @return Ordinal del ancestro de cada miembro del nivel de origen
+     */
+    public int[] getOrdinalesAncestros(int nivelOrigen, int nivelDestino) {
+        if (nivelDestino > nivelOrigen) {
+            throw new IllegalArgumentException("El nivel destino debe ser más general que el nivel origen");
+        }
+        int[] ancestros = new int[getCantidadMiembros(nivelOrigen)];
+        for (int ordinal = 0; ordinal < ancestros.length; ordinal++) {
+            int ancestro = ordinal;
+            for (int nivel = nivelOrigen; nivel > nivelDestino; nivel--) {
+                ancestro = indice.diccionarios.get(nivel).getPadre(ancestro);
+            }
+            ancestros[ordinal] = ancestro;
+        }
+        return ancestros;
+    }
+
+    /**
+     * Obtiene el valor de un nivel más general (ancestro) de cada valor de un
+     * nivel
+     * 
+     * @param nivelOrigen  Nivel de los valores a traducir
+     * @param nivelDestino Nivel de los ancestros (menor o igual que el de origen)
+     * @return Mapeo de valores del nivel de origen a su ancestro
+     */
+    public Map<String, String> getAncestros(int nivelOrigen, int nivelDestino) {
+        int[] ancestros = getOrdinalesAncestros(nivelOrigen, nivelDestino);
+        Map<String, String> valores = new HashMap<>();
+        for (int ordinal = 0; ordinal < ancestros.length; ordinal++) {
+            valores.put(getValorMiembro(nivelOrigen, ordinal), getValorMiembro(nivelDestino, ancestros[ordinal]));
+        }
+        return valores;
+    }
+
+    public int getCantidadNiveles() {
+        return niveles.size();
+    }
+
+    /**
+     * Obtiene el miembro de un nivel al que pertenece un id (pk) de la
+     * dimensión
+     * 
+     * @param idValor Id del registro de la dimensión
+     * @param nivel   Nivel del miembro
+     * @return Ordinal del miembro en el nivel
+     */
+    int getOrdinalNivel(int idValor, int nivel) {
+        int miembro = resolverMiembro(idValor);
+        for (int n = indice.diccionarios.size() - 1; n > nivel; n--) {
+            miembro = indice.diccionarios.get(n).getPadre(miembro);
+        }
+        return miembro;
+    }
+
+    /**
+     * Quita un conjunto de filas de los miembros de todos los niveles, por
+     * ejemplo las de una partición descartada. El miembro de cada fila no se
+     * modifica: las filas quitadas dejan de aparecer en las consultas, pero
+     * siguen en la tabla de hechos hasta que se compacte el cubo.
+     * 
+     * @param quitadas Filas a quitar
+     */
+    void quitarFilas(BitmapFilas quitadas) {
+        for (DiccionarioNivel diccionario : indice.diccionarios) {
+            diccionario.quitarFilas(quitadas);
+        }
+    }
+
+    /**
+     * Renumera las filas de hechos: la fila i pasa a ser la que era
+     * filasOrigen[i], y las filas que no aparecen se descartan. Modifica el
+     * índice compartido con las copias de la dimensión.
+     * 
+     * @param filasOrigen Fila anterior de cada fila nueva
+     * @param arena       Arena del miembro de cada fila (null para guardarlo
+     *                    en el heap)
+     */
+    void reordenar(int[] filasOrigen, ArenaCubo arena) {
+        ColumnaEnteros anterior = indice.miembroPorFila;
+        ColumnaEnteros miembros = new ColumnaEnteros(arena);
+        for (DiccionarioNivel diccionario : indice.diccionarios) {
+            diccionario.reiniciarFilas();
+        }
+        for (int fila = 0; fila < filasOrigen.length; fila++) {
+            int miembro = anterior.get(filasOrigen[fila]);
+            miembros.set(fila, miembro);
+            for (int nivel = indice.diccionarios.size() - 1; nivel >= 0; nivel--) {
+                DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+                diccionario.agregarFila(miembro, fila);
+                miembro = diccionario.getPadre(miembro);
+            }
+        }
+        indice.miembroPorFila = miembros;
+        anterior.liberar();
+    }
+
     public void agregarHecho(int idValor, int indiceCelda) {
-        String[] valores = idToValores.get(idValor);
-        if (valores == null) {
+        int miembro = resolverMiembro(idValor);
+        indice.miembroPorFila.set(indiceCelda, miembro);
+        for (int nivel = indice.diccionarios.size() - 1; nivel >= 0; nivel--) {
+            DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+            diccionario.agregarFila(miembro, indiceCelda);
+            miembro = diccionario.getPadre(miembro);
+        }
+    }
+
+    /**
+     * Crea un índice parcial para un bloque consecutivo de filas de hechos
+     * 
+     * @param inicio   Primera fila del bloque
+     * @param cantidad Cantidad de filas del bloque
+     * @return Índice parcial vacío
+     */
+    IndiceParcial crearIndiceParcial(int inicio, int cantidad) {
+        return new IndiceParcial(inicio, cantidad);
+    }
+
+    /**
+     * Incorpora los índices parciales construidos en paralelo. Los parciales
+     * deben estar en el orden de sus bloques de filas, así el resultado es igual
+     * al de agregar las filas una por una.
+     * 
+     * @param parciales Índices parciales, ordenados por bloque
+     */
+    void combinar(List<IndiceParcial> parciales) {
+        for (IndiceParcial parcial : parciales) {
+            indice.miembroPorFila.copiar(parcial.miembrosBloque, parcial.inicio, parcial.miembrosBloque.length);
+        }
+        for (int nivel = 0; nivel < indice.diccionarios.size(); nivel++) {
+            DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+            for (IndiceParcial parcial : parciales) {
+                BitmapFilas[] filasNivel = parcial.filas[nivel];
+                for (int ordinal = 0; ordinal < filasNivel.length; ordinal++) {
+                    if (filasNivel[ordinal] != null) {
+                        diccionario.anexarFilas(ordinal, filasNivel[ordinal]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea un lote vacío para anexar registros y hechos nuevos a la dimensión
+     * 
+     * @param inicio Primera fila de hechos del lote
+     * @return Lote vacío
+     */
+    LoteDimension crearLote(int inicio) {
+        return new LoteDimension(inicio);
+    }
+
+    /**
+     * Incorpora un lote preparado con crearLote(): agrega los miembros y ids
+     * nuevos y anexa las filas del lote. Solo se tocan los miembros con filas en
+     * el lote, cuyos bitmaps se reemplazan sin modificar los anteriores.
+     * 
+     * @param lote Lote a incorporar
+     */
+    void aplicar(LoteDimension lote) {
+        for (int nivel = 0; nivel < indice.diccionarios.size(); nivel++) {
+            DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+            List<String> valoresNuevos = lote.valoresNuevos.get(nivel);
+            for (int i = 0; i < valoresNuevos.size(); i++) {
+                diccionario.agregarMiembro(valoresNuevos.get(i), lote.padresNuevos.get(nivel).get(i));
+            }
+        }
+        indice.idToMiembro.putAll(lote.idsNuevos);
+
+        indice.miembroPorFila.copiar(lote.miembrosLote, lote.inicio, lote.cantidadFilas);
+        for (int nivel = 0; nivel < indice.diccionarios.size(); nivel++) {
+            for (Map.Entry<Integer, BitmapFilas> entry : lote.filas.get(nivel).entrySet()) {
+                indice.diccionarios.get(nivel).anexarFilas(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private int resolverMiembro(int idValor) {
+        Integer miembro = indice.idToMiembro.get(idValor);
+        if (miembro == null) {
             throw new IllegalArgumentException("El id " + idValor + " del valor no existe en la dimensión " + nombre);
         }
+        return miembro;
+    }
 
-        StringBuilder valorAcumulado = new StringBuilder();
-        for (int i = 0; i < valores.length; i++) {
-            if (i > 0) {
-                valorAcumulado.append("/");
+    private boolean isIncluido(int nivel, int ordinal) {
+        boolean[] incluidos = incluidosPorNivel[nivel];
+        return incluidos == null || (ordinal < incluidos.length && incluidos[ordinal]);
+    }
+
+    /**
+     * Índice de miembros a filas de una dimensión construido por un solo hilo
+     * sobre un bloque consecutivo de filas de hechos. Solo lee los diccionarios
+     * de la dimensión; lo que escribe queda en el índice hasta combinarlo.
+     */
+    class IndiceParcial {
+        private int inicio; // Primera fila del bloque
+        private int[] miembrosBloque; // Miembro del último nivel asociado a cada fila del bloque
+        private BitmapFilas[][] filas; // Nivel -> Ordinal -> Filas del bloque
+
+        private IndiceParcial(int inicio, int cantidad) {
+            this.inicio = inicio;
+            this.miembrosBloque = new int[cantidad];
+            this.filas = new BitmapFilas[indice.diccionarios.size()][];
+            for (int nivel = 0; nivel < indice.diccionarios.size(); nivel++) {
+                filas[nivel] = new BitmapFilas[indice.diccionarios.get(nivel).getCantidadMiembros()];
+            }
+        }
+
+        void agregarHecho(int idValor, int fila) {
+            int miembro = resolverMiembro(idValor);
+            miembrosBloque[fila - inicio] = miembro;
+            for (int nivel = indice.diccionarios.size() - 1; nivel >= 0; nivel--) {
+                if (filas[nivel][miembro] == null) {
+                    filas[nivel][miembro] = new BitmapFilas();
+                }
+                filas[nivel][miembro].agregar(fila);
+                miembro = indice.diccionarios.get(nivel).getPadre(miembro);
             }
-            valorAcumulado.append(valores[i]);
-            String valorAcumuladoStr = valorAcumulado.toString();
-            valoresToCeldasConNiveles.get(i).computeIfAbsent(valorAcumuladoStr, k -> new HashSet<>()).add(indiceCelda);
         }
     }
 
-    public Dimension copiar() {
-        Dimension nueva = new Dimension(this.nombre);
-        nueva.valoresToCeldasConNiveles = new ArrayList<>();
-        for (Map<String, Set<Integer>> nivel : this.valoresToCeldasConNiveles) {
-            Map<String, Set<Integer>> nuevoNivel = new LinkedHashMap<>();
-            for (Map.Entry<String, Set<Integer>> entry : nivel.entrySet()) {
-                nuevoNivel.put(entry.getKey(), new HashSet<>(entry.getValue()));
+    /**
+     * Registros y hechos nuevos de una dimensión, preparados sin modificarla
+     * para poder incorporarlos de una sola vez con aplicar(). Los miembros
+     * nuevos reciben los ordinales siguientes a los existentes.
+     */
+    class LoteDimension {
+        private int inicio; // Primera fila de hechos del lote
+        private int cantidadFilas; // Cantidad de filas de hechos del lote
+        private int[] miembrosLote; // Miembro del último nivel asociado a cada fila del lote
+        private List<List<String>> valoresNuevos; // Valores de los miembros nuevos de cada nivel
+        private List<List<Integer>> padresNuevos; // Padre de los miembros nuevos de cada nivel
+        private List<Map<String, Integer>> ordinalesNuevos; // Ordinal de los miembros nuevos de cada nivel
+        private Map<Integer, Integer> idsNuevos; // Mapeo de los ids nuevos (o modificados) a su miembro
+        private List<Map<Integer, BitmapFilas>> filas; // Nivel -> Ordinal -> Filas del lote
+
+        private LoteDimension(int inicio) {
+            this.inicio = inicio;
+            this.cantidadFilas = 0;
+            this.miembrosLote = new int[16];
+            this.valoresNuevos = new ArrayList<>();
+            this.padresNuevos = new ArrayList<>();
+            this.ordinalesNuevos = new ArrayList<>();
+            this.idsNuevos = new HashMap<>();
+            this.filas = new ArrayList<>();
+            for (int nivel = 0; nivel < indice.diccionarios.size(); nivel++) {
+                valoresNuevos.add(new ArrayList<>());
+                padresNuevos.add(new ArrayList<>());
+                ordinalesNuevos.add(new HashMap<>());
+                filas.add(new HashMap<>());
             }
-            nueva.valoresToCeldasConNiveles.add(nuevoNivel);
         }
-        nueva.idToValores = new HashMap<>(this.idToValores);
+
+        /**
+         * Agrega un registro de la dimensión, leyendo sus niveles de la fila
+         * actual de un cursor
+         * 
+         * @param pk     Id del registro
+         * @param cursor Cursor posicionado en la fila del registro
+         */
+        void agregarRegistro(int pk, CursorFilas cursor) {
+            StringBuilder valorAcumulado = new StringBuilder();
+            int miembro = -1;
+            for (int nivel = 0; nivel < niveles.size(); nivel++) {
+                if (nivel > 0) {
+                    valorAcumulado.append("/");
+                }
+                valorAcumulado.append(cursor.getString(niveles.get(nivel)));
+                String valor = valorAcumulado.toString();
+                int ordinal = indice.diccionarios.get(nivel).getOrdinal(valor);
+                if (ordinal < 0) {
+                    Integer nuevo = ordinalesNuevos.get(nivel).get(valor);
+                    if (nuevo == null) {
+                        nuevo = indice.diccionarios.get(nivel).getCantidadMiembros() + valoresNuevos.get(nivel).size();
+                        valoresNuevos.get(nivel).add(valor);
+                        padresNuevos.get(nivel).add(miembro);
+                        ordinalesNuevos.get(nivel).put(valor, nuevo);
+                    }
+                    ordinal = nuevo;
+                }
+                miembro = ordinal;
+            }
+            idsNuevos.put(pk, miembro);
+        }
+
+        /**
+         * Agrega una fila de hechos del lote
+         * 
+         * @param idValor Id (fk) del registro de la dimensión
+         * @param fila    Índice de la fila de hechos
+         */
+        void agregarHecho(int idValor, int fila) {
+            Integer nuevo = idsNuevos.get(idValor);
+            int miembro = nuevo != null ? nuevo : resolverMiembro(idValor);
+            if (cantidadFilas == miembrosLote.length) {
+                miembrosLote = Arrays.copyOf(miembrosLote, cantidadFilas * 2);
+            }
+            miembrosLote[cantidadFilas++] = miembro;
+            for (int nivel = niveles.size() - 1; nivel >= 0; nivel--) {
+                filas.get(nivel).computeIfAbsent(miembro, k -> new BitmapFilas()).agregar(fila);
+                miembro = getPadre(nivel, miembro);
+            }
+        }
+
+        /**
+         * Obtiene el miembro de un nivel al que pertenece un id, considerando
+         * los registros nuevos del lote
+         * 
+         * @param idValor Id del registro de la dimensión
+         * @param nivel   Nivel del miembro
+         * @return Ordinal del miembro en el nivel (los nuevos siguen a los
+         *         existentes)
+         */
+        int getOrdinalNivel(int idValor, int nivel) {
+            Integer nuevo = idsNuevos.get(idValor);
+            int miembro = nuevo != null ? nuevo : resolverMiembro(idValor);
+            for (int n = niveles.size() - 1; n > nivel; n--) {
+                miembro = getPadre(n, miembro);
+            }
+            return miembro;
+        }
+
+        private int getPadre(int nivel, int ordinal) {
+            DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+            if (ordinal < diccionario.getCantidadMiembros()) {
+                return diccionario.getPadre(ordinal);
+            }
+            return padresNuevos.get(nivel).get(ordinal - diccionario.getCantidadMiembros());
+        }
+    }
+
+    /**
+     * Miembros de la dimensión y su asociación con las filas de hechos. Se
+     * comparte entre las copias de la dimensión (que solo difieren en el nivel
+     * actual y los filtros), de modo que los hechos anexados al cubo son
+     * visibles en todas.
+     */
+    private static class Indice {
+        private List<DiccionarioNivel> diccionarios; // Miembros de cada nivel, con sus filas de hechos
+        private Map<Integer, Integer> idToMiembro; // Mapeo de ids (pk) de la dimensión al ordinal de su miembro en el último nivel
+        private ColumnaEnteros miembroPorFila; // Ordinal del miembro del último nivel asociado a cada fila de hechos
+
+        private Indice(ArenaCubo arena) {
+            this.diccionarios = new ArrayList<>();
+            this.idToMiembro = new HashMap<>();
+            this.miembroPorFila = new ColumnaEnteros(arena);
+        }
+    }
+
+    /**
+     * Crea una copia de la dimensión con su propio nivel actual y sus propios
+     * filtros. Los diccionarios y las filas de hechos no se modifican al filtrar,
+     * por lo que se comparten con la original; la copia solo agrega los miembros
+     * conservados de los niveles que filtre.
+     * 
+     * @return Copia de la dimensión
+     */
+    public Dimension copiar() {
+        Dimension nueva = new Dimension(this.nombre, null);
+        nueva.indice = this.indice;
+        nueva.incluidosPorNivel = this.incluidosPorNivel.clone();
         nueva.columnaFkHechos = this.columnaFkHechos;
         nueva.niveles = new ArrayList<>(this.niveles);
         nueva.nivelActual = this.nivelActual;
-        nueva.valorToPk = new HashMap<>(this.valorToPk);
         return nueva;
     }
 
@@ -144,15 +818,37 @@ public class Dimension {
         filtrar(new String[] { valor });
     }
 
+    /**
+     * Filtra la dimensión en el nivel actual, conservando solo los valores
+     * indicados
+     * 
+     * @param valores Valores a conservar
+     * @see #filtrar(int, String[])
+     */
     public void filtrar(String[] valores) {
-        Map<String, Set<Integer>> nivelAct = valoresToCeldasConNiveles.get(nivelActual);
-        Map<String, Set<Integer>> nuevosValores = new LinkedHashMap<>();
+        filtrar(nivelActual, valores);
+    }
+
+    /**
+     * Filtra la dimensión en un nivel, conservando solo los valores indicados
+     * (y que ya cumplían los filtros anteriores del nivel). Solo se registran
+     * los miembros conservados; las filas que cumplen el filtro se calculan al
+     * consultar (ver getFiltro()).
+     * 
+     * @param nivel   Nivel de los valores
+     * @param valores Valores a conservar
+     */
+    public void filtrar(int nivel, String[] valores) {
+        verificarNivel(nivel);
+        DiccionarioNivel diccionario = indice.diccionarios.get(nivel);
+        boolean[] incluidos = new boolean[diccionario.getCantidadMiembros()];
         for (String valor : valores) {
-            if (nivelAct.containsKey(valor)) {
-                nuevosValores.put(valor, nivelAct.get(valor));
+            int ordinal = diccionario.getOrdinal(valor);
+            if (ordinal >= 0 && isIncluido(nivel, ordinal)) {
+                incluidos[ordinal] = true;
             }
         }
-        valoresToCeldasConNiveles.set(nivelActual, nuevosValores);
+        incluidosPorNivel[nivel] = incluidos;
     }
 
 }
@@ -0,0 +1,233 @@
+package olapcube.estructura;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import olapcube.metricas.Medida;
+
+/**
+ * Especificación de una consulta de N dimensiones: filtros (dimensión, nivel y
+ * miembros a conservar), dimensiones de agrupación con su nivel, medidas sobre
+ * hechos y orden de los grupos. Define los métodos encadenables que comparten
+ * ConsultaCubo y ConsultaFragmentada; cada una resuelve las medidas por nombre
+ * y ejecuta la especificación a su manera.
+ * 
+ * @param <C> Tipo concreto de la consulta, que devuelven los métodos
+ *            encadenables
+ */
+public abstract class EspecificacionConsulta<C extends EspecificacionConsulta<C>> {
+    private List<String> dimensionesFiltro; // Dimensión de cada filtro
+    private List<Integer> nivelesFiltro; // Nivel de cada filtro (-1 = nivel actual de la dimensión)
+    private List<String[]> valoresFiltro; // Miembros que conserva cada filtro
+    private List<String> dimensionesGrupo; // Dimensiones de agrupación
+    private List<Integer> nivelesGrupo; // Nivel de cada dimensión de agrupación (-1 = nivel actual)
+    private List<String> hechos; // Hechos sobre los que se calculan las medidas
+    private List<Medida> medidas; // Medida a calcular sobre cada hecho
+    private Orden orden; // Orden de los grupos (null = por valores de las dimensiones)
+
+    protected EspecificacionConsulta() {
+        this.dimensionesFiltro = new ArrayList<>();
+        this.nivelesFiltro = new ArrayList<>();
+        this.valoresFiltro = new ArrayList<>();
+        this.dimensionesGrupo = new ArrayList<>();
+        this.nivelesGrupo = new ArrayList<>();
+        this.hechos = new ArrayList<>();
+        this.medidas = new ArrayList<>();
+    }
+
+    /**
+     * Devuelve esta consulta con su tipo concreto, para encadenar los métodos
+     * 
+     * @return Esta consulta
+     */
+    protected abstract C esta();
+
+    /**
+     * Busca una medida por nombre entre las que puede calcular la consulta
+     * 
+     * @param nombreMedida Nombre de la medida
+     * @return Medida, o null si no existe
+     */
+    protected abstract Medida buscarMedida(String nombreMedida);
+
+    /**
+     * Verifica que un hecho se pueda medir en la consulta
+     * 
+     * @param hecho Nombre del hecho
+     * @throws IllegalArgumentException Si el hecho no existe
+     */
+    protected abstract void verificarHecho(String hecho);
+
+    /**
+     * Conserva solo las filas de los miembros indicados de un nivel de una
+     * dimensión. Varios filtros sobre la misma dimensión se combinan (las filas
+     * deben cumplir todos).
+     * 
+     * @param dimension Nombre de la dimensión
+     * @param nivel     Nivel de los miembros (0 es el más general)
+     * @param valores   Miembros a conservar
+     * @return Esta consulta
+     */
+    public C filtrar(String dimension, int nivel, String... valores) {
+        dimensionesFiltro.add(dimension);
+        nivelesFiltro.add(nivel);
+        valoresFiltro.add(valores.clone());
+        return esta();
+    }
+
+    /**
+     * Conserva solo las filas de los miembros indicados del nivel actual de una
+     * dimensión
+     * 
+     * @param dimension Nombre de la dimensión
+     * @param valores   Miembros a conservar
+     * @return Esta consulta
+     */
+    public C filtrar(String dimension, String... valores) {
+        return filtrar(dimension, -1, valores);
+    }
+
+    /**
+     * Agrega una dimensión de agrupación en un nivel dado
+     * 
+     * @param dimension Nombre de la dimensión
+     * @param nivel     Nivel de agrupación (0 es el más general)
+     * @return Esta consulta
+     */
+    public C agruparPor(String dimension, int nivel) {
+        dimensionesGrupo.add(dimension);
+        nivelesGrupo.add(nivel);
+        return esta();
+    }
+
+    /**
+     * Agrega una dimensión de agrupación en su nivel actual
+     * 
+     * @param dimension Nombre de la dimensión
+     * @return Esta consulta
+     */
+    public C agruparPor(String dimension) {
+        return agruparPor(dimension, -1);
+    }
+
+    /**
+     * Agrega una medida a calcular sobre un hecho en cada grupo
+     * 
+     * @param hecho        Nombre del hecho
+     * @param nombreMedida Nombre de la medida
+     * @return Esta consulta
+     */
+    public C medir(String hecho, String nombreMedida) {
+        Medida medida = buscarMedida(nombreMedida);
+        if (medida == null) {
+            throw new IllegalArgumentException("Medida no encontrada: " + nombreMedida);
+        }
+        return medir(hecho, medida);
+    }
+
+    /**
+     * Agrega una medida, registrada o no, a calcular sobre un hecho en cada
+     * grupo
+     * 
+     * @param hecho  Nombre del hecho
+     * @param medida Medida a calcular
+     * @return Esta consulta
+     */
+    public C medir(String hecho, Medida medida) {
+        verificarHecho(hecho);
+        hechos.add(hecho);
+        medidas.add(medida);
+        return esta();
+    }
+
+    /**
+     * Ordena los grupos por el resultado de una de las medidas
+     * 
+     * @param medida      Posición de la medida, en el orden en que se agregaron
+     *                    con medir()
+     * @param descendente true para empezar por los mayores resultados
+     * @return Esta consulta
+     */
+    public C ordenarPor(int medida, boolean descendente) {
+        Orden nuevo = descendente ? Orden.descendente(medida) : Orden.ascendente(medida);
+        orden = orden == null ? nuevo : nuevo.saltear(orden.getDesplazamiento()).limitar(orden.getLimite());
+        return esta();
+    }
+
+    /**
+     * Limita la cantidad de grupos devueltos (requiere ordenarPor)
+     * 
+     * @param limite Grupos a devolver
+     * @return Esta consulta
+     */
+    public C limitar(int limite) {
+        orden = getOrdenIndicado().limitar(limite);
+        return esta();
+    }
+
+    /**
+     * Saltea los primeros grupos del orden (requiere ordenarPor)
+     * 
+     * @param desplazamiento Grupos a saltear
+     * @return Esta consulta
+     */
+    public C saltear(int desplazamiento) {
+        orden = getOrdenIndicado().saltear(desplazamiento);
+        return esta();
+    }
+
+    private Orden getOrdenIndicado() {
+        if (orden == null) {
+            throw new IllegalStateException("Hay que indicar ordenarPor antes de limitar o saltear");
+        }
+        return orden;
+    }
+
+    /**
+     * Verifica que la medida del orden, si lo hay, esté entre las pedidas
+     */
+    protected void verificarOrden() {
+        if (orden != null && orden.getMedida() >= medidas.size()) {
+            throw new IllegalStateException("La consulta no tiene la medida " + orden.getMedida() + " para ordenar");
+        }
+    }
+
+    public List<String> getDimensionesFiltro() {
+        return Collections.unmodifiableList(dimensionesFiltro);
+    }
+
+    public List<Integer> getNivelesFiltro() {
+        return Collections.unmodifiableList(nivelesFiltro);
+    }
+
+    public List<String[]> getValoresFiltro() {
+        return Collections.unmodifiableList(valoresFiltro);
+    }
+
+    public List<String> getDimensionesGrupo() {
+        return Collections.unmodifiableList(dimensionesGrupo);
+    }
+
+    public List<Integer> getNivelesGrupo() {
+        return Collections.unmodifiableList(nivelesGrupo);
+    }
+
+    public List<String> getHechos() {
+        return Collections.unmodifiableList(hechos);
+    }
+
+    public List<Medida> getMedidas() {
+        return Collections.unmodifiableList(medidas);
+    }
+
+    /**
+     * Obtiene el orden de los grupos
+     * 
+     * @return Orden, o null si los grupos se ordenan por los valores de las
+     *         dimensiones de agrupación
+     */
+    public Orden getOrden() {
+        return orden;
+    }
+}
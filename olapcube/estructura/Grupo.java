@@ -0,0 +1,106 @@
+package olapcube.estructura;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import olapcube.metricas.Acumulador;
+import olapcube.metricas.Medida;
+
+/**
+ * Representa un grupo no vacío de filas resultado de agrupar el cubo por una o
+ * más dimensiones. Guarda el valor de cada dimensión de agrupación y, según
+ * cómo se haya agrupado, la celda con las filas del grupo o los resultados de
+ * las medidas calculadas sobre ellas.
+ * 
+ * Los grupos con resultados de medidas se pueden serializar. La celda no se
+ * serializa, porque referencia la tabla de hechos del cubo: un grupo con celda
+ * llega sin ella.
+ */
+public class Grupo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String[] valores; // Valor de cada dimensión, en el orden de agrupación
+    private transient Celda celda; // Celda con las filas del grupo (null si se acumularon medidas o se deserializó)
+    private Acumulador[] acumuladores; // Acumulador de cada medida (null si se guardaron las filas)
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param valores Valor de cada dimensión de agrupación
+     * @param celda   Celda con las filas del grupo
+     */
+    public Grupo(String[] valores, Celda celda) {
+        this.valores = valores;
+        this.celda = celda;
+    }
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param valores      Valor de cada dimensión de agrupación
+     * @param acumuladores Acumulador de cada medida
+     */
+    public Grupo(String[] valores, Acumulador[] acumuladores) {
+        this.valores = valores;
+        this.acumuladores = acumuladores;
+    }
+
+    public String getValor(int dimension) {
+        return valores[dimension];
+    }
+
+    public String[] getValores() {
+        return valores;
+    }
+
+    public Celda getCelda() {
+        return celda;
+    }
+
+    public double getResultado(int medida) {
+        return acumuladores[medida].resultado();
+    }
+
+    public double[] getResultados() {
+        double[] resultados = new double[acumuladores.length];
+        for (int i = 0; i < acumuladores.length; i++) {
+            resultados[i] = acumuladores[i].resultado();
+        }
+        return resultados;
+    }
+
+    Acumulador[] getAcumuladores() {
+        return acumuladores;
+    }
+
+    /**
+     * Combina este grupo con otro con los mismos valores y medidas, por ejemplo
+     * el resultado parcial de otro fragmento del cubo. Como Cuboide.combinar(),
+     * acumula los dos en acumuladores nuevos: ninguno de los grupos se
+     * modifica, así que también sirve para los de una consulta al cubo, que
+     * pueden estar compartidos con la cache o con un cuboide.
+     * 
+     * @param otro    Grupo a combinar
+     * @param medidas Medidas de los acumuladores, en el orden de los grupos
+     * @return Grupo nuevo con los valores de este y los acumuladores combinados
+     */
+    public Grupo combinar(Grupo otro, Medida[] medidas) {
+        if (acumuladores == null || otro.acumuladores == null || acumuladores.length != medidas.length
+                || otro.acumuladores.length != medidas.length) {
+            throw new IllegalArgumentException("Solo se pueden combinar grupos con las mismas medidas");
+        }
+        Acumulador[] combinados = new Acumulador[medidas.length];
+        for (int i = 0; i < medidas.length; i++) {
+            combinados[i] = medidas[i].crearAcumulador();
+            combinados[i].combinar(acumuladores[i]);
+            combinados[i].combinar(otro.acumuladores[i]);
+        }
+        return new Grupo(valores, combinados);
+    }
+
+    @Override
+    public String toString() {
+        return "Grupo [valores=" + Arrays.toString(valores) + ", celda=" + celda + ", resultados="
+                + (acumuladores != null ? Arrays.toString(getResultados()) : null) + "]";
+    }
+}
@@ -0,0 +1,136 @@
+package olapcube.estructura;
+
+import java.util.List;
+
+/**
+ * Orden de los grupos de una agregación por el resultado de una de sus medidas
+ * (ORDER BY), con desplazamiento y límite opcionales (OFFSET y LIMIT).
+ * 
+ * Ejemplo: los 20 productos con mayor valor_total, sin los 40 primeros:
+ * 
+ * <pre>
+ * Orden orden = Orden.descendente(0).saltear(40).limitar(20);
+ * </pre>
+ * 
+ * Es inmutable: saltear y limitar devuelven un orden nuevo. Esta clase utiliza
+ * un constructor privado y métodos estáticos para la creación de instancias.
+ */
+public class Orden {
+    public static final int SIN_LIMITE = -1;
+
+    private int medida; // Posición de la medida por la que se ordena, entre las medidas pedidas
+    private boolean descendente; // true si los mayores resultados van primero
+    private int desplazamiento; // Grupos que se saltean al principio
+    private int limite; // Grupos a devolver (SIN_LIMITE para todos)
+
+    private Orden(int medida, boolean descendente, int desplazamiento, int limite) {
+        if (medida < 0) {
+            throw new IllegalArgumentException("Medida inválida: " + medida);
+        }
+        if (desplazamiento < 0) {
+            throw new IllegalArgumentException("El desplazamiento no puede ser negativo: " + desplazamiento);
+        }
+        if (limite < 0 && limite != SIN_LIMITE) {
+            throw new IllegalArgumentException("El límite no puede ser negativo: " + limite);
+        }
+        this.medida = medida;
+        this.descendente = descendente;
+        this.desplazamiento = desplazamiento;
+        this.limite = limite;
+    }
+
+    /**
+     * Método que permite crear un orden de mayor a menor resultado
+     * 
+     * @param medida Posición de la medida entre las medidas de la consulta
+     * @return Orden sin desplazamiento ni límite
+     */
+    public static Orden descendente(int medida) {
+        return new Orden(medida, true, 0, SIN_LIMITE);
+    }
+
+    /**
+     * Método que permite crear un orden de menor a mayor resultado
+     * 
+     * @param medida Posición de la medida entre las medidas de la consulta
+     * @return Orden sin desplazamiento ni límite
+     */
+    public static Orden ascendente(int medida) {
+        return new Orden(medida, false, 0, SIN_LIMITE);
+    }
+
+    /**
+     * Limita la cantidad de grupos devueltos
+     * 
+     * @param limite Grupos a devolver
+     * @return Orden con el límite
+     */
+    public Orden limitar(int limite) {
+        return new Orden(medida, descendente, desplazamiento, limite);
+    }
+
+    /**
+     * Saltea los primeros grupos del orden
+     * 
+     * @param desplazamiento Grupos a saltear
+     * @return Orden con el desplazamiento
+     */
+    public Orden saltear(int desplazamiento) {
+        return new Orden(medida, descendente, desplazamiento, limite);
+    }
+
+    public int getMedida() {
+        return medida;
+    }
+
+    public boolean isDescendente() {
+        return descendente;
+    }
+
+    public int getDesplazamiento() {
+        return desplazamiento;
+    }
+
+    public int getLimite() {
+        return limite;
+    }
+
+    public boolean isLimitado() {
+        return limite != SIN_LIMITE;
+    }
+
+    /**
+     * Aplica el orden a grupos ya calculados, por ejemplo los combinados de
+     * varios fragmentos de un cubo
+     * 
+     * @param grupos Grupos con resultados, ordenados por los valores de las
+     *               dimensiones (que desempatan a igual resultado)
+     * @return Grupos seleccionados, en orden
+     */
+    public List<Grupo> aplicar(List<Grupo> grupos) {
+        return SeleccionPrimeros.seleccionar(grupos, this);
+    }
+
+    /**
+     * Cantidad de grupos que hay que conservar para responder: los salteados
+     * más los devueltos
+     * 
+     * @return Grupos a conservar (Integer.MAX_VALUE si no hay límite)
+     */
+    int getCapacidad() {
+        return isLimitado() ? (int) Math.min((long) desplazamiento + limite, Integer.MAX_VALUE) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Arma la parte de la clave de cache que corresponde al orden
+     */
+    String getClave() {
+        return "orden=" + medida + (descendente ? "d" : "a") + desplazamiento + "+" + limite;
+    }
+
+    @Override
+    public String toString() {
+        return "Orden [medida=" + medida + ", descendente=" + descendente + ", desplazamiento=" + desplazamiento
+                + ", limite=" + (isLimitado() ? limite : "sin límite") + "]";
+    }
+}
@@ -0,0 +1,173 @@
+package olapcube.estructura;
+
+import java.util.Arrays;
+
+/**
+ * Partición de las filas de hechos de un cubo particionado (ver
+ * ConfigCubo.particionadoPor()): las filas de un miembro del nivel de
+ * partición, que el cubo guarda en tramos contiguos. Se describe con los rangos
+ * de filas que ocupa y con el mínimo y el máximo de cada hecho.
+ * 
+ * Es inmutable: al anexar hechos o compactar el cubo se reemplaza por otra.
+ */
+public class ParticionHechos {
+    private String valor; // Miembro del nivel de partición
+    private int[] rangos; // Pares [desde, hasta) de filas, en orden creciente
+    private int cantidadFilas; // Filas de la partición
+    private String[] nombresHechos; // Nombres de los hechos, en el orden de las estadísticas
+    private double[] minimos; // Mínimo de cada hecho en la partición
+    private double[] maximos; // Máximo de cada hecho en la partición
+
+    private ParticionHechos(String valor, int[] rangos, int cantidadFilas, String[] nombresHechos,
+            double[] minimos, double[] maximos) {
+        this.valor = valor;
+        this.rangos = rangos;
+        this.cantidadFilas = cantidadFilas;
+        this.nombresHechos = nombresHechos;
+        this.minimos = minimos;
+        this.maximos = maximos;
+    }
+
+    /**
+     * Crea una partición sin filas
+     * 
+     * @param valor         Miembro del nivel de partición
+     * @param nombresHechos Nombres de los hechos de la tabla
+     * @return Partición vacía
+     */
+    static ParticionHechos vacia(String valor, String[] nombresHechos) {
+        double[] minimos = new double[nombresHechos.length];
+        double[] maximos = new double[nombresHechos.length];
+        Arrays.fill(minimos, Double.POSITIVE_INFINITY);
+        Arrays.fill(maximos, Double.NEGATIVE_INFINITY);
+        return new ParticionHechos(valor, new int[0], 0, nombresHechos, minimos, maximos);
+    }
+
+    /**
+     * Crea una partición con las filas de esta más otras posteriores a todas
+     * ellas (por ejemplo, las de un lote anexado), actualizando los rangos y
+     * las estadísticas
+     * 
+     * @param filas Filas a agregar, todas mayores que las de la partición
+     * @param tabla Tabla de hechos de las filas
+     * @return Partición nueva
+     */
+    ParticionHechos extender(BitmapFilas filas, TablaHechos tabla) {
+        int[] nuevasFilas = filas.toArray();
+        int cortes = 0;
+        for (int i = 0; i < nuevasFilas.length; i++) {
+            int anterior = i > 0 ? nuevasFilas[i - 1] : rangos.length > 0 ? rangos[rangos.length - 1] - 1 : -2;
+            if (nuevasFilas[i] != anterior + 1) {
+                cortes++;
+            }
+        }
+        int[] nuevosRangos = Arrays.copyOf(rangos, rangos.length + 2 * cortes);
+        int cantidadRangos = rangos.length;
+        for (int fila : nuevasFilas) {
+            if (cantidadRangos > 0 && nuevosRangos[cantidadRangos - 1] == fila) {
+                nuevosRangos[cantidadRangos - 1]++;
+            } else {
+                nuevosRangos[cantidadRangos++] = fila;
+                nuevosRangos[cantidadRangos++] = fila + 1;
+            }
+        }
+
+        double[] nuevosMinimos = minimos.clone();
+        double[] nuevosMaximos = maximos.clone();
+        for (int h = 0; h < nombresHechos.length; h++) {
+            ColumnaHechos columna = tabla.getColumna(nombresHechos[h]);
+            double minimo = nuevosMinimos[h];
+            double maximo = nuevosMaximos[h];
+            for (int fila : nuevasFilas) {
+                double valorFila = columna.get(fila);
+                minimo = Math.min(minimo, valorFila);
+                maximo = Math.max(maximo, valorFila);
+            }
+            nuevosMinimos[h] = minimo;
+            nuevosMaximos[h] = maximo;
+        }
+        return new ParticionHechos(valor, nuevosRangos, cantidadFilas + nuevasFilas.length, nombresHechos,
+                nuevosMinimos, nuevosMaximos);
+    }
+
+    public String getValor() {
+        return valor;
+    }
+
+    public int getCantidadFilas() {
+        return cantidadFilas;
+    }
+
+    /**
+     * Obtiene la cantidad de rangos de filas consecutivas de la partición: uno
+     * si el cubo está compactado y, si no, los tramos en que se cargaron sus
+     * filas (ver CursorHechos) más los de cada lote anexado que la toca
+     * 
+     * @return Cantidad de rangos
+     */
+    public int getCantidadRangos() {
+        return rangos.length / 2;
+    }
+
+    /**
+     * Obtiene el menor valor de un hecho en la partición
+     * 
+     * @param hecho Nombre del hecho
+     * @return Mínimo (NaN si algún valor es NaN)
+     */
+    public double getMinimo(String hecho) {
+        return minimos[getPosicionHecho(hecho)];
+    }
+
+    /**
+     * Obtiene el mayor valor de un hecho en la partición
+     * 
+     * @param hecho Nombre del hecho
+     * @return Máximo (NaN si algún valor es NaN)
+     */
+    public double getMaximo(String hecho) {
+        return maximos[getPosicionHecho(hecho)];
+    }
+
+    private int getPosicionHecho(String hecho) {
+        for (int h = 0; h < nombresHechos.length; h++) {
+            if (nombresHechos[h].equals(hecho)) {
+                return h;
+            }
+        }
+        throw new IllegalArgumentException("Hecho no encontrado: " + hecho);
+    }
+
+    /**
+     * Obtiene los rangos de filas de la partición
+     * 
+     * @return Pares [desde, hasta) en orden creciente (no modificar)
+     */
+    int[] getRangos() {
+        return rangos;
+    }
+
+    /**
+     * Obtiene las filas de la partición
+     * 
+     * @return Bitmap con las filas de todos los rangos
+     */
+    BitmapFilas getFilas() {
+        BitmapFilas filas = new BitmapFilas();
+        for (int r = 0; r < rangos.length; r += 2) {
+            filas = filas.anexar(BitmapFilas.rango(rangos[r], rangos[r + 1]));
+        }
+        return filas;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder estadisticas = new StringBuilder();
+        for (int h = 0; h < nombresHechos.length; h++) {
+            estadisticas.append(", ").append(nombresHechos[h]).append("=[").append(minimos[h]).append(", ")
+                    .append(maximos[h]).append("]");
+        }
+        return "ParticionHechos [valor=" + valor + ", filas=" + cantidadFilas + ", rangos=" + getCantidadRangos()
+                + estadisticas + "]";
+    }
+}
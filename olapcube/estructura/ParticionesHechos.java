@@ -0,0 +1,240 @@
+package olapcube.estructura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Particiones de las filas de hechos de un cubo por los miembros de un nivel
+ * de una dimensión (ver ConfigCubo.particionadoPor()), indexadas por el
+ * ordinal del miembro.
+ * 
+ * Las filas de cada partición son las del miembro en el índice de la
+ * dimensión, así que las particiones se arman a partir de él (por ejemplo al
+ * cargar un snapshot). Las consultas usan los rangos de las particiones que
+ * conservan los filtros en lugar de intersectar bitmaps por miembro. Se
+ * comparte entre las copias del cubo y solo se modifica con el bloqueo de
+ * escritura del cubo tomado.
+ */
+final class ParticionesHechos {
+    private String dimension; // Nombre de la dimensión de partición
+    private int nivel; // Nivel de partición
+    private ParticionHechos[] particiones; // Partición de cada miembro del nivel (null si no tiene filas)
+
+    ParticionesHechos(String dimension, int nivel) {
+        this.dimension = dimension;
+        this.nivel = nivel;
+        this.particiones = new ParticionHechos[0];
+    }
+
+    String getDimension() {
+        return dimension;
+    }
+
+    int getNivel() {
+        return nivel;
+    }
+
+    /**
+     * Incorpora las filas de la tabla desde una dada: crea las particiones de
+     * los miembros nuevos y extiende las existentes con sus rangos y
+     * estadísticas. Se llama con desde = 0 al construir el cubo y con la
+     * primera fila de cada lote anexado.
+     * 
+     * @param dim   Dimensión de partición, con las filas ya indexadas
+     * @param tabla Tabla de hechos
+     * @param desde Primera fila a incorporar
+     */
+    void actualizar(Dimension dim, TablaHechos tabla, int desde) {
+        int cantidadMiembros = dim.getCantidadMiembros(nivel);
+        ParticionHechos[] nuevas = Arrays.copyOf(particiones, Math.max(particiones.length, cantidadMiembros));
+        BitmapFilas incorporadas = desde > 0 ? BitmapFilas.rango(desde, tabla.getCantidadFilas()) : null;
+        for (int ordinal = 0; ordinal < cantidadMiembros; ordinal++) {
+            BitmapFilas filas = dim.getFilasOrdinal(nivel, ordinal);
+            if (filas != null && incorporadas != null) {
+                filas = filas.and(incorporadas);
+            }
+            if (filas == null || filas.isEmpty()) {
+                continue;
+            }
+            ParticionHechos particion = nuevas[ordinal] != null ? nuevas[ordinal]
+                    : ParticionHechos.vacia(dim.getValorMiembro(nivel, ordinal), tabla.getNombresHechos());
+            nuevas[ordinal] = particion.extender(filas, tabla);
+        }
+        particiones = nuevas;
+    }
+
+    /**
+     * Descarta todas las particiones, para volver a armarlas con actualizar()
+     * después de renumerar las filas
+     */
+    void reiniciar() {
+        particiones = new ParticionHechos[0];
+    }
+
+    /**
+     * Quita la partición de un miembro
+     * 
+     * @param valor Miembro del nivel de partición
+     * @return Partición quitada
+     */
+    ParticionHechos quitar(String valor) {
+        for (int ordinal = 0; ordinal < particiones.length; ordinal++) {
+            if (particiones[ordinal] != null && particiones[ordinal].getValor().equals(valor)) {
+                ParticionHechos particion = particiones[ordinal];
+                ParticionHechos[] nuevas = particiones.clone();
+                nuevas[ordinal] = null;
+                particiones = nuevas;
+                return particion;
+            }
+        }
+        throw new IllegalArgumentException("Partición no encontrada en " + dimension + ": " + valor);
+    }
+
+    /**
+     * Obtiene las particiones, en el orden de los miembros del nivel
+     * 
+     * @return Particiones con filas
+     */
+    List<ParticionHechos> getParticiones() {
+        List<ParticionHechos> lista = new ArrayList<>();
+        for (ParticionHechos particion : particiones) {
+            if (particion != null) {
+                lista.add(particion);
+            }
+        }
+        return lista;
+    }
+
+    /**
+     * Obtiene la cantidad de filas de todas las particiones, es decir las
+     * filas de la tabla que no se descartaron
+     * 
+     * @return Cantidad de filas
+     */
+    int getCantidadFilas() {
+        int cantidad = 0;
+        for (ParticionHechos particion : particiones) {
+            if (particion != null) {
+                cantidad += particion.getCantidadFilas();
+            }
+        }
+        return cantidad;
+    }
+
+    /**
+     * Obtiene los rangos de filas de las particiones conservadas, ordenados
+     * por fila. Los rangos de distintas particiones no se solapan.
+     * 
+     * @param conservadas Ordinal -> true si la partición se conserva (null
+     *                    para conservarlas todas)
+     * @return Pares [desde, hasta) en orden creciente
+     */
+    private int[] getRangos(boolean[] conservadas) {
+        int cantidad = 0;
+        for (int ordinal = 0; ordinal < particiones.length; ordinal++) {
+            if (isConservada(conservadas, ordinal)) {
+                cantidad += particiones[ordinal].getCantidadRangos();
+            }
+        }
+        long[] ordenados = new long[cantidad];
+        int posicion = 0;
+        for (int ordinal = 0; ordinal < particiones.length; ordinal++) {
+            if (isConservada(conservadas, ordinal)) {
+                int[] rangos = particiones[ordinal].getRangos();
+                for (int r = 0; r < rangos.length; r += 2) {
+                    ordenados[posicion++] = (long) rangos[r] << 32 | rangos[r + 1];
+                }
+            }
+        }
+        Arrays.sort(ordenados);
+        int[] rangos = new int[2 * cantidad];
+        for (int r = 0; r < cantidad; r++) {
+            rangos[2 * r] = (int) (ordenados[r] >>> 32);
+            rangos[2 * r + 1] = (int) ordenados[r];
+        }
+        return rangos;
+    }
+
+    private boolean isConservada(boolean[] conservadas, int ordinal) {
+        return particiones[ordinal] != null
+                && (conservadas == null || ordinal < conservadas.length && conservadas[ordinal]);
+    }
+
+    /**
+     * Obtiene las filas de las particiones conservadas
+     * 
+     * @param conservadas Ordinal -> true si la partición se conserva (null
+     *                    para conservarlas todas)
+     * @return Bitmap con las filas, armado por rangos
+     */
+    BitmapFilas getFilas(boolean[] conservadas) {
+        int[] rangos = getRangos(conservadas);
+        BitmapFilas filas = new BitmapFilas();
+        for (int r = 0; r < rangos.length; r += 2) {
+            filas = filas.anexar(BitmapFilas.rango(rangos[r], rangos[r + 1]));
+        }
+        return filas;
+    }
+
+    /**
+     * Obtiene las filas de todas las particiones, en orden creciente
+     * 
+     * @return Índices de las filas
+     */
+    int[] getFilasOrdenadas() {
+        int[] rangos = getRangos(null);
+        int cantidad = 0;
+        for (int r = 0; r < rangos.length; r += 2) {
+            cantidad += rangos[r + 1] - rangos[r];
+        }
+        int[] filas = new int[cantidad];
+        int posicion = 0;
+        for (int r = 0; r < rangos.length; r += 2) {
+            for (int fila = rangos[r]; fila < rangos[r + 1]; fila++) {
+                filas[posicion++] = fila;
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Recorre las filas de todas las particiones en orden creciente, rango por
+     * rango
+     * 
+     * @param accion Acción a ejecutar con cada fila
+     */
+    void recorrer(IntConsumer accion) {
+        int[] rangos = getRangos(null);
+        for (int r = 0; r < rangos.length; r += 2) {
+            for (int fila = rangos[r]; fila < rangos[r + 1]; fila++) {
+                accion.accept(fila);
+            }
+        }
+    }
+
+    /**
+     * Obtiene las filas de todas las particiones agrupadas: partición por
+     * partición en el orden de los miembros, y en orden creciente dentro de
+     * cada una. Es el orden de las filas al compactar el cubo.
+     * 
+     * @return Índices de las filas
+     */
+    int[] getFilasAgrupadas() {
+        int[] filas = new int[getCantidadFilas()];
+        int posicion = 0;
+        for (ParticionHechos particion : particiones) {
+            if (particion == null) {
+                continue;
+            }
+            int[] rangos = particion.getRangos();
+            for (int r = 0; r < rangos.length; r += 2) {
+                for (int fila = rangos[r]; fila < rangos[r + 1]; fila++) {
+                    filas[posicion++] = fila;
+                }
+            }
+        }
+        return filas;
+    }
+}
@@ -0,0 +1,177 @@
+package olapcube.estructura;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Selecciona los primeros grupos según un Orden con un montículo acotado: solo
+ * conserva los desplazamiento + límite mejores vistos hasta el momento, con el
+ * peor en la raíz, por lo que la memoria es proporcional a N y no a la
+ * cantidad de grupos.
+ * 
+ * Cada candidato tiene un identificador (por ejemplo, el grupo del
+ * Agrupador), un resultado y una clave de desempate: a igual resultado va
+ * primero la menor clave, que es el orden por valores de las dimensiones. Los
+ * resultados NaN van siempre al final.
+ */
+class SeleccionPrimeros {
+    private Orden orden; // Orden a aplicar
+    private int capacidad; // Candidatos a conservar
+    private int[] ids; // Identificador de cada candidato (montículo con el peor en la raíz)
+    private double[] resultados; // Resultado de cada candidato
+    private long[] claves; // Clave de desempate de cada candidato
+    private int cantidad; // Candidatos conservados
+
+    SeleccionPrimeros(Orden orden) {
+        this.orden = orden;
+        this.capacidad = orden.getCapacidad();
+        int inicial = Math.min(capacidad, 16);
+        this.ids = new int[inicial];
+        this.resultados = new double[inicial];
+        this.claves = new long[inicial];
+    }
+
+    /**
+     * Selecciona los primeros grupos de una lista ya calculada (ordenada por los
+     * valores de las dimensiones)
+     * 
+     * @param grupos Grupos con resultados
+     * @param orden  Orden a aplicar
+     * @return Grupos seleccionados, en orden
+     */
+    static List<Grupo> seleccionar(List<Grupo> grupos, Orden orden) {
+        SeleccionPrimeros seleccion = new SeleccionPrimeros(orden);
+        for (int i = 0; i < grupos.size(); i++) {
+            seleccion.ofrecer(i, grupos.get(i).getResultado(orden.getMedida()), i);
+        }
+        int[] seleccionados = seleccion.getIds();
+        List<Grupo> resultado = new ArrayList<>(seleccionados.length);
+        for (int id : seleccionados) {
+            resultado.add(grupos.get(id));
+        }
+        return resultado;
+    }
+
+    /**
+     * Ofrece un candidato; se conserva si está entre los primeros vistos
+     * 
+     * @param id        Identificador del candidato
+     * @param resultado Resultado de la medida de orden
+     * @param clave     Clave de desempate
+     */
+    void ofrecer(int id, double resultado, long clave) {
+        if (capacidad == 0) {
+            return;
+        }
+        if (cantidad < capacidad) {
+            if (cantidad == ids.length) {
+                int nueva = (int) Math.min((long) ids.length * 2, capacidad);
+                ids = Arrays.copyOf(ids, nueva);
+                resultados = Arrays.copyOf(resultados, nueva);
+                claves = Arrays.copyOf(claves, nueva);
+            }
+            ids[cantidad] = id;
+            resultados[cantidad] = resultado;
+            claves[cantidad] = clave;
+            subir(cantidad++);
+        } else if (esMejor(resultado, clave, resultados[0], claves[0])) {
+            ids[0] = id;
+            resultados[0] = resultado;
+            claves[0] = clave;
+            bajar(0);
+        }
+    }
+
+    /**
+     * Indica si un candidato con este resultado (y cualquier clave) puede
+     * entrar todavía en la selección. Sirve para cortar la búsqueda cuando se
+     * conoce una cota del resultado de los candidatos que faltan.
+     * 
+     * @param cota Resultado máximo (o mínimo, en orden ascendente) de los
+     *             candidatos restantes
+     * @return false si ningún candidato con esa cota puede entrar
+     */
+    boolean admite(double cota) {
+        if (cantidad < capacidad) {
+            return true;
+        }
+        if (Double.isNaN(resultados[0])) {
+            return true;
+        }
+        return esMejor(cota, Long.MIN_VALUE, resultados[0], claves[0]);
+    }
+
+    /**
+     * Obtiene los identificadores seleccionados, en orden, sin los salteados
+     * 
+     * @return Identificadores
+     */
+    int[] getIds() {
+        Integer[] orden = new Integer[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> esMejor(resultados[a], claves[a], resultados[b], claves[b]) ? -1
+                : esMejor(resultados[b], claves[b], resultados[a], claves[a]) ? 1 : 0);
+        int desde = Math.min(this.orden.getDesplazamiento(), cantidad);
+        int[] seleccionados = new int[cantidad - desde];
+        for (int i = desde; i < cantidad; i++) {
+            seleccionados[i - desde] = ids[orden[i]];
+        }
+        return seleccionados;
+    }
+
+    private boolean esMejor(double resultado, long clave, double otroResultado, long otraClave) {
+        boolean nan = Double.isNaN(resultado);
+        if (nan != Double.isNaN(otroResultado)) {
+            return !nan;
+        }
+        int comparacion = orden.isDescendente() ? Double.compare(resultado, otroResultado)
+                : Double.compare(otroResultado, resultado);
+        if (comparacion != 0) {
+            return comparacion > 0;
+        }
+        return clave < otraClave;
+    }
+
+    // El montículo tiene el peor candidato en la raíz
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (!esMejor(resultados[padre], claves[padre], resultados[i], claves[i])) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int peor = i;
+            for (int hijo = 2 * i + 1; hijo <= 2 * i + 2 && hijo < cantidad; hijo++) {
+                if (esMejor(resultados[peor], claves[peor], resultados[hijo], claves[hijo])) {
+                    peor = hijo;
+                }
+            }
+            if (peor == i) {
+                return;
+            }
+            intercambiar(i, peor);
+            i = peor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double resultado = resultados[a];
+        resultados[a] = resultados[b];
+        resultados[b] = resultado;
+        long clave = claves[a];
+        claves[a] = claves[b];
+        claves[b] = clave;
+    }
+}
@@ -0,0 +1,171 @@
+package olapcube.estructura;
+
+import java.util.List;
+
+import olapcube.Proyeccion;
+import olapcube.metricas.Medida;
+
+/**
+ * Estado de consulta de un usuario sobre un cubo compartido: nivel actual y
+ * filtros de cada dimensión, y hecho y medida seleccionados.
+ * 
+ * La sesión es inmutable: rollUp, drillDown, slice, dice y las selecciones
+ * devuelven una sesión nueva y dejan la original como estaba. Cada sesión
+ * tiene su propia vista del cubo (ver Cubo.abrirSesion()), que comparte los
+ * hechos, diccionarios y bitmaps con el cubo y solo agrega el nivel y los
+ * miembros conservados de cada dimensión. Por eso muchos hilos pueden
+ * consultar el mismo cubo, cada uno con sus sesiones, sin interferir entre sí
+ * y sin construir un cubo por usuario.
+ */
+public final class Sesion {
+    private final Cubo vista; // Vista del cubo con los niveles y filtros de la sesión (no se modifica)
+    private final String hecho; // Hecho seleccionado
+    private final Medida medida; // Medida seleccionada
+
+    /**
+     * Constructor de la clase. La vista no debe modificarse después de crear la
+     * sesión.
+     * 
+     * @param vista  Vista del cubo con los niveles y filtros de la sesión
+     * @param hecho  Hecho seleccionado
+     * @param medida Medida seleccionada
+     */
+    Sesion(Cubo vista, String hecho, Medida medida) {
+        this.vista = vista;
+        this.hecho = hecho;
+        this.medida = medida;
+    }
+
+    public String getHecho() {
+        return hecho;
+    }
+
+    public Medida getMedida() {
+        return medida;
+    }
+
+    public int getNivelActual(String dimension) {
+        return vista.getDimension(dimension).getNivelActual();
+    }
+
+    /**
+     * Obtiene los valores visibles del nivel actual de una dimensión, según los
+     * filtros de la sesión
+     * 
+     * @param dimension Nombre de la dimensión
+     * @return Valores del nivel actual
+     */
+    public String[] getValoresNivel(String dimension) {
+        Dimension dim = vista.getDimension(dimension);
+        return dim.getValoresNivel(dim.getNivelActual());
+    }
+
+    public Sesion seleccionarHecho(String hecho) {
+        if (!vista.getNombresHechos().contains(hecho)) {
+            throw new IllegalArgumentException("Hecho no encontrado: " + hecho);
+        }
+        return new Sesion(vista, hecho, medida);
+    }
+
+    public Sesion seleccionarMedida(String nombreMedida) {
+        Medida medidaSeleccionada = vista.getMedida(nombreMedida);
+        if (medidaSeleccionada == null) {
+            throw new IllegalArgumentException("Medida no encontrada: " + nombreMedida);
+        }
+        return new Sesion(vista, hecho, medidaSeleccionada);
+    }
+
+    public Sesion rollUp(String dimension) {
+        Cubo nueva = vista.copiar();
+        nueva.rollUp(dimension);
+        return new Sesion(nueva, hecho, medida);
+    }
+
+    public Sesion drillDown(String dimension) {
+        Cubo nueva = vista.copiar();
+        nueva.drillDown(dimension);
+        return new Sesion(nueva, hecho, medida);
+    }
+
+    /**
+     * Lleva una dimensión a un nivel dado, sin pasar por los intermedios
+     * 
+     * @param dimension Nombre de la dimensión
+     * @param nivel     Nivel (0 es el más general)
+     * @return Sesión con la dimensión en ese nivel
+     */
+    public Sesion enNivel(String dimension, int nivel) {
+        int cantidadNiveles = vista.getDimension(dimension).getCantidadNiveles();
+        if (nivel < 0 || nivel >= cantidadNiveles) {
+            throw new IllegalArgumentException("Nivel fuera de rango para " + dimension + ": " + nivel + " (hay "
+                    + cantidadNiveles + " niveles)");
+        }
+        Cubo nueva = vista.copiar();
+        while (nueva.getDimension(dimension).getNivelActual() < nivel) {
+            nueva.drillDown(dimension);
+        }
+        while (nueva.getDimension(dimension).getNivelActual() > nivel) {
+            nueva.rollUp(dimension);
+        }
+        return new Sesion(nueva, hecho, medida);
+    }
+
+    public Sesion slice(String dimension, String valor) {
+        return new Sesion(vista.slice(dimension, valor), hecho, medida);
+    }
+
+    public Sesion dice(String dimension, String[] valores) {
+        return new Sesion(vista.dice(dimension, valores), hecho, medida);
+    }
+
+    public Sesion dice(String dimension, String[] valores, String dimension2, String[] valores2) {
+        return new Sesion(vista.dice(dimension, valores, dimension2, valores2), hecho, medida);
+    }
+
+    /**
+     * Agrupa el cubo por el nivel actual de las dimensiones indicadas, con los
+     * filtros de la sesión, calculando la medida seleccionada sobre el hecho
+     * seleccionado
+     * 
+     * @param dimensiones Nombres de las dimensiones de agrupación
+     * @return Grupos no vacíos, ordenados por los valores de las dimensiones
+     */
+    public List<Grupo> agregar(String... dimensiones) {
+        Dimension[] dims = new Dimension[dimensiones.length];
+        for (int i = 0; i < dimensiones.length; i++) {
+            dims[i] = vista.getDimension(dimensiones[i]);
+        }
+        return vista.agregar(new String[] { hecho }, new Medida[] { medida }, dims);
+    }
+
+    /**
+     * Obtiene la celda de un valor del nivel actual de una dimensión, con los
+     * filtros de la sesión
+     * 
+     * @param dimension Nombre de la dimensión
+     * @param valor     Valor de la dimensión
+     * @return Celda con las filas del valor
+     */
+    public Celda getCelda(String dimension, String valor) {
+        return vista.getCelda(vista.getDimension(dimension), valor);
+    }
+
+    /**
+     * Crea una proyección para mostrar el estado de la sesión en consola. La
+     * proyección es de quien la pide: cambiar su hecho o medida no afecta a la
+     * sesión.
+     * 
+     * @return Proyección con el hecho y la medida de la sesión
+     */
+    public Proyeccion proyectar() {
+        Proyeccion proyeccion = vista.proyectar();
+        proyeccion.seleccionarHecho(hecho);
+        proyeccion.seleccionarMedida(medida.getNombre());
+        return proyeccion;
+    }
+
+    @Override
+    public String toString() {
+        return "Sesion [vista=" + vista + ", hecho=" + hecho + ", medida=" + medida.getNombre() + "]";
+    }
+}
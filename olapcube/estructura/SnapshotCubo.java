@@ -0,0 +1,220 @@
+package olapcube.estructura;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import olapcube.configuration.ConfigCubo;
+import olapcube.configuration.ConfigDimension;
+import olapcube.configuration.ConfigHechos;
+
+/**
+ * Guarda y carga un cubo ya construido en un archivo binario versionado
+ * (snapshot), para evitar releer los CSV y reconstruir los índices en cada
+ * inicio.
+ * 
+ * Formato del archivo (big endian):
+ * 
+ * | magia (8) | versión (4) | longitud encabezado (4) | encabezado |
+ * | columna de cada hecho (filas * 8) | dimensiones (hasta el final) |
+ * 
+ * El encabezado contiene la descripción de la configuración con la que se
+ * construyó el cubo (incluida la firma de cada dataset), los nombres de los
+ * hechos y la cantidad de filas. Al cargar, el archivo se mapea en memoria
+ * con FileChannel.map: las columnas de hechos quedan respaldadas por el
+ * mapeo y solo se copian al heap cuando se usan por primera vez.
+ */
+final class SnapshotCubo {
+    private static final long MAGIA = 0x4F4C4150534E4150L; // "OLAPSNAP"
+    private static final int VERSION = 2;
+    private static final int LONGITUD_INICIO = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private SnapshotCubo() {
+    }
+
+    /**
+     * Guarda un cubo en un archivo de snapshot. El archivo se escribe en una
+     * ruta temporal y se renombra al terminar, para no dejar snapshots a medio
+     * escribir.
+     * 
+     * @param cubo Cubo a guardar
+     * @param ruta Ruta del archivo
+     * @throws IOException Si falla la escritura
+     */
+    static void guardar(Cubo cubo, String ruta) throws IOException {
+        ConfigCubo config = cubo.getConfig();
+        TablaHechos tabla = cubo.getTablaHechos();
+        List<String> nombresHechos = cubo.getNombresHechos();
+        int cantidadFilas = tabla.getCantidadFilas();
+
+        ByteArrayOutputStream bytesEncabezado = new ByteArrayOutputStream();
+        DataOutputStream encabezado = new DataOutputStream(bytesEncabezado);
+        escribirTexto(encabezado, describir(config));
+        encabezado.writeInt(nombresHechos.size());
+        for (String nombreHecho : nombresHechos) {
+            escribirTexto(encabezado, nombreHecho);
+        }
+        encabezado.writeInt(cantidadFilas);
+        encabezado.writeInt(config.getDimensiones().length);
+        encabezado.flush();
+
+        Path destino = Paths.get(ruta);
+        Path temporal = Paths.get(ruta + ".tmp");
+        try (OutputStream archivo = Files.newOutputStream(temporal);
+                DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(archivo, 1 << 16))) {
+            salida.writeLong(MAGIA);
+            salida.writeInt(VERSION);
+            salida.writeInt(bytesEncabezado.size());
+            bytesEncabezado.writeTo(salida);
+
+            for (String nombreHecho : nombresHechos) {
+                ColumnaHechos columna = tabla.getColumna(nombreHecho);
+                for (int fila = 0; fila < cantidadFilas; fila++) {
+                    salida.writeDouble(columna.get(fila));
+                }
+            }
+
+            for (ConfigDimension configDimension : config.getDimensiones()) {
+                cubo.getDimension(configDimension.getNombre()).escribir(salida, cantidadFilas);
+            }
+        }
+
+        try {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Carga un cubo desde un archivo de snapshot mapeado en memoria
+     * 
+     * @param config Configuración con la que debe coincidir el snapshot
+     * @param ruta   Ruta del archivo
+     * @return Cubo cargado
+     * @throws IOException           Si falla la lectura
+     * @throws IllegalStateException Si el archivo no es un snapshot válido o no
+     *                               corresponde a la configuración
+     */
+    static Cubo cargar(ConfigCubo config, String ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            if (tamanio < LONGITUD_INICIO) {
+                throw new IllegalStateException("El archivo no es un snapshot de cubo: " + ruta);
+            }
+            MappedByteBuffer inicio = canal.map(FileChannel.MapMode.READ_ONLY, 0, LONGITUD_INICIO);
+            if (inicio.getLong() != MAGIA) {
+                throw new IllegalStateException("El archivo no es un snapshot de cubo: " + ruta);
+            }
+            int version = inicio.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("Versión de snapshot no soportada: " + version);
+            }
+            int longitudEncabezado = inicio.getInt();
+
+            ByteBuffer encabezado = canal.map(FileChannel.MapMode.READ_ONLY, LONGITUD_INICIO, longitudEncabezado);
+            String descripcion = leerTexto(encabezado);
+            if (!descripcion.equals(describir(config))) {
+                throw new IllegalStateException("El snapshot no corresponde a la configuración del cubo: " + ruta);
+            }
+            int cantidadHechos = encabezado.getInt();
+            List<String> nombresHechos = new ArrayList<>();
+            for (int i = 0; i < cantidadHechos; i++) {
+                nombresHechos.add(leerTexto(encabezado));
+            }
+            int cantidadFilas = encabezado.getInt();
+            int cantidadDimensiones = encabezado.getInt();
+
+            ArenaCubo arena = config.isFueraDeHeap() ? new ArenaCubo() : null;
+            long posicion = LONGITUD_INICIO + longitudEncabezado;
+            long longitudColumna = (long) cantidadFilas * Double.BYTES;
+            ColumnaHechos[] columnas = new ColumnaHechos[cantidadHechos];
+            for (int i = 0; i < cantidadHechos; i++) {
+                DoubleBuffer valores = canal.map(FileChannel.MapMode.READ_ONLY, posicion, longitudColumna)
+                        .asDoubleBuffer();
+                columnas[i] = new ColumnaHechos(valores, cantidadFilas, arena);
+                posicion += longitudColumna;
+            }
+
+            long longitudDimensiones = tamanio - posicion;
+            if (longitudDimensiones > Integer.MAX_VALUE) {
+                throw new IllegalStateException("La sección de dimensiones del snapshot supera los 2 GB: " + ruta);
+            }
+            ByteBuffer entrada = canal.map(FileChannel.MapMode.READ_ONLY, posicion, longitudDimensiones);
+            List<Dimension> dimensiones = new ArrayList<>();
+            for (int i = 0; i < cantidadDimensiones; i++) {
+                dimensiones.add(Dimension.leer(entrada, cantidadFilas, arena));
+            }
+
+            return Cubo.restaurar(config, dimensiones, new TablaHechos(nombresHechos, columnas, cantidadFilas), arena);
+        }
+    }
+
+    /**
+     * Describe la configuración del cubo, incluida la firma de los datasets, para
+     * verificar que un snapshot sigue correspondiendo a sus fuentes
+     * 
+     * @param config Configuración del cubo
+     * @return Descripción de la configuración
+     */
+    static String describir(ConfigCubo config) {
+        StringBuilder descripcion = new StringBuilder();
+        descripcion.append("cubo=").append(config.getNombre()).append('\n');
+
+        ConfigHechos hechos = config.getHechos();
+        String[] nombresHechos = hechos.getNombresHechos();
+        Arrays.sort(nombresHechos);
+        descripcion.append("hechos=").append(hechos.getDatasetReader().getFirma());
+        for (String nombreHecho : nombresHechos) {
+            descripcion.append(';').append(nombreHecho).append(':').append(hechos.getColumnaHecho(nombreHecho));
+        }
+        descripcion.append('\n');
+
+        for (ConfigDimension dimension : config.getDimensiones()) {
+            descripcion.append("dimension=").append(dimension.getNombre())
+                    .append(';').append(dimension.getDatasetReader().getFirma())
+                    .append(';').append(dimension.getColumnaKey())
+                    .append(';').append(dimension.getColumnaFkHechos())
+                    .append(';').append(dimension.getNiveles())
+                    .append('\n');
+        }
+        if (config.getFragmentos() != null) {
+            descripcion.append("fragmento=").append(config.getIndiceFragmento())
+                    .append(';').append(config.getFragmentos()).append('\n');
+        }
+        if (config.isParticionado()) {
+            // Las filas de un cubo particionado se guardan en tramos por partición
+            descripcion.append("particion=").append(config.getDimensionParticion())
+                    .append(';').append(config.getNivelParticion()).append('\n');
+        }
+        return descripcion.toString();
+    }
+
+    static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    static String leerTexto(ByteBuffer entrada) {
+        byte[] bytes = new byte[entrada.getInt()];
+        entrada.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
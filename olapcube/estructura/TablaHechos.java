@@ -0,0 +1,203 @@
+package olapcube.estructura;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Almacenamiento columnar de los hechos de un cubo OLAP.
+ * Cada hecho se guarda en una ColumnaHechos propia y todas las columnas
+ * comparten el mismo índice de fila.
+ * 
+ * Ejemplo con dos hechos 'valor' y 'cantidad':
+ * 
+ * | fila | valor | cantidad |
+ * |------|-------|----------|
+ * | 0    | 10    | 5        |
+ * | 1    | 20    | 3        |
+ * 
+ * Se almacena como valor = [10, 20] y cantidad = [5, 3].
+ */
+public class TablaHechos {
+    private volatile Columnas columnas; // Columnas de los hechos en la numeración de filas actual
+    private String[] nombresHechos; // Nombres de los hechos, en el orden de las columnas
+    private int cantidadFilas; // Cantidad de filas cargadas
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param nombresHechos Nombres de los hechos de la tabla
+     */
+    public TablaHechos(List<String> nombresHechos) {
+        this(nombresHechos, (ArenaCubo) null);
+    }
+
+    /**
+     * Constructor de una tabla vacía con columnas en el heap o fuera de él
+     * 
+     * @param nombresHechos Nombres de los hechos de la tabla
+     * @param arena         Arena de las columnas (null para guardarlas en el
+     *                      heap)
+     */
+    TablaHechos(List<String> nombresHechos, ArenaCubo arena) {
+        Map<String, ColumnaHechos> columnas = new LinkedHashMap<>();
+        this.nombresHechos = nombresHechos.toArray(new String[0]);
+        for (String nombreHecho : this.nombresHechos) {
+            columnas.put(nombreHecho, arena != null ? new ColumnaHechos(arena) : new ColumnaHechos());
+        }
+        this.columnas = new Columnas(columnas, 0);
+        this.cantidadFilas = 0;
+    }
+
+    /**
+     * Constructor de una tabla a partir de columnas ya cargadas
+     * 
+     * @param nombresHechos Nombres de los hechos de la tabla
+     * @param columnas      Columna de cada hecho, en el mismo orden
+     * @param cantidadFilas Cantidad de filas de las columnas
+     */
+    TablaHechos(List<String> nombresHechos, ColumnaHechos[] columnas, int cantidadFilas) {
+        Map<String, ColumnaHechos> porHecho = new LinkedHashMap<>();
+        this.nombresHechos = nombresHechos.toArray(new String[0]);
+        for (int i = 0; i < this.nombresHechos.length; i++) {
+            porHecho.put(this.nombresHechos[i], columnas[i]);
+        }
+        this.columnas = new Columnas(porHecho, 0);
+        this.cantidadFilas = cantidadFilas;
+    }
+
+    /**
+     * Agrega una fila a la tabla
+     * 
+     * @param valores Valores de la fila, en el mismo orden que los nombres de los
+     *                hechos
+     * @return Índice de la fila agregada
+     */
+    public int agregarFila(double[] valores) {
+        if (valores.length != nombresHechos.length) {
+            throw new IllegalArgumentException(
+                    "La fila no contiene la misma cantidad de hechos que los hechos del cubo");
+        }
+        Columnas columnas = this.columnas;
+        for (int i = 0; i < nombresHechos.length; i++) {
+            columnas.get(nombresHechos[i]).agregar(valores[i]);
+        }
+        return cantidadFilas++;
+    }
+
+    /**
+     * Obtiene la columna de un hecho
+     * 
+     * @param nombreHecho Nombre del hecho
+     * @return Columna del hecho
+     */
+    public ColumnaHechos getColumna(String nombreHecho) {
+        ColumnaHechos columna = columnas.get(nombreHecho);
+        if (columna == null) {
+            throw new IllegalArgumentException("Hecho no encontrado: " + nombreHecho);
+        }
+        return columna;
+    }
+
+    public String[] getNombresHechos() {
+        return nombresHechos.clone();
+    }
+
+    /**
+     * Renumera las filas: la fila i pasa a ser la que era filasOrigen[i], y las
+     * filas que no aparecen se descartan. Las columnas se reemplazan por nuevas
+     * y la versión de la tabla cambia, así las celdas obtenidas antes detectan
+     * que sus filas ya no corresponden. Columnas y versión se publican juntas
+     * (ver Columnas).
+     * 
+     * @param filasOrigen Fila anterior de cada fila nueva
+     * @param arena       Arena de las columnas nuevas (null para guardarlas en
+     *                    el heap)
+     */
+    void reordenar(int[] filasOrigen, ArenaCubo arena) {
+        Columnas anteriores = columnas;
+        Map<String, ColumnaHechos> nuevas = new LinkedHashMap<>();
+        for (String nombreHecho : nombresHechos) {
+            ColumnaHechos anterior = anteriores.get(nombreHecho);
+            ColumnaHechos nueva = arena != null ? new ColumnaHechos(arena) : new ColumnaHechos(filasOrigen.length);
+            for (int fila : filasOrigen) {
+                nueva.agregar(anterior.get(fila));
+            }
+            nuevas.put(nombreHecho, nueva);
+        }
+        columnas = new Columnas(nuevas, anteriores.getVersion() + 1);
+        cantidadFilas = filasOrigen.length;
+        anteriores.liberar();
+    }
+
+    int getVersion() {
+        return columnas.getVersion();
+    }
+
+    /**
+     * Obtiene las columnas de la numeración de filas actual, junto con su
+     * versión
+     * 
+     * @return Columnas de la tabla
+     */
+    Columnas getColumnas() {
+        return columnas;
+    }
+
+    /**
+     * Quita a las columnas sus bloques fuera del heap (ver ColumnaHechos.liberar())
+     */
+    void liberar() {
+        columnas.liberar();
+    }
+
+    public boolean contieneHecho(String nombreHecho) {
+        return columnas.get(nombreHecho) != null;
+    }
+
+    public int getCantidadFilas() {
+        return cantidadFilas;
+    }
+
+    @Override
+    public String toString() {
+        return "TablaHechos [hechos=" + Arrays.toString(nombresHechos) + ", filas=" + cantidadFilas + "]";
+    }
+
+    /**
+     * Columnas de la tabla en una numeración de filas, con su versión. Es
+     * inmutable y se reemplaza entera al renumerar (ver reordenar()): quien la
+     * lee sin el bloqueo del cubo, como una celda, ve siempre columnas y versión
+     * de la misma numeración.
+     */
+    static final class Columnas {
+        private final Map<String, ColumnaHechos> porHecho; // Mapeo de nombres de hecho a su columna (no se modifica)
+        private final int version; // Cambia cada vez que se renumeran las filas
+
+        private Columnas(Map<String, ColumnaHechos> porHecho, int version) {
+            this.porHecho = porHecho;
+            this.version = version;
+        }
+
+        /**
+         * Obtiene la columna de un hecho
+         * 
+         * @param nombreHecho Nombre del hecho
+         * @return Columna del hecho, o null si la tabla no lo tiene
+         */
+        ColumnaHechos get(String nombreHecho) {
+            return porHecho.get(nombreHecho);
+        }
+
+        int getVersion() {
+            return version;
+        }
+
+        private void liberar() {
+            for (ColumnaHechos columna : porHecho.values()) {
+                columna.liberar();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package olapcube.fragmentos;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import olapcube.estructura.EspecificacionConsulta;
+import olapcube.estructura.Grupo;
+import olapcube.metricas.Medida;
+import olapcube.metricas.RegistroMedida;
+
+/**
+ * Consulta sobre un cubo fragmentado, con la misma forma que ConsultaCubo
+ * (ver EspecificacionConsulta).
+ * Cada fragmento agrupa sus filas y el coordinador combina los grupos con los
+ * mismos valores; por eso la consulta necesita al menos una medida (una celda
+ * no se puede combinar entre procesos).
+ * 
+ * Ejemplo:
+ * 
+ * <pre>
+ * List&lt;Grupo&gt; grupos = cubo.consultar()
+ *         .filtrar("Fechas", 0, "2017", "2018")
+ *         .agruparPor("Productos", 1)
+ *         .medir("valor_total", "Suma")
+ *         .ordenarPor(0, true)
+ *         .limitar(20)
+ *         .ejecutar();
+ * </pre>
+ * 
+ * El orden y el límite se aplican después de combinar: cada fragmento devuelve
+ * todos sus grupos, porque los primeros de un fragmento no son necesariamente
+ * los primeros del cubo.
+ */
+public class ConsultaFragmentada extends EspecificacionConsulta<ConsultaFragmentada> {
+    private CuboFragmentado cubo; // Cubo consultado
+
+    ConsultaFragmentada(CuboFragmentado cubo) {
+        this.cubo = cubo;
+    }
+
+    @Override
+    protected ConsultaFragmentada esta() {
+        return this;
+    }
+
+    /**
+     * Busca una medida registrada. Las medidas no registradas se pueden pedir
+     * con medir(hecho, medida): se envían serializadas a los fragmentos.
+     */
+    @Override
+    protected Medida buscarMedida(String nombreMedida) {
+        return RegistroMedida.getMedida(nombreMedida);
+    }
+
+    @Override
+    protected void verificarHecho(String hecho) {
+        // Cada fragmento verifica los hechos al resolver la consulta
+    }
+
+    /**
+     * Ejecuta la consulta en todos los fragmentos y combina sus grupos
+     * 
+     * @return Grupos no vacíos con el resultado de cada medida, ordenados por
+     *         los valores de las dimensiones de agrupación, o por el orden
+     *         indicado y con su límite
+     */
+    public List<Grupo> ejecutar() {
+        int cantidadDimensiones = getDimensionesGrupo().size();
+        if (cantidadDimensiones == 0) {
+            throw new IllegalStateException("La consulta no tiene dimensiones de agrupación");
+        }
+        if (getMedidas().isEmpty()) {
+            throw new IllegalStateException("Una consulta fragmentada necesita al menos una medida");
+        }
+        verificarOrden();
+        RespuestaFragmento[] respuestas = cubo.enviar(PeticionFragmento.consulta(this));
+
+        // Los grupos con los mismos valores se combinan en grupos nuevos
+        Medida[] medidas = getMedidas().toArray(new Medida[0]);
+        Map<String, Grupo> combinados = new LinkedHashMap<>();
+        for (RespuestaFragmento respuesta : respuestas) {
+            for (Grupo grupo : respuesta.getGrupos()) {
+                combinados.merge(String.join("\u0000", grupo.getValores()), grupo, (a, b) -> a.combinar(b, medidas));
+            }
+        }
+        List<Grupo> grupos = new ArrayList<>(combinados.values());
+        // Mismo orden que Cubo.agregar: por el valor de cada dimensión, la primera como la más significativa
+        grupos.sort((a, b) -> {
+            for (int d = 0; d < cantidadDimensiones; d++) {
+                int comparacion = a.getValor(d).compareTo(b.getValor(d));
+                if (comparacion != 0) {
+                    return comparacion;
+                }
+            }
+            return 0;
+        });
+        return getOrden() != null ? getOrden().aplicar(grupos) : grupos;
+    }
+}
@@ -0,0 +1,239 @@
+package olapcube.fragmentos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import olapcube.configuration.ConfigCubo;
+import olapcube.configuration.ConfigFragmentos;
+import olapcube.readers.DatasetReader;
+
+/**
+ * Cubo repartido entre varios procesos (JVM) de la misma máquina, para usar más
+ * memoria y más núcleos que los de un solo heap.
+ * 
+ * Cada proceso (TrabajadorFragmento) carga las dimensiones completas y solo
+ * las filas de hechos de su fragmento (ver ConfigFragmentos). Una consulta se
+ * envía a todos los procesos (scatter), cada uno la resuelve sobre sus filas y
+ * devuelve sus grupos con los acumuladores parciales, y el coordinador los
+ * combina y aplica el orden y el límite (gather). Como los acumuladores se
+ * combinan, el resultado es el mismo que el de un único cubo con todas las
+ * filas.
+ * 
+ * Ejemplo:
+ * 
+ * <pre>
+ * try (CuboFragmentado cubo = CuboFragmentado.crear(config, ConfigFragmentos.porFila(4), "-Xmx2g")) {
+ *     List&lt;Grupo&gt; grupos = cubo.consultar()
+ *             .agruparPor("Productos", 1)
+ *             .medir("valor_total", "Suma")
+ *             .ejecutar();
+ * }
+ * </pre>
+ * 
+ * Los procesos se comunican con el coordinador por su entrada y salida
+ * estándar con objetos serializados; las clases del cubo deben estar en el
+ * classpath del coordinador. Las consultas a un mismo cubo fragmentado se
+ * resuelven de a una.
+ */
+public class CuboFragmentado implements AutoCloseable {
+    static final int TAMANIO_BUFFER = 1 << 16; // Buffer de los streams entre procesos
+    private static final long ESPERA_CIERRE_SEGUNDOS = 10; // Espera a que termine cada proceso al cerrar
+
+    private Process[] procesos; // Proceso de cada fragmento
+    private ObjectOutputStream[] salidas; // Pedidos hacia cada proceso
+    private ObjectInputStream[] entradas; // Respuestas de cada proceso
+    private int[] cantidadesFilas; // Filas de hechos de cada fragmento
+    private boolean cerrado; // true si ya se cerraron los procesos
+
+    private CuboFragmentado(int cantidad) {
+        this.procesos = new Process[cantidad];
+        this.salidas = new ObjectOutputStream[cantidad];
+        this.entradas = new ObjectInputStream[cantidad];
+        this.cantidadesFilas = new int[cantidad];
+    }
+
+    /**
+     * Lanza un proceso por fragmento y carga en cada uno sus filas del cubo
+     * 
+     * @param config      Configuración del cubo completo
+     * @param fragmentos  Reparto de las filas entre los fragmentos
+     * @param opcionesJvm Opciones de la JVM de cada proceso (por ejemplo
+     *                    "-Xmx2g")
+     * @return Cubo fragmentado, con todos los procesos listos
+     */
+    public static CuboFragmentado crear(ConfigCubo config, ConfigFragmentos fragmentos, String... opcionesJvm) {
+        CuboFragmentado cubo = new CuboFragmentado(fragmentos.getCantidad());
+        List<String> comando = new ArrayList<>();
+        comando.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        comando.addAll(Arrays.asList(opcionesJvm));
+        comando.add("-Dfile.encoding=" + Charset.defaultCharset().name());
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(TrabajadorFragmento.class.getName());
+        try {
+            for (int i = 0; i < cubo.procesos.length; i++) {
+                cubo.procesos[i] = new ProcessBuilder(comando).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                cubo.salidas[i] = new ObjectOutputStream(
+                        new BufferedOutputStream(cubo.procesos[i].getOutputStream(), TAMANIO_BUFFER));
+                cubo.salidas[i].writeObject(config.fragmento(fragmentos, i));
+                cubo.salidas[i].flush();
+            }
+            // Los fragmentos se cargan en paralelo: recién ahora se esperan las respuestas
+            for (int i = 0; i < cubo.procesos.length; i++) {
+                cubo.entradas[i] = new ObjectInputStream(
+                        new BufferedInputStream(cubo.procesos[i].getInputStream(), TAMANIO_BUFFER));
+                cubo.cantidadesFilas[i] = cubo.leer(i).getCantidadFilas();
+            }
+        } catch (IOException | RuntimeException e) {
+            cubo.destruir();
+            if (e instanceof IOException) {
+                throw new UncheckedIOException("No se pudieron lanzar los fragmentos del cubo", (IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+        return cubo;
+    }
+
+    /**
+     * Inicia una consulta sobre todos los fragmentos
+     * 
+     * @return Consulta vacía
+     */
+    public ConsultaFragmentada consultar() {
+        return new ConsultaFragmentada(this);
+    }
+
+    /**
+     * Agrega hechos al cubo: el lote se envía a todos los procesos y cada uno
+     * conserva las filas de su fragmento (ver Cubo.anexar())
+     * 
+     * @param hechosNuevos Dataset con los hechos nuevos; debe ser serializable,
+     *                     como CSVReader
+     */
+    public void anexar(DatasetReader hechosNuevos) {
+        RespuestaFragmento[] respuestas = enviar(PeticionFragmento.anexar(hechosNuevos));
+        synchronized (this) {
+            for (int i = 0; i < respuestas.length; i++) {
+                cantidadesFilas[i] = respuestas[i].getCantidadFilas();
+            }
+        }
+    }
+
+    public synchronized int getCantidadFilas() {
+        int total = 0;
+        for (int cantidad : cantidadesFilas) {
+            total += cantidad;
+        }
+        return total;
+    }
+
+    public int getCantidadFragmentos() {
+        return procesos.length;
+    }
+
+    /**
+     * Envía un pedido a todos los procesos y espera sus respuestas. Los
+     * procesos lo resuelven en paralelo.
+     * 
+     * @param peticion Pedido
+     * @return Respuesta de cada fragmento
+     */
+    synchronized RespuestaFragmento[] enviar(PeticionFragmento peticion) {
+        if (cerrado) {
+            throw new IllegalStateException("El cubo fragmentado está cerrado");
+        }
+        RespuestaFragmento[] respuestas = new RespuestaFragmento[procesos.length];
+        try {
+            for (int i = 0; i < procesos.length; i++) {
+                salidas[i].writeObject(peticion);
+                salidas[i].flush();
+                salidas[i].reset();
+            }
+            String error = null;
+            for (int i = 0; i < procesos.length; i++) {
+                // Se leen todas las respuestas aunque alguna sea un error, para no desfasar los streams
+                respuestas[i] = (RespuestaFragmento) entradas[i].readObject();
+                if (error == null && respuestas[i].getError() != null) {
+                    error = "Fragmento " + i + ": " + respuestas[i].getError();
+                }
+            }
+            if (error != null) {
+                throw new IllegalStateException(error);
+            }
+        } catch (IOException e) {
+            destruir();
+            throw new UncheckedIOException("Se perdió la comunicación con los fragmentos del cubo", e);
+        } catch (ClassNotFoundException e) {
+            destruir();
+            throw new IllegalStateException("Respuesta desconocida de un fragmento", e);
+        }
+        return respuestas;
+    }
+
+    /**
+     * Lee la respuesta de un proceso y falla si informa un error
+     */
+    private RespuestaFragmento leer(int fragmento) throws IOException {
+        try {
+            RespuestaFragmento respuesta = (RespuestaFragmento) entradas[fragmento].readObject();
+            if (respuesta.getError() != null) {
+                throw new IllegalStateException("Fragmento " + fragmento + ": " + respuesta.getError());
+            }
+            return respuesta;
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Respuesta desconocida del fragmento " + fragmento, e);
+        }
+    }
+
+    /**
+     * Pide a los procesos que terminen y espera a que lo hagan; los que no
+     * terminan a tiempo se destruyen
+     */
+    @Override
+    public synchronized void close() {
+        if (cerrado) {
+            return;
+        }
+        for (ObjectOutputStream salida : salidas) {
+            try {
+                salida.writeObject(PeticionFragmento.cerrar());
+                salida.close();
+            } catch (IOException e) {
+                // El proceso ya terminó; se destruye abajo si sigue vivo
+            }
+        }
+        for (Process proceso : procesos) {
+            try {
+                if (!proceso.waitFor(ESPERA_CIERRE_SEGUNDOS, TimeUnit.SECONDS)) {
+                    proceso.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                proceso.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        cerrado = true;
+    }
+
+    /**
+     * Termina los procesos sin esperar, tras un error de comunicación
+     */
+    private synchronized void destruir() {
+        for (Process proceso : procesos) {
+            if (proceso != null) {
+                proceso.destroyForcibly();
+            }
+        }
+        cerrado = true;
+    }
+}
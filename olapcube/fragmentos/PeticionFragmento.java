@@ -0,0 +1,124 @@
+package olapcube.fragmentos;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import olapcube.estructura.ConsultaCubo;
+import olapcube.estructura.Cubo;
+import olapcube.estructura.EspecificacionConsulta;
+import olapcube.metricas.Medida;
+import olapcube.metricas.RegistroMedida;
+import olapcube.readers.DatasetReader;
+
+/**
+ * Pedido que el coordinador envía a cada proceso de un cubo fragmentado: una
+ * consulta (filtros, dimensiones de agrupación y medidas, como en
+ * ConsultaCubo), un lote de hechos a anexar o el fin del proceso.
+ */
+final class PeticionFragmento implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    enum Tipo {
+        CONSULTA, ANEXAR, CERRAR
+    }
+
+    private Tipo tipo; // Tipo de pedido
+    private List<String> dimensionesFiltro; // Dimensión de cada filtro
+    private List<Integer> nivelesFiltro; // Nivel de cada filtro (-1 = nivel actual de la dimensión)
+    private List<String[]> valoresFiltro; // Miembros que conserva cada filtro
+    private List<String> dimensionesGrupo; // Dimensiones de agrupación
+    private List<Integer> nivelesGrupo; // Nivel de cada dimensión de agrupación (-1 = nivel actual)
+    private List<String> hechos; // Hechos sobre los que se calculan las medidas
+    private List<String> nombresMedidas; // Nombre de cada medida registrada (null si se envía la medida)
+    private List<Medida> medidas; // Medida no registrada a calcular sobre cada hecho (null si se envía el nombre)
+    private DatasetReader hechosNuevos; // Lote de hechos a anexar
+
+    private PeticionFragmento(Tipo tipo) {
+        this.tipo = tipo;
+    }
+
+    /**
+     * Crea el pedido de una consulta con los filtros, las dimensiones de
+     * agrupación y las medidas de una especificación (el orden se aplica en el
+     * coordinador); las listas se copian. Las medidas registradas se envían por
+     * nombre, para que cada proceso use su instancia registrada (y con ella sus
+     * cuboides y su cache).
+     * 
+     * @param consulta Especificación de la consulta
+     * @return Pedido
+     */
+    static PeticionFragmento consulta(EspecificacionConsulta<?> consulta) {
+        PeticionFragmento peticion = new PeticionFragmento(Tipo.CONSULTA);
+        peticion.dimensionesFiltro = new ArrayList<>(consulta.getDimensionesFiltro());
+        peticion.nivelesFiltro = new ArrayList<>(consulta.getNivelesFiltro());
+        peticion.valoresFiltro = new ArrayList<>(consulta.getValoresFiltro());
+        peticion.dimensionesGrupo = new ArrayList<>(consulta.getDimensionesGrupo());
+        peticion.nivelesGrupo = new ArrayList<>(consulta.getNivelesGrupo());
+        peticion.hechos = new ArrayList<>(consulta.getHechos());
+        peticion.nombresMedidas = new ArrayList<>();
+        peticion.medidas = new ArrayList<>();
+        for (Medida medida : consulta.getMedidas()) {
+            boolean registrada = RegistroMedida.isRegistrada(medida);
+            peticion.nombresMedidas.add(registrada ? medida.getNombre() : null);
+            peticion.medidas.add(registrada ? null : medida);
+        }
+        return peticion;
+    }
+
+    /**
+     * Crea el pedido de anexar un lote de hechos; cada proceso se queda con las
+     * filas de su fragmento
+     * 
+     * @param hechosNuevos Dataset con los hechos nuevos (debe ser serializable)
+     * @return Pedido
+     */
+    static PeticionFragmento anexar(DatasetReader hechosNuevos) {
+        if (!(hechosNuevos instanceof Serializable)) {
+            throw new IllegalArgumentException("El dataset debe ser serializable para enviarlo a los fragmentos");
+        }
+        PeticionFragmento peticion = new PeticionFragmento(Tipo.ANEXAR);
+        peticion.hechosNuevos = hechosNuevos;
+        return peticion;
+    }
+
+    static PeticionFragmento cerrar() {
+        return new PeticionFragmento(Tipo.CERRAR);
+    }
+
+    Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Resuelve el pedido sobre el cubo del fragmento
+     * 
+     * @param cubo Cubo con las filas del fragmento
+     * @return Respuesta para el coordinador
+     */
+    RespuestaFragmento ejecutar(Cubo cubo) {
+        switch (tipo) {
+            case CONSULTA:
+                ConsultaCubo consulta = cubo.consultar();
+                for (int i = 0; i < dimensionesFiltro.size(); i++) {
+                    consulta.filtrar(dimensionesFiltro.get(i), nivelesFiltro.get(i), valoresFiltro.get(i));
+                }
+                for (int i = 0; i < dimensionesGrupo.size(); i++) {
+                    consulta.agruparPor(dimensionesGrupo.get(i), nivelesGrupo.get(i));
+                }
+                for (int i = 0; i < medidas.size(); i++) {
+                    if (nombresMedidas.get(i) != null) {
+                        consulta.medir(hechos.get(i), nombresMedidas.get(i));
+                    } else {
+                        consulta.medir(hechos.get(i), medidas.get(i));
+                    }
+                }
+                return RespuestaFragmento.grupos(consulta.ejecutar(), cubo.getCantidadFilas());
+            case ANEXAR:
+                cubo.anexar(hechosNuevos);
+                return RespuestaFragmento.filas(cubo.getCantidadFilas());
+            default:
+                throw new IllegalStateException("Pedido sin respuesta: " + tipo);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package olapcube.fragmentos;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import olapcube.estructura.Grupo;
+
+/**
+ * Respuesta de un proceso de un cubo fragmentado: los grupos de una consulta,
+ * con sus acumuladores parciales, o el error que impidió resolverla. Incluye
+ * siempre las filas que tiene el fragmento.
+ */
+final class RespuestaFragmento implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int cantidadFilas; // Filas de hechos del fragmento
+    private List<Grupo> grupos; // Grupos de la consulta (null si no era una consulta)
+    private String error; // Descripción del error (null si se resolvió)
+
+    private RespuestaFragmento(int cantidadFilas, List<Grupo> grupos, String error) {
+        this.cantidadFilas = cantidadFilas;
+        this.grupos = grupos;
+        this.error = error;
+    }
+
+    static RespuestaFragmento grupos(List<Grupo> grupos, int cantidadFilas) {
+        // La lista puede ser una vista (subList) o estar en la cache del cubo: se envía una copia
+        return new RespuestaFragmento(cantidadFilas, new ArrayList<>(grupos), null);
+    }
+
+    static RespuestaFragmento filas(int cantidadFilas) {
+        return new RespuestaFragmento(cantidadFilas, null, null);
+    }
+
+    static RespuestaFragmento error(String error) {
+        return new RespuestaFragmento(-1, null, error);
+    }
+
+    int getCantidadFilas() {
+        return cantidadFilas;
+    }
+
+    List<Grupo> getGrupos() {
+        return grupos;
+    }
+
+    String getError() {
+        return error;
+    }
+}
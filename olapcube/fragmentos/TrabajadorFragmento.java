@@ -0,0 +1,77 @@
+package olapcube.fragmentos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import olapcube.configuration.ConfigCubo;
+import olapcube.estructura.Cubo;
+
+/**
+ * Proceso de un fragmento de un cubo fragmentado. Lo lanza CuboFragmentado y
+ * se comunica con él por la entrada y la salida estándar con objetos
+ * serializados:
+ * 
+ * 1. Recibe la configuración del fragmento (ConfigCubo.fragmento()), carga el
+ * cubo con sus filas y responde la cantidad de filas.
+ * 2. Después resuelve un PeticionFragmento por vez, en orden, hasta recibir el
+ * pedido de cierre o el fin de la entrada (si el coordinador terminó).
+ * 
+ * Lo que el cubo imprima se redirige a la salida de errores, para no mezclarlo
+ * con las respuestas.
+ */
+public final class TrabajadorFragmento {
+
+    private TrabajadorFragmento() {
+    }
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        ObjectOutputStream salida = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), CuboFragmentado.TAMANIO_BUFFER));
+        salida.flush(); // El coordinador espera el encabezado del stream antes de leer
+        System.setOut(System.err);
+        ObjectInputStream entrada = new ObjectInputStream(
+                new BufferedInputStream(System.in, CuboFragmentado.TAMANIO_BUFFER));
+
+        Cubo cubo;
+        try {
+            cubo = Cubo.crearFromConfig((ConfigCubo) entrada.readObject());
+        } catch (RuntimeException e) {
+            responder(salida, RespuestaFragmento.error(e.toString()));
+            return;
+        }
+        responder(salida, RespuestaFragmento.filas(cubo.getCantidadFilas()));
+
+        try (cubo) {
+            while (true) {
+                PeticionFragmento peticion;
+                try {
+                    peticion = (PeticionFragmento) entrada.readObject();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (peticion.getTipo() == PeticionFragmento.Tipo.CERRAR) {
+                    return;
+                }
+                RespuestaFragmento respuesta;
+                try {
+                    respuesta = peticion.ejecutar(cubo);
+                } catch (RuntimeException e) {
+                    respuesta = RespuestaFragmento.error(e.toString());
+                }
+                responder(salida, respuesta);
+            }
+        }
+    }
+
+    private static void responder(ObjectOutputStream salida, RespuestaFragmento respuesta) throws IOException {
+        salida.writeObject(respuesta);
+        salida.flush();
+        salida.reset(); // No retener referencias a las respuestas ya enviadas
+    }
+}
@@ -0,0 +1,38 @@
+package olapcube.metricas;
+
+import java.io.Serializable;
+
+/**
+ * Interfaz que define un acumulador de una medida.
+ * 
+ * Un acumulador se crea vacío con Medida.crearAcumulador(), recibe los valores
+ * de a uno con agregar(), puede combinarse con otro acumulador de la misma
+ * medida (por ejemplo el resultado parcial de otra partición) y devuelve el
+ * valor final de la medida con resultado().
+ * 
+ * Los acumuladores son serializables, así los resultados parciales pueden
+ * calcularse en otro proceso (ver olapcube.fragmentos) y combinarse después.
+ */
+public interface Acumulador extends Serializable {
+    /**
+     * Agrega un valor al acumulador
+     * 
+     * @param valor Valor a agregar
+     */
+    public void agregar(double valor);
+
+    /**
+     * Combina en este acumulador los valores acumulados por otro acumulador de
+     * la misma medida
+     * 
+     * @param otro Acumulador a combinar
+     */
+    public void combinar(Acumulador otro);
+
+    /**
+     * Calcula el valor de la medida con los valores acumulados
+     * 
+     * @return Medida calculada
+     */
+    public double resultado();
+}
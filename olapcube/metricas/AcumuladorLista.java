@@ -0,0 +1,35 @@
+package olapcube.metricas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acumulador genérico para las medidas que solo implementan calcular(List):
+ * guarda todos los valores y delega el cálculo en la medida al final.
+ */
+class AcumuladorLista implements Acumulador {
+    private static final long serialVersionUID = 1L;
+
+    private Medida medida; // Medida a calcular
+    private List<Double> valores; // Valores acumulados
+
+    AcumuladorLista(Medida medida) {
+        this.medida = medida;
+        this.valores = new ArrayList<>();
+    }
+
+    @Override
+    public void agregar(double valor) {
+        valores.add(valor);
+    }
+
+    @Override
+    public void combinar(Acumulador otro) {
+        valores.addAll(((AcumuladorLista) otro).valores);
+    }
+
+    @Override
+    public double resultado() {
+        return medida.calcular(valores);
+    }
+}
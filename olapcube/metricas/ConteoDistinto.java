@@ -0,0 +1,242 @@
+package olapcube.metricas;
+
+import java.util.List;
+
+/**
+ * Clase que representa la medida ConteoDistinto, que estima la cantidad de
+ * valores distintos de un hecho (por ejemplo, cuántos productos o puntos de
+ * venta distintos aparecen en una celda si el hecho es su identificador).
+ * 
+ * Usa un sketch HyperLogLog: 2^precision registros de un byte, donde cada valor
+ * se ubica en un registro según los primeros bits de su hash y el registro
+ * guarda la mayor cantidad de ceros iniciales vista en el resto del hash. Dos
+ * sketches se combinan tomando el máximo de cada registro, así que el conteo
+ * de cualquier nivel se obtiene combinando los de sus hijos (cuboides,
+ * particiones) con memoria fija y en tiempo constante, sin guardar los valores.
+ * 
+ * Mientras hay pocos valores distintos el acumulador guarda sus hashes (modo
+ * disperso) y el conteo es exacto; al superar 2^precision / 8 pasa a los
+ * registros. El error relativo típico es 1.04 / sqrt(2^precision): 1,6% con la
+ * precisión por defecto.
+ */
+public class ConteoDistinto extends Medida {
+    private static final long serialVersionUID = 1L;
+
+    public static final int PRECISION_POR_DEFECTO = 12; // 4096 registros (4 KB por acumulador)
+    public static final int PRECISION_MINIMA = 4;
+    public static final int PRECISION_MAXIMA = 18;
+
+    private int precision; // Bits del hash que eligen el registro
+
+    public ConteoDistinto() {
+        this("ConteoDistinto", PRECISION_POR_DEFECTO);
+    }
+
+    /**
+     * Constructor de la clase, para registrar la medida con otra precisión
+     * 
+     * @param nombre    Nombre de la medida
+     * @param precision Bits que eligen el registro (entre 4 y 18); cada bit más
+     *                  duplica la memoria y divide el error por raíz de 2
+     */
+    public ConteoDistinto(String nombre, int precision) {
+        super(nombre);
+        if (precision < PRECISION_MINIMA || precision > PRECISION_MAXIMA) {
+            throw new IllegalArgumentException("Precisión fuera de rango (" + PRECISION_MINIMA + " a "
+                    + PRECISION_MAXIMA + "): " + precision);
+        }
+        this.precision = precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Obtiene el error relativo típico (un desvío estándar) de la estimación
+     * 
+     * @return Error relativo
+     */
+    public double getErrorRelativo() {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    @Override
+    public double calcular(List<Double> valores) {
+        Acumulador acumulador = crearAcumulador();
+        for (Double valor : valores) {
+            acumulador.agregar(valor);
+        }
+        return acumulador.resultado();
+    }
+
+    @Override
+    public Acumulador crearAcumulador() {
+        return new AcumuladorHLL(precision);
+    }
+
+    /**
+     * Calcula el hash de 64 bits de un valor (finalizador de MurmurHash3), de
+     * modo que valores consecutivos como los identificadores queden repartidos
+     * en todos los bits
+     */
+    private static long hash(double valor) {
+        long h = Double.doubleToLongBits(valor == 0 ? 0.0 : valor); // -0.0 y 0.0 son el mismo valor
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static class AcumuladorHLL implements Acumulador {
+        private static final long serialVersionUID = 1L;
+
+        private int precision; // Bits del hash que eligen el registro
+        private byte[] registros; // Máximo de ceros iniciales + 1 por registro (null en modo disperso)
+        private long[] dispersos; // Hashes distintos en modo disperso (tabla abierta, 0 = libre)
+        private int cantidadDispersos; // Hashes guardados en dispersos
+        private boolean contieneHashCero; // El hash 0 no puede guardarse en la tabla
+
+        AcumuladorHLL(int precision) {
+            this.precision = precision;
+            this.dispersos = new long[16];
+        }
+
+        @Override
+        public void agregar(double valor) {
+            agregarHash(hash(valor));
+        }
+
+        private void agregarHash(long h) {
+            if (registros != null) {
+                actualizarRegistro(h);
+            } else if (h == 0) {
+                contieneHashCero = true;
+            } else if (guardarDisperso(h) && cantidadDispersos > limiteDisperso()) {
+                pasarARegistros();
+            }
+        }
+
+        private void actualizarRegistro(long h) {
+            int indice = (int) (h >>> (64 - precision));
+            // Ceros iniciales del resto del hash; el bit agregado acota el resultado a 64 - precision + 1
+            byte rango = (byte) (Long.numberOfLeadingZeros((h << precision) | (1L << (precision - 1))) + 1);
+            if (rango > registros[indice]) {
+                registros[indice] = rango;
+            }
+        }
+
+        /**
+         * Guarda un hash en la tabla de dispersos
+         * 
+         * @return true si el hash no estaba
+         */
+        private boolean guardarDisperso(long h) {
+            int mascara = dispersos.length - 1;
+            int i = (int) h & mascara;
+            while (dispersos[i] != 0) {
+                if (dispersos[i] == h) {
+                    return false;
+                }
+                i = (i + 1) & mascara;
+            }
+            dispersos[i] = h;
+            cantidadDispersos++;
+            if (cantidadDispersos * 2 > dispersos.length && cantidadDispersos <= limiteDisperso()) {
+                long[] anteriores = dispersos;
+                dispersos = new long[anteriores.length * 2];
+                cantidadDispersos = 0;
+                for (long anterior : anteriores) {
+                    if (anterior != 0) {
+                        guardarDisperso(anterior);
+                    }
+                }
+            }
+            return true;
+        }
+
+        // Con más hashes que este límite, la tabla ocupa más que los registros
+        private int limiteDisperso() {
+            return (1 << precision) / 8;
+        }
+
+        private void pasarARegistros() {
+            registros = new byte[1 << precision];
+            for (long h : dispersos) {
+                if (h != 0) {
+                    actualizarRegistro(h);
+                }
+            }
+            if (contieneHashCero) {
+                actualizarRegistro(0);
+            }
+            dispersos = null;
+            cantidadDispersos = 0;
+        }
+
+        @Override
+        public void combinar(Acumulador otro) {
+            AcumuladorHLL acumulador = (AcumuladorHLL) otro;
+            if (acumulador.precision != precision) {
+                throw new IllegalArgumentException("No se pueden combinar sketches de distinta precisión: "
+                        + precision + " y " + acumulador.precision);
+            }
+            if (acumulador.registros == null) {
+                for (long h : acumulador.dispersos) {
+                    if (h != 0) {
+                        agregarHash(h);
+                    }
+                }
+                if (acumulador.contieneHashCero) {
+                    agregarHash(0);
+                }
+                return;
+            }
+            if (registros == null) {
+                pasarARegistros();
+            }
+            for (int i = 0; i < registros.length; i++) {
+                if (acumulador.registros[i] > registros[i]) {
+                    registros[i] = acumulador.registros[i];
+                }
+            }
+        }
+
+        @Override
+        public double resultado() {
+            if (registros == null) {
+                return cantidadDispersos + (contieneHashCero ? 1 : 0);
+            }
+            int m = registros.length;
+            double suma = 0;
+            int vacios = 0;
+            for (byte registro : registros) {
+                suma += 1.0 / (1L << registro);
+                if (registro == 0) {
+                    vacios++;
+                }
+            }
+            double estimacion = alfa(m) * m * m / suma;
+            if (estimacion <= 2.5 * m && vacios > 0) {
+                // Pocos valores para la cantidad de registros: conteo lineal de registros vacíos
+                estimacion = m * Math.log((double) m / vacios);
+            }
+            return Math.rint(estimacion);
+        }
+
+        private static double alfa(int m) {
+            switch (m) {
+                case 16:
+                    return 0.673;
+                case 32:
+                    return 0.697;
+                case 64:
+                    return 0.709;
+                default:
+                    return 0.7213 / (1 + 1.079 / m);
+            }
+        }
+    }
+}
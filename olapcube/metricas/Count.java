@@ -1,5 +1,6 @@
 package olapcube.metricas;
 
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
@@ -7,6 +8,7 @@ import java.util.List;
  * lista.
  */
 public class Count extends Medida {
+    private static final long serialVersionUID = 1L;
 
     public Count() {
         super("Count");
@@ -16,4 +18,55 @@ public class Count extends Medida {
     public double calcular(List<Double> valores) {
         return valores.size();
     }
+
+    @Override
+    public double calcular(double[] columna, int[] filas) {
+        return filas.length;
+    }
+
+    @Override
+    public double calcular(double[] columna, int desde, int hasta) {
+        return hasta - desde;
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        return filas.length;
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        return hasta - desde;
+    }
+
+    @Override
+    public boolean isMonotona(boolean valoresNoNegativos) {
+        return true;
+    }
+
+    @Override
+    public Acumulador crearAcumulador() {
+        return new AcumuladorCount();
+    }
+
+    private static class AcumuladorCount implements Acumulador {
+        private static final long serialVersionUID = 1L;
+
+        private long cantidad;
+
+        @Override
+        public void agregar(double valor) {
+            cantidad++;
+        }
+
+        @Override
+        public void combinar(Acumulador otro) {
+            cantidad += ((AcumuladorCount) otro).cantidad;
+        }
+
+        @Override
+        public double resultado() {
+            return cantidad;
+        }
+    }
 }
\ No newline at end of file
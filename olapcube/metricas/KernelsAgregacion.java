@@ -0,0 +1,352 @@
+package olapcube.metricas;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Bucles de agregación sobre columnas primitivas, para un rango contiguo de
+ * filas o para un vector de selección (filas ordenadas).
+ * 
+ * Cada bucle procesa cuatro filas por vuelta con cuatro acumuladores
+ * independientes: así el procesador no espera el resultado de una suma para
+ * empezar la siguiente y el compilador JIT puede usar instrucciones
+ * vectoriales en los rangos contiguos. Las filas que sobran se procesan al
+ * final de a una.
+ * 
+ * Máximo y mínimo siguen el criterio de Max y Min: sin filas o con algún cero
+ * el resultado es 0. El cero se detecta en la misma pasada, sin cortar el
+ * bucle.
+ * 
+ * Las variantes sobre bloques recorren una columna fuera del heap (la fila f
+ * está en la posición f % 2^desplazamiento del bloque f / 2^desplazamiento)
+ * con los mismos acumuladores: cada fila va al mismo acumulador y en el mismo
+ * orden que en el arreglo, así que el resultado es idéntico. En un rango se
+ * recorre bloque por bloque; el grupo de cuatro filas que queda partido entre
+ * dos bloques se lee de a una fila.
+ */
+final class KernelsAgregacion {
+
+    private KernelsAgregacion() {
+    }
+
+    static double suma(double[] columna, int desde, int hasta) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = desde;
+        for (; i + 3 < hasta; i += 4) {
+            s0 += columna[i];
+            s1 += columna[i + 1];
+            s2 += columna[i + 2];
+            s3 += columna[i + 3];
+        }
+        for (; i < hasta; i++) {
+            s0 += columna[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static double suma(double[] columna, int[] filas) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int n = filas.length;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += columna[filas[i]];
+            s1 += columna[filas[i + 1]];
+            s2 += columna[filas[i + 2]];
+            s3 += columna[filas[i + 3]];
+        }
+        for (; i < n; i++) {
+            s0 += columna[filas[i]];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static double maximo(double[] columna, int desde, int hasta) {
+        if (hasta <= desde) {
+            return 0.0;
+        }
+        double m0 = columna[desde], m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int i = desde;
+        for (; i + 3 < hasta; i += 4) {
+            double v0 = columna[i], v1 = columna[i + 1], v2 = columna[i + 2], v3 = columna[i + 3];
+            cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+            m0 = v0 > m0 ? v0 : m0;
+            m1 = v1 > m1 ? v1 : m1;
+            m2 = v2 > m2 ? v2 : m2;
+            m3 = v3 > m3 ? v3 : m3;
+        }
+        for (; i < hasta; i++) {
+            double v = columna[i];
+            cero |= v == 0;
+            m0 = v > m0 ? v : m0;
+        }
+        return cero ? 0.0 : mayor(mayor(m0, m1), mayor(m2, m3));
+    }
+
+    static double maximo(double[] columna, int[] filas) {
+        int n = filas.length;
+        if (n == 0) {
+            return 0.0;
+        }
+        double m0 = columna[filas[0]], m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            double v0 = columna[filas[i]], v1 = columna[filas[i + 1]];
+            double v2 = columna[filas[i + 2]], v3 = columna[filas[i + 3]];
+            cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+            m0 = v0 > m0 ? v0 : m0;
+            m1 = v1 > m1 ? v1 : m1;
+            m2 = v2 > m2 ? v2 : m2;
+            m3 = v3 > m3 ? v3 : m3;
+        }
+        for (; i < n; i++) {
+            double v = columna[filas[i]];
+            cero |= v == 0;
+            m0 = v > m0 ? v : m0;
+        }
+        return cero ? 0.0 : mayor(mayor(m0, m1), mayor(m2, m3));
+    }
+
+    static double minimo(double[] columna, int desde, int hasta) {
+        if (hasta <= desde) {
+            return 0.0;
+        }
+        double m0 = columna[desde], m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int i = desde;
+        for (; i + 3 < hasta; i += 4) {
+            double v0 = columna[i], v1 = columna[i + 1], v2 = columna[i + 2], v3 = columna[i + 3];
+            cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+            m0 = v0 < m0 ? v0 : m0;
+            m1 = v1 < m1 ? v1 : m1;
+            m2 = v2 < m2 ? v2 : m2;
+            m3 = v3 < m3 ? v3 : m3;
+        }
+        for (; i < hasta; i++) {
+            double v = columna[i];
+            cero |= v == 0;
+            m0 = v < m0 ? v : m0;
+        }
+        return cero ? 0.0 : menor(menor(m0, m1), menor(m2, m3));
+    }
+
+    static double minimo(double[] columna, int[] filas) {
+        int n = filas.length;
+        if (n == 0) {
+            return 0.0;
+        }
+        double m0 = columna[filas[0]], m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            double v0 = columna[filas[i]], v1 = columna[filas[i + 1]];
+            double v2 = columna[filas[i + 2]], v3 = columna[filas[i + 3]];
+            cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+            m0 = v0 < m0 ? v0 : m0;
+            m1 = v1 < m1 ? v1 : m1;
+            m2 = v2 < m2 ? v2 : m2;
+            m3 = v3 < m3 ? v3 : m3;
+        }
+        for (; i < n; i++) {
+            double v = columna[filas[i]];
+            cero |= v == 0;
+            m0 = v < m0 ? v : m0;
+        }
+        return cero ? 0.0 : menor(menor(m0, m1), menor(m2, m3));
+    }
+
+    static double suma(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int finCuatro = desde + ((hasta - desde) & ~3); // Fin de los grupos de cuatro filas, como en el arreglo
+        int i = desde;
+        while (i < finCuatro) {
+            DoubleBuffer bloque = bloques[i >>> desplazamiento];
+            int base = i >>> desplazamiento << desplazamiento;
+            int finBloque = Math.min(finCuatro, base + (1 << desplazamiento));
+            for (; i + 3 < finBloque; i += 4) {
+                s0 += bloque.get(i - base);
+                s1 += bloque.get(i + 1 - base);
+                s2 += bloque.get(i + 2 - base);
+                s3 += bloque.get(i + 3 - base);
+            }
+            if (i < finBloque) {
+                s0 += valor(bloques, desplazamiento, i);
+                s1 += valor(bloques, desplazamiento, i + 1);
+                s2 += valor(bloques, desplazamiento, i + 2);
+                s3 += valor(bloques, desplazamiento, i + 3);
+                i += 4;
+            }
+        }
+        for (; i < hasta; i++) {
+            s0 += valor(bloques, desplazamiento, i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static double suma(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int n = filas.length;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += valor(bloques, desplazamiento, filas[i]);
+            s1 += valor(bloques, desplazamiento, filas[i + 1]);
+            s2 += valor(bloques, desplazamiento, filas[i + 2]);
+            s3 += valor(bloques, desplazamiento, filas[i + 3]);
+        }
+        for (; i < n; i++) {
+            s0 += valor(bloques, desplazamiento, filas[i]);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static double maximo(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        if (hasta <= desde) {
+            return 0.0;
+        }
+        double m0 = valor(bloques, desplazamiento, desde), m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int finCuatro = desde + ((hasta - desde) & ~3);
+        int i = desde;
+        while (i < finCuatro) {
+            DoubleBuffer bloque = bloques[i >>> desplazamiento];
+            int base = i >>> desplazamiento << desplazamiento;
+            int finBloque = Math.min(finCuatro, base + (1 << desplazamiento));
+            for (; i + 3 < finBloque; i += 4) {
+                double v0 = bloque.get(i - base), v1 = bloque.get(i + 1 - base);
+                double v2 = bloque.get(i + 2 - base), v3 = bloque.get(i + 3 - base);
+                cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+                m0 = v0 > m0 ? v0 : m0;
+                m1 = v1 > m1 ? v1 : m1;
+                m2 = v2 > m2 ? v2 : m2;
+                m3 = v3 > m3 ? v3 : m3;
+            }
+            if (i < finBloque) {
+                double v0 = valor(bloques, desplazamiento, i), v1 = valor(bloques, desplazamiento, i + 1);
+                double v2 = valor(bloques, desplazamiento, i + 2), v3 = valor(bloques, desplazamiento, i + 3);
+                cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+                m0 = v0 > m0 ? v0 : m0;
+                m1 = v1 > m1 ? v1 : m1;
+                m2 = v2 > m2 ? v2 : m2;
+                m3 = v3 > m3 ? v3 : m3;
+                i += 4;
+            }
+        }
+        for (; i < hasta; i++) {
+            double v = valor(bloques, desplazamiento, i);
+            cero |= v == 0;
+            m0 = v > m0 ? v : m0;
+        }
+        return cero ? 0.0 : mayor(mayor(m0, m1), mayor(m2, m3));
+    }
+
+    static double maximo(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        int n = filas.length;
+        if (n == 0) {
+            return 0.0;
+        }
+        double m0 = valor(bloques, desplazamiento, filas[0]), m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            double v0 = valor(bloques, desplazamiento, filas[i]), v1 = valor(bloques, desplazamiento, filas[i + 1]);
+            double v2 = valor(bloques, desplazamiento, filas[i + 2]), v3 = valor(bloques, desplazamiento, filas[i + 3]);
+            cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+            m0 = v0 > m0 ? v0 : m0;
+            m1 = v1 > m1 ? v1 : m1;
+            m2 = v2 > m2 ? v2 : m2;
+            m3 = v3 > m3 ? v3 : m3;
+        }
+        for (; i < n; i++) {
+            double v = valor(bloques, desplazamiento, filas[i]);
+            cero |= v == 0;
+            m0 = v > m0 ? v : m0;
+        }
+        return cero ? 0.0 : mayor(mayor(m0, m1), mayor(m2, m3));
+    }
+
+    static double minimo(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        if (hasta <= desde) {
+            return 0.0;
+        }
+        double m0 = valor(bloques, desplazamiento, desde), m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int finCuatro = desde + ((hasta - desde) & ~3);
+        int i = desde;
+        while (i < finCuatro) {
+            DoubleBuffer bloque = bloques[i >>> desplazamiento];
+            int base = i >>> desplazamiento << desplazamiento;
+            int finBloque = Math.min(finCuatro, base + (1 << desplazamiento));
+            for (; i + 3 < finBloque; i += 4) {
+                double v0 = bloque.get(i - base), v1 = bloque.get(i + 1 - base);
+                double v2 = bloque.get(i + 2 - base), v3 = bloque.get(i + 3 - base);
+                cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+                m0 = v0 < m0 ? v0 : m0;
+                m1 = v1 < m1 ? v1 : m1;
+                m2 = v2 < m2 ? v2 : m2;
+                m3 = v3 < m3 ? v3 : m3;
+            }
+            if (i < finBloque) {
+                double v0 = valor(bloques, desplazamiento, i), v1 = valor(bloques, desplazamiento, i + 1);
+                double v2 = valor(bloques, desplazamiento, i + 2), v3 = valor(bloques, desplazamiento, i + 3);
+                cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+                m0 = v0 < m0 ? v0 : m0;
+                m1 = v1 < m1 ? v1 : m1;
+                m2 = v2 < m2 ? v2 : m2;
+                m3 = v3 < m3 ? v3 : m3;
+                i += 4;
+            }
+        }
+        for (; i < hasta; i++) {
+            double v = valor(bloques, desplazamiento, i);
+            cero |= v == 0;
+            m0 = v < m0 ? v : m0;
+        }
+        return cero ? 0.0 : menor(menor(m0, m1), menor(m2, m3));
+    }
+
+    static double minimo(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        int n = filas.length;
+        if (n == 0) {
+            return 0.0;
+        }
+        double m0 = valor(bloques, desplazamiento, filas[0]), m1 = m0, m2 = m0, m3 = m0;
+        boolean cero = false;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            double v0 = valor(bloques, desplazamiento, filas[i]), v1 = valor(bloques, desplazamiento, filas[i + 1]);
+            double v2 = valor(bloques, desplazamiento, filas[i + 2]), v3 = valor(bloques, desplazamiento, filas[i + 3]);
+            cero |= (v0 == 0) | (v1 == 0) | (v2 == 0) | (v3 == 0);
+            m0 = v0 < m0 ? v0 : m0;
+            m1 = v1 < m1 ? v1 : m1;
+            m2 = v2 < m2 ? v2 : m2;
+            m3 = v3 < m3 ? v3 : m3;
+        }
+        for (; i < n; i++) {
+            double v = valor(bloques, desplazamiento, filas[i]);
+            cero |= v == 0;
+            m0 = v < m0 ? v : m0;
+        }
+        return cero ? 0.0 : menor(menor(m0, m1), menor(m2, m3));
+    }
+
+    /**
+     * Lee el valor de una fila de una columna en bloques
+     * 
+     * @param bloques        Bloques de valores
+     * @param desplazamiento log2 de los valores de cada bloque
+     * @param fila           Índice de la fila
+     * @return Valor de la fila
+     */
+    static double valor(DoubleBuffer[] bloques, int desplazamiento, int fila) {
+        return bloques[fila >>> desplazamiento].get(fila & ((1 << desplazamiento) - 1));
+    }
+
+    // Mismo criterio que el bucle (no Math.max, que trata distinto NaN y -0.0)
+    private static double mayor(double a, double b) {
+        return b > a ? b : a;
+    }
+
+    private static double menor(double a, double b) {
+        return b < a ? b : a;
+    }
+}
@@ -1,5 +1,6 @@
 package olapcube.metricas;
 
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
@@ -7,6 +8,7 @@ import java.util.List;
  * de datos.
  */
 public class Max extends Medida {
+    private static final long serialVersionUID = 1L;
 
     public Max() {
         super("Maximo");
@@ -14,37 +16,89 @@ public class Max extends Medida {
 
     @Override
     public double calcular(List<Double> valores) {
-        if (valores == null || valores.isEmpty() || contieneValoresNulos(valores) || contieneCeros(valores)) {
+        if (valores == null || valores.isEmpty()) {
             return 0.0; // Devuelve 0.0 cuando la lista es nula, vacía
         }
 
-        double maximo = valores.get(0);
-        for (double valor : valores) {
-            if (valor > maximo) {
+        // Una sola pasada: un valor nulo o un cero anulan la medida
+        double maximo = 0.0;
+        boolean primero = true;
+        for (Double valor : valores) {
+            if (valor == null || valor == 0) {
+                return 0.0;
+            }
+            if (primero || valor > maximo) {
                 maximo = valor;
+                primero = false;
             }
         }
 
         return maximo;
     }
 
-    // Método para verificar si la lista contiene valores nulos
-    private boolean contieneValoresNulos(List<Double> valores) {
-        for (Double valor : valores) {
-            if (valor == null) {
-                return true;
-            }
-        }
-        return false;
+    @Override
+    public double calcular(double[] columna, int[] filas) {
+        return KernelsAgregacion.maximo(columna, filas); // Mismo criterio que con la lista: un cero anula la medida
     }
 
-    // Método para verificar si la lista contiene ceros
-    private boolean contieneCeros(List<Double> valores) {
-        for (Double valor : valores) {
+    @Override
+    public double calcular(double[] columna, int desde, int hasta) {
+        return KernelsAgregacion.maximo(columna, desde, hasta);
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        return KernelsAgregacion.maximo(bloques, desplazamiento, filas);
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        return KernelsAgregacion.maximo(bloques, desplazamiento, desde, hasta);
+    }
+
+    @Override
+    public Acumulador crearAcumulador() {
+        return new AcumuladorMax();
+    }
+
+    // Sigue el mismo criterio que calcular: sin valores o con algún cero, el resultado es 0
+    private static class AcumuladorMax implements Acumulador {
+        private static final long serialVersionUID = 1L;
+
+        private double maximo;
+        private long cantidad;
+        private boolean contieneCero;
+
+        @Override
+        public void agregar(double valor) {
             if (valor == 0) {
-                return true;
+                contieneCero = true;
+            }
+            if (cantidad == 0 || valor > maximo) {
+                maximo = valor;
+            }
+            cantidad++;
+        }
+
+        @Override
+        public void combinar(Acumulador otro) {
+            AcumuladorMax acumulador = (AcumuladorMax) otro;
+            if (acumulador.cantidad == 0) {
+                return;
+            }
+            if (cantidad == 0 || acumulador.maximo > maximo) {
+                maximo = acumulador.maximo;
+            }
+            cantidad += acumulador.cantidad;
+            contieneCero |= acumulador.contieneCero;
+        }
+
+        @Override
+        public double resultado() {
+            if (cantidad == 0 || contieneCero) {
+                return 0.0;
             }
+            return maximo;
         }
-        return false;
     }
 }
\ No newline at end of file
@@ -1,11 +1,17 @@
 package olapcube.metricas;
 
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
- * Clase abstracta que representa una medida a calcular en conjunto de datos
+ * Clase abstracta que representa una medida a calcular en conjunto de datos.
+ * Las medidas son serializables para poder enviarlas junto con una consulta a
+ * otro proceso.
  */
-public abstract class Medida {
+public abstract class Medida implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String nombre;
 
     public Medida(String nombre) {
@@ -24,4 +30,106 @@ public abstract class Medida {
      */
     public abstract double calcular(List<Double> valores);
 
+    /**
+     * Crea un acumulador vacío de la medida. Por defecto el acumulador guarda
+     * los valores y delega en calcular(List); las medidas que puedan calcularse
+     * con memoria constante deben sobreescribir este método.
+     * 
+     * @return Acumulador de la medida
+     */
+    public Acumulador crearAcumulador() {
+        return new AcumuladorLista(this);
+    }
+
+    /**
+     * Calcula la medida a partir de una columna primitiva, considerando solo
+     * las filas indicadas
+     * 
+     * @param columna Valores de la columna, indexados por fila
+     * @param filas   Filas a considerar
+     * @return Medida calculada
+     */
+    public double calcular(double[] columna, int[] filas) {
+        Acumulador acumulador = crearAcumulador();
+        for (int fila : filas) {
+            acumulador.agregar(columna[fila]);
+        }
+        return acumulador.resultado();
+    }
+
+    /**
+     * Indica si el resultado sobre un subconjunto de filas nunca supera al
+     * resultado sobre todas (por ejemplo Count, o Suma sin valores negativos).
+     * En ese caso el resultado de un nivel superior es cota de los de sus
+     * hijos, y las consultas de los primeros N pueden dejar de recorrer filas
+     * cuando ningún hijo restante puede entrar.
+     * 
+     * @param valoresNoNegativos true si la columna no tiene valores negativos
+     * @return true si la medida es monótona sobre esa columna
+     */
+    public boolean isMonotona(boolean valoresNoNegativos) {
+        return false;
+    }
+
+    /**
+     * Calcula la medida a partir de un rango contiguo de filas de una columna
+     * primitiva (por ejemplo, una celda sin filtros). Las medidas con un bucle
+     * propio deben sobreescribir este método además de calcular(double[],
+     * int[]).
+     * 
+     * @param columna Valores de la columna, indexados por fila
+     * @param desde   Primera fila (incluida)
+     * @param hasta   Última fila (excluida)
+     * @return Medida calculada
+     */
+    public double calcular(double[] columna, int desde, int hasta) {
+        Acumulador acumulador = crearAcumulador();
+        for (int fila = desde; fila < hasta; fila++) {
+            acumulador.agregar(columna[fila]);
+        }
+        return acumulador.resultado();
+    }
+
+    /**
+     * Calcula la medida a partir de una columna guardada en bloques fuera del
+     * heap, considerando solo las filas indicadas. Las medidas con un bucle
+     * propio deben sobreescribir este método con el mismo bucle que
+     * calcular(double[], int[]), para que el resultado no dependa de dónde
+     * está la columna.
+     * 
+     * @param bloques        Bloques de valores: la fila f está en la posición
+     *                       f % 2^desplazamiento del bloque f / 2^desplazamiento
+     * @param desplazamiento log2 de los valores de cada bloque
+     * @param filas          Filas a considerar
+     * @return Medida calculada
+     */
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        Acumulador acumulador = crearAcumulador();
+        for (int fila : filas) {
+            acumulador.agregar(KernelsAgregacion.valor(bloques, desplazamiento, fila));
+        }
+        return acumulador.resultado();
+    }
+
+    /**
+     * Calcula la medida a partir de un rango contiguo de filas de una columna
+     * guardada en bloques fuera del heap. Las medidas con un bucle propio deben
+     * sobreescribir este método con el mismo bucle que calcular(double[], int,
+     * int).
+     * 
+     * @param bloques        Bloques de valores: la fila f está en la posición
+     *                       f % 2^desplazamiento del bloque f / 2^desplazamiento
+     * @param desplazamiento log2 de los valores de cada bloque
+     * @param desde          Primera fila (incluida)
+     * @param hasta          Última fila (excluida)
+     * @return Medida calculada
+     */
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        Acumulador acumulador = crearAcumulador();
+        for (int fila = desde; fila < hasta; fila++) {
+            acumulador.agregar(KernelsAgregacion.valor(bloques, desplazamiento, fila));
+        }
+        return acumulador.resultado();
+    }
+
 }
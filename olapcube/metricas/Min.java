@@ -1,5 +1,6 @@
 package olapcube.metricas;
 
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
@@ -7,6 +8,7 @@ import java.util.List;
  * de datos.
  */
 public class Min extends Medida {
+    private static final long serialVersionUID = 1L;
 
     public Min() {
         super("Minimo");
@@ -14,37 +16,89 @@ public class Min extends Medida {
 
     @Override
     public double calcular(List<Double> valores) {
-        if (valores == null || valores.isEmpty() || contieneValoresNulos(valores) || contieneCeros(valores)) {
+        if (valores == null || valores.isEmpty()) {
             return 0.0; // Devuelve 0.0 cuando la lista es nula, vacía
         }
 
-        double minimo = valores.get(0);
-        for (double valor : valores) {
-            if (valor < minimo) {
+        // Una sola pasada: un valor nulo o un cero anulan la medida
+        double minimo = 0.0;
+        boolean primero = true;
+        for (Double valor : valores) {
+            if (valor == null || valor == 0) {
+                return 0.0;
+            }
+            if (primero || valor < minimo) {
                 minimo = valor;
+                primero = false;
             }
         }
 
         return minimo;
     }
 
-    // Método para verificar si la lista contiene valores nulos
-    private boolean contieneValoresNulos(List<Double> valores) {
-        for (Double valor : valores) {
-            if (valor == null) {
-                return true;
-            }
-        }
-        return false;
+    @Override
+    public double calcular(double[] columna, int[] filas) {
+        return KernelsAgregacion.minimo(columna, filas); // Mismo criterio que con la lista: un cero anula la medida
     }
 
-    // Método para verificar si la lista contiene ceros
-    private boolean contieneCeros(List<Double> valores) {
-        for (Double valor : valores) {
+    @Override
+    public double calcular(double[] columna, int desde, int hasta) {
+        return KernelsAgregacion.minimo(columna, desde, hasta);
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        return KernelsAgregacion.minimo(bloques, desplazamiento, filas);
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        return KernelsAgregacion.minimo(bloques, desplazamiento, desde, hasta);
+    }
+
+    @Override
+    public Acumulador crearAcumulador() {
+        return new AcumuladorMin();
+    }
+
+    // Sigue el mismo criterio que calcular: sin valores o con algún cero, el resultado es 0
+    private static class AcumuladorMin implements Acumulador {
+        private static final long serialVersionUID = 1L;
+
+        private double minimo;
+        private long cantidad;
+        private boolean contieneCero;
+
+        @Override
+        public void agregar(double valor) {
             if (valor == 0) {
-                return true;
+                contieneCero = true;
+            }
+            if (cantidad == 0 || valor < minimo) {
+                minimo = valor;
+            }
+            cantidad++;
+        }
+
+        @Override
+        public void combinar(Acumulador otro) {
+            AcumuladorMin acumulador = (AcumuladorMin) otro;
+            if (acumulador.cantidad == 0) {
+                return;
+            }
+            if (cantidad == 0 || acumulador.minimo < minimo) {
+                minimo = acumulador.minimo;
+            }
+            cantidad += acumulador.cantidad;
+            contieneCero |= acumulador.contieneCero;
+        }
+
+        @Override
+        public double resultado() {
+            if (cantidad == 0 || contieneCero) {
+                return 0.0;
             }
+            return minimo;
         }
-        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,280 @@
+package olapcube.metricas;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clase que representa una medida de percentil (mediana, p90, p95, p99 o
+ * cualquier cuantil q entre 0 y 1).
+ * 
+ * En lugar de ordenar todos los valores de la celda, el acumulador es un
+ * t-digest: resume los valores en centroides (media y peso) que son pequeños
+ * cerca de los extremos y más grandes en el centro, de modo que el error en
+ * los percentiles altos y bajos es el menor. La cantidad de centroides está
+ * acotada por la compresión, así que la memoria es fija sin importar cuántas
+ * filas caigan en la celda, y dos digests se combinan fusionando sus
+ * centroides (cuboides, lotes anexados, particiones).
+ * 
+ * El percentil se interpola linealmente entre los centroides, con el mínimo y
+ * el máximo exactos en los extremos. Mientras cada centroide tiene un solo
+ * valor el resultado es exacto (definición de Hazen: la mediana de 1, 2, 3 y 4
+ * es 2.5).
+ */
+public class Percentil extends Medida {
+    private static final long serialVersionUID = 1L;
+
+    public static final double COMPRESION_POR_DEFECTO = 100; // Del orden de la cantidad máxima de centroides
+
+    private double cuantil; // Cuantil a calcular, entre 0 y 1
+    private double compresion; // Cantidad de centroides a la que se resume cada acumulador
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param nombre  Nombre de la medida (ej. "P75")
+     * @param cuantil Cuantil a calcular, entre 0 y 1 (ej. 0.75)
+     */
+    public Percentil(String nombre, double cuantil) {
+        this(nombre, cuantil, COMPRESION_POR_DEFECTO);
+    }
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param nombre     Nombre de la medida
+     * @param cuantil    Cuantil a calcular, entre 0 y 1
+     * @param compresion Cantidad de centroides aproximada: más centroides dan
+     *                   menos error y ocupan más memoria
+     */
+    public Percentil(String nombre, double cuantil, double compresion) {
+        super(nombre);
+        if (!(cuantil >= 0 && cuantil <= 1)) {
+            throw new IllegalArgumentException("El cuantil debe estar entre 0 y 1: " + cuantil);
+        }
+        if (!(compresion >= 10)) {
+            throw new IllegalArgumentException("La compresión debe ser al menos 10: " + compresion);
+        }
+        this.cuantil = cuantil;
+        this.compresion = compresion;
+    }
+
+    public static Percentil mediana() {
+        return new Percentil("Mediana", 0.5);
+    }
+
+    public double getCuantil() {
+        return cuantil;
+    }
+
+    public double getCompresion() {
+        return compresion;
+    }
+
+    @Override
+    public double calcular(List<Double> valores) {
+        Acumulador acumulador = crearAcumulador();
+        for (Double valor : valores) {
+            acumulador.agregar(valor);
+        }
+        return acumulador.resultado();
+    }
+
+    @Override
+    public Acumulador crearAcumulador() {
+        return new AcumuladorTDigest(this);
+    }
+
+    /**
+     * t-digest con fusión por lotes: los valores se juntan en un buffer y al
+     * llenarse se ordenan y se fusionan con los centroides en una sola pasada.
+     * 
+     * combinar() y resultado() no modifican al otro acumulador ni el buffer
+     * propio, porque los acumuladores de un cuboide se leen desde varias
+     * consultas a la vez.
+     */
+    private static class AcumuladorTDigest implements Acumulador {
+        private static final long serialVersionUID = 1L;
+
+        private Percentil medida; // Medida con el cuantil y la compresión
+        private double[] medias; // Media de cada centroide, en orden
+        private double[] pesos; // Cantidad de valores de cada centroide
+        private double[] buffer; // Valores todavía no fusionados
+        private int cantidadBuffer; // Valores en el buffer
+        private double minimo; // Menor valor visto
+        private double maximo; // Mayor valor visto
+
+        AcumuladorTDigest(Percentil medida) {
+            this.medida = medida;
+            this.medias = new double[0];
+            this.pesos = new double[0];
+            this.buffer = new double[8];
+            this.minimo = Double.POSITIVE_INFINITY;
+            this.maximo = Double.NEGATIVE_INFINITY;
+        }
+
+        // El buffer crece a demanda, para que los grupos con pocas filas (ej. en cuboides) ocupen poco
+        private int capacidadBuffer() {
+            return (int) (5 * medida.compresion);
+        }
+
+        @Override
+        public void agregar(double valor) {
+            if (Double.isNaN(valor)) {
+                return;
+            }
+            if (cantidadBuffer == buffer.length) {
+                if (buffer.length < capacidadBuffer()) {
+                    buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, capacidadBuffer()));
+                } else {
+                    vaciarBuffer();
+                }
+            }
+            buffer[cantidadBuffer++] = valor;
+            minimo = Math.min(minimo, valor);
+            maximo = Math.max(maximo, valor);
+        }
+
+        private void vaciarBuffer() {
+            double[] valores = Arrays.copyOf(buffer, cantidadBuffer);
+            Arrays.sort(valores);
+            fusionar(valores, null);
+            cantidadBuffer = 0;
+        }
+
+        @Override
+        public void combinar(Acumulador otro) {
+            AcumuladorTDigest acumulador = (AcumuladorTDigest) otro;
+            if (acumulador.medias.length > 0) {
+                fusionar(acumulador.medias, acumulador.pesos);
+            }
+            for (int i = 0; i < acumulador.cantidadBuffer; i++) {
+                agregar(acumulador.buffer[i]);
+            }
+            minimo = Math.min(minimo, acumulador.minimo);
+            maximo = Math.max(maximo, acumulador.maximo);
+        }
+
+        /**
+         * Fusiona centroides ordenados con los propios
+         * 
+         * @param otrasMedias Medias ordenadas
+         * @param otrosPesos  Pesos de cada media (null si todos pesan 1)
+         */
+        private void fusionar(double[] otrasMedias, double[] otrosPesos) {
+            double[][] resultado = fusionar(medias, pesos, otrasMedias, otrosPesos, medida.compresion);
+            medias = resultado[0];
+            pesos = resultado[1];
+        }
+
+        /**
+         * Intercala dos secuencias de centroides ordenadas y agrupa los
+         * consecutivos mientras el centroide resultante no supere el tamaño
+         * permitido en su posición. El límite sale de la función de escala
+         * k(q) = compresion / (2 pi) * asin(2q - 1): cada centroide abarca a lo
+         * sumo una unidad de k, que en los extremos es una fracción muy chica
+         * de los valores.
+         * 
+         * @return Medias y pesos de los centroides resultantes
+         */
+        private static double[][] fusionar(double[] mediasA, double[] pesosA, double[] mediasB, double[] pesosB,
+                double compresion) {
+            int total = mediasA.length + mediasB.length;
+            double pesoTotal = 0;
+            for (double peso : pesosA) {
+                pesoTotal += peso;
+            }
+            pesoTotal += pesosB == null ? mediasB.length : sumar(pesosB);
+
+            double[] nuevasMedias = new double[total];
+            double[] nuevosPesos = new double[total];
+            int cantidad = 0;
+            double pesoAnterior = 0; // Peso de los centroides ya cerrados
+            double pesoLimite = 0; // Peso acumulado hasta el que puede crecer el centroide actual
+            int a = 0;
+            int b = 0;
+            while (a < mediasA.length || b < mediasB.length) {
+                double media;
+                double peso;
+                if (b >= mediasB.length || (a < mediasA.length && mediasA[a] <= mediasB[b])) {
+                    media = mediasA[a];
+                    peso = pesosA[a++];
+                } else {
+                    media = mediasB[b];
+                    peso = pesosB == null ? 1 : pesosB[b];
+                    b++;
+                }
+                if (cantidad > 0 && pesoAnterior + nuevosPesos[cantidad - 1] + peso <= pesoLimite) {
+                    int actual = cantidad - 1;
+                    nuevosPesos[actual] += peso;
+                    nuevasMedias[actual] += (media - nuevasMedias[actual]) * peso / nuevosPesos[actual];
+                } else {
+                    if (cantidad > 0) {
+                        pesoAnterior += nuevosPesos[cantidad - 1];
+                    }
+                    pesoLimite = pesoTotal * limiteCuantil(pesoAnterior / pesoTotal, compresion);
+                    nuevasMedias[cantidad] = media;
+                    nuevosPesos[cantidad] = peso;
+                    cantidad++;
+                }
+            }
+            return new double[][] { Arrays.copyOf(nuevasMedias, cantidad), Arrays.copyOf(nuevosPesos, cantidad) };
+        }
+
+        // Cuantil hasta el que puede llegar un centroide que empieza en q
+        private static double limiteCuantil(double q, double compresion) {
+            double k = compresion / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+            if (k >= compresion / 4) {
+                return 1;
+            }
+            return (Math.sin(k * 2 * Math.PI / compresion) + 1) / 2;
+        }
+
+        private static double sumar(double[] valores) {
+            double suma = 0;
+            for (double valor : valores) {
+                suma += valor;
+            }
+            return suma;
+        }
+
+        @Override
+        public double resultado() {
+            double[] mediasFinales = medias;
+            double[] pesosFinales = pesos;
+            if (cantidadBuffer > 0) {
+                double[] valores = Arrays.copyOf(buffer, cantidadBuffer);
+                Arrays.sort(valores);
+                double[][] fusion = fusionar(medias, pesos, valores, null, medida.compresion);
+                mediasFinales = fusion[0];
+                pesosFinales = fusion[1];
+            }
+            if (mediasFinales.length == 0) {
+                return 0.0; // Mismo criterio que las otras medidas para una celda vacía
+            }
+
+            // Cada centroide se ubica en el centro de su peso acumulado; el mínimo en 0 y el máximo en el total
+            double pesoTotal = sumar(pesosFinales);
+            double posicion = medida.cuantil * pesoTotal;
+            double posicionAnterior = 0;
+            double valorAnterior = minimo;
+            double acumulado = 0;
+            for (int i = 0; i < mediasFinales.length; i++) {
+                double centro = acumulado + pesosFinales[i] / 2;
+                if (posicion <= centro) {
+                    return interpolar(posicionAnterior, valorAnterior, centro, mediasFinales[i], posicion);
+                }
+                posicionAnterior = centro;
+                valorAnterior = mediasFinales[i];
+                acumulado += pesosFinales[i];
+            }
+            return interpolar(posicionAnterior, valorAnterior, pesoTotal, maximo, posicion);
+        }
+
+        private static double interpolar(double x0, double y0, double x1, double y1, double x) {
+            if (x1 <= x0) {
+                return y1;
+            }
+            return y0 + (y1 - y0) * (x - x0) / (x1 - x0);
+        }
+    }
+}
@@ -28,9 +28,21 @@ public class RegistroMedida {
         registrarMedida(new Count());
         registrarMedida(new Max());
         registrarMedida(new Min());
+        registrarMedida(new ConteoDistinto());
+        registrarMedida(Percentil.mediana());
+        registrarMedida(new Percentil("P90", 0.90));
+        registrarMedida(new Percentil("P95", 0.95));
+        registrarMedida(new Percentil("P99", 0.99));
     }
 
-    private static void registrarMedida(Medida medida) {
+    /**
+     * Registra una medida para que pueda usarse en las proyecciones. Las
+     * medidas propias pueden sobreescribir Medida.crearAcumulador() para
+     * calcularse con memoria constante y combinarse entre particiones.
+     * 
+     * @param medida Medida a registrar
+     */
+    public static void registrarMedida(Medida medida) {
         String nombreNormalizado = removeAccents(medida.getNombre().toLowerCase());
         medidas.put(nombreNormalizado, medida);
     }
@@ -53,6 +65,33 @@ public class RegistroMedida {
         return medidas.get(nombreNormalizado);
     }
 
+    /**
+     * Indica si una medida es la registrada con su nombre. Una medida creada
+     * aparte (por ejemplo new Percentil("P", 0.5)) puede repetir el nombre de
+     * otra con distintos parámetros, así que solo las registradas se pueden
+     * identificar por el nombre.
+     * 
+     * @param medida Medida
+     * @return true si es la instancia registrada con su nombre
+     */
+    public static boolean isRegistrada(Medida medida) {
+        return getMedida(medida.getNombre()) == medida;
+    }
+
+    /**
+     * Crea un acumulador vacío de una medida registrada
+     * 
+     * @param nombre Nombre de la medida
+     * @return Acumulador de la medida
+     */
+    public static Acumulador crearAcumulador(String nombre) {
+        Medida medida = getMedida(nombre);
+        if (medida == null) {
+            throw new IllegalArgumentException("Medida no encontrada: " + nombre);
+        }
+        return medida.crearAcumulador();
+    }
+
     public static Map<String, Medida> getMedidas() {
         return new HashMap<>(medidas);
     }
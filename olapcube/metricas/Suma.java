@@ -1,11 +1,13 @@
 package olapcube.metricas;
 
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
  * Clase que representa una medida de suma
  */
 public class Suma extends Medida {
+    private static final long serialVersionUID = 1L;
 
     public Suma() {
         super("Suma");
@@ -20,4 +22,55 @@ public class Suma extends Medida {
 
         return suma;
     }
+
+    @Override
+    public double calcular(double[] columna, int[] filas) {
+        return KernelsAgregacion.suma(columna, filas);
+    }
+
+    @Override
+    public double calcular(double[] columna, int desde, int hasta) {
+        return KernelsAgregacion.suma(columna, desde, hasta);
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int[] filas) {
+        return KernelsAgregacion.suma(bloques, desplazamiento, filas);
+    }
+
+    @Override
+    public double calcular(DoubleBuffer[] bloques, int desplazamiento, int desde, int hasta) {
+        return KernelsAgregacion.suma(bloques, desplazamiento, desde, hasta);
+    }
+
+    @Override
+    public boolean isMonotona(boolean valoresNoNegativos) {
+        return valoresNoNegativos;
+    }
+
+    @Override
+    public Acumulador crearAcumulador() {
+        return new AcumuladorSuma();
+    }
+
+    private static class AcumuladorSuma implements Acumulador {
+        private static final long serialVersionUID = 1L;
+
+        private double suma;
+
+        @Override
+        public void agregar(double valor) {
+            suma += valor;
+        }
+
+        @Override
+        public void combinar(Acumulador otro) {
+            suma += ((AcumuladorSuma) otro).suma;
+        }
+
+        @Override
+        public double resultado() {
+            return suma;
+        }
+    }
 }
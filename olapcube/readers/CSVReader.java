@@ -1,8 +1,11 @@
 package olapcube.readers;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -13,7 +16,9 @@ import java.util.List;
  * 
  * @see estructuras.olapcube.readers.DatasetReader
  */
-public class CSVReader implements DatasetReader {
+public class CSVReader implements DatasetReader, Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String path; // Ruta del archivo CSV
     private List<String> columnas; // Columnas del archivo CSV
     private boolean ignorarIndice = false; // Ignorar la primera columna
@@ -34,6 +39,27 @@ public class CSVReader implements DatasetReader {
         return columnas;
     }
 
+    @Override
+    public String getFirma() {
+        File archivo = new File(path);
+        return "csv:" + archivo.getAbsolutePath() + ":" + archivo.length() + ":" + archivo.lastModified();
+    }
+
+    /**
+     * Abre un cursor que recorre el archivo en streaming sobre un buffer de bytes,
+     * sin cargarlo completo en memoria. Si el archivo tiene encabezado, se
+     * consume al abrir el cursor y actualiza las columnas.
+     */
+    @Override
+    public CursorFilas abrirCursor() {
+        CursorCSV cursor = new CursorCSV(new File(path).toPath(), Charset.defaultCharset(), ignorarIndice ? 1 : 0);
+        if (header && cursor.siguiente()) {
+            columnas = Arrays.asList(cursor.getCampos());
+        }
+        cursor.setCamposEsperados(columnas.size());
+        return cursor;
+    }
+
     @Override
     public String[][] read() {
         List<String[]> rows = new ArrayList<>();
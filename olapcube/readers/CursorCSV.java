@@ -0,0 +1,268 @@
+package olapcube.readers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Cursor que recorre un archivo CSV (separado por ";") directamente sobre los
+ * bytes de un buffer directo de tamaño fijo, que se vuelve a llenar desde el
+ * archivo a medida que se avanza. En memoria solo hay una ventana del archivo,
+ * sin importar su tamaño.
+ *
+ * Los campos de la fila actual se guardan como posiciones dentro del buffer;
+ * getInt y getDouble los convierten sin crear Strings (con un fallback a
+ * Integer.parseInt / Double.parseDouble para los formatos poco comunes).
+ */
+class CursorCSV implements CursorFilas {
+    private static final int TAMANIO_BUFFER = 1 << 20; // Tamaño inicial de la ventana del archivo
+    private static final int MAX_DIGITOS_EXACTOS = 15; // Dígitos que entran sin pérdida en la mantisa de un double
+    private static final double[] POTENCIAS_10 = new double[23]; // Potencias de 10 representables en forma exacta
+
+    static {
+        POTENCIAS_10[0] = 1;
+        for (int i = 1; i < POTENCIAS_10.length; i++) {
+            POTENCIAS_10[i] = POTENCIAS_10[i - 1] * 10;
+        }
+    }
+
+    private FileChannel canal; // Archivo CSV
+    private ByteBuffer buffer; // Ventana del archivo: [position, limit) aún no consumido
+    private boolean finArchivo; // Indica si ya se leyó todo el archivo
+    private Charset charset; // Codificación de los campos de texto
+    private int primerCampo; // Campos iniciales a ignorar (por ejemplo un índice)
+    private int camposEsperados; // Cantidad de campos de cada fila (-1 si no se valida)
+    private int[] inicios; // Inicio de cada campo de la fila actual en el buffer
+    private int[] fines; // Fin (exclusivo) de cada campo de la fila actual en el buffer
+    private int cantidadCampos; // Cantidad de campos de la fila actual (incluidos los ignorados)
+    private byte[] bytesTexto; // Buffer auxiliar para decodificar campos de texto
+
+    CursorCSV(Path ruta, Charset charset, int primerCampo) {
+        try {
+            this.canal = FileChannel.open(ruta, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el archivo " + ruta, e);
+        }
+        this.buffer = ByteBuffer.allocateDirect(TAMANIO_BUFFER);
+        this.buffer.limit(0);
+        this.charset = charset;
+        this.primerCampo = primerCampo;
+        this.camposEsperados = -1;
+        this.inicios = new int[16];
+        this.fines = new int[16];
+        this.bytesTexto = new byte[64];
+    }
+
+    /**
+     * Indica la cantidad de campos que debe tener cada fila a partir de la
+     * siguiente (sin contar los ignorados)
+     *
+     * @param camposEsperados Cantidad de campos
+     */
+    void setCamposEsperados(int camposEsperados) {
+        this.camposEsperados = camposEsperados;
+    }
+
+    /**
+     * Obtiene los campos de la fila actual como texto (por ejemplo para el
+     * encabezado)
+     *
+     * @return Campos de la fila actual
+     */
+    String[] getCampos() {
+        String[] campos = new String[getCantidadCampos()];
+        for (int i = 0; i < campos.length; i++) {
+            campos[i] = getString(i);
+        }
+        return campos;
+    }
+
+    @Override
+    public boolean siguiente() {
+        int desde = buffer.position();
+        while (true) {
+            for (int i = desde; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    separarCampos(buffer.position(), i);
+                    buffer.position(i + 1);
+                    return true;
+                }
+            }
+            if (finArchivo) {
+                if (!buffer.hasRemaining()) {
+                    return false;
+                }
+                separarCampos(buffer.position(), buffer.limit());
+                buffer.position(buffer.limit());
+                return true;
+            }
+            desde = rellenar();
+        }
+    }
+
+    /**
+     * Mueve los bytes no consumidos al inicio del buffer y lo completa con el
+     * contenido del archivo. Si una fila no entra en el buffer, lo agranda.
+     *
+     * @return Posición (relativa al nuevo inicio) desde la que seguir buscando el
+     *         fin de la fila
+     */
+    private int rellenar() {
+        int pendientes = buffer.remaining();
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            ByteBuffer mayor = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            buffer.flip();
+            mayor.put(buffer);
+            buffer = mayor;
+        }
+        try {
+            if (canal.read(buffer) < 0) {
+                finArchivo = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+        return pendientes;
+    }
+
+    /**
+     * Registra las posiciones de los campos de una fila. Igual que
+     * String.split(";"), descarta los campos vacíos al final de la fila.
+     *
+     * @param inicio Inicio de la fila en el buffer
+     * @param fin    Fin (exclusivo) de la fila en el buffer, sin el salto de línea
+     */
+    private void separarCampos(int inicio, int fin) {
+        if (fin > inicio && buffer.get(fin - 1) == '\r') {
+            fin--;
+        }
+        cantidadCampos = 0;
+        int inicioCampo = inicio;
+        for (int i = inicio; i <= fin; i++) {
+            if (i == fin || buffer.get(i) == ';') {
+                if (cantidadCampos == inicios.length) {
+                    inicios = Arrays.copyOf(inicios, cantidadCampos * 2);
+                    fines = Arrays.copyOf(fines, cantidadCampos * 2);
+                }
+                inicios[cantidadCampos] = inicioCampo;
+                fines[cantidadCampos] = i;
+                cantidadCampos++;
+                inicioCampo = i + 1;
+            }
+        }
+        if (fin > inicio) {
+            while (cantidadCampos > 0 && inicios[cantidadCampos - 1] == fines[cantidadCampos - 1]) {
+                cantidadCampos--;
+            }
+        }
+        if (camposEsperados >= 0 && getCantidadCampos() != camposEsperados) {
+            throw new RuntimeException("El número de columnas no coincide con el número de valores");
+        }
+    }
+
+    @Override
+    public int getCantidadCampos() {
+        return Math.max(cantidadCampos - primerCampo, 0);
+    }
+
+    private int verificarCampo(int campo) {
+        if (campo < 0 || campo >= getCantidadCampos()) {
+            throw new IndexOutOfBoundsException("Campo " + campo + " fuera de rango");
+        }
+        return campo + primerCampo;
+    }
+
+    @Override
+    public String getString(int campo) {
+        int c = verificarCampo(campo);
+        int largo = fines[c] - inicios[c];
+        if (bytesTexto.length < largo) {
+            bytesTexto = new byte[Math.max(largo, bytesTexto.length * 2)];
+        }
+        // Copia con lecturas absolutas: get(int, byte[], int, int) recién existe desde Java 13
+        for (int i = 0; i < largo; i++) {
+            bytesTexto[i] = buffer.get(inicios[c] + i);
+        }
+        return new String(bytesTexto, 0, largo, charset);
+    }
+
+    @Override
+    public int getInt(int campo) {
+        int c = verificarCampo(campo);
+        int i = inicios[c];
+        int fin = fines[c];
+        boolean negativo = i < fin && buffer.get(i) == '-';
+        if (negativo) {
+            i++;
+        }
+        // Hasta 9 dígitos no hay desborde posible
+        if (i == fin || fin - i > 9) {
+            return Integer.parseInt(getString(campo));
+        }
+        int valor = 0;
+        for (; i < fin; i++) {
+            int digito = buffer.get(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return Integer.parseInt(getString(campo));
+            }
+            valor = valor * 10 + digito;
+        }
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Convierte un campo a double. Para valores de la forma [-]ddd[.ddd] con
+     * hasta 15 dígitos, la mantisa y la potencia de 10 son exactas y una única
+     * división da el mismo resultado (correctamente redondeado) que
+     * Double.parseDouble.
+     */
+    @Override
+    public double getDouble(int campo) {
+        int c = verificarCampo(campo);
+        int i = inicios[c];
+        int fin = fines[c];
+        boolean negativo = i < fin && buffer.get(i) == '-';
+        if (negativo) {
+            i++;
+        }
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = -1;
+        for (; i < fin; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && decimales < 0) {
+                decimales = 0;
+                continue;
+            }
+            int digito = b - '0';
+            if (digito < 0 || digito > 9 || ++digitos > MAX_DIGITOS_EXACTOS) {
+                return Double.parseDouble(getString(campo));
+            }
+            mantisa = mantisa * 10 + digito;
+            if (decimales >= 0) {
+                decimales++;
+            }
+        }
+        if (digitos == 0) {
+            return Double.parseDouble(getString(campo));
+        }
+        double valor = decimales > 0 ? mantisa / POTENCIAS_10[decimales] : mantisa;
+        return negativo ? -valor : valor;
+    }
+
+    @Override
+    public void close() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
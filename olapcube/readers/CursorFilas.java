@@ -0,0 +1,36 @@
+package olapcube.readers;
+
+/**
+ * Interfaz que define un recorrido secuencial (fila por fila) de un dataset.
+ * 
+ * A diferencia de DatasetReader.read(), el cursor no materializa el dataset:
+ * solo la fila actual es accesible, y sus campos se pueden convertir
+ * directamente a int o double sin crear un String por campo.
+ */
+public interface CursorFilas extends AutoCloseable {
+    /**
+     * Avanza a la siguiente fila del dataset
+     * 
+     * @return true si hay una fila actual, false si se llegó al final
+     */
+    public boolean siguiente();
+
+    /**
+     * Obtiene la cantidad de campos de la fila actual
+     * 
+     * @return Cantidad de campos
+     */
+    public int getCantidadCampos();
+
+    public String getString(int campo);
+
+    public int getInt(int campo);
+
+    public double getDouble(int campo);
+
+    /**
+     * Libera los recursos del cursor (archivos, buffers)
+     */
+    @Override
+    public void close();
+}
@@ -0,0 +1,50 @@
+package olapcube.readers;
+
+/**
+ * Cursor sobre una matriz ya leída. Permite que cualquier DatasetReader se
+ * recorra como cursor aunque no implemente una lectura en streaming.
+ */
+class CursorMatriz implements CursorFilas {
+    private String[][] datos; // Filas del dataset
+    private int fila; // Fila actual
+
+    CursorMatriz(String[][] datos) {
+        this.datos = datos;
+        this.fila = -1;
+    }
+
+    @Override
+    public boolean siguiente() {
+        if (fila + 1 >= datos.length) {
+            fila = datos.length;
+            return false;
+        }
+        fila++;
+        return true;
+    }
+
+    @Override
+    public int getCantidadCampos() {
+        return datos[fila].length;
+    }
+
+    @Override
+    public String getString(int campo) {
+        return datos[fila][campo];
+    }
+
+    @Override
+    public int getInt(int campo) {
+        return Integer.parseInt(datos[fila][campo]);
+    }
+
+    @Override
+    public double getDouble(int campo) {
+        return Double.parseDouble(datos[fila][campo]);
+    }
+
+    @Override
+    public void close() {
+        datos = null;
+    }
+}
@@ -10,4 +10,26 @@ public interface DatasetReader {
      * @return Matriz con los datos del dataset
      */
     public String[][] read();
+
+    /**
+     * Método que permite recorrer el dataset fila por fila. Por defecto recorre
+     * la matriz de read(); los lectores que pueden hacerlo en streaming lo
+     * redefinen para no cargar el dataset completo en memoria.
+     * 
+     * @return Cursor posicionado antes de la primera fila
+     */
+    public default CursorFilas abrirCursor() {
+        return new CursorMatriz(read());
+    }
+
+    /**
+     * Método que permite identificar el origen del dataset y su versión (por
+     * ejemplo ruta, tamaño y fecha de modificación de un archivo), para detectar
+     * si cambió desde que se construyó un cubo
+     * 
+     * @return Firma del dataset
+     */
+    public default String getFirma() {
+        return getClass().getName();
+    }
 }
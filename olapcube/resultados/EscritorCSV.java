@@ -0,0 +1,97 @@
+package olapcube.resultados;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe un resultado como CSV (RFC 4180) en UTF-8: una fila de encabezado con
+ * las dimensiones y una columna "hecho (medida)" por resultado, y una fila por
+ * grupo. Los campos con separador, comillas o saltos de línea van entre
+ * comillas; los resultados NaN o infinitos quedan vacíos.
+ */
+public class EscritorCSV implements EscritorResultados {
+    private char separador; // Separador de campos
+
+    public EscritorCSV() {
+        this(',');
+    }
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param separador Separador de campos (ej. ';' para planillas en español)
+     */
+    public EscritorCSV(char separador) {
+        if (separador == '"' || separador == '\r' || separador == '\n') {
+            throw new IllegalArgumentException("Separador inválido: " + separador);
+        }
+        this.separador = separador;
+    }
+
+    @Override
+    public void escribir(ResultadoConsulta resultado, OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+        int dimensiones = resultado.getCantidadDimensiones();
+        int columnas = resultado.getCantidadColumnas();
+        for (int d = 0; d < dimensiones; d++) {
+            escribirSeparador(escritor, d);
+            escribirCampo(escritor, resultado.getDimension(d));
+        }
+        for (int c = 0; c < columnas; c++) {
+            escribirSeparador(escritor, dimensiones + c);
+            escribirCampo(escritor, resultado.getHecho(c) + " (" + resultado.getMedida(c) + ")");
+        }
+        escritor.write("\r\n");
+
+        ResultadoConsulta.Cursor cursor = resultado.cursor();
+        while (cursor.siguiente()) {
+            for (int d = 0; d < dimensiones; d++) {
+                escribirSeparador(escritor, d);
+                escribirCampo(escritor, cursor.getClave(d));
+            }
+            for (int c = 0; c < columnas; c++) {
+                escribirSeparador(escritor, dimensiones + c);
+                double valor = cursor.getValor(c);
+                if (!Double.isNaN(valor) && !Double.isInfinite(valor)) {
+                    FormatoNumeros.escribir(escritor, valor);
+                }
+            }
+            escritor.write("\r\n");
+        }
+        escritor.flush();
+    }
+
+    private void escribirSeparador(Writer escritor, int campo) throws IOException {
+        if (campo > 0) {
+            escritor.write(separador);
+        }
+    }
+
+    private void escribirCampo(Writer escritor, String valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean comillas = false;
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == separador || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!comillas) {
+            escritor.write(valor);
+            return;
+        }
+        escritor.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                escritor.write('"');
+            }
+            escritor.write(c);
+        }
+        escritor.write('"');
+    }
+}
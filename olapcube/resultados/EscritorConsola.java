@@ -0,0 +1,154 @@
+package olapcube.resultados;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Escribe un resultado como la tabla de consola de Proyeccion: columnas de 20
+ * caracteres, las claves de cada fila unidas con " | " y los resultados con
+ * dos decimales. Las filas sin ningún resultado distinto de cero no se
+ * muestran y los ceros de las demás quedan vacíos.
+ * 
+ * Ejemplo:
+ * 
+ * <pre>
+ *                      |          valor_total |
+ *                      |               (Suma) |
+ * ----------------------------------------------
+ * 2017 | Accessories   |              1250.50 |
+ * </pre>
+ */
+public class EscritorConsola implements EscritorResultados {
+    private static final int ANCHO_CELDA = 20;
+    private static final String SEPARADOR = " | ";
+    private static final String SEPARADOR_CLAVES = " | ";
+
+    private int maxFilas; // Filas a considerar (-1 para todas)
+    private boolean mostrarMedidas; // true para agregar una línea con la medida de cada columna
+    private boolean[] mostrarUltimaParte; // Por dimensión, true para mostrar solo la última parte de la clave
+
+    /**
+     * Constructor de la clase, con todas las filas, la línea de medidas y las
+     * claves completas
+     */
+    public EscritorConsola() {
+        this(-1, true, new boolean[0]);
+    }
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param maxFilas           Filas a considerar (-1 para todas); las filas
+     *                           en cero que se omiten cuentan dentro del máximo
+     * @param mostrarMedidas     true para agregar una línea con la medida de
+     *                           cada columna debajo del hecho
+     * @param mostrarUltimaParte Por dimensión, true para mostrar solo lo que
+     *                           sigue a la última '/' de la clave (las
+     *                           dimensiones que falten se muestran completas)
+     */
+    public EscritorConsola(int maxFilas, boolean mostrarMedidas, boolean[] mostrarUltimaParte) {
+        this.maxFilas = maxFilas;
+        this.mostrarMedidas = mostrarMedidas;
+        this.mostrarUltimaParte = mostrarUltimaParte.clone();
+    }
+
+    @Override
+    public void escribir(ResultadoConsulta resultado, OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, Charset.defaultCharset()),
+                TAMANIO_BUFFER);
+        String finLinea = System.lineSeparator();
+        int columnas = resultado.getCantidadColumnas();
+
+        // Encabezados con los hechos (y las medidas)
+        escribirCelda(escritor, "", false);
+        for (int c = 0; c < columnas; c++) {
+            escritor.write(SEPARADOR);
+            escribirCelda(escritor, resultado.getHecho(c), false);
+        }
+        escritor.write(" |");
+        escritor.write(finLinea);
+        if (mostrarMedidas) {
+            escribirCelda(escritor, "", false);
+            for (int c = 0; c < columnas; c++) {
+                escritor.write(SEPARADOR);
+                escribirCelda(escritor, "(" + resultado.getMedida(c) + ")", false);
+            }
+            escritor.write(" |");
+            escritor.write(finLinea);
+        }
+        // Con la línea de medidas la tabla es la de printPivotAllHechos, cuyo separador es una celda más largo
+        int longitudSeparador = ANCHO_CELDA + (SEPARADOR.length() + ANCHO_CELDA) * columnas
+                + (mostrarMedidas ? SEPARADOR.length() : 0);
+        for (int i = 0; i < longitudSeparador; i++) {
+            escritor.write('-');
+        }
+        escritor.write(finLinea);
+
+        // Filas con claves y resultados
+        double[] valores = new double[columnas];
+        StringBuilder claves = new StringBuilder();
+        ResultadoConsulta.Cursor cursor = resultado.cursor();
+        while (cursor.siguiente() && (maxFilas < 0 || cursor.getFila() < maxFilas)) {
+            boolean algunValor = false;
+            for (int c = 0; c < columnas; c++) {
+                valores[c] = cursor.getValor(c);
+                algunValor |= valores[c] != 0.0;
+            }
+            if (!algunValor) {
+                continue;
+            }
+            claves.setLength(0);
+            for (int d = 0; d < resultado.getCantidadDimensiones(); d++) {
+                if (d > 0) {
+                    claves.append(SEPARADOR_CLAVES);
+                }
+                String clave = cursor.getClave(d);
+                claves.append(d < mostrarUltimaParte.length && mostrarUltimaParte[d] ? obtenerUltimaParte(clave)
+                        : clave);
+            }
+            escribirCelda(escritor, claves.toString(), true);
+            for (int c = 0; c < columnas; c++) {
+                escritor.write(SEPARADOR);
+                escribirCelda(escritor, valores[c] != 0.0 ? FormatoNumeros.dosDecimales(valores[c]) : "", false);
+            }
+            escritor.write(" |");
+            escritor.write(finLinea);
+        }
+        escritor.flush();
+    }
+
+    /**
+     * Escribe un texto en una celda de ancho fijo, recortado o completado con
+     * espacios
+     * 
+     * @param izquierda true para alinear a la izquierda
+     */
+    private static void escribirCelda(Writer escritor, String texto, boolean izquierda) throws IOException {
+        int largo = Math.min(texto.length(), ANCHO_CELDA);
+        if (!izquierda) {
+            escribirEspacios(escritor, ANCHO_CELDA - largo);
+        }
+        escritor.write(texto, 0, largo);
+        if (izquierda) {
+            escribirEspacios(escritor, ANCHO_CELDA - largo);
+        }
+    }
+
+    private static void escribirEspacios(Writer escritor, int cantidad) throws IOException {
+        for (int i = 0; i < cantidad; i++) {
+            escritor.write(' ');
+        }
+    }
+
+    private static String obtenerUltimaParte(String valor) {
+        if (valor == null || valor.isEmpty()) {
+            return valor;
+        }
+        String[] partes = valor.split("/");
+        return partes[partes.length - 1];
+    }
+}
@@ -0,0 +1,117 @@
+package olapcube.resultados;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe un resultado como un documento JSON en UTF-8, con una fila por
+ * línea:
+ * 
+ * <pre>
+ * {"dimensiones":["Fechas","Productos"],
+ * "columnas":[{"hecho":"valor_total","medida":"Suma"}],
+ * "filas":[
+ * {"claves":["2017","Accessories"],"valores":[1250.5]},
+ * {"claves":["2017","Bikes"],"valores":[98730]}
+ * ]}
+ * </pre>
+ * 
+ * JSON no admite NaN ni infinitos, que se escriben como null.
+ */
+public class EscritorJSON implements EscritorResultados {
+
+    @Override
+    public void escribir(ResultadoConsulta resultado, OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+        int dimensiones = resultado.getCantidadDimensiones();
+        int columnas = resultado.getCantidadColumnas();
+        escritor.write("{\"dimensiones\":[");
+        for (int d = 0; d < dimensiones; d++) {
+            if (d > 0) {
+                escritor.write(',');
+            }
+            escribirTexto(escritor, resultado.getDimension(d));
+        }
+        escritor.write("],\n\"columnas\":[");
+        for (int c = 0; c < columnas; c++) {
+            if (c > 0) {
+                escritor.write(',');
+            }
+            escritor.write("{\"hecho\":");
+            escribirTexto(escritor, resultado.getHecho(c));
+            escritor.write(",\"medida\":");
+            escribirTexto(escritor, resultado.getMedida(c));
+            escritor.write('}');
+        }
+        escritor.write("],\n\"filas\":[");
+
+        ResultadoConsulta.Cursor cursor = resultado.cursor();
+        boolean primera = true;
+        while (cursor.siguiente()) {
+            escritor.write(primera ? "\n{\"claves\":[" : ",\n{\"claves\":[");
+            primera = false;
+            for (int d = 0; d < dimensiones; d++) {
+                if (d > 0) {
+                    escritor.write(',');
+                }
+                escribirTexto(escritor, cursor.getClave(d));
+            }
+            escritor.write("],\"valores\":[");
+            for (int c = 0; c < columnas; c++) {
+                if (c > 0) {
+                    escritor.write(',');
+                }
+                double valor = cursor.getValor(c);
+                if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+                    escritor.write("null");
+                } else {
+                    FormatoNumeros.escribir(escritor, valor);
+                }
+            }
+            escritor.write("]}");
+        }
+        escritor.write("\n]}\n");
+        escritor.flush();
+    }
+
+    private static void escribirTexto(Writer escritor, String valor) throws IOException {
+        if (valor == null) {
+            escritor.write("null");
+            return;
+        }
+        escritor.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"':
+                    escritor.write("\\\"");
+                    break;
+                case '\\':
+                    escritor.write("\\\\");
+                    break;
+                case '\n':
+                    escritor.write("\\n");
+                    break;
+                case '\r':
+                    escritor.write("\\r");
+                    break;
+                case '\t':
+                    escritor.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        escritor.write("\\u00");
+                        escritor.write(Character.forDigit(c >> 4, 16));
+                        escritor.write(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        escritor.write(c);
+                    }
+            }
+        }
+        escritor.write('"');
+    }
+}
@@ -0,0 +1,26 @@
+package olapcube.resultados;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interfaz que define un formato de salida para un ResultadoConsulta (CSV,
+ * JSON, tabla de consola).
+ * 
+ * Un escritor recorre las filas una sola vez y escribe sobre un buffer de
+ * tamaño fijo, sin armar la salida completa en memoria ni formatear cada
+ * valor con printf. Al terminar vacía el buffer pero no cierra el stream, que
+ * es de quien lo abrió (por ejemplo System.out).
+ */
+public interface EscritorResultados {
+    public static final int TAMANIO_BUFFER = 1 << 16; // Caracteres del buffer de escritura
+
+    /**
+     * Escribe un resultado
+     * 
+     * @param resultado Resultado a escribir
+     * @param salida    Stream de destino
+     * @throws IOException Si falla la escritura
+     */
+    public void escribir(ResultadoConsulta resultado, OutputStream salida) throws IOException;
+}
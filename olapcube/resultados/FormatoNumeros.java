@@ -0,0 +1,52 @@
+package olapcube.resultados;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversiones de números a texto para los escritores, sin pasar por
+ * String.format
+ */
+final class FormatoNumeros {
+
+    private FormatoNumeros() {
+    }
+
+    /**
+     * Escribe un número con la menor cantidad de dígitos que lo representa
+     * exactamente: los enteros sin decimales y el resto como Double.toString
+     * 
+     * @param salida Destino
+     * @param valor  Número finito
+     * @throws IOException Si falla la escritura
+     */
+    static void escribir(Writer salida, double valor) throws IOException {
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            salida.write(Long.toString((long) valor));
+        } else {
+            salida.write(Double.toString(valor));
+        }
+    }
+
+    /**
+     * Convierte un número a texto con dos decimales, con el mismo resultado que
+     * String.format("%.2f", valor) (redondeo hacia arriba desde la mitad sobre
+     * los dígitos de Double.toString) pero siempre con punto decimal
+     * 
+     * @param valor Número
+     * @return Texto con dos decimales
+     */
+    static String dosDecimales(double valor) {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            return Double.isNaN(valor) ? "NaN" : valor > 0 ? "Infinity" : "-Infinity";
+        }
+        String texto = new BigDecimal(Double.toString(valor)).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        if (valor < 0 || (valor == 0 && 1 / valor < 0)) {
+            // BigDecimal pierde el signo de los negativos que redondean a cero
+            return texto.startsWith("-") ? texto : "-" + texto;
+        }
+        return texto;
+    }
+}
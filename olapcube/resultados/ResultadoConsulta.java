@@ -0,0 +1,175 @@
+package olapcube.resultados;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import olapcube.estructura.Grupo;
+
+/**
+ * Resultado tabular de una consulta de agregación: una fila por grupo, con el
+ * valor de cada dimensión de agrupación (claves) y el resultado de cada par
+ * (hecho, medida) (columnas).
+ * 
+ * Ejemplo con dimensiones Fechas y Productos y una columna valor_total (Suma):
+ * 
+ * | Fechas | Productos   | valor_total |
+ * |--------|-------------|-------------|
+ * | 2017   | Accessories | 1250.5      |
+ * | 2017   | Bikes       | 98730.0     |
+ * 
+ * No copia los grupos: los valores se calculan al leerlos a partir de los
+ * acumuladores de cada grupo. Se recorre por índice o con un cursor, y
+ * pagina() devuelve una vista de un rango de filas.
+ */
+public class ResultadoConsulta {
+    private String[] dimensiones; // Nombres de las dimensiones de agrupación
+    private String[] hechos; // Hecho de cada columna
+    private String[] medidas; // Medida de cada columna
+    private List<Grupo> grupos; // Grupos con acumuladores, uno por fila
+
+    /**
+     * Constructor de la clase
+     * 
+     * @param dimensiones Nombres de las dimensiones de agrupación
+     * @param hechos      Hecho de cada columna
+     * @param medidas     Nombre de la medida de cada columna
+     * @param grupos      Grupos con el resultado de cada columna (ver
+     *                    Cubo.agregar())
+     */
+    public ResultadoConsulta(String[] dimensiones, String[] hechos, String[] medidas, List<Grupo> grupos) {
+        if (hechos.length != medidas.length) {
+            throw new IllegalArgumentException("hechos y medidas deben tener misma longitud");
+        }
+        this.dimensiones = dimensiones.clone();
+        this.hechos = hechos.clone();
+        this.medidas = medidas.clone();
+        this.grupos = grupos;
+    }
+
+    public int getCantidadFilas() {
+        return grupos.size();
+    }
+
+    public int getCantidadDimensiones() {
+        return dimensiones.length;
+    }
+
+    public int getCantidadColumnas() {
+        return hechos.length;
+    }
+
+    public String getDimension(int dimension) {
+        return dimensiones[dimension];
+    }
+
+    public String getHecho(int columna) {
+        return hechos[columna];
+    }
+
+    public String getMedida(int columna) {
+        return medidas[columna];
+    }
+
+    /**
+     * Obtiene el valor de una dimensión en una fila
+     * 
+     * @param fila      Índice de la fila
+     * @param dimension Índice de la dimensión
+     * @return Valor de la dimensión
+     */
+    public String getClave(int fila, int dimension) {
+        return grupos.get(fila).getValor(dimension);
+    }
+
+    /**
+     * Obtiene el resultado de una columna en una fila
+     * 
+     * @param fila    Índice de la fila
+     * @param columna Índice de la columna
+     * @return Resultado de la medida
+     */
+    public double getValor(int fila, int columna) {
+        return grupos.get(fila).getResultado(columna);
+    }
+
+    /**
+     * Obtiene una vista de un rango de filas, para paginar
+     * 
+     * @param desplazamiento Filas a saltear
+     * @param cantidad       Filas de la página
+     * @return Resultado con las filas de la página (menos si no alcanzan)
+     */
+    public ResultadoConsulta pagina(int desplazamiento, int cantidad) {
+        if (desplazamiento < 0 || cantidad < 0) {
+            throw new IllegalArgumentException("Página inválida: " + desplazamiento + "+" + cantidad);
+        }
+        int desde = Math.min(desplazamiento, grupos.size());
+        int hasta = (int) Math.min((long) desde + cantidad, grupos.size());
+        return new ResultadoConsulta(dimensiones, hechos, medidas, grupos.subList(desde, hasta));
+    }
+
+    /**
+     * Crea un cursor posicionado antes de la primera fila
+     * 
+     * @return Cursor sobre las filas
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoConsulta [filas=" + grupos.size() + ", dimensiones=" + String.join(", ", dimensiones)
+                + ", columnas=" + hechos.length + "]";
+    }
+
+    /**
+     * Cursor que recorre las filas del resultado en orden
+     * 
+     * Ejemplo:
+     * 
+     * <pre>
+     * ResultadoConsulta.Cursor cursor = resultado.cursor();
+     * while (cursor.siguiente()) {
+     *     System.out.println(cursor.getClave(0) + ": " + cursor.getValor(0));
+     * }
+     * </pre>
+     */
+    public class Cursor {
+        private int fila = -1; // Fila actual
+
+        private Cursor() {
+        }
+
+        /**
+         * Avanza a la fila siguiente
+         * 
+         * @return false si no hay más filas
+         */
+        public boolean siguiente() {
+            if (fila < grupos.size()) {
+                fila++;
+            }
+            return fila < grupos.size();
+        }
+
+        public int getFila() {
+            return fila;
+        }
+
+        public String getClave(int dimension) {
+            return grupos.get(verificarFila()).getValor(dimension);
+        }
+
+        public double getValor(int columna) {
+            return grupos.get(verificarFila()).getResultado(columna);
+        }
+
+        private int verificarFila() {
+            if (fila < 0 || fila >= grupos.size()) {
+                throw new NoSuchElementException("El cursor no está sobre una fila");
+            }
+            return fila;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package olapcube.servidor;
+
+/**
+ * Configuración del servidor de consultas
+ * 
+ * Esta clase utiliza un constructor privado y métodos estáticos para la
+ * creación de instancias.
+ */
+public class ConfigServidor {
+    public static final int TAMANIO_MAXIMO_CONSULTA = 1 << 20; // Bytes máximos del cuerpo de una consulta
+    public static final String DIRECCION_LOCAL = "127.0.0.1"; // Dirección por defecto: solo conexiones locales
+
+    private String direccion; // Dirección en la que escucha el servidor ("0.0.0.0" para todas las interfaces)
+    private int puerto; // Puerto en el que escucha el servidor (0 elige uno libre)
+    private int maxConsultasConcurrentes; // Consultas que se resuelven al mismo tiempo
+    private long esperaMaximaMilis; // Tiempo que una consulta espera lugar antes de rechazarse
+    private int hilosPlataforma; // Hilos del pool si la JVM no tiene hilos virtuales
+
+    /**
+     * Constructor privado de la clase
+     * 
+     * @param direccion                Dirección en la que escucha el servidor
+     * @param puerto                   Puerto en el que escucha el servidor
+     * @param maxConsultasConcurrentes Consultas que se resuelven al mismo tiempo
+     * @param esperaMaximaMilis        Tiempo que una consulta espera lugar antes
+     *                                 de rechazarse
+     * @param hilosPlataforma          Hilos del pool si la JVM no tiene hilos
+     *                                 virtuales
+     */
+    private ConfigServidor(String direccion, int puerto, int maxConsultasConcurrentes, long esperaMaximaMilis,
+            int hilosPlataforma) {
+        if (direccion == null || direccion.isEmpty()) {
+            throw new IllegalArgumentException("Falta la dirección en la que escucha el servidor");
+        }
+        if (puerto < 0 || puerto > 65535) {
+            throw new IllegalArgumentException("Puerto inválido: " + puerto);
+        }
+        if (maxConsultasConcurrentes <= 0 || hilosPlataforma <= 0) {
+            throw new IllegalArgumentException("La concurrencia debe ser positiva");
+        }
+        if (esperaMaximaMilis < 0) {
+            throw new IllegalArgumentException("La espera máxima no puede ser negativa: " + esperaMaximaMilis);
+        }
+        this.direccion = direccion;
+        this.puerto = puerto;
+        this.maxConsultasConcurrentes = maxConsultasConcurrentes;
+        this.esperaMaximaMilis = esperaMaximaMilis;
+        this.hilosPlataforma = hilosPlataforma;
+    }
+
+    /**
+     * Método que permite crear una configuración con los límites por defecto:
+     * tantas consultas concurrentes como procesadores y hasta un segundo de
+     * espera. El servidor escucha solo en la dirección local (DIRECCION_LOCAL).
+     * 
+     * @param puerto Puerto en el que escucha el servidor (0 elige uno libre)
+     * @return Configuración del servidor
+     */
+    public static ConfigServidor config(int puerto) {
+        int procesadores = Runtime.getRuntime().availableProcessors();
+        return new ConfigServidor(DIRECCION_LOCAL, puerto, procesadores, 1000, procesadores * 4);
+    }
+
+    /**
+     * Método que permite crear una configuración con límites de concurrencia.
+     * Las conexiones abiertas no tienen límite (cada una espera en su hilo
+     * virtual); lo que se limita son las consultas que se resuelven a la vez,
+     * que compiten por CPU y memoria. Las que no consiguen lugar en la espera
+     * máxima se rechazan con 503. El servidor escucha solo en la dirección local
+     * (DIRECCION_LOCAL).
+     * 
+     * @param puerto                   Puerto en el que escucha el servidor (0
+     *                                 elige uno libre)
+     * @param maxConsultasConcurrentes Consultas que se resuelven al mismo tiempo
+     * @param esperaMaximaMilis        Tiempo que una consulta espera lugar antes
+     *                                 de rechazarse
+     * @param hilosPlataforma          Hilos del pool si la JVM no tiene hilos
+     *                                 virtuales (Java 11 a 20)
+     * @return Configuración del servidor
+     */
+    public static ConfigServidor config(int puerto, int maxConsultasConcurrentes, long esperaMaximaMilis,
+            int hilosPlataforma) {
+        return config(DIRECCION_LOCAL, puerto, maxConsultasConcurrentes, esperaMaximaMilis, hilosPlataforma);
+    }
+
+    /**
+     * Método que permite crear una configuración con límites de concurrencia
+     * que escucha en una dirección dada. Para aceptar conexiones de otros
+     * equipos hay que indicarla explícitamente (por ejemplo "0.0.0.0"): el
+     * servidor no tiene autenticación.
+     * 
+     * @param direccion                Dirección o nombre de host en el que
+     *                                 escucha el servidor
+     * @param puerto                   Puerto en el que escucha el servidor (0
+     *                                 elige uno libre)
+     * @param maxConsultasConcurrentes Consultas que se resuelven al mismo tiempo
+     * @param esperaMaximaMilis        Tiempo que una consulta espera lugar antes
+     *                                 de rechazarse
+     * @param hilosPlataforma          Hilos del pool si la JVM no tiene hilos
+     *                                 virtuales (Java 11 a 20)
+     * @return Configuración del servidor
+     */
+    public static ConfigServidor config(String direccion, int puerto, int maxConsultasConcurrentes,
+            long esperaMaximaMilis, int hilosPlataforma) {
+        return new ConfigServidor(direccion, puerto, maxConsultasConcurrentes, esperaMaximaMilis, hilosPlataforma);
+    }
+
+    public String getDireccion() {
+        return direccion;
+    }
+
+    public int getPuerto() {
+        return puerto;
+    }
+
+    public int getMaxConsultasConcurrentes() {
+        return maxConsultasConcurrentes;
+    }
+
+    public long getEsperaMaximaMilis() {
+        return esperaMaximaMilis;
+    }
+
+    public int getHilosPlataforma() {
+        return hilosPlataforma;
+    }
+}
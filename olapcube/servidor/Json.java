@@ -0,0 +1,266 @@
+package olapcube.servidor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lectura y escritura mínima de JSON para las consultas del servidor.
+ * 
+ * leer() convierte un documento en objetos de Java: Map (objetos, con el
+ * orden original), List (arreglos), String, Double, Boolean o null. Para
+ * escribir, las respuestas se generan directamente sobre el Writer de la
+ * respuesta; aquí solo están las conversiones de textos y números.
+ */
+class Json {
+    private String texto; // Documento a leer
+    private int posicion; // Posición actual en el documento
+
+    private Json(String texto) {
+        this.texto = texto;
+    }
+
+    /**
+     * Lee un documento JSON
+     * 
+     * @param texto Documento
+     * @return Valor del documento
+     * @throws IllegalArgumentException Si el documento no es JSON válido
+     */
+    static Object leer(String texto) {
+        Json json = new Json(texto);
+        Object valor = json.leerValor();
+        json.saltarEspacios();
+        if (json.posicion != texto.length()) {
+            throw json.error("Contenido inesperado después del valor");
+        }
+        return valor;
+    }
+
+    private Object leerValor() {
+        saltarEspacios();
+        if (posicion >= texto.length()) {
+            throw error("Fin inesperado del documento");
+        }
+        char c = texto.charAt(posicion);
+        switch (c) {
+            case '{':
+                return leerObjeto();
+            case '[':
+                return leerArreglo();
+            case '"':
+                return leerTexto();
+            case 't':
+                return leerLiteral("true", Boolean.TRUE);
+            case 'f':
+                return leerLiteral("false", Boolean.FALSE);
+            case 'n':
+                return leerLiteral("null", null);
+            default:
+                return leerNumero();
+        }
+    }
+
+    private Map<String, Object> leerObjeto() {
+        Map<String, Object> objeto = new LinkedHashMap<>();
+        posicion++; // {
+        saltarEspacios();
+        if (consumir('}')) {
+            return objeto;
+        }
+        do {
+            saltarEspacios();
+            if (posicion >= texto.length() || texto.charAt(posicion) != '"') {
+                throw error("Se esperaba el nombre de un campo");
+            }
+            String clave = leerTexto();
+            saltarEspacios();
+            if (!consumir(':')) {
+                throw error("Se esperaba ':'");
+            }
+            objeto.put(clave, leerValor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir('}')) {
+            throw error("Se esperaba ',' o '}'");
+        }
+        return objeto;
+    }
+
+    private List<Object> leerArreglo() {
+        List<Object> arreglo = new ArrayList<>();
+        posicion++; // [
+        saltarEspacios();
+        if (consumir(']')) {
+            return arreglo;
+        }
+        do {
+            arreglo.add(leerValor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir(']')) {
+            throw error("Se esperaba ',' o ']'");
+        }
+        return arreglo;
+    }
+
+    private String leerTexto() {
+        StringBuilder resultado = new StringBuilder();
+        posicion++; // "
+        while (posicion < texto.length()) {
+            char c = texto.charAt(posicion++);
+            if (c == '"') {
+                return resultado.toString();
+            }
+            if (c != '\\') {
+                resultado.append(c);
+                continue;
+            }
+            if (posicion >= texto.length()) {
+                break;
+            }
+            char escape = texto.charAt(posicion++);
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    resultado.append(escape);
+                    break;
+                case 'b':
+                    resultado.append('\b');
+                    break;
+                case 'f':
+                    resultado.append('\f');
+                    break;
+                case 'n':
+                    resultado.append('\n');
+                    break;
+                case 'r':
+                    resultado.append('\r');
+                    break;
+                case 't':
+                    resultado.append('\t');
+                    break;
+                case 'u':
+                    if (posicion + 4 > texto.length()) {
+                        throw error("Escape unicode incompleto");
+                    }
+                    try {
+                        resultado.append((char) Integer.parseInt(texto.substring(posicion, posicion + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Escape unicode inválido");
+                    }
+                    posicion += 4;
+                    break;
+                default:
+                    throw error("Escape inválido: \\" + escape);
+            }
+        }
+        throw error("Texto sin cerrar");
+    }
+
+    private Object leerLiteral(String literal, Object valor) {
+        if (!texto.startsWith(literal, posicion)) {
+            throw error("Valor inválido");
+        }
+        posicion += literal.length();
+        return valor;
+    }
+
+    private Double leerNumero() {
+        int inicio = posicion;
+        while (posicion < texto.length() && "+-0123456789.eE".indexOf(texto.charAt(posicion)) >= 0) {
+            posicion++;
+        }
+        if (inicio == posicion) {
+            throw error("Valor inválido");
+        }
+        try {
+            return Double.parseDouble(texto.substring(inicio, posicion));
+        } catch (NumberFormatException e) {
+            throw error("Número inválido");
+        }
+    }
+
+    private boolean consumir(char c) {
+        if (posicion < texto.length() && texto.charAt(posicion) == c) {
+            posicion++;
+            return true;
+        }
+        return false;
+    }
+
+    private void saltarEspacios() {
+        while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+            posicion++;
+        }
+    }
+
+    private IllegalArgumentException error(String mensaje) {
+        return new IllegalArgumentException("JSON inválido en la posición " + posicion + ": " + mensaje);
+    }
+
+    /**
+     * Escribe un texto como string JSON, con las comillas y los escapes
+     * necesarios
+     * 
+     * @param salida Destino
+     * @param valor  Texto (null se escribe como null)
+     * @throws IOException Si falla la escritura
+     */
+    static void escribirTexto(Writer salida, String valor) throws IOException {
+        if (valor == null) {
+            salida.write("null");
+            return;
+        }
+        salida.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"':
+                    salida.write("\\\"");
+                    break;
+                case '\\':
+                    salida.write("\\\\");
+                    break;
+                case '\n':
+                    salida.write("\\n");
+                    break;
+                case '\r':
+                    salida.write("\\r");
+                    break;
+                case '\t':
+                    salida.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        salida.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        salida.write(c);
+                    }
+            }
+        }
+        salida.write('"');
+    }
+
+    /**
+     * Escribe un número. JSON no admite NaN ni infinitos, que se escriben como
+     * null.
+     * 
+     * @param salida Destino
+     * @param valor  Número
+     * @throws IOException Si falla la escritura
+     */
+    static void escribirNumero(Writer salida, double valor) throws IOException {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            salida.write("null");
+        } else if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            salida.write(Long.toString((long) valor));
+        } else {
+            salida.write(Double.toString(valor));
+        }
+    }
+}
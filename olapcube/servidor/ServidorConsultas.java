@@ -0,0 +1,379 @@
+package olapcube.servidor;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import olapcube.estructura.Cubo;
+import olapcube.estructura.Grupo;
+import olapcube.estructura.Sesion;
+
+/**
+ * Servidor HTTP embebido que responde consultas sobre un cubo en JSON, con el
+ * servidor incluido en el JDK (com.sun.net.httpserver).
+ * 
+ * Rutas (todas por POST, con el cuerpo en JSON):
+ * 
+ * - /pivot: agrupa por las dimensiones indicadas, con filtros opcionales
+ * - /slice: como /pivot, filtrando antes una dimensión por un valor
+ * ("dimension", "valor" y opcionalmente "nivel")
+ * - /dice: como /pivot, con al menos un filtro
+ * 
+ * Campos de la consulta:
+ * 
+ * <pre>
+ * {
+ *   "hecho": "valor_total",                 (opcional, el primer hecho)
+ *   "medida": "Suma",                       (opcional, la primera medida)
+ *   "niveles": { "Fechas": 1 },             (opcional, nivel de cada dimensión)
+ *   "filtros": [ { "dimension": "Productos", "nivel": 0, "valores": ["Bikes"] } ],
+ *   "dimensiones": ["Fechas", "Productos"]  (dimensiones de agrupación)
+ * }
+ * </pre>
+ * 
+ * Los filtros se aplican en orden, cada uno en su nivel (o el nivel actual de
+ * la dimensión); después se llevan las dimensiones a los niveles pedidos. La
+ * respuesta incluye los grupos con sus valores y el resultado de la medida.
+ * Los grupos se calculan completos en memoria (ver Sesion.agregar()); lo que
+ * no se arma entero es el texto JSON, que se escribe grupo por grupo con
+ * codificación chunked.
+ * 
+ * Cada consulta se resuelve en una sesión propia (ver Cubo.abrirSesion()), en
+ * un hilo virtual si la JVM los tiene (Java 21 o superior) o en un pool de
+ * hilos de plataforma. La cantidad de consultas que se resuelven a la vez está
+ * limitada (ver ConfigServidor); las que no consiguen lugar a tiempo se
+ * rechazan con 503. El lugar se libera al terminar de calcular los grupos,
+ * antes de escribir la respuesta.
+ */
+public class ServidorConsultas {
+    private Cubo cubo; // Cubo consultado
+    private ConfigServidor config; // Configuración del servidor
+    private HttpServer servidor; // Servidor HTTP
+    private ExecutorService ejecutor; // Hilos que atienden las consultas
+    private Semaphore lugares; // Consultas que se pueden resolver a la vez
+
+    /**
+     * Constructor de la clase. El servidor no atiende consultas hasta llamar a
+     * iniciar().
+     * 
+     * @param cubo   Cubo a consultar
+     * @param config Configuración del servidor
+     */
+    public ServidorConsultas(Cubo cubo, ConfigServidor config) {
+        this.cubo = cubo;
+        this.config = config;
+        this.lugares = new Semaphore(config.getMaxConsultasConcurrentes());
+    }
+
+    /**
+     * Abre el puerto en la dirección configurada (la local por defecto) y
+     * empieza a atender consultas
+     */
+    public synchronized void iniciar() {
+        if (servidor != null) {
+            throw new IllegalStateException("El servidor ya está iniciado");
+        }
+        try {
+            servidor = HttpServer.create(new InetSocketAddress(config.getDireccion(), config.getPuerto()), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "No se pudo abrir el puerto " + config.getPuerto() + " en " + config.getDireccion(), e);
+        }
+        ejecutor = crearEjecutor(config.getHilosPlataforma());
+        servidor.setExecutor(ejecutor);
+        servidor.createContext("/pivot", intercambio -> atender(intercambio, Ruta.PIVOT));
+        servidor.createContext("/slice", intercambio -> atender(intercambio, Ruta.SLICE));
+        servidor.createContext("/dice", intercambio -> atender(intercambio, Ruta.DICE));
+        servidor.start();
+    }
+
+    /**
+     * Deja de aceptar consultas y espera hasta un segundo a que terminen las
+     * que están en curso
+     */
+    public synchronized void detener() {
+        if (servidor == null) {
+            return;
+        }
+        servidor.stop(1);
+        ejecutor.shutdown();
+        servidor = null;
+    }
+
+    /**
+     * Obtiene el puerto en el que escucha el servidor (útil si se configuró el
+     * puerto 0)
+     * 
+     * @return Puerto
+     */
+    public synchronized int getPuerto() {
+        if (servidor == null) {
+            throw new IllegalStateException("El servidor no está iniciado");
+        }
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Crea un ejecutor con un hilo virtual por consulta. En Java 11 a 20 no hay
+     * hilos virtuales: se busca el método por reflexión y, si no existe, se usa
+     * un pool fijo de hilos de plataforma.
+     */
+    private static ExecutorService crearEjecutor(int hilosPlataforma) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            AtomicInteger numero = new AtomicInteger();
+            return Executors.newFixedThreadPool(hilosPlataforma, tarea -> {
+                Thread hilo = new Thread(tarea, "servidor-consultas-" + numero.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+    }
+
+    private enum Ruta {
+        PIVOT, SLICE, DICE
+    }
+
+    private void atender(HttpExchange intercambio, Ruta ruta) throws IOException {
+        try {
+            if (!"POST".equals(intercambio.getRequestMethod())) {
+                intercambio.getResponseHeaders().set("Allow", "POST");
+                responderError(intercambio, 405, "Método no permitido: " + intercambio.getRequestMethod());
+                return;
+            }
+            byte[] cuerpo = leerCuerpo(intercambio.getRequestBody());
+            if (cuerpo == null) {
+                responderError(intercambio, 413, "La consulta supera los " + ConfigServidor.TAMANIO_MAXIMO_CONSULTA
+                        + " bytes");
+                return;
+            }
+            if (!lugares.tryAcquire(config.getEsperaMaximaMilis(), TimeUnit.MILLISECONDS)) {
+                responderError(intercambio, 503, "Demasiadas consultas en curso");
+                return;
+            }
+            Consulta consulta;
+            List<Grupo> grupos;
+            try {
+                consulta = Consulta.leer(new String(cuerpo, StandardCharsets.UTF_8), ruta);
+                grupos = consulta.resolver(cubo);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                responderError(intercambio, 400, e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                // El detalle queda en el log del servidor: el cliente no tiene por qué ver el estado interno
+                System.getLogger(ServidorConsultas.class.getName()).log(System.Logger.Level.ERROR,
+                        "Error al resolver una consulta " + intercambio.getRequestURI(), e);
+                responderError(intercambio, 500, "Error interno");
+                return;
+            } finally {
+                lugares.release();
+            }
+            // Fuera del try: una vez enviados los encabezados (200) ya no se puede responder un error, y si la
+            // escritura falla la respuesta queda cortada
+            responder(intercambio, consulta, grupos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    /**
+     * Lee el cuerpo de la consulta
+     * 
+     * @return Bytes del cuerpo, o null si supera el tamaño máximo
+     */
+    private static byte[] leerCuerpo(InputStream entrada) throws IOException {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int leidos;
+        while ((leidos = entrada.read(buffer)) >= 0) {
+            cuerpo.write(buffer, 0, leidos);
+            if (cuerpo.size() > ConfigServidor.TAMANIO_MAXIMO_CONSULTA) {
+                return null;
+            }
+        }
+        return cuerpo.toByteArray();
+    }
+
+    /**
+     * Escribe la respuesta de una consulta, grupo por grupo
+     */
+    private static void responder(HttpExchange intercambio, Consulta consulta, List<Grupo> grupos)
+            throws IOException {
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(200, 0); // Longitud desconocida: chunked
+        try (Writer salida = new BufferedWriter(
+                new OutputStreamWriter(intercambio.getResponseBody(), StandardCharsets.UTF_8), 1 << 16)) {
+            salida.write("{\"dimensiones\":[");
+            for (int i = 0; i < consulta.dimensiones.length; i++) {
+                salida.write(i > 0 ? "," : "");
+                Json.escribirTexto(salida, consulta.dimensiones[i]);
+            }
+            salida.write("],\"niveles\":[");
+            for (int i = 0; i < consulta.dimensiones.length; i++) {
+                salida.write(i > 0 ? "," : "");
+                salida.write(Integer.toString(consulta.sesion.getNivelActual(consulta.dimensiones[i])));
+            }
+            salida.write("],\"hecho\":");
+            Json.escribirTexto(salida, consulta.sesion.getHecho());
+            salida.write(",\"medida\":");
+            Json.escribirTexto(salida, consulta.sesion.getMedida().getNombre());
+            salida.write(",\"grupos\":[");
+            for (int g = 0; g < grupos.size(); g++) {
+                Grupo grupo = grupos.get(g);
+                salida.write(g > 0 ? ",{\"valores\":[" : "{\"valores\":[");
+                for (int i = 0; i < grupo.getValores().length; i++) {
+                    salida.write(i > 0 ? "," : "");
+                    Json.escribirTexto(salida, grupo.getValor(i));
+                }
+                salida.write("],\"resultado\":");
+                Json.escribirNumero(salida, grupo.getResultado(0));
+                salida.write('}');
+            }
+            salida.write("]}");
+        }
+    }
+
+    private static void responderError(HttpExchange intercambio, int codigo, String mensaje) throws IOException {
+        StringWriter texto = new StringWriter();
+        texto.write("{\"error\":");
+        Json.escribirTexto(texto, mensaje);
+        texto.write('}');
+        byte[] bytes = texto.toString().getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(codigo, bytes.length);
+        intercambio.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Consulta leída del cuerpo de una petición
+     */
+    private static class Consulta {
+        private Map<String, Object> campos; // Campos del JSON de la consulta
+        private Ruta ruta; // Ruta por la que llegó la consulta
+        private String[] dimensiones; // Dimensiones de agrupación
+        private Sesion sesion; // Sesión con los filtros, niveles, hecho y medida de la consulta
+
+        @SuppressWarnings("unchecked")
+        static Consulta leer(String texto, Ruta ruta) {
+            Object json = Json.leer(texto);
+            if (!(json instanceof Map)) {
+                throw new IllegalArgumentException("La consulta debe ser un objeto JSON");
+            }
+            Consulta consulta = new Consulta();
+            consulta.campos = (Map<String, Object>) json;
+            consulta.ruta = ruta;
+            List<Object> dimensiones = getLista(consulta.campos, "dimensiones", true);
+            if (dimensiones.isEmpty()) {
+                throw new IllegalArgumentException("Se necesita al menos una dimensión de agrupación");
+            }
+            consulta.dimensiones = new String[dimensiones.size()];
+            for (int i = 0; i < dimensiones.size(); i++) {
+                consulta.dimensiones[i] = getTexto(dimensiones.get(i), "dimensiones");
+            }
+            return consulta;
+        }
+
+        /**
+         * Arma la sesión de la consulta y calcula los grupos
+         */
+        @SuppressWarnings("unchecked")
+        List<Grupo> resolver(Cubo cubo) {
+            sesion = cubo.abrirSesion();
+            if (campos.containsKey("hecho")) {
+                sesion = sesion.seleccionarHecho(getTexto(campos.get("hecho"), "hecho"));
+            }
+            if (campos.containsKey("medida")) {
+                sesion = sesion.seleccionarMedida(getTexto(campos.get("medida"), "medida"));
+            }
+
+            if (ruta == Ruta.SLICE) {
+                String dimension = getTexto(campos.get("dimension"), "dimension");
+                if (campos.containsKey("nivel")) {
+                    sesion = sesion.enNivel(dimension, getEntero(campos.get("nivel"), "nivel"));
+                }
+                sesion = sesion.slice(dimension, getTexto(campos.get("valor"), "valor"));
+            }
+            List<Object> filtros = getLista(campos, "filtros", ruta == Ruta.DICE);
+            if (ruta == Ruta.DICE && filtros.isEmpty()) {
+                throw new IllegalArgumentException("Se necesita al menos un filtro");
+            }
+            for (Object filtro : filtros) {
+                if (!(filtro instanceof Map)) {
+                    throw new IllegalArgumentException("Cada filtro debe ser un objeto JSON");
+                }
+                Map<String, Object> campo = (Map<String, Object>) filtro;
+                String dimension = getTexto(campo.get("dimension"), "dimension");
+                if (campo.containsKey("nivel")) {
+                    sesion = sesion.enNivel(dimension, getEntero(campo.get("nivel"), "nivel"));
+                }
+                List<Object> valores = getLista(campo, "valores", true);
+                String[] textos = new String[valores.size()];
+                for (int i = 0; i < textos.length; i++) {
+                    textos[i] = getTexto(valores.get(i), "valores");
+                }
+                sesion = sesion.dice(dimension, textos);
+            }
+
+            Object niveles = campos.get("niveles");
+            if (niveles != null) {
+                if (!(niveles instanceof Map)) {
+                    throw new IllegalArgumentException("niveles debe ser un objeto JSON");
+                }
+                for (Map.Entry<String, Object> nivel : ((Map<String, Object>) niveles).entrySet()) {
+                    sesion = sesion.enNivel(nivel.getKey(), getEntero(nivel.getValue(), "niveles"));
+                }
+            }
+            return sesion.agregar(dimensiones);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Object> getLista(Map<String, Object> campos, String nombre, boolean obligatorio) {
+            Object valor = campos.get(nombre);
+            if (valor == null) {
+                if (obligatorio) {
+                    throw new IllegalArgumentException("Falta el campo " + nombre);
+                }
+                return List.of();
+            }
+            if (!(valor instanceof List)) {
+                throw new IllegalArgumentException(nombre + " debe ser un arreglo");
+            }
+            return (List<Object>) valor;
+        }
+
+        private static String getTexto(Object valor, String nombre) {
+            if (!(valor instanceof String)) {
+                throw new IllegalArgumentException(nombre + " debe ser un texto");
+            }
+            return (String) valor;
+        }
+
+        private static int getEntero(Object valor, String nombre) {
+            if (!(valor instanceof Double) || (Double) valor != Math.rint((Double) valor)) {
+                throw new IllegalArgumentException(nombre + " debe ser un entero");
+            }
+            return ((Double) valor).intValue();
+        }
+    }
+}